@@ -0,0 +1,100 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link CellComparator#compare(Cell, Cell)} for on heap {@link KeyValue}s and off heap
+ * {@link ByteBufferKeyValue}s. The compared cells share the row and family and differ only in the
+ * last byte of the qualifier, which is the worst case for the comparator.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class CellComparatorBenchmark {
+
+  @Param({ "16", "64" })
+  int rowLength;
+
+  private Cell kv1;
+  private Cell kv2;
+  private Cell bbKv1;
+  private Cell bbKv2;
+
+  @Setup
+  public void setup() {
+    byte[] row = new byte[rowLength];
+    Bytes.random(row);
+    byte[] family = Bytes.toBytes("f");
+    byte[] value = new byte[64];
+    KeyValue a = new KeyValue(row, family, Bytes.toBytes("qual0"), 1L, value);
+    KeyValue b = new KeyValue(row, family, Bytes.toBytes("qual1"), 1L, value);
+    kv1 = a;
+    kv2 = b;
+    bbKv1 = toOffheap(a);
+    bbKv2 = toOffheap(b);
+  }
+
+  private static Cell toOffheap(KeyValue kv) {
+    ByteBuffer buf = ByteBuffer.allocateDirect(kv.getLength());
+    buf.put(kv.getBuffer(), kv.getOffset(), kv.getLength());
+    buf.rewind();
+    return new ByteBufferKeyValue(buf, 0, kv.getLength());
+  }
+
+  @Benchmark
+  public int compareKeyValue() {
+    return CellComparator.COMPARATOR.compare(kv1, kv2);
+  }
+
+  @Benchmark
+  public int compareByteBufferKeyValue() {
+    return CellComparator.COMPARATOR.compare(bbKv1, bbKv2);
+  }
+
+  @Benchmark
+  public int compareMixed() {
+    return CellComparator.COMPARATOR.compare(kv1, bbKv2);
+  }
+
+  @Benchmark
+  public int compareRows() {
+    return CellComparator.COMPARATOR.compareRows(kv1, kv2);
+  }
+}
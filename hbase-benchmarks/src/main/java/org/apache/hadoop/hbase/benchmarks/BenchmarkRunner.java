@@ -0,0 +1,58 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. Runs the JMH microbenchmarks of this module reporting
+ * throughput in ops/sec and, through the JMH GC profiler, bytes allocated per operation
+ * (<code>gc.alloc.rate.norm</code>).
+ * <p>
+ * Usage: <code>java -jar hbase-benchmarks/target/benchmarks.jar [JMH options] [regexp]</code>.
+ * Any standard JMH command line option is honored, e.g. <code>-f 3 -wi 10 LruBlockCache</code>.
+ */
+@InterfaceAudience.Private
+public final class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+  }
+
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions cmdOptions = new CommandLineOptions(args);
+    ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmdOptions);
+    if (cmdOptions.getBenchModes().isEmpty()) {
+      builder.mode(Mode.Throughput).timeUnit(TimeUnit.SECONDS);
+    }
+    if (cmdOptions.getProfilers().isEmpty()) {
+      builder.addProfiler(GCProfiler.class);
+    }
+    new Runner(builder.build()).run();
+  }
+}
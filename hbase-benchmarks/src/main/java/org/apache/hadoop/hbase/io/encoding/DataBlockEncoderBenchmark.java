@@ -0,0 +1,143 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.encoding;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.io.ByteArrayOutputStream;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link DataBlockEncoder.EncodedSeeker} of each data block encoding on one data
+ * block of roughly the default HFile block size: random seeks inside the block and sequential
+ * iteration over it.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class DataBlockEncoderBenchmark {
+
+  private static final byte[] HFILEBLOCK_DUMMY_HEADER =
+      new byte[HConstants.HFILEBLOCK_HEADER_SIZE];
+  private static final int ENCODED_DATA_OFFSET =
+      HConstants.HFILEBLOCK_HEADER_SIZE + DataBlockEncoding.ID_SIZE;
+  private static final int NUM_SEEK_KEYS = 1024;
+
+  @Param({ "PREFIX", "DIFF", "FAST_DIFF", "ROW_INDEX_V1" })
+  DataBlockEncoding encoding;
+
+  @Param({ "false", "true" })
+  boolean offheap;
+
+  @Param({ "65536" })
+  int blockSize;
+
+  private DataBlockEncoder.EncodedSeeker seeker;
+  private Cell[] seekKeys;
+  private int index;
+
+  @Setup
+  public void setup() throws IOException {
+    List<KeyValue> kvs = new ArrayList<KeyValue>();
+    byte[] family = Bytes.toBytes("f");
+    byte[] value = new byte[32];
+    int size = 0;
+    for (int i = 0; size < blockSize; i++) {
+      KeyValue kv = new KeyValue(Bytes.toBytes(String.format("row-%08d", i / 4)), family,
+          Bytes.toBytes("q" + (i % 4)), 1L, value);
+      kvs.add(kv);
+      size += kv.getLength();
+    }
+    HFileContext meta = new HFileContextBuilder().withHBaseCheckSum(false)
+        .withIncludesMvcc(false).withIncludesTags(false)
+        .withCompression(Compression.Algorithm.NONE).build();
+    DataBlockEncoder encoder = encoding.getEncoder();
+    seeker = encoder.createSeeker(CellComparator.COMPARATOR,
+        encoder.newDataBlockDecodingContext(meta));
+    seeker.setCurrentBuffer(new SingleByteBuff(encode(encoder, kvs, meta)));
+    Random rand = new Random(0);
+    seekKeys = new Cell[NUM_SEEK_KEYS];
+    for (int i = 0; i < NUM_SEEK_KEYS; i++) {
+      seekKeys[i] = kvs.get(rand.nextInt(kvs.size()));
+    }
+  }
+
+  private ByteBuffer encode(DataBlockEncoder encoder, List<KeyValue> kvs, HFileContext meta)
+      throws IOException {
+    HFileBlockEncodingContext ctx =
+        encoder.newDataBlockEncodingContext(encoding, HFILEBLOCK_DUMMY_HEADER, meta);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    baos.write(HFILEBLOCK_DUMMY_HEADER);
+    DataOutputStream dos = new DataOutputStream(baos);
+    encoder.startBlockEncoding(ctx, dos);
+    for (KeyValue kv : kvs) {
+      encoder.encode(kv, ctx, dos);
+    }
+    encoder.endBlockEncoding(ctx, dos, baos.getBuffer());
+    int length = baos.size() - ENCODED_DATA_OFFSET;
+    ByteBuffer buf = offheap ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+    buf.put(baos.getBuffer(), ENCODED_DATA_OFFSET, length);
+    buf.rewind();
+    return buf;
+  }
+
+  @Benchmark
+  public int seekToKeyInBlock() {
+    index = (index + 1) & (NUM_SEEK_KEYS - 1);
+    return seeker.seekToKeyInBlock(seekKeys[index], false);
+  }
+
+  @Benchmark
+  public Cell next() {
+    if (!seeker.next()) {
+      seeker.rewind();
+    }
+    return seeker.getCell();
+  }
+}
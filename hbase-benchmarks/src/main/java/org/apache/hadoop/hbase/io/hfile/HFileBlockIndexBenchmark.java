@@ -0,0 +1,102 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link HFileBlockIndex.BlockIndexReader#rootBlockContainingKey(Cell)}, the binary
+ * search done against the root level of the block index for every seek into an HFile. The
+ * index is written by {@link HFileBlockIndex.BlockIndexWriter} and read back exactly as a
+ * reader would load it.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class HFileBlockIndexBenchmark {
+
+  private static final int NUM_SEEK_KEYS = 1024;
+
+  @Param({ "128", "4096" })
+  int numEntries;
+
+  private HFileBlockIndex.BlockIndexReader reader;
+  private Cell[] seekKeys;
+  private int index;
+
+  @Setup
+  public void setup() throws IOException {
+    byte[] family = Bytes.toBytes("f");
+    byte[] qualifier = Bytes.toBytes("q");
+    HFileBlockIndex.BlockIndexWriter writer = new HFileBlockIndex.BlockIndexWriter();
+    for (int i = 0; i < numEntries; i++) {
+      KeyValue firstKey =
+          new KeyValue(Bytes.toBytes(String.format("row-%08d", i * 100)), family, qualifier);
+      writer.addEntry(firstKey.getKey(), i * 65536L, 65536);
+    }
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    writer.writeSingleLevelIndex(out, "benchmark");
+    out.flush();
+
+    reader = new HFileBlockIndex.CellBasedKeyBlockIndexReader(CellComparator.COMPARATOR, 1);
+    reader.readRootIndex(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())),
+        numEntries);
+
+    Random rand = new Random(0);
+    seekKeys = new Cell[NUM_SEEK_KEYS];
+    for (int i = 0; i < NUM_SEEK_KEYS; i++) {
+      seekKeys[i] = new KeyValue(Bytes.toBytes(String.format("row-%08d",
+          rand.nextInt(numEntries * 100))), family, qualifier, 1L, new byte[0]);
+    }
+  }
+
+  @Benchmark
+  public int rootBlockContainingKey() {
+    index = (index + 1) & (NUM_SEEK_KEYS - 1);
+    return reader.rootBlockContainingKey(seekKeys[index]);
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils.HFileBlockPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link LruBlockCache#getBlock(BlockCacheKey, boolean, boolean, boolean)} hits and
+ * {@link LruBlockCache#cacheBlock(BlockCacheKey, Cacheable)} of new blocks. The cache is sized
+ * to hold about half of the generated blocks, so puts keep the eviction thread busy.
+ */
+@InterfaceAudience.Private
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(4)
+public class LruBlockCacheBenchmark {
+
+  private static final int NUM_BLOCKS = 4096;
+
+  @Param({ "16384" })
+  int blockSize;
+
+  private LruBlockCache cache;
+  private HFileBlockPair[] blocks;
+  private final AtomicInteger getIndex = new AtomicInteger();
+  private final AtomicInteger putIndex = new AtomicInteger();
+
+  @Setup
+  public void setup() {
+    blocks = CacheTestUtils.generateHFileBlocks(blockSize, NUM_BLOCKS);
+    // Room for roughly half of the blocks; the first quarter is cached up front for the get path
+    cache = new LruBlockCache((long) blockSize * NUM_BLOCKS / 2, blockSize);
+    for (int i = 0; i < NUM_BLOCKS / 4; i++) {
+      cache.cacheBlock(blocks[i].getBlockName(), blocks[i].getBlock());
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    cache.shutdown();
+  }
+
+  @Benchmark
+  public Cacheable getBlock() {
+    HFileBlockPair pair = blocks[(getIndex.getAndIncrement() & Integer.MAX_VALUE)
+        % (NUM_BLOCKS / 4)];
+    return cache.getBlock(pair.getBlockName(), true, false, true);
+  }
+
+  @Benchmark
+  public void cacheBlock() {
+    HFileBlockPair pair = blocks[(putIndex.getAndIncrement() & Integer.MAX_VALUE) % NUM_BLOCKS];
+    cache.cacheBlock(pair.getBlockName(), pair.getBlock());
+  }
+}
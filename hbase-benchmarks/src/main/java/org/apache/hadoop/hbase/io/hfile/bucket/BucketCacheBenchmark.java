@@ -0,0 +1,116 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils.HFileBlockPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BucketCache#getBlock(org.apache.hadoop.hbase.io.hfile.BlockCacheKey, boolean,
+ * boolean, boolean)} hits served from the bucket IOEngine, and
+ * {@link BucketCache#cacheBlock(org.apache.hadoop.hbase.io.hfile.BlockCacheKey, Cacheable)}
+ * handing new blocks to the writer threads. Every put uses a key not seen before, so once the
+ * cache is full the writers also have to free space.
+ */
+@InterfaceAudience.Private
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(4)
+public class BucketCacheBenchmark {
+
+  private static final int NUM_BLOCKS = 4096;
+
+  @Param({ "offheap", "heap" })
+  String ioEngine;
+
+  @Param({ "16384" })
+  int blockSize;
+
+  private BucketCache cache;
+  private HFileBlockPair[] blocks;
+  private final AtomicInteger getIndex = new AtomicInteger();
+  private final AtomicLong putOffset = new AtomicLong();
+
+  @Setup
+  public void setup() throws IOException, InterruptedException {
+    blocks = CacheTestUtils.generateHFileBlocks(blockSize, NUM_BLOCKS);
+    // Headroom over the blocks themselves to absorb bucket size rounding
+    long capacity = 2L * blockSize * NUM_BLOCKS;
+    cache = new BucketCache(ioEngine, capacity, blockSize, null,
+        BucketCache.DEFAULT_WRITER_THREADS, BucketCache.DEFAULT_WRITER_QUEUE_ITEMS, null);
+    // The get path is measured against blocks already flushed to the IOEngine
+    for (int i = 0; i < NUM_BLOCKS / 4; i++) {
+      cache.cacheBlock(blocks[i].getBlockName(), blocks[i].getBlock());
+    }
+    for (int i = 0; i < NUM_BLOCKS / 4; i++) {
+      while (!cache.backingMap.containsKey(blocks[i].getBlockName())) {
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    cache.shutdown();
+  }
+
+  @Benchmark
+  public Cacheable getBlock() {
+    HFileBlockPair pair = blocks[(getIndex.getAndIncrement() & Integer.MAX_VALUE)
+        % (NUM_BLOCKS / 4)];
+    Cacheable block = cache.getBlock(pair.getBlockName(), true, false, true);
+    if (block != null) {
+      cache.returnBlock(pair.getBlockName(), block);
+    }
+    return block;
+  }
+
+  @Benchmark
+  public void cacheBlock() {
+    long offset = putOffset.getAndIncrement();
+    // Cycling over the generated keys would only measure the check for an already cached block
+    BlockCacheKey key = new BlockCacheKey("put", offset * blockSize);
+    cache.cacheBlock(key, blocks[(int) (offset % NUM_BLOCKS)].getBlock());
+  }
+}
@@ -0,0 +1,111 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures point and ceiling lookups in a {@link CellSet} backed either by the skip list used by
+ * mutable segments or by the flat {@link CellArrayMap} of immutable segments.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class CellSetBenchmark {
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int NUM_LOOKUP_KEYS = 1024;
+
+  @Param({ "skiplist", "array" })
+  String mapType;
+
+  @Param({ "1000", "100000" })
+  int numCells;
+
+  private CellSet cellSet;
+  private Cell[] lookupKeys;
+  private Cell[] missKeys;
+  private int index;
+
+  @Setup
+  public void setup() {
+    Cell[] cells = new Cell[numCells];
+    byte[] value = new byte[16];
+    for (int i = 0; i < numCells; i++) {
+      cells[i] = new KeyValue(Bytes.toBytes(String.format("row-%08d", i * 2)), FAMILY, QUALIFIER,
+          1L, value);
+    }
+    if ("array".equals(mapType)) {
+      cellSet = new CellSet(new CellArrayMap(CellComparator.COMPARATOR, cells, 0, numCells, false));
+    } else {
+      cellSet = new CellSet(CellComparator.COMPARATOR);
+      for (Cell cell : cells) {
+        cellSet.add(cell);
+      }
+    }
+    Random rand = new Random(0);
+    lookupKeys = new Cell[NUM_LOOKUP_KEYS];
+    missKeys = new Cell[NUM_LOOKUP_KEYS];
+    for (int i = 0; i < NUM_LOOKUP_KEYS; i++) {
+      int row = rand.nextInt(numCells);
+      lookupKeys[i] = cells[row];
+      // Odd rows are never present, so these fall between two existing cells
+      missKeys[i] = new KeyValue(Bytes.toBytes(String.format("row-%08d", row * 2 + 1)), FAMILY,
+          QUALIFIER, 1L, value);
+    }
+  }
+
+  private int nextIndex() {
+    index = (index + 1) & (NUM_LOOKUP_KEYS - 1);
+    return index;
+  }
+
+  @Benchmark
+  public Cell get() {
+    return cellSet.get(lookupKeys[nextIndex()]);
+  }
+
+  @Benchmark
+  public Cell ceiling() {
+    return cellSet.ceiling(missKeys[nextIndex()]);
+  }
+}
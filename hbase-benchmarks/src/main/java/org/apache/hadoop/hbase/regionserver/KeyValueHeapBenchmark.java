@@ -0,0 +1,130 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link KeyValueHeap#next()} and {@link KeyValueHeap#reseek(Cell)} merging the
+ * scanners of several memstores, which stand in for the store files and memstore segments a
+ * real store scan has to merge. Rows are spread round robin over the memstores so that every
+ * call has to consult the heap.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class KeyValueHeapBenchmark {
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final int NUM_ROWS = 100000;
+  private static final int COLUMNS_PER_ROW = 4;
+
+  @Param({ "1", "4", "16" })
+  int numScanners;
+
+  private DefaultMemStore[] memstores;
+  private Cell[] rowKeys;
+  private KeyValueHeap heap;
+  private int reseekIndex;
+
+  @Setup
+  public void setup() throws IOException {
+    Configuration conf = new Configuration();
+    memstores = new DefaultMemStore[numScanners];
+    for (int i = 0; i < numScanners; i++) {
+      memstores[i] = new DefaultMemStore(conf, CellComparator.COMPARATOR);
+    }
+    rowKeys = new Cell[NUM_ROWS];
+    MemstoreSize size = new MemstoreSize();
+    byte[] value = new byte[32];
+    for (int i = 0; i < NUM_ROWS; i++) {
+      byte[] row = Bytes.toBytes(String.format("row-%08d", i));
+      for (int j = 0; j < COLUMNS_PER_ROW; j++) {
+        KeyValue kv = new KeyValue(row, FAMILY, Bytes.toBytes("q" + j), 1L, value);
+        memstores[i % numScanners].add(kv, size);
+      }
+      rowKeys[i] = CellUtil.createFirstOnRow(row);
+    }
+    heap = newHeap();
+  }
+
+  @TearDown
+  public void tearDown() {
+    heap.close();
+  }
+
+  private KeyValueHeap newHeap() throws IOException {
+    List<KeyValueScanner> scanners = new ArrayList<KeyValueScanner>(numScanners);
+    for (DefaultMemStore memstore : memstores) {
+      scanners.addAll(memstore.getScanners(Long.MAX_VALUE));
+    }
+    return new KeyValueHeap(scanners, CellComparator.COMPARATOR);
+  }
+
+  private void resetHeap() throws IOException {
+    heap.close();
+    heap = newHeap();
+    reseekIndex = 0;
+  }
+
+  @Benchmark
+  public Cell next() throws IOException {
+    Cell cell = heap.next();
+    if (cell == null) {
+      resetHeap();
+      cell = heap.next();
+    }
+    return cell;
+  }
+
+  @Benchmark
+  public boolean reseekNextRow() throws IOException {
+    if (++reseekIndex >= NUM_ROWS) {
+      resetHeap();
+    }
+    return heap.reseek(rowKeys[reseekIndex]);
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MemStoreLABImpl#copyCellInto(Cell)}, the allocation every write goes through
+ * when MSLAB is enabled. The LAB is shared by all benchmark threads, as it is shared by all
+ * handlers writing to one store. No chunk pool is configured, so retired chunks are left to GC.
+ */
+@InterfaceAudience.Private
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class MemStoreLABBenchmark {
+
+  @Param({ "16", "256" })
+  int valueLength;
+
+  private MemStoreLABImpl mslab;
+  private KeyValue cell;
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    mslab = new MemStoreLABImpl(new Configuration());
+    cell = new KeyValue(Bytes.toBytes("row-00000001"), Bytes.toBytes("f"), Bytes.toBytes("q"),
+        1L, new byte[valueLength]);
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    mslab.close();
+  }
+
+  @Benchmark
+  public Cell copyCellInto() {
+    return mslab.copyCellInto(cell);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Cell copyCellIntoContended() {
+    return mslab.copyCellInto(cell);
+  }
+}
@@ -0,0 +1,122 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.KeepDeletedCells;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures row-at-a-time {@link StoreScanner#next(List)} of a user scan. Every row carries
+ * several versions of each column so that the query matcher has to skip older versions, which
+ * exercises the seek and reseek paths of the scanner as well as plain iteration.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class StoreScannerBenchmark {
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final int NUM_ROWS = 50000;
+  private static final int COLUMNS_PER_ROW = 8;
+
+  @Param({ "1", "3" })
+  int versions;
+
+  @Param({ "1", "4" })
+  int numScanners;
+
+  private ScanInfo scanInfo;
+  private DefaultMemStore[] memstores;
+  private StoreScanner scanner;
+  private final List<Cell> results = new ArrayList<Cell>();
+
+  @Setup
+  public void setup() throws IOException {
+    Configuration conf = new Configuration();
+    scanInfo = new ScanInfo(conf, FAMILY, 0, 1, Long.MAX_VALUE, KeepDeletedCells.FALSE, 0,
+        CellComparator.COMPARATOR);
+    memstores = new DefaultMemStore[numScanners];
+    for (int i = 0; i < numScanners; i++) {
+      memstores[i] = new DefaultMemStore(conf, CellComparator.COMPARATOR);
+    }
+    MemstoreSize size = new MemstoreSize();
+    byte[] value = new byte[32];
+    for (int i = 0; i < NUM_ROWS; i++) {
+      byte[] row = Bytes.toBytes(String.format("row-%08d", i));
+      for (int j = 0; j < COLUMNS_PER_ROW; j++) {
+        for (int v = 0; v < versions; v++) {
+          KeyValue kv = new KeyValue(row, FAMILY, Bytes.toBytes("q" + j), v + 1, value);
+          memstores[(i + v) % numScanners].add(kv, size);
+        }
+      }
+    }
+    scanner = newScanner();
+  }
+
+  @TearDown
+  public void tearDown() {
+    scanner.close();
+  }
+
+  private StoreScanner newScanner() throws IOException {
+    List<KeyValueScanner> scanners = new ArrayList<KeyValueScanner>(numScanners);
+    for (DefaultMemStore memstore : memstores) {
+      scanners.addAll(memstore.getScanners(Long.MAX_VALUE));
+    }
+    return new StoreScanner(new Scan(), scanInfo, ScanType.USER_SCAN, null, scanners);
+  }
+
+  @Benchmark
+  public List<Cell> nextRow() throws IOException {
+    results.clear();
+    if (!scanner.next(results) && results.isEmpty()) {
+      scanner.close();
+      scanner = newScanner();
+      scanner.next(results);
+    }
+    return results;
+  }
+}
@@ -0,0 +1,123 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.codec.Codec;
+import org.apache.hadoop.hbase.io.ByteArrayOutputStream;
+import org.apache.hadoop.hbase.io.util.LRUDictionary;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures encoding and decoding of one WALEdit worth of cells with {@link WALCellCodec}, with
+ * and without WAL dictionary compression. One operation is one whole edit.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class WALCellCodecBenchmark {
+
+  @Param({ "false", "true" })
+  boolean compression;
+
+  @Param({ "10", "100" })
+  int cellsPerEdit;
+
+  @Param({ "64" })
+  int valueLength;
+
+  private Cell[] cells;
+  private CompressionContext encodeContext;
+  private CompressionContext decodeContext;
+  private WALCellCodec encodeCodec;
+  private WALCellCodec decodeCodec;
+  private ByteArrayOutputStream out;
+  private byte[] encoded;
+
+  @Setup
+  public void setup() throws Exception {
+    Configuration conf = new Configuration();
+    if (compression) {
+      encodeContext = new CompressionContext(LRUDictionary.class, false, false);
+      decodeContext = new CompressionContext(LRUDictionary.class, false, false);
+    }
+    encodeCodec = WALCellCodec.create(conf, encodeContext);
+    decodeCodec = WALCellCodec.create(conf, decodeContext);
+    byte[] family = Bytes.toBytes("f");
+    byte[] value = new byte[valueLength];
+    Bytes.random(value);
+    cells = new Cell[cellsPerEdit];
+    for (int i = 0; i < cellsPerEdit; i++) {
+      cells[i] = new KeyValue(Bytes.toBytes(String.format("row-%08d", i)), family,
+          Bytes.toBytes("q" + (i % 4)), 1L, value);
+    }
+    out = new ByteArrayOutputStream(cellsPerEdit * (valueLength + 64));
+    encode();
+    encoded = out.toByteArray();
+  }
+
+  @Benchmark
+  public int encode() throws IOException {
+    out.reset();
+    if (encodeContext != null) {
+      encodeContext.clear();
+    }
+    Codec.Encoder encoder = encodeCodec.getEncoder(out);
+    for (Cell cell : cells) {
+      encoder.write(cell);
+    }
+    encoder.flush();
+    return out.size();
+  }
+
+  @Benchmark
+  public int decode() throws IOException {
+    if (decodeContext != null) {
+      decodeContext.clear();
+    }
+    Codec.Decoder decoder = decodeCodec.getDecoder(new ByteArrayInputStream(encoded));
+    int count = 0;
+    while (decoder.advance()) {
+      count += decoder.current().getValueLength();
+    }
+    return count;
+  }
+}
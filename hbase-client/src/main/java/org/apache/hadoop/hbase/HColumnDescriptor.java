@@ -100,6 +100,14 @@ public class HColumnDescriptor implements Comparable<HColumnDescriptor> {
    */
   public static final String PREFETCH_BLOCKS_ON_OPEN = "PREFETCH_BLOCKS_ON_OPEN";
 
+  /**
+   * Key for the CACHE_DATA_COMPRESSED attribute.
+   * If set, DATA blocks of HFiles belonging to this family are kept in the block
+   * cache in their compressed and/or encrypted on-disk form and are unpacked
+   * each time they are read.
+   */
+  public static final String CACHE_DATA_COMPRESSED = "CACHE_DATA_COMPRESSED";
+
   /**
    * Size of storefile/hfile 'blocks'.  Default is {@link #DEFAULT_BLOCKSIZE}.
    * Use smaller block sizes for faster random-access at expense of larger
@@ -136,6 +144,17 @@ public class HColumnDescriptor implements Comparable<HColumnDescriptor> {
   public static final MobCompactPartitionPolicy DEFAULT_MOB_COMPACT_PARTITION_POLICY =
       MobCompactPartitionPolicy.DAILY;
 
+  /**
+   * Key for the DELTA_COUNTERS attribute. If set, increments that do not ask for results are
+   * written as delta cells without reading the current value, sharing the row lock with each
+   * other; deltas are summed on read and collapsed by flushes and compactions. Every column of
+   * such a family is a counter whose newest version is the sum of its deltas since the newest
+   * plain value. Single versions of it cannot be deleted, only whole columns or families. As
+   * with a plain Increment, deletes and the TTL apply to that version by its newest delta.
+   */
+  public static final String DELTA_COUNTERS = "DELTA_COUNTERS";
+  public static final boolean DEFAULT_DELTA_COUNTERS = false;
+
   public static final String DFS_REPLICATION = "DFS_REPLICATION";
   public static final short DEFAULT_DFS_REPLICATION = 0;
 
@@ -251,6 +270,11 @@ public class HColumnDescriptor implements Comparable<HColumnDescriptor> {
    */
   public static final boolean DEFAULT_PREFETCH_BLOCKS_ON_OPEN = false;
 
+  /*
+   * Default setting for whether to keep data blocks compressed in the blockcache.
+   */
+  public static final boolean DEFAULT_CACHE_DATA_COMPRESSED = false;
+
   private final static Map<String, String> DEFAULT_VALUES
     = new HashMap<String, String>();
   private final static Set<Bytes> RESERVED_KEYWORDS
@@ -274,6 +298,7 @@ public class HColumnDescriptor implements Comparable<HColumnDescriptor> {
     DEFAULT_VALUES.put(CACHE_BLOOMS_ON_WRITE, String.valueOf(DEFAULT_CACHE_BLOOMS_ON_WRITE));
     DEFAULT_VALUES.put(EVICT_BLOCKS_ON_CLOSE, String.valueOf(DEFAULT_EVICT_BLOCKS_ON_CLOSE));
     DEFAULT_VALUES.put(PREFETCH_BLOCKS_ON_OPEN, String.valueOf(DEFAULT_PREFETCH_BLOCKS_ON_OPEN));
+    DEFAULT_VALUES.put(CACHE_DATA_COMPRESSED, String.valueOf(DEFAULT_CACHE_DATA_COMPRESSED));
     for (String s : DEFAULT_VALUES.keySet()) {
       RESERVED_KEYWORDS.add(new Bytes(Bytes.toBytes(s)));
     }
@@ -282,6 +307,7 @@ public class HColumnDescriptor implements Comparable<HColumnDescriptor> {
     RESERVED_KEYWORDS.add(new Bytes(IS_MOB_BYTES));
     RESERVED_KEYWORDS.add(new Bytes(MOB_THRESHOLD_BYTES));
     RESERVED_KEYWORDS.add(new Bytes(MOB_COMPACT_PARTITION_POLICY_BYTES));
+    RESERVED_KEYWORDS.add(new Bytes(Bytes.toBytes(DELTA_COUNTERS)));
   }
 
   private static final int UNINITIALIZED = -1;
@@ -708,6 +734,26 @@ public class HColumnDescriptor implements Comparable<HColumnDescriptor> {
     return setValue(IN_MEMORY_COMPACTION, inMemoryCompaction.toString());
   }
 
+  /**
+   * @return True if increments to this family are written as deltas and merged on read.
+   */
+  public boolean isDeltaCounters() {
+    String value = getValue(DELTA_COUNTERS);
+    if (value != null) {
+      return Boolean.parseBoolean(value);
+    }
+    return DEFAULT_DELTA_COUNTERS;
+  }
+
+  /**
+   * @param deltaCounters True to write increments to this family as deltas merged on read
+   * @return this (for chained invocation)
+   * @see #DELTA_COUNTERS
+   */
+  public HColumnDescriptor setDeltaCounters(boolean deltaCounters) {
+    return setValue(DELTA_COUNTERS, Boolean.toString(deltaCounters));
+  }
+
   public KeepDeletedCells getKeepDeletedCells() {
     String value = getValue(KEEP_DELETED_CELLS);
     if (value != null) {
@@ -928,6 +974,21 @@ public class HColumnDescriptor implements Comparable<HColumnDescriptor> {
     return setValue(PREFETCH_BLOCKS_ON_OPEN, Boolean.toString(value));
   }
 
+  /**
+   * @return true if we should keep data blocks compressed in the blockcache
+   */
+  public boolean isCacheDataCompressed() {
+    return setAndGetBoolean(CACHE_DATA_COMPRESSED, DEFAULT_CACHE_DATA_COMPRESSED);
+  }
+
+  /**
+   * @param value true if we should keep data blocks compressed in the blockcache
+   * @return this (for chained invocation)
+   */
+  public HColumnDescriptor setCacheDataCompressed(boolean value) {
+    return setValue(CACHE_DATA_COMPRESSED, Boolean.toString(value));
+  }
+
   /**
    * @see java.lang.Object#toString()
    */
@@ -44,5 +44,12 @@ public enum MemoryCompactionPolicy {
    * on-disk compaction does after the data is flushed to disk). This policy is most useful for
    * applications with high data churn or small working sets.
    */
-  EAGER
+  EAGER,
+  /**
+   * Adaptive policy chooses between the basic and the eager behaviour on every in-memory
+   * compaction, from the share of duplicate cells it samples in memory and the number of
+   * segments scans would have to merge. This is useful when the access pattern is not known in
+   * advance or changes over time.
+   */
+  ADAPTIVE
 }
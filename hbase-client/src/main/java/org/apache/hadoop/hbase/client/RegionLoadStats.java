@@ -29,11 +29,22 @@ public class RegionLoadStats {
   int memstoreLoad;
   int heapOccupancy;
   int compactionPressure;
+  int flushQueueWait;
+  int walSyncLatency;
+  int compactionQueueLength;
 
   public RegionLoadStats(int memstoreLoad, int heapOccupancy, int compactionPressure) {
+    this(memstoreLoad, heapOccupancy, compactionPressure, 0, 0, 0);
+  }
+
+  public RegionLoadStats(int memstoreLoad, int heapOccupancy, int compactionPressure,
+      int flushQueueWait, int walSyncLatency, int compactionQueueLength) {
     this.memstoreLoad = memstoreLoad;
     this.heapOccupancy = heapOccupancy;
     this.compactionPressure = compactionPressure;
+    this.flushQueueWait = flushQueueWait;
+    this.walSyncLatency = walSyncLatency;
+    this.compactionQueueLength = compactionQueueLength;
   }
 
   public int getMemstoreLoad() {
@@ -47,4 +58,25 @@ public class RegionLoadStats {
   public int getCompactionPressure() {
     return this.compactionPressure;
   }
+
+  /**
+   * @return milliseconds the oldest pending flush request of the server has been waiting
+   */
+  public int getFlushQueueWait() {
+    return this.flushQueueWait;
+  }
+
+  /**
+   * @return recent 99th percentile of the WAL sync latency of the server, in milliseconds
+   */
+  public int getWalSyncLatency() {
+    return this.walSyncLatency;
+  }
+
+  /**
+   * @return number of compaction requests queued on the server
+   */
+  public int getCompactionQueueLength() {
+    return this.compactionQueueLength;
+  }
 }
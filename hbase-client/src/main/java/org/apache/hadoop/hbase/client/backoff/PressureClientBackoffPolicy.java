@@ -0,0 +1,133 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client.backoff;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.classification.InterfaceStability;
+
+/**
+ * Backoff policy which looks at every write pressure signal a region reports - memstore load,
+ * heap occupancy, compaction pressure, flush queue wait, WAL sync latency and compaction queue
+ * length. Each signal is mapped linearly onto a pressure in [0, 1] between a configurable low
+ * and high threshold; the backoff is the square of the highest of these pressures times the max
+ * backoff. Unlike {@link ExponentialClientBackoffPolicy} the client starts to slow down as soon as
+ * any one of the flush, WAL or compaction pipelines falls behind, before the memstore fills up.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public class PressureClientBackoffPolicy implements ClientBackoffPolicy {
+
+  private static final String PREFIX = "hbase.client.pressure-backoff.";
+
+  public static final long DEFAULT_MAX_BACKOFF = 10 * 1000;
+  public static final String MAX_BACKOFF_KEY = PREFIX + "max";
+
+  public static final String MEMSTORE_LOAD_LOW_KEY = PREFIX + "memstore.load.low";
+  public static final String MEMSTORE_LOAD_HIGH_KEY = PREFIX + "memstore.load.high";
+  public static final int DEFAULT_MEMSTORE_LOAD_LOW = 60;
+  public static final int DEFAULT_MEMSTORE_LOAD_HIGH = 100;
+
+  public static final String FLUSH_QUEUE_WAIT_LOW_KEY = PREFIX + "flush.queue.wait.low";
+  public static final String FLUSH_QUEUE_WAIT_HIGH_KEY = PREFIX + "flush.queue.wait.high";
+  public static final int DEFAULT_FLUSH_QUEUE_WAIT_LOW = 1000;
+  public static final int DEFAULT_FLUSH_QUEUE_WAIT_HIGH = 10000;
+
+  public static final String WAL_SYNC_LATENCY_LOW_KEY = PREFIX + "wal.sync.latency.low";
+  public static final String WAL_SYNC_LATENCY_HIGH_KEY = PREFIX + "wal.sync.latency.high";
+  public static final int DEFAULT_WAL_SYNC_LATENCY_LOW = 100;
+  public static final int DEFAULT_WAL_SYNC_LATENCY_HIGH = 2000;
+
+  public static final String COMPACTION_QUEUE_LOW_KEY = PREFIX + "compaction.queue.low";
+  public static final String COMPACTION_QUEUE_HIGH_KEY = PREFIX + "compaction.queue.high";
+  public static final int DEFAULT_COMPACTION_QUEUE_LOW = 20;
+  public static final int DEFAULT_COMPACTION_QUEUE_HIGH = 200;
+
+  private final long maxBackoff;
+  private final int memstoreLoadLow;
+  private final int memstoreLoadHigh;
+  private final int flushQueueWaitLow;
+  private final int flushQueueWaitHigh;
+  private final int walSyncLatencyLow;
+  private final int walSyncLatencyHigh;
+  private final int compactionQueueLow;
+  private final int compactionQueueHigh;
+  private final float heapOccupancyLowWatermark;
+  private final float heapOccupancyHighWatermark;
+
+  public PressureClientBackoffPolicy(Configuration conf) {
+    this.maxBackoff = conf.getLong(MAX_BACKOFF_KEY, DEFAULT_MAX_BACKOFF);
+    this.memstoreLoadLow = conf.getInt(MEMSTORE_LOAD_LOW_KEY, DEFAULT_MEMSTORE_LOAD_LOW);
+    this.memstoreLoadHigh = conf.getInt(MEMSTORE_LOAD_HIGH_KEY, DEFAULT_MEMSTORE_LOAD_HIGH);
+    this.flushQueueWaitLow = conf.getInt(FLUSH_QUEUE_WAIT_LOW_KEY, DEFAULT_FLUSH_QUEUE_WAIT_LOW);
+    this.flushQueueWaitHigh =
+        conf.getInt(FLUSH_QUEUE_WAIT_HIGH_KEY, DEFAULT_FLUSH_QUEUE_WAIT_HIGH);
+    this.walSyncLatencyLow = conf.getInt(WAL_SYNC_LATENCY_LOW_KEY, DEFAULT_WAL_SYNC_LATENCY_LOW);
+    this.walSyncLatencyHigh =
+        conf.getInt(WAL_SYNC_LATENCY_HIGH_KEY, DEFAULT_WAL_SYNC_LATENCY_HIGH);
+    this.compactionQueueLow = conf.getInt(COMPACTION_QUEUE_LOW_KEY, DEFAULT_COMPACTION_QUEUE_LOW);
+    this.compactionQueueHigh =
+        conf.getInt(COMPACTION_QUEUE_HIGH_KEY, DEFAULT_COMPACTION_QUEUE_HIGH);
+    this.heapOccupancyLowWatermark = conf.getFloat(HConstants.HEAP_OCCUPANCY_LOW_WATERMARK_KEY,
+      HConstants.DEFAULT_HEAP_OCCUPANCY_LOW_WATERMARK);
+    this.heapOccupancyHighWatermark = conf.getFloat(HConstants.HEAP_OCCUPANCY_HIGH_WATERMARK_KEY,
+      HConstants.DEFAULT_HEAP_OCCUPANCY_HIGH_WATERMARK);
+  }
+
+  @Override
+  public long getBackoffTime(ServerName serverName, byte[] region, ServerStatistics stats) {
+    // no stats for the server yet, so don't backoff
+    if (stats == null) {
+      return 0;
+    }
+
+    ServerStatistics.RegionStatistics regionStats = stats.getStatsForRegion(region);
+    // no stats for the region yet - don't backoff
+    if (regionStats == null) {
+      return 0;
+    }
+
+    double pressure = pressure(regionStats.getMemstoreLoadPercent(), memstoreLoadLow,
+        memstoreLoadHigh);
+    pressure = Math.max(pressure, pressure(regionStats.getHeapOccupancyPercent() / 100.0,
+        heapOccupancyLowWatermark, heapOccupancyHighWatermark));
+    // compaction pressure is already reported as a percentage of the tolerable pressure
+    pressure = Math.max(pressure, pressure(regionStats.getCompactionPressure(), 0, 100));
+    pressure = Math.max(pressure, pressure(regionStats.getFlushQueueWait(), flushQueueWaitLow,
+        flushQueueWaitHigh));
+    pressure = Math.max(pressure, pressure(regionStats.getWalSyncLatency(), walSyncLatencyLow,
+        walSyncLatencyHigh));
+    pressure = Math.max(pressure, pressure(regionStats.getCompactionQueueLength(),
+        compactionQueueLow, compactionQueueHigh));
+    return (long) (pressure * pressure * maxBackoff);
+  }
+
+  /** Map value in the range [low,high] to a pressure in [0,1], clamping outside of it */
+  private static double pressure(double value, double low, double high) {
+    if (value <= low) {
+      return 0;
+    }
+    if (value >= high) {
+      return 1;
+    }
+    return (value - low) / (high - low);
+  }
+}
@@ -58,11 +58,17 @@ public class ServerStatistics {
     private int memstoreLoad = 0;
     private int heapOccupancy = 0;
     private int compactionPressure = 0;
+    private int flushQueueWait = 0;
+    private int walSyncLatency = 0;
+    private int compactionQueueLength = 0;
 
     public void update(RegionLoadStats currentStats) {
       this.memstoreLoad = currentStats.getMemstoreLoad();
       this.heapOccupancy = currentStats.getHeapOccupancy();
       this.compactionPressure = currentStats.getCompactionPressure();
+      this.flushQueueWait = currentStats.getFlushQueueWait();
+      this.walSyncLatency = currentStats.getWalSyncLatency();
+      this.compactionQueueLength = currentStats.getCompactionQueueLength();
     }
 
     public int getMemstoreLoadPercent(){
@@ -77,5 +83,17 @@ public class ServerStatistics {
       return compactionPressure;
     }
 
+    public int getFlushQueueWait() {
+      return flushQueueWait;
+    }
+
+    public int getWalSyncLatency() {
+      return walSyncLatency;
+    }
+
+    public int getCompactionQueueLength() {
+      return compactionQueueLength;
+    }
+
   }
 }
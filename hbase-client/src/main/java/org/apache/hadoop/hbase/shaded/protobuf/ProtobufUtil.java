@@ -3090,7 +3090,8 @@ public final class ProtobufUtil {
 
   public static RegionLoadStats createRegionLoadStats(ClientProtos.RegionLoadStats stats) {
     return new RegionLoadStats(stats.getMemstoreLoad(), stats.getHeapOccupancy(),
-        stats.getCompactionPressure());
+        stats.getCompactionPressure(), stats.getFlushQueueWait(), stats.getWalSyncLatency(),
+        stats.getCompactionQueueLength());
   }
 
   /**
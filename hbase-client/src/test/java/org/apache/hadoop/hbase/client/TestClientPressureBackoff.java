@@ -0,0 +1,116 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.client.backoff.PressureClientBackoffPolicy;
+import org.apache.hadoop.hbase.client.backoff.ServerStatistics;
+import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos;
+import org.apache.hadoop.hbase.testclassification.ClientTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@Category({ClientTests.class, SmallTests.class})
+public class TestClientPressureBackoff {
+
+  ServerName server = Mockito.mock(ServerName.class);
+  byte[] regionname = Bytes.toBytes("region");
+
+  @Test
+  public void testNulls() {
+    PressureClientBackoffPolicy backoff =
+        new PressureClientBackoffPolicy(new Configuration(false));
+    assertEquals(0, backoff.getBackoffTime(null, null, null));
+    assertEquals(0, backoff.getBackoffTime(server, regionname, null));
+    assertEquals(0, backoff.getBackoffTime(server, regionname, new ServerStatistics()));
+  }
+
+  @Test
+  public void testIdleServer() {
+    PressureClientBackoffPolicy backoff =
+        new PressureClientBackoffPolicy(new Configuration(false));
+    ServerStatistics stats = new ServerStatistics();
+    // everything below the low thresholds means no backoff at all
+    update(stats, ClientProtos.RegionLoadStats.newBuilder().setMemstoreLoad(50)
+        .setFlushQueueWait(500).setWalSyncLatency(50).setCompactionQueueLength(10));
+    assertEquals(0, backoff.getBackoffTime(server, regionname, stats));
+  }
+
+  @Test
+  public void testEachSignal() {
+    Configuration conf = new Configuration(false);
+    PressureClientBackoffPolicy backoff = new PressureClientBackoffPolicy(conf);
+    long max = PressureClientBackoffPolicy.DEFAULT_MAX_BACKOFF;
+    ServerStatistics stats = new ServerStatistics();
+
+    update(stats, ClientProtos.RegionLoadStats.newBuilder().setMemstoreLoad(100));
+    assertEquals(max, backoff.getBackoffTime(server, regionname, stats));
+    update(stats, ClientProtos.RegionLoadStats.newBuilder().setFlushQueueWait(20000));
+    assertEquals(max, backoff.getBackoffTime(server, regionname, stats));
+    update(stats, ClientProtos.RegionLoadStats.newBuilder().setWalSyncLatency(2000));
+    assertEquals(max, backoff.getBackoffTime(server, regionname, stats));
+    update(stats, ClientProtos.RegionLoadStats.newBuilder().setCompactionQueueLength(500));
+    assertEquals(max, backoff.getBackoffTime(server, regionname, stats));
+    update(stats, ClientProtos.RegionLoadStats.newBuilder().setCompactionPressure(100));
+    assertEquals(max, backoff.getBackoffTime(server, regionname, stats));
+    update(stats, ClientProtos.RegionLoadStats.newBuilder().setHeapOccupancy(99));
+    assertEquals(max, backoff.getBackoffTime(server, regionname, stats));
+
+    // half way between the thresholds squares to a quarter of the max backoff
+    update(stats, ClientProtos.RegionLoadStats.newBuilder().setWalSyncLatency(1050));
+    assertEquals(max / 4, backoff.getBackoffTime(server, regionname, stats));
+  }
+
+  @Test
+  public void testHighestPressureWins() {
+    Configuration conf = new Configuration(false);
+    conf.setLong(PressureClientBackoffPolicy.MAX_BACKOFF_KEY, Integer.MAX_VALUE);
+    PressureClientBackoffPolicy backoff = new PressureClientBackoffPolicy(conf);
+    ServerStatistics stats = new ServerStatistics();
+
+    update(stats, ClientProtos.RegionLoadStats.newBuilder().setMemstoreLoad(70));
+    long memstoreOnly = backoff.getBackoffTime(server, regionname, stats);
+    assertTrue(memstoreOnly > 0);
+
+    update(stats, ClientProtos.RegionLoadStats.newBuilder().setMemstoreLoad(70)
+        .setFlushQueueWait(8000));
+    long withFlushWait = backoff.getBackoffTime(server, regionname, stats);
+    assertTrue("A slow flush queue should increase the backoff", withFlushWait > memstoreOnly);
+
+    long previous = 0;
+    for (int wait = 1100; wait <= 10000; wait += 100) {
+      update(stats, ClientProtos.RegionLoadStats.newBuilder().setFlushQueueWait(wait));
+      long next = backoff.getBackoffTime(server, regionname, stats);
+      assertTrue("Backoff should grow with the flush queue wait", next > previous);
+      previous = next;
+    }
+  }
+
+  private void update(ServerStatistics stats, ClientProtos.RegionLoadStats.Builder stat) {
+    stats.update(regionname, ProtobufUtil.createRegionLoadStats(stat.build()));
+  }
+}
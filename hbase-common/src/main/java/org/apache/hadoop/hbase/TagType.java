@@ -36,4 +36,7 @@ public final class TagType {
   // String based tag type used in replication
   public static final byte STRING_VIS_TAG_TYPE = (byte) 7;
   public static final byte TTL_TAG_TYPE = (byte)8;
+
+  // Marks an increment amount written to a delta counter family
+  public static final byte DELTA_COUNTER_TAG_TYPE = (byte)9;
 }
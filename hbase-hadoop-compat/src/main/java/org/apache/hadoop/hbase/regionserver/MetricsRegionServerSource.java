@@ -159,6 +159,13 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
    */
   void updateFlushOutputSize(long bytes);
 
+  /**
+   * Update the histogram of the time flush requests of one priority waited for a flush handler
+   * @param priority name of the flush priority
+   * @param t time it waited, in milliseconds
+   */
+  void updateFlushQueueTime(String priority, long t);
+
   /**
    * Update the compaction time histogram, both major and minor
    * @param isMajor whether compaction is a major compaction
@@ -417,6 +424,21 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
   String BLOCKED_REQUESTS_COUNT_DESC = "The number of blocked requests because of memstore size is "
       + "larger than blockingMemStoreSize";
 
+  String MEMSTORE_CHUNK_POOL_HIT_COUNT = "memStoreChunkPoolHitCount";
+  String MEMSTORE_CHUNK_POOL_HIT_COUNT_DESC =
+      "The number of memstore chunks served from the chunk pool";
+  String MEMSTORE_CHUNK_POOL_MISS_COUNT = "memStoreChunkPoolMissCount";
+  String MEMSTORE_CHUNK_POOL_MISS_COUNT_DESC =
+      "The number of memstore chunk requests which found the chunk pool empty";
+  String MEMSTORE_CHUNK_CREATED_COUNT = "memStoreChunkCreatedCount";
+  String MEMSTORE_CHUNK_CREATED_COUNT_DESC = "The number of chunks created by the chunk pool";
+  String MEMSTORE_CHUNK_DISCARDED_COUNT = "memStoreChunkDiscardedCount";
+  String MEMSTORE_CHUNK_DISCARDED_COUNT_DESC =
+      "The number of chunks dropped because the chunk pool was full";
+  String MEMSTORE_CHUNK_WASTED_BYTES = "memStoreChunkWastedBytes";
+  String MEMSTORE_CHUNK_WASTED_BYTES_DESC =
+      "The number of bytes left unused at the end of retired memstore chunks";
+
   String SPLIT_KEY = "splitTime";
   String SPLIT_REQUEST_KEY = "splitRequestCount";
   String SPLIT_REQUEST_DESC = "Number of splits requested";
@@ -429,6 +451,8 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
   String FLUSH_MEMSTORE_SIZE_DESC = "Histogram for number of bytes in the memstore for a flush";
   String FLUSH_OUTPUT_SIZE = "flushOutputSize";
   String FLUSH_OUTPUT_SIZE_DESC = "Histogram for number of bytes in the resulting file for a flush";
+  // Prefixed with the flush priority, e.g. blockingFlushQueueTime
+  String FLUSH_QUEUE_TIME = "FlushQueueTime";
   String FLUSHED_OUTPUT_BYTES = "flushedOutputBytes";
   String FLUSHED_OUTPUT_BYTES_DESC = "Total number of bytes written from flush";
   String FLUSHED_MEMSTORE_BYTES = "flushedMemstoreBytes";
@@ -393,6 +393,31 @@ public interface MetricsRegionServerWrapper {
    */
   long getBlockedRequestsCount();
 
+  /**
+   * @return Count of memstore chunks served from the chunk pool
+   */
+  long getMemStoreChunkPoolHitCount();
+
+  /**
+   * @return Count of memstore chunk requests which found the chunk pool empty
+   */
+  long getMemStoreChunkPoolMissCount();
+
+  /**
+   * @return Count of chunks created by the chunk pool
+   */
+  long getMemStoreChunkCreatedCount();
+
+  /**
+   * @return Count of chunks dropped because the chunk pool was full
+   */
+  long getMemStoreChunkDiscardedCount();
+
+  /**
+   * @return Number of bytes left unused at the end of retired memstore chunks
+   */
+  long getMemStoreChunkWastedBytes();
+
   /**
    * Get the number of rpc get requests to this region server.
    */
@@ -43,6 +43,34 @@ public interface MetricsRegionSource extends Comparable<MetricsRegionSource> {
   String COPROCESSOR_EXECUTION_STATISTICS_DESC = "Statistics for coprocessor execution times";
   String REPLICA_ID = "replicaid";
   String REPLICA_ID_DESC = "The replica ID of a region. 0 is primary, otherwise is secondary";
+  String ROW_LOCK_CONTENDED_COUNT = "rowLockContendedCount";
+  String ROW_LOCK_CONTENDED_DESC =
+      "Number of row lock acquisitions that had to wait for another holder";
+  String ROW_LOCK_SLOT_COLLISION_COUNT = "rowLockSlotCollisionCount";
+  String ROW_LOCK_SLOT_COLLISION_DESC =
+      "Number of row lock acquisitions that found their lock slot taken and fell back to the map";
+  String MEMSTORE_FLATTEN_COUNT = "memStoreFlattenCount";
+  String MEMSTORE_FLATTEN_COUNT_DESC =
+      "Number of memstore segments flattened by in-memory compaction";
+  String MEMSTORE_MERGE_COUNT = "memStoreMergeCount";
+  String MEMSTORE_MERGE_COUNT_DESC =
+      "Number of times in-memory compaction merged the memstore segments of a store";
+  String MEMSTORE_COMPACTION_COUNT = "memStoreCompactionCount";
+  String MEMSTORE_COMPACTION_COUNT_DESC =
+      "Number of times in-memory compaction compacted the memstore segments of a store";
+  String MEMSTORE_COMPACTION_BYTES_ELIMINATED = "memStoreCompactionBytesEliminated";
+  String MEMSTORE_COMPACTION_BYTES_ELIMINATED_DESC =
+      "Size of the memstore data eliminated by in-memory compaction";
+  String WAL_APPEND_BYTES = "walAppendBytes";
+  String WAL_APPEND_BYTES_DESC = "Size (in bytes) of the WAL entries appended for the region";
+  String WAL_APPEND_COUNT = "walAppendCount";
+  String WAL_APPEND_COUNT_DESC = "Number of WAL entries appended for the region";
+  String WAL_SYNC_WAIT_TIME_MEAN = "walSyncWaitTimeMean";
+  String WAL_SYNC_WAIT_TIME_MEAN_DESC =
+      "Mean time (in microseconds) handlers of the region waited on WAL syncs";
+  String WAL_SYNC_WAIT_TIME_99TH = "walSyncWaitTime99thPercentile";
+  String WAL_SYNC_WAIT_TIME_99TH_DESC =
+      "99th percentile of the time (in microseconds) handlers of the region waited on WAL syncs";
 
   /**
    * Close the region's metrics as this region is closing.
@@ -119,8 +119,59 @@ public interface MetricsRegionWrapper {
 
   int getRegionHashCode();
 
+  /**
+   * @return Number of row lock acquisitions that could not be granted immediately
+   */
+  long getRowLockContendedCount();
+
+  /**
+   * @return Number of row lock acquisitions that fell back from a lock slot to the lock map
+   */
+  long getRowLockSlotCollisionCount();
+
+  /**
+   * @return Number of memstore segments flattened by in-memory compaction, over all stores
+   */
+  long getMemStoreFlattenCount();
+
+  /**
+   * @return Number of in-memory merges of memstore segments, over all stores
+   */
+  long getMemStoreMergeCount();
+
+  /**
+   * @return Number of in-memory data compactions of memstore segments, over all stores
+   */
+  long getMemStoreCompactionCount();
+
+  /**
+   * @return Size of the memstore data eliminated by in-memory compaction, over all stores
+   */
+  long getMemStoreCompactionBytesEliminated();
+
   /**
    * Get the replica id of this region.
    */
   int getReplicaId();
+
+  /**
+   * @return Size in bytes of the WAL entries appended for this region
+   */
+  long getWALAppendBytes();
+
+  /**
+   * @return Number of WAL entries appended for this region
+   */
+  long getWALAppendCount();
+
+  /**
+   * @return Mean time, in microseconds, handlers of this region recently waited on WAL syncs
+   */
+  long getWALSyncWaitTimeMean();
+
+  /**
+   * @return 99th percentile of the time, in microseconds, handlers of this region recently
+   *         waited on WAL syncs
+   */
+  long getWALSyncWaitTime99th();
 }
@@ -36,6 +36,13 @@ public interface MetricsTableSource extends Comparable<MetricsTableSource> {
   String STORE_FILE_SIZE_DESC = "The size of store files size";
   String TABLE_SIZE = "tableSize";
   String TABLE_SIZE_DESC = "Total size of the table in the region server";
+  String WAL_APPEND_BYTES = "walAppendBytes";
+  String WAL_APPEND_BYTES_DESC = "Size (in bytes) of the WAL entries appended for the table";
+  String WAL_APPEND_COUNT = "walAppendCount";
+  String WAL_APPEND_COUNT_DESC = "Number of WAL entries appended for the table";
+  String WAL_SYNC_WAIT_TIME_99TH = "walSyncWaitTime99thPercentile";
+  String WAL_SYNC_WAIT_TIME_99TH_DESC = "Highest 99th percentile among the regions of the table"
+      + " of the time (in microseconds) handlers waited on WAL syncs";
 
   String getTableName();
 
@@ -54,4 +54,20 @@ public interface MetricsTableWrapperAggregate {
    * Get the table region size against this table
    */
   long getTableSize(String table);
+
+  /**
+   * Get the size in bytes of the WAL entries appended for this table
+   */
+  long getWALAppendBytes(String table);
+
+  /**
+   * Get the number of WAL entries appended for this table
+   */
+  long getWALAppendCount(String table);
+
+  /**
+   * Get the highest 99th percentile, over the regions of this table, of the time in
+   * microseconds handlers waited on WAL syncs
+   */
+  long getWALSyncWaitTime99th(String table);
 }
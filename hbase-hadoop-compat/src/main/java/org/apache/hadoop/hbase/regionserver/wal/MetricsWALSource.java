@@ -57,6 +57,11 @@ public interface MetricsWALSource extends BaseSource {
   String SLOW_APPEND_COUNT_DESC = "Number of appends that were slow.";
   String SYNC_TIME = "syncTime";
   String SYNC_TIME_DESC = "The time it took to sync the WAL to HDFS.";
+  String SYNC_BATCH_SIZE = "syncBatchSize";
+  String SYNC_BATCH_SIZE_DESC = "Number of sync calls served by one sync of the WAL to HDFS.";
+  String SYNC_BATCH_WAIT_TIME = "syncBatchWaitTime";
+  String SYNC_BATCH_WAIT_TIME_DESC =
+      "Time (in microseconds) a sync of the WAL was held back to batch up more sync calls.";
   String ROLL_REQUESTED = "rollRequest";
   String ROLL_REQUESTED_DESC = "How many times a log roll has been requested total";
   String LOW_REPLICA_ROLL_REQUESTED = "lowReplicaRollRequest";
@@ -64,6 +69,7 @@ public interface MetricsWALSource extends BaseSource {
       "How many times a log roll was requested due to too few DN's in the write pipeline.";
   String WRITTEN_BYTES = "writtenBytes";
   String WRITTEN_BYTES_DESC = "Size (in bytes) of the data written to the WAL.";
+  String GROUP_APPEND_RATE = "appendBytesPerSecond";
 
   /**
    * Add the append size.
@@ -90,6 +96,16 @@ public interface MetricsWALSource extends BaseSource {
    */
   void incrementSyncTime(long time);
 
+  /**
+   * Add the number of sync calls one sync of the wal served.
+   */
+  void incrementSyncBatchSize(long size);
+
+  /**
+   * Add the time, in microseconds, a sync of the wal waited for more sync calls to batch up.
+   */
+  void incrementSyncBatchWaitTime(long time);
+
   void incrementLogRollRequested();
 
   void incrementLowReplicationLogRoll();
@@ -99,4 +115,9 @@ public interface MetricsWALSource extends BaseSource {
   void incrementWrittenBytes(long val);
 
   long getWrittenBytes();
+
+  /**
+   * Set the smoothed append throughput of one WAL group, in bytes per second.
+   */
+  void setGroupAppendRate(String group, long bytesPerSecond);
 }
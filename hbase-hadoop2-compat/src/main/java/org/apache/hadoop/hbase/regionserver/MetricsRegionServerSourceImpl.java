@@ -266,6 +266,11 @@ public class MetricsRegionServerSourceImpl
     flushedOutputBytes.incr(bytes);
   }
 
+  @Override
+  public void updateFlushQueueTime(String priority, long t) {
+    updateHistogram(priority + FLUSH_QUEUE_TIME, t);
+  }
+
   @Override
   public void updateCompactionTime(boolean isMajor, long t) {
     compactionTimeHisto.add(t);
@@ -502,6 +507,16 @@ public class MetricsRegionServerSourceImpl
               rsWrap.getHedgedReadWins())
           .addCounter(Interns.info(BLOCKED_REQUESTS_COUNT, BLOCKED_REQUESTS_COUNT_DESC),
             rsWrap.getBlockedRequestsCount())
+          .addCounter(Interns.info(MEMSTORE_CHUNK_POOL_HIT_COUNT,
+              MEMSTORE_CHUNK_POOL_HIT_COUNT_DESC), rsWrap.getMemStoreChunkPoolHitCount())
+          .addCounter(Interns.info(MEMSTORE_CHUNK_POOL_MISS_COUNT,
+              MEMSTORE_CHUNK_POOL_MISS_COUNT_DESC), rsWrap.getMemStoreChunkPoolMissCount())
+          .addCounter(Interns.info(MEMSTORE_CHUNK_CREATED_COUNT,
+              MEMSTORE_CHUNK_CREATED_COUNT_DESC), rsWrap.getMemStoreChunkCreatedCount())
+          .addCounter(Interns.info(MEMSTORE_CHUNK_DISCARDED_COUNT,
+              MEMSTORE_CHUNK_DISCARDED_COUNT_DESC), rsWrap.getMemStoreChunkDiscardedCount())
+          .addCounter(Interns.info(MEMSTORE_CHUNK_WASTED_BYTES, MEMSTORE_CHUNK_WASTED_BYTES_DESC),
+              rsWrap.getMemStoreChunkWastedBytes())
           .tag(Interns.info(ZOOKEEPER_QUORUM_NAME, ZOOKEEPER_QUORUM_DESC),
               rsWrap.getZookeeperQuorum())
           .tag(Interns.info(SERVER_NAME_NAME, SERVER_NAME_DESC), rsWrap.getServerName())
@@ -270,9 +270,49 @@ public class MetricsRegionSourceImpl implements MetricsRegionSource {
               regionNamePrefix + MetricsRegionServerSource.WRITE_REQUEST_COUNT,
               MetricsRegionServerSource.WRITE_REQUEST_COUNT_DESC),
           this.regionWrapper.getWriteRequestCount());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.ROW_LOCK_CONTENDED_COUNT,
+              MetricsRegionSource.ROW_LOCK_CONTENDED_DESC),
+          this.regionWrapper.getRowLockContendedCount());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.ROW_LOCK_SLOT_COLLISION_COUNT,
+              MetricsRegionSource.ROW_LOCK_SLOT_COLLISION_DESC),
+          this.regionWrapper.getRowLockSlotCollisionCount());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.MEMSTORE_FLATTEN_COUNT,
+              MetricsRegionSource.MEMSTORE_FLATTEN_COUNT_DESC),
+          this.regionWrapper.getMemStoreFlattenCount());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.MEMSTORE_MERGE_COUNT,
+              MetricsRegionSource.MEMSTORE_MERGE_COUNT_DESC),
+          this.regionWrapper.getMemStoreMergeCount());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.MEMSTORE_COMPACTION_COUNT,
+              MetricsRegionSource.MEMSTORE_COMPACTION_COUNT_DESC),
+          this.regionWrapper.getMemStoreCompactionCount());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.MEMSTORE_COMPACTION_BYTES_ELIMINATED,
+              MetricsRegionSource.MEMSTORE_COMPACTION_BYTES_ELIMINATED_DESC),
+          this.regionWrapper.getMemStoreCompactionBytesEliminated());
       mrb.addCounter(Interns.info(regionNamePrefix + MetricsRegionSource.REPLICA_ID,
               MetricsRegionSource.REPLICA_ID_DESC),
           this.regionWrapper.getReplicaId());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.WAL_APPEND_BYTES,
+              MetricsRegionSource.WAL_APPEND_BYTES_DESC),
+          this.regionWrapper.getWALAppendBytes());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.WAL_APPEND_COUNT,
+              MetricsRegionSource.WAL_APPEND_COUNT_DESC),
+          this.regionWrapper.getWALAppendCount());
+      mrb.addGauge(Interns.info(
+              regionNamePrefix + MetricsRegionSource.WAL_SYNC_WAIT_TIME_MEAN,
+              MetricsRegionSource.WAL_SYNC_WAIT_TIME_MEAN_DESC),
+          this.regionWrapper.getWALSyncWaitTimeMean());
+      mrb.addGauge(Interns.info(
+              regionNamePrefix + MetricsRegionSource.WAL_SYNC_WAIT_TIME_99TH,
+              MetricsRegionSource.WAL_SYNC_WAIT_TIME_99TH_DESC),
+          this.regionWrapper.getWALSyncWaitTime99th());
     }
   }
 
@@ -140,6 +140,15 @@ public class MetricsTableSourceImpl implements MetricsTableSource {
         mrb.addGauge(Interns.info(tableNamePrefix + MetricsTableSource.TABLE_SIZE,
           MetricsTableSource.TABLE_SIZE_DESC),
           tableWrapperAgg.getTableSize(tableName.getNameAsString()));
+        mrb.addCounter(Interns.info(tableNamePrefix + MetricsTableSource.WAL_APPEND_BYTES,
+          MetricsTableSource.WAL_APPEND_BYTES_DESC),
+          tableWrapperAgg.getWALAppendBytes(tableName.getNameAsString()));
+        mrb.addCounter(Interns.info(tableNamePrefix + MetricsTableSource.WAL_APPEND_COUNT,
+          MetricsTableSource.WAL_APPEND_COUNT_DESC),
+          tableWrapperAgg.getWALAppendCount(tableName.getNameAsString()));
+        mrb.addGauge(Interns.info(tableNamePrefix + MetricsTableSource.WAL_SYNC_WAIT_TIME_99TH,
+          MetricsTableSource.WAL_SYNC_WAIT_TIME_99TH_DESC),
+          tableWrapperAgg.getWALSyncWaitTime99th(tableName.getNameAsString()));
       }
     }
   }
@@ -36,6 +36,8 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
   private final MetricHistogram appendSizeHisto;
   private final MetricHistogram appendTimeHisto;
   private final MetricHistogram syncTimeHisto;
+  private final MetricHistogram syncBatchSizeHisto;
+  private final MetricHistogram syncBatchWaitTimeHisto;
   private final MutableFastCounter appendCount;
   private final MutableFastCounter slowAppendCount;
   private final MutableFastCounter logRollRequested;
@@ -59,6 +61,10 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
     slowAppendCount =
         this.getMetricsRegistry().newCounter(SLOW_APPEND_COUNT, SLOW_APPEND_COUNT_DESC, 0l);
     syncTimeHisto = this.getMetricsRegistry().newTimeHistogram(SYNC_TIME, SYNC_TIME_DESC);
+    syncBatchSizeHisto =
+        this.getMetricsRegistry().newHistogram(SYNC_BATCH_SIZE, SYNC_BATCH_SIZE_DESC);
+    syncBatchWaitTimeHisto =
+        this.getMetricsRegistry().newHistogram(SYNC_BATCH_WAIT_TIME, SYNC_BATCH_WAIT_TIME_DESC);
     logRollRequested =
         this.getMetricsRegistry().newCounter(ROLL_REQUESTED, ROLL_REQUESTED_DESC, 0L);
     lowReplicationLogRollRequested = this.getMetricsRegistry()
@@ -91,6 +97,16 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
     syncTimeHisto.add(time);
   }
 
+  @Override
+  public void incrementSyncBatchSize(long size) {
+    syncBatchSizeHisto.add(size);
+  }
+
+  @Override
+  public void incrementSyncBatchWaitTime(long time) {
+    syncBatchWaitTimeHisto.add(time);
+  }
+
   @Override
   public void incrementLogRollRequested() {
     logRollRequested.incr();
@@ -116,4 +132,9 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
     return writtenBytes.value();
   }
 
+  @Override
+  public void setGroupAppendRate(String group, long bytesPerSecond) {
+    setGauge(group + "_" + GROUP_APPEND_RATE, bytesPerSecond);
+  }
+
 }
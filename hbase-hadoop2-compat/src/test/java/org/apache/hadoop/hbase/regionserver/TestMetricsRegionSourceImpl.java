@@ -161,6 +161,36 @@ public class TestMetricsRegionSourceImpl {
       return 0;
     }
 
+    @Override
+    public long getRowLockContendedCount() {
+      return 0;
+    }
+
+    @Override
+    public long getRowLockSlotCollisionCount() {
+      return 0;
+    }
+
+    @Override
+    public long getMemStoreFlattenCount() {
+      return 0;
+    }
+
+    @Override
+    public long getMemStoreMergeCount() {
+      return 0;
+    }
+
+    @Override
+    public long getMemStoreCompactionCount() {
+      return 0;
+    }
+
+    @Override
+    public long getMemStoreCompactionBytesEliminated() {
+      return 0;
+    }
+
     @Override
     public int getRegionHashCode() {
       return regionName.hashCode();
@@ -173,5 +203,25 @@ public class TestMetricsRegionSourceImpl {
     public int getReplicaId() {
       return 0;
     }
+
+    @Override
+    public long getWALAppendBytes() {
+      return 0;
+    }
+
+    @Override
+    public long getWALAppendCount() {
+      return 0;
+    }
+
+    @Override
+    public long getWALSyncWaitTimeMean() {
+      return 0;
+    }
+
+    @Override
+    public long getWALSyncWaitTime99th() {
+      return 0;
+    }
   }
 }
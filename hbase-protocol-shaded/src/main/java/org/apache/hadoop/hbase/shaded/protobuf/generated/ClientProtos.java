@@ -33641,6 +33641,59 @@ public final class ClientProtos {
      * <code>optional int32 compactionPressure = 3 [default = 0];</code>
      */
     int getCompactionPressure();
+
+    /**
+     * <pre>
+     * Milliseconds the oldest pending flush request of the server has been waiting
+     * for a flush handler.
+     * </pre>
+     *
+     * <code>optional int32 flushQueueWait = 4 [default = 0];</code>
+     */
+    boolean hasFlushQueueWait();
+    /**
+     * <pre>
+     * Milliseconds the oldest pending flush request of the server has been waiting
+     * for a flush handler.
+     * </pre>
+     *
+     * <code>optional int32 flushQueueWait = 4 [default = 0];</code>
+     */
+    int getFlushQueueWait();
+
+    /**
+     * <pre>
+     * Recent 99th percentile of the WAL sync latency of the server, in milliseconds.
+     * </pre>
+     *
+     * <code>optional int32 walSyncLatency = 5 [default = 0];</code>
+     */
+    boolean hasWalSyncLatency();
+    /**
+     * <pre>
+     * Recent 99th percentile of the WAL sync latency of the server, in milliseconds.
+     * </pre>
+     *
+     * <code>optional int32 walSyncLatency = 5 [default = 0];</code>
+     */
+    int getWalSyncLatency();
+
+    /**
+     * <pre>
+     * Number of compaction requests queued on the server.
+     * </pre>
+     *
+     * <code>optional int32 compactionQueueLength = 6 [default = 0];</code>
+     */
+    boolean hasCompactionQueueLength();
+    /**
+     * <pre>
+     * Number of compaction requests queued on the server.
+     * </pre>
+     *
+     * <code>optional int32 compactionQueueLength = 6 [default = 0];</code>
+     */
+    int getCompactionQueueLength();
   }
   /**
    * <pre>
@@ -33661,6 +33714,9 @@ public final class ClientProtos {
       memstoreLoad_ = 0;
       heapOccupancy_ = 0;
       compactionPressure_ = 0;
+      flushQueueWait_ = 0;
+      walSyncLatency_ = 0;
+      compactionQueueLength_ = 0;
     }
 
     @java.lang.Override
@@ -33706,6 +33762,21 @@ public final class ClientProtos {
               compactionPressure_ = input.readInt32();
               break;
             }
+            case 32: {
+              bitField0_ |= 0x00000008;
+              flushQueueWait_ = input.readInt32();
+              break;
+            }
+            case 40: {
+              bitField0_ |= 0x00000010;
+              walSyncLatency_ = input.readInt32();
+              break;
+            }
+            case 48: {
+              bitField0_ |= 0x00000020;
+              compactionQueueLength_ = input.readInt32();
+              break;
+            }
           }
         }
       } catch (org.apache.hadoop.hbase.shaded.com.google.protobuf.InvalidProtocolBufferException e) {
@@ -33802,6 +33873,77 @@ public final class ClientProtos {
       return compactionPressure_;
     }
 
+    public static final int FLUSHQUEUEWAIT_FIELD_NUMBER = 4;
+    private int flushQueueWait_;
+    /**
+     * <pre>
+     * Milliseconds the oldest pending flush request of the server has been waiting
+     * for a flush handler.
+     * </pre>
+     *
+     * <code>optional int32 flushQueueWait = 4 [default = 0];</code>
+     */
+    public boolean hasFlushQueueWait() {
+      return ((bitField0_ & 0x00000008) == 0x00000008);
+    }
+    /**
+     * <pre>
+     * Milliseconds the oldest pending flush request of the server has been waiting
+     * for a flush handler.
+     * </pre>
+     *
+     * <code>optional int32 flushQueueWait = 4 [default = 0];</code>
+     */
+    public int getFlushQueueWait() {
+      return flushQueueWait_;
+    }
+
+    public static final int WALSYNCLATENCY_FIELD_NUMBER = 5;
+    private int walSyncLatency_;
+    /**
+     * <pre>
+     * Recent 99th percentile of the WAL sync latency of the server, in milliseconds.
+     * </pre>
+     *
+     * <code>optional int32 walSyncLatency = 5 [default = 0];</code>
+     */
+    public boolean hasWalSyncLatency() {
+      return ((bitField0_ & 0x00000010) == 0x00000010);
+    }
+    /**
+     * <pre>
+     * Recent 99th percentile of the WAL sync latency of the server, in milliseconds.
+     * </pre>
+     *
+     * <code>optional int32 walSyncLatency = 5 [default = 0];</code>
+     */
+    public int getWalSyncLatency() {
+      return walSyncLatency_;
+    }
+
+    public static final int COMPACTIONQUEUELENGTH_FIELD_NUMBER = 6;
+    private int compactionQueueLength_;
+    /**
+     * <pre>
+     * Number of compaction requests queued on the server.
+     * </pre>
+     *
+     * <code>optional int32 compactionQueueLength = 6 [default = 0];</code>
+     */
+    public boolean hasCompactionQueueLength() {
+      return ((bitField0_ & 0x00000020) == 0x00000020);
+    }
+    /**
+     * <pre>
+     * Number of compaction requests queued on the server.
+     * </pre>
+     *
+     * <code>optional int32 compactionQueueLength = 6 [default = 0];</code>
+     */
+    public int getCompactionQueueLength() {
+      return compactionQueueLength_;
+    }
+
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
@@ -33823,6 +33965,15 @@ public final class ClientProtos {
       if (((bitField0_ & 0x00000004) == 0x00000004)) {
         output.writeInt32(3, compactionPressure_);
       }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        output.writeInt32(4, flushQueueWait_);
+      }
+      if (((bitField0_ & 0x00000010) == 0x00000010)) {
+        output.writeInt32(5, walSyncLatency_);
+      }
+      if (((bitField0_ & 0x00000020) == 0x00000020)) {
+        output.writeInt32(6, compactionQueueLength_);
+      }
       unknownFields.writeTo(output);
     }
 
@@ -33843,6 +33994,18 @@ public final class ClientProtos {
         size += org.apache.hadoop.hbase.shaded.com.google.protobuf.CodedOutputStream
           .computeInt32Size(3, compactionPressure_);
       }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        size += org.apache.hadoop.hbase.shaded.com.google.protobuf.CodedOutputStream
+          .computeInt32Size(4, flushQueueWait_);
+      }
+      if (((bitField0_ & 0x00000010) == 0x00000010)) {
+        size += org.apache.hadoop.hbase.shaded.com.google.protobuf.CodedOutputStream
+          .computeInt32Size(5, walSyncLatency_);
+      }
+      if (((bitField0_ & 0x00000020) == 0x00000020)) {
+        size += org.apache.hadoop.hbase.shaded.com.google.protobuf.CodedOutputStream
+          .computeInt32Size(6, compactionQueueLength_);
+      }
       size += unknownFields.getSerializedSize();
       memoizedSize = size;
       return size;
@@ -33875,6 +34038,21 @@ public final class ClientProtos {
         result = result && (getCompactionPressure()
             == other.getCompactionPressure());
       }
+      result = result && (hasFlushQueueWait() == other.hasFlushQueueWait());
+      if (hasFlushQueueWait()) {
+        result = result && (getFlushQueueWait()
+            == other.getFlushQueueWait());
+      }
+      result = result && (hasWalSyncLatency() == other.hasWalSyncLatency());
+      if (hasWalSyncLatency()) {
+        result = result && (getWalSyncLatency()
+            == other.getWalSyncLatency());
+      }
+      result = result && (hasCompactionQueueLength() == other.hasCompactionQueueLength());
+      if (hasCompactionQueueLength()) {
+        result = result && (getCompactionQueueLength()
+            == other.getCompactionQueueLength());
+      }
       result = result && unknownFields.equals(other.unknownFields);
       return result;
     }
@@ -33898,6 +34076,18 @@ public final class ClientProtos {
         hash = (37 * hash) + COMPACTIONPRESSURE_FIELD_NUMBER;
         hash = (53 * hash) + getCompactionPressure();
       }
+      if (hasFlushQueueWait()) {
+        hash = (37 * hash) + FLUSHQUEUEWAIT_FIELD_NUMBER;
+        hash = (53 * hash) + getFlushQueueWait();
+      }
+      if (hasWalSyncLatency()) {
+        hash = (37 * hash) + WALSYNCLATENCY_FIELD_NUMBER;
+        hash = (53 * hash) + getWalSyncLatency();
+      }
+      if (hasCompactionQueueLength()) {
+        hash = (37 * hash) + COMPACTIONQUEUELENGTH_FIELD_NUMBER;
+        hash = (53 * hash) + getCompactionQueueLength();
+      }
       hash = (29 * hash) + unknownFields.hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -34026,6 +34216,12 @@ public final class ClientProtos {
         bitField0_ = (bitField0_ & ~0x00000002);
         compactionPressure_ = 0;
         bitField0_ = (bitField0_ & ~0x00000004);
+        flushQueueWait_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000008);
+        walSyncLatency_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000010);
+        compactionQueueLength_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000020);
         return this;
       }
 
@@ -34062,6 +34258,18 @@ public final class ClientProtos {
           to_bitField0_ |= 0x00000004;
         }
         result.compactionPressure_ = compactionPressure_;
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000008;
+        }
+        result.flushQueueWait_ = flushQueueWait_;
+        if (((from_bitField0_ & 0x00000010) == 0x00000010)) {
+          to_bitField0_ |= 0x00000010;
+        }
+        result.walSyncLatency_ = walSyncLatency_;
+        if (((from_bitField0_ & 0x00000020) == 0x00000020)) {
+          to_bitField0_ |= 0x00000020;
+        }
+        result.compactionQueueLength_ = compactionQueueLength_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -34113,6 +34321,15 @@ public final class ClientProtos {
         if (other.hasCompactionPressure()) {
           setCompactionPressure(other.getCompactionPressure());
         }
+        if (other.hasFlushQueueWait()) {
+          setFlushQueueWait(other.getFlushQueueWait());
+        }
+        if (other.hasWalSyncLatency()) {
+          setWalSyncLatency(other.getWalSyncLatency());
+        }
+        if (other.hasCompactionQueueLength()) {
+          setCompactionQueueLength(other.getCompactionQueueLength());
+        }
         this.mergeUnknownFields(other.unknownFields);
         onChanged();
         return this;
@@ -34288,6 +34505,154 @@ public final class ClientProtos {
         onChanged();
         return this;
       }
+
+      private int flushQueueWait_ ;
+      /**
+       * <pre>
+       * Milliseconds the oldest pending flush request of the server has been waiting
+       * for a flush handler.
+       * </pre>
+       *
+       * <code>optional int32 flushQueueWait = 4 [default = 0];</code>
+       */
+      public boolean hasFlushQueueWait() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      /**
+       * <pre>
+       * Milliseconds the oldest pending flush request of the server has been waiting
+       * for a flush handler.
+       * </pre>
+       *
+       * <code>optional int32 flushQueueWait = 4 [default = 0];</code>
+       */
+      public int getFlushQueueWait() {
+        return flushQueueWait_;
+      }
+      /**
+       * <pre>
+       * Milliseconds the oldest pending flush request of the server has been waiting
+       * for a flush handler.
+       * </pre>
+       *
+       * <code>optional int32 flushQueueWait = 4 [default = 0];</code>
+       */
+      public Builder setFlushQueueWait(int value) {
+        bitField0_ |= 0x00000008;
+        flushQueueWait_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * Milliseconds the oldest pending flush request of the server has been waiting
+       * for a flush handler.
+       * </pre>
+       *
+       * <code>optional int32 flushQueueWait = 4 [default = 0];</code>
+       */
+      public Builder clearFlushQueueWait() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        flushQueueWait_ = 0;
+        onChanged();
+        return this;
+      }
+
+      private int walSyncLatency_ ;
+      /**
+       * <pre>
+       * Recent 99th percentile of the WAL sync latency of the server, in milliseconds.
+       * </pre>
+       *
+       * <code>optional int32 walSyncLatency = 5 [default = 0];</code>
+       */
+      public boolean hasWalSyncLatency() {
+        return ((bitField0_ & 0x00000010) == 0x00000010);
+      }
+      /**
+       * <pre>
+       * Recent 99th percentile of the WAL sync latency of the server, in milliseconds.
+       * </pre>
+       *
+       * <code>optional int32 walSyncLatency = 5 [default = 0];</code>
+       */
+      public int getWalSyncLatency() {
+        return walSyncLatency_;
+      }
+      /**
+       * <pre>
+       * Recent 99th percentile of the WAL sync latency of the server, in milliseconds.
+       * </pre>
+       *
+       * <code>optional int32 walSyncLatency = 5 [default = 0];</code>
+       */
+      public Builder setWalSyncLatency(int value) {
+        bitField0_ |= 0x00000010;
+        walSyncLatency_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * Recent 99th percentile of the WAL sync latency of the server, in milliseconds.
+       * </pre>
+       *
+       * <code>optional int32 walSyncLatency = 5 [default = 0];</code>
+       */
+      public Builder clearWalSyncLatency() {
+        bitField0_ = (bitField0_ & ~0x00000010);
+        walSyncLatency_ = 0;
+        onChanged();
+        return this;
+      }
+
+      private int compactionQueueLength_ ;
+      /**
+       * <pre>
+       * Number of compaction requests queued on the server.
+       * </pre>
+       *
+       * <code>optional int32 compactionQueueLength = 6 [default = 0];</code>
+       */
+      public boolean hasCompactionQueueLength() {
+        return ((bitField0_ & 0x00000020) == 0x00000020);
+      }
+      /**
+       * <pre>
+       * Number of compaction requests queued on the server.
+       * </pre>
+       *
+       * <code>optional int32 compactionQueueLength = 6 [default = 0];</code>
+       */
+      public int getCompactionQueueLength() {
+        return compactionQueueLength_;
+      }
+      /**
+       * <pre>
+       * Number of compaction requests queued on the server.
+       * </pre>
+       *
+       * <code>optional int32 compactionQueueLength = 6 [default = 0];</code>
+       */
+      public Builder setCompactionQueueLength(int value) {
+        bitField0_ |= 0x00000020;
+        compactionQueueLength_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * Number of compaction requests queued on the server.
+       * </pre>
+       *
+       * <code>optional int32 compactionQueueLength = 6 [default = 0];</code>
+       */
+      public Builder clearCompactionQueueLength() {
+        bitField0_ = (bitField0_ & ~0x00000020);
+        compactionQueueLength_ = 0;
+        onChanged();
+        return this;
+      }
       public final Builder setUnknownFields(
           final org.apache.hadoop.hbase.shaded.com.google.protobuf.UnknownFieldSet unknownFields) {
         return super.setUnknownFields(unknownFields);
@@ -41226,48 +41591,50 @@ public final class ClientProtos {
       "rocessorServiceCall\"k\n\014RegionAction\022)\n\006r" +
       "egion\030\001 \002(\0132\031.hbase.pb.RegionSpecifier\022\016" +
       "\n\006atomic\030\002 \001(\010\022 \n\006action\030\003 \003(\0132\020.hbase.p" +
-      "b.Action\"c\n\017RegionLoadStats\022\027\n\014memstoreL" +
-      "oad\030\001 \001(\005:\0010\022\030\n\rheapOccupancy\030\002 \001(\005:\0010\022\035" +
-      "\n\022compactionPressure\030\003 \001(\005:\0010\"j\n\024MultiRe" +
-      "gionLoadStats\022)\n\006region\030\001 \003(\0132\031.hbase.pb" +
-      ".RegionSpecifier\022\'\n\004stat\030\002 \003(\0132\031.hbase.p" +
-      "b.RegionLoadStats\"\336\001\n\021ResultOrException\022",
-      "\r\n\005index\030\001 \001(\r\022 \n\006result\030\002 \001(\0132\020.hbase.p" +
-      "b.Result\022*\n\texception\030\003 \001(\0132\027.hbase.pb.N" +
-      "ameBytesPair\022:\n\016service_result\030\004 \001(\0132\".h" +
-      "base.pb.CoprocessorServiceResult\0220\n\tload" +
-      "Stats\030\005 \001(\0132\031.hbase.pb.RegionLoadStatsB\002" +
-      "\030\001\"x\n\022RegionActionResult\0226\n\021resultOrExce" +
-      "ption\030\001 \003(\0132\033.hbase.pb.ResultOrException" +
-      "\022*\n\texception\030\002 \001(\0132\027.hbase.pb.NameBytes" +
-      "Pair\"x\n\014MultiRequest\022,\n\014regionAction\030\001 \003" +
-      "(\0132\026.hbase.pb.RegionAction\022\022\n\nnonceGroup",
-      "\030\002 \001(\004\022&\n\tcondition\030\003 \001(\0132\023.hbase.pb.Con" +
-      "dition\"\226\001\n\rMultiResponse\0228\n\022regionAction" +
-      "Result\030\001 \003(\0132\034.hbase.pb.RegionActionResu" +
-      "lt\022\021\n\tprocessed\030\002 \001(\010\0228\n\020regionStatistic" +
-      "s\030\003 \001(\0132\036.hbase.pb.MultiRegionLoadStats*" +
-      "\'\n\013Consistency\022\n\n\006STRONG\020\000\022\014\n\010TIMELINE\020\001" +
-      "2\263\005\n\rClientService\0222\n\003Get\022\024.hbase.pb.Get" +
-      "Request\032\025.hbase.pb.GetResponse\022;\n\006Mutate" +
-      "\022\027.hbase.pb.MutateRequest\032\030.hbase.pb.Mut" +
-      "ateResponse\0225\n\004Scan\022\025.hbase.pb.ScanReque",
-      "st\032\026.hbase.pb.ScanResponse\022P\n\rBulkLoadHF" +
-      "ile\022\036.hbase.pb.BulkLoadHFileRequest\032\037.hb" +
-      "ase.pb.BulkLoadHFileResponse\022V\n\017PrepareB" +
-      "ulkLoad\022 .hbase.pb.PrepareBulkLoadReques" +
-      "t\032!.hbase.pb.PrepareBulkLoadResponse\022V\n\017" +
-      "CleanupBulkLoad\022 .hbase.pb.CleanupBulkLo" +
-      "adRequest\032!.hbase.pb.CleanupBulkLoadResp" +
-      "onse\022X\n\013ExecService\022#.hbase.pb.Coprocess" +
-      "orServiceRequest\032$.hbase.pb.CoprocessorS" +
-      "erviceResponse\022d\n\027ExecRegionServerServic",
-      "e\022#.hbase.pb.CoprocessorServiceRequest\032$" +
-      ".hbase.pb.CoprocessorServiceResponse\0228\n\005" +
-      "Multi\022\026.hbase.pb.MultiRequest\032\027.hbase.pb" +
-      ".MultiResponseBI\n1org.apache.hadoop.hbas" +
-      "e.shaded.protobuf.generatedB\014ClientProto" +
-      "sH\001\210\001\001\240\001\001"
+      "b.Action\"\273\001\n\017RegionLoadStats\022\027\n\014memstore" +
+      "Load\030\001 \001(\005:\0010\022\030\n\rheapOccupancy\030\002 \001(\005:\0010\022" +
+      "\035\n\022compactionPressure\030\003 \001(\005:\0010\022\031\n\016flushQ" +
+      "ueueWait\030\004 \001(\005:\0010\022\031\n\016walSyncLatency\030\005 \001(" +
+      "\005:\0010\022 \n\025compactionQueueLength\030\006 \001(\005:\0010\"j" +
+      "\n\024MultiRegionLoadStats\022)\n\006region\030\001 \003(\0132\031",
+      ".hbase.pb.RegionSpecifier\022\'\n\004stat\030\002 \003(\0132" +
+      "\031.hbase.pb.RegionLoadStats\"\336\001\n\021ResultOrE" +
+      "xception\022\r\n\005index\030\001 \001(\r\022 \n\006result\030\002 \001(\0132" +
+      "\020.hbase.pb.Result\022*\n\texception\030\003 \001(\0132\027.h" +
+      "base.pb.NameBytesPair\022:\n\016service_result\030" +
+      "\004 \001(\0132\".hbase.pb.CoprocessorServiceResul" +
+      "t\0220\n\tloadStats\030\005 \001(\0132\031.hbase.pb.RegionLo" +
+      "adStatsB\002\030\001\"x\n\022RegionActionResult\0226\n\021res" +
+      "ultOrException\030\001 \003(\0132\033.hbase.pb.ResultOr" +
+      "Exception\022*\n\texception\030\002 \001(\0132\027.hbase.pb.",
+      "NameBytesPair\"x\n\014MultiRequest\022,\n\014regionA" +
+      "ction\030\001 \003(\0132\026.hbase.pb.RegionAction\022\022\n\nn" +
+      "onceGroup\030\002 \001(\004\022&\n\tcondition\030\003 \001(\0132\023.hba" +
+      "se.pb.Condition\"\226\001\n\rMultiResponse\0228\n\022reg" +
+      "ionActionResult\030\001 \003(\0132\034.hbase.pb.RegionA" +
+      "ctionResult\022\021\n\tprocessed\030\002 \001(\010\0228\n\020region" +
+      "Statistics\030\003 \001(\0132\036.hbase.pb.MultiRegionL" +
+      "oadStats*\'\n\013Consistency\022\n\n\006STRONG\020\000\022\014\n\010T" +
+      "IMELINE\020\0012\263\005\n\rClientService\0222\n\003Get\022\024.hba" +
+      "se.pb.GetRequest\032\025.hbase.pb.GetResponse\022",
+      ";\n\006Mutate\022\027.hbase.pb.MutateRequest\032\030.hba" +
+      "se.pb.MutateResponse\0225\n\004Scan\022\025.hbase.pb." +
+      "ScanRequest\032\026.hbase.pb.ScanResponse\022P\n\rB" +
+      "ulkLoadHFile\022\036.hbase.pb.BulkLoadHFileReq" +
+      "uest\032\037.hbase.pb.BulkLoadHFileResponse\022V\n" +
+      "\017PrepareBulkLoad\022 .hbase.pb.PrepareBulkL" +
+      "oadRequest\032!.hbase.pb.PrepareBulkLoadRes" +
+      "ponse\022V\n\017CleanupBulkLoad\022 .hbase.pb.Clea" +
+      "nupBulkLoadRequest\032!.hbase.pb.CleanupBul" +
+      "kLoadResponse\022X\n\013ExecService\022#.hbase.pb.",
+      "CoprocessorServiceRequest\032$.hbase.pb.Cop" +
+      "rocessorServiceResponse\022d\n\027ExecRegionSer" +
+      "verService\022#.hbase.pb.CoprocessorService" +
+      "Request\032$.hbase.pb.CoprocessorServiceRes" +
+      "ponse\0228\n\005Multi\022\026.hbase.pb.MultiRequest\032\027" +
+      ".hbase.pb.MultiResponseBI\n1org.apache.ha" +
+      "doop.hbase.shaded.protobuf.generatedB\014Cl" +
+      "ientProtosH\001\210\001\001\240\001\001"
     };
     org.apache.hadoop.hbase.shaded.com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
         new org.apache.hadoop.hbase.shaded.com.google.protobuf.Descriptors.FileDescriptor.    InternalDescriptorAssigner() {
@@ -41471,7 +41838,7 @@ public final class ClientProtos {
     internal_static_hbase_pb_RegionLoadStats_fieldAccessorTable = new
       org.apache.hadoop.hbase.shaded.com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_hbase_pb_RegionLoadStats_descriptor,
-        new java.lang.String[] { "MemstoreLoad", "HeapOccupancy", "CompactionPressure", });
+        new java.lang.String[] { "MemstoreLoad", "HeapOccupancy", "CompactionPressure", "FlushQueueWait", "WalSyncLatency", "CompactionQueueLength", });
     internal_static_hbase_pb_MultiRegionLoadStats_descriptor =
       getDescriptor().getMessageTypes().get(28);
     internal_static_hbase_pb_MultiRegionLoadStats_fieldAccessorTable = new
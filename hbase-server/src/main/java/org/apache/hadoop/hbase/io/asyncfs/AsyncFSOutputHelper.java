@@ -164,6 +164,11 @@ public final class AsyncFSOutputHelper {
       public void write(ByteBuffer bb) {
         out.write(bb, bb.position(), bb.remaining());
       }
+
+      @Override
+      public void write(ByteBuffer bb, int off, int len) {
+        out.write(bb, off, len);
+      }
     };
   }
 }
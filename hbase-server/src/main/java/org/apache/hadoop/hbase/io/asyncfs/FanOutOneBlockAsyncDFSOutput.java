@@ -58,6 +58,7 @@ import org.apache.hadoop.crypto.Encryptor;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.classification.InterfaceAudience;
 import org.apache.hadoop.hbase.io.asyncfs.FanOutOneBlockAsyncDFSOutputHelper.CancelOnClose;
+import org.apache.hadoop.hbase.util.ByteBufferUtils;
 import org.apache.hadoop.hbase.util.CancelableProgressable;
 import org.apache.hadoop.hbase.util.FSUtils;
 import org.apache.hadoop.hdfs.DFSClient;
@@ -347,6 +348,24 @@ public class FanOutOneBlockAsyncDFSOutput implements AsyncFSOutput {
     }
   }
 
+  private void write0(ByteBuffer bb, int off, int len) {
+    buf.ensureWritable(len);
+    int index = buf.writerIndex();
+    // copy straight into the direct buffer, without a duplicate of bb for each write.
+    ByteBuffer dst = buf.internalNioBuffer(index, len);
+    ByteBufferUtils.copyFromBufferToBuffer(bb, dst, off, dst.position(), len);
+    buf.writerIndex(index + len);
+  }
+
+  @Override
+  public void write(ByteBuffer bb, int off, int len) {
+    if (eventLoop.inEventLoop()) {
+      write0(bb, off, len);
+    } else {
+      eventLoop.submit(() -> write0(bb, off, len));
+    }
+  }
+
   @Override
   public void write(byte[] b) {
     write(b, 0, b.length);
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+
+/**
+ * How a reader goes through an hfile. Passed down with block reads so the block cache can decide
+ * how to admit the data blocks it is given.
+ */
+@InterfaceAudience.Private
+public enum AccessPattern {
+  /**
+   * A get, or any other lookup of a few cells. The default when nothing better is known.
+   */
+  POINT,
+  /**
+   * A scan expected to read a few blocks
+   */
+  SHORT_SCAN,
+  /**
+   * A scan through a large part of the file. Its blocks are unlikely to be read again soon, so
+   * they are admitted on probation: first to be evicted unless read again before that.
+   */
+  FULL_SCAN;
+
+  /**
+   * @return true if blocks read this way should be admitted on probation
+   */
+  public boolean isProbationary() {
+    return this == FULL_SCAN;
+  }
+}
@@ -40,6 +40,21 @@ public interface BlockCache extends Iterable<CachedBlock> {
    */
   void cacheBlock(BlockCacheKey cacheKey, Cacheable buf, boolean inMemory, boolean cacheDataInL1);
 
+  /**
+   * Add block to cache, saying how it was read. A cache may admit blocks of a
+   * {@link AccessPattern#isProbationary() probationary} read so that they are the first to be
+   * evicted unless read again; one that has no use for the hint caches them as usual.
+   * @param cacheKey The block's cache key.
+   * @param buf The block contents wrapped in a ByteBuffer.
+   * @param inMemory Whether block should be treated as in-memory
+   * @param cacheDataInL1 See {@link #cacheBlock(BlockCacheKey, Cacheable, boolean, boolean)}
+   * @param accessPattern How the block was read
+   */
+  default void cacheBlock(BlockCacheKey cacheKey, Cacheable buf, boolean inMemory,
+      boolean cacheDataInL1, AccessPattern accessPattern) {
+    cacheBlock(cacheKey, buf, inMemory, cacheDataInL1);
+  }
+
   /**
    * Add block to cache (defaults to not in-memory).
    * @param cacheKey The block's cache key.
@@ -18,6 +18,7 @@
 package org.apache.hadoop.hbase.io.hfile;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentSkipListMap;
@@ -26,6 +27,7 @@ import java.util.concurrent.ConcurrentSkipListSet;
 import org.apache.hadoop.hbase.classification.InterfaceAudience;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.metrics.impl.FastLongHistogram;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.codehaus.jackson.JsonGenerationException;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 import org.codehaus.jackson.map.JsonMappingException;
@@ -156,6 +158,20 @@ public class BlockCacheUtil {
       ", priority=" + cb.getBlockPriority();
   }
 
+  /**
+   * Compares the serialized content of two cached blocks. Used when a block is offered to a cache
+   * that already holds an entry for the same key (see HBASE-8547).
+   * @return 0 if the two blocks serialize to the same bytes
+   */
+  public static int compareCacheBlock(Cacheable left, Cacheable right) {
+    ByteBuffer l = ByteBuffer.allocate(left.getSerializedLength());
+    left.serialize(l);
+    ByteBuffer r = ByteBuffer.allocate(right.getSerializedLength());
+    right.serialize(r);
+    return Bytes.compareTo(l.array(), l.arrayOffset(), l.limit(),
+      r.array(), r.arrayOffset(), r.limit());
+  }
+
   /**
    * Get a {@link CachedBlocksByFile} instance and load it up by iterating content in
    * {@link BlockCache}.
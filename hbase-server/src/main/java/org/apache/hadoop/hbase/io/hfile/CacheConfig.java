@@ -147,6 +147,13 @@ public class CacheConfig {
    */
   public static final String BLOCKCACHE_BLOCKSIZE_KEY = "hbase.offheapcache.minblocksize";
 
+  /**
+   * Eviction policy of the first level, on-heap block cache. One of <code>LRU</code> (the
+   * default {@link LruBlockCache}) or <code>TinyLFU</code> ({@link TinyLfuBlockCache}).
+   */
+  public static final String BLOCKCACHE_POLICY_KEY = "hfile.block.cache.policy";
+  public static final String BLOCKCACHE_POLICY_DEFAULT = "LRU";
+
   private static final String EXTERNAL_BLOCKCACHE_KEY = "hbase.blockcache.use.external";
   private static final boolean EXTERNAL_BLOCKCACHE_DEFAULT = false;
 
@@ -247,7 +254,8 @@ public class CacheConfig {
             DEFAULT_CACHE_BLOOMS_ON_WRITE) || family.isCacheBloomsOnWrite(),
         conf.getBoolean(EVICT_BLOCKS_ON_CLOSE_KEY,
             DEFAULT_EVICT_ON_CLOSE) || family.isEvictBlocksOnClose(),
-        conf.getBoolean(CACHE_DATA_BLOCKS_COMPRESSED_KEY, DEFAULT_CACHE_DATA_COMPRESSED),
+        conf.getBoolean(CACHE_DATA_BLOCKS_COMPRESSED_KEY,
+            DEFAULT_CACHE_DATA_COMPRESSED) || family.isCacheDataCompressed(),
         conf.getBoolean(PREFETCH_BLOCKS_ON_OPEN_KEY,
             DEFAULT_PREFETCH_ON_OPEN) || family.isPrefetchBlocksOnOpen(),
         conf.getBoolean(HColumnDescriptor.CACHE_DATA_IN_L1,
@@ -479,6 +487,28 @@ public class CacheConfig {
     return isBlockCacheEnabled() && this.prefetchOnOpen;
   }
 
+  /**
+   * Tells a persistent {@link BucketCache} that the given hfile was opened, so the blocks it
+   * recovered for the file on startup are kept.
+   */
+  public void notifyHFileOpened(String hfileName) {
+    if (this.blockCache == null) {
+      return;
+    }
+    BlockCache[] caches = this.blockCache.getBlockCaches();
+    if (caches == null) {
+      // A lone L1 may still have a bucket cache as its victim cache
+      BlockCache victim = this.blockCache instanceof FirstLevelBlockCache ?
+          ((FirstLevelBlockCache) this.blockCache).getVictimCache() : null;
+      caches = new BlockCache[] { this.blockCache, victim };
+    }
+    for (BlockCache cache : caches) {
+      if (cache instanceof BucketCache) {
+        ((BucketCache) cache).notifyHFileOpened(hfileName);
+      }
+    }
+  }
+
   /**
    * Return true if we may find this type of block in block cache.
    * <p>
@@ -545,7 +575,7 @@ public class CacheConfig {
   // Clear this if in tests you'd make more than one block cache instance.
   @VisibleForTesting
   static BlockCache GLOBAL_BLOCK_CACHE_INSTANCE;
-  private static LruBlockCache GLOBAL_L1_CACHE_INSTANCE;
+  private static FirstLevelBlockCache GLOBAL_L1_CACHE_INSTANCE;
 
   /** Boolean whether we have disabled the block cache entirely. */
   @VisibleForTesting
@@ -553,17 +583,19 @@ public class CacheConfig {
 
   /**
    * @param c Configuration to use.
-   * @return An L1 instance.  Currently an instance of LruBlockCache.
+   * @return An L1 instance.  An instance of LruBlockCache or TinyLfuBlockCache depending on
+   * {@link #BLOCKCACHE_POLICY_KEY}.
    */
-  public static LruBlockCache getL1(final Configuration c) {
+  public static FirstLevelBlockCache getL1(final Configuration c) {
     return getL1Internal(c);
   }
 
   /**
    * @param c Configuration to use.
-   * @return An L1 instance.  Currently an instance of LruBlockCache.
+   * @return An L1 instance.  An instance of LruBlockCache or TinyLfuBlockCache depending on
+   * {@link #BLOCKCACHE_POLICY_KEY}.
    */
-  private synchronized static LruBlockCache getL1Internal(final Configuration c) {
+  private synchronized static FirstLevelBlockCache getL1Internal(final Configuration c) {
     if (GLOBAL_L1_CACHE_INSTANCE != null) return GLOBAL_L1_CACHE_INSTANCE;
     final long lruCacheSize = MemorySizeUtil.getLruCacheSize(c);
     if (lruCacheSize < 0) {
@@ -571,9 +603,20 @@ public class CacheConfig {
     }
     if (blockCacheDisabled) return null;
     int blockSize = c.getInt(BLOCKCACHE_BLOCKSIZE_KEY, HConstants.DEFAULT_BLOCKSIZE);
-    LOG.info("Allocating LruBlockCache size=" +
-      StringUtils.byteDesc(lruCacheSize) + ", blockSize=" + StringUtils.byteDesc(blockSize));
-    GLOBAL_L1_CACHE_INSTANCE = new LruBlockCache(lruCacheSize, blockSize, true, c);
+    String policy = c.get(BLOCKCACHE_POLICY_KEY, BLOCKCACHE_POLICY_DEFAULT);
+    if (policy.equalsIgnoreCase("TinyLFU")) {
+      LOG.info("Allocating TinyLfuBlockCache size=" +
+        StringUtils.byteDesc(lruCacheSize) + ", blockSize=" + StringUtils.byteDesc(blockSize));
+      GLOBAL_L1_CACHE_INSTANCE = new TinyLfuBlockCache(lruCacheSize, blockSize, c);
+    } else {
+      if (!policy.equalsIgnoreCase(BLOCKCACHE_POLICY_DEFAULT)) {
+        LOG.warn("Unknown " + BLOCKCACHE_POLICY_KEY + "=" + policy + ", using "
+            + BLOCKCACHE_POLICY_DEFAULT);
+      }
+      LOG.info("Allocating LruBlockCache size=" +
+        StringUtils.byteDesc(lruCacheSize) + ", blockSize=" + StringUtils.byteDesc(blockSize));
+      GLOBAL_L1_CACHE_INSTANCE = new LruBlockCache(lruCacheSize, blockSize, true, c);
+    }
     return GLOBAL_L1_CACHE_INSTANCE;
   }
 
@@ -660,7 +703,7 @@ public class CacheConfig {
       // Bucket cache logs its stats on creation internal to the constructor.
       bucketCache = new BucketCache(bucketCacheIOEngineName,
         bucketCacheSize, blockSize, bucketSizes, writerThreads, writerQueueLen, persistentPath,
-        ioErrorsTolerationDuration);
+        ioErrorsTolerationDuration, c);
     } catch (IOException ioex) {
       LOG.error("Can't instantiate bucket cache", ioex); throw new RuntimeException(ioex);
     }
@@ -677,7 +720,7 @@ public class CacheConfig {
   public static synchronized BlockCache instantiateBlockCache(Configuration conf) {
     if (GLOBAL_BLOCK_CACHE_INSTANCE != null) return GLOBAL_BLOCK_CACHE_INSTANCE;
     if (blockCacheDisabled) return null;
-    LruBlockCache l1 = getL1Internal(conf);
+    FirstLevelBlockCache l1 = getL1Internal(conf);
     // blockCacheDisabled is set as a side-effect of getL1Internal(), so check it again after the call.
     if (blockCacheDisabled) return null;
     BlockCache l2 = getL2(conf);
@@ -30,7 +30,8 @@ import com.google.common.annotations.VisibleForTesting;
 
 /**
  * CombinedBlockCache is an abstraction layer that combines
- * {@link LruBlockCache} and {@link BucketCache}. The smaller lruCache is used
+ * a {@link FirstLevelBlockCache} (by default an {@link LruBlockCache}) and {@link BucketCache}.
+ * The smaller lruCache is used
  * to cache bloom blocks and index blocks.  The larger l2Cache is used to
  * cache data blocks. {@link #getBlock(BlockCacheKey, boolean, boolean, boolean)} reads
  * first from the smaller lruCache before looking for the block in the l2Cache.  Blocks evicted
@@ -40,11 +41,11 @@ import com.google.common.annotations.VisibleForTesting;
  */
 @InterfaceAudience.Private
 public class CombinedBlockCache implements ResizableBlockCache, HeapSize {
-  protected final LruBlockCache lruCache;
+  protected final FirstLevelBlockCache lruCache;
   protected final BlockCache l2Cache;
   protected final CombinedCacheStats combinedCacheStats;
 
-  public CombinedBlockCache(LruBlockCache lruCache, BlockCache l2Cache) {
+  public CombinedBlockCache(FirstLevelBlockCache lruCache, BlockCache l2Cache) {
     this.lruCache = lruCache;
     this.l2Cache = l2Cache;
     this.combinedCacheStats = new CombinedCacheStats(lruCache.getStats(),
@@ -63,11 +64,17 @@ public class CombinedBlockCache implements ResizableBlockCache, HeapSize {
   @Override
   public void cacheBlock(BlockCacheKey cacheKey, Cacheable buf, boolean inMemory,
       final boolean cacheDataInL1) {
+    cacheBlock(cacheKey, buf, inMemory, cacheDataInL1, AccessPattern.POINT);
+  }
+
+  @Override
+  public void cacheBlock(BlockCacheKey cacheKey, Cacheable buf, boolean inMemory,
+      final boolean cacheDataInL1, AccessPattern accessPattern) {
     boolean metaBlock = buf.getBlockType().getCategory() != BlockCategory.DATA;
     if (metaBlock || cacheDataInL1) {
-      lruCache.cacheBlock(cacheKey, buf, inMemory, cacheDataInL1);
+      lruCache.cacheBlock(cacheKey, buf, inMemory, cacheDataInL1, accessPattern);
     } else {
-      l2Cache.cacheBlock(cacheKey, buf, inMemory, false);
+      l2Cache.cacheBlock(cacheKey, buf, inMemory, false, accessPattern);
     }
   }
 
@@ -384,6 +384,22 @@ public class HFile {
         DataBlockEncoding expectedDataBlockEncoding)
         throws IOException;
 
+    /**
+     * Read in a file block, saying how the reader goes through the file so a data block read on
+     * a cache miss is admitted to the cache accordingly.
+     * @param accessPattern how the caller reads the file
+     * @see #readBlock(long, long, boolean, boolean, boolean, boolean, BlockType,
+     *      DataBlockEncoding)
+     */
+    default HFileBlock readBlock(long offset, long onDiskBlockSize,
+        boolean cacheBlock, final boolean pread, final boolean isCompaction,
+        final boolean updateCacheMetrics, BlockType expectedBlockType,
+        DataBlockEncoding expectedDataBlockEncoding, AccessPattern accessPattern)
+        throws IOException {
+      return readBlock(offset, onDiskBlockSize, cacheBlock, pread, isCompaction,
+        updateCacheMetrics, expectedBlockType, expectedDataBlockEncoding);
+    }
+
     /**
      * Return the given block back to the cache, if it was obtained from cache.
      * @param block Block to be returned.
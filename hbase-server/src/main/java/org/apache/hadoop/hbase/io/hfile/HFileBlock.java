@@ -169,6 +169,12 @@ public class HFileBlock implements Cacheable {
 
   private MemoryType memType = MemoryType.EXCLUSIVE;
 
+  /**
+   * The {@link UnpackedBufferPool} buffer backing {@link #buf} if this block was unpacked into
+   * one, {@link #RELEASED_BUFFER} once that buffer went back to the pool, else null.
+   */
+  private ByteBuffer pooledBuf;
+
   /**
    * The on-disk size of the next block, including the header and checksums if present, obtained by
    * peeking into the first {@link HConstants#HFILEBLOCK_HEADER_SIZE} bytes of the next block's
@@ -215,6 +221,9 @@ public class HFileBlock implements Cacheable {
    */
   static final int CHECKSUM_SIZE = Bytes.SIZEOF_INT;
 
+  /** Marks a block whose pooled buffer was already given back; see {@link #pooledBuf}. */
+  private static final ByteBuffer RELEASED_BUFFER = ByteBuffer.allocate(0);
+
   static final byte[] DUMMY_HEADER_NO_CHECKSUM =
       new byte[HConstants.HFILEBLOCK_HEADER_SIZE_NO_CHECKSUM];
 
@@ -629,6 +638,17 @@ public class HFileBlock implements Cacheable {
    * encoded structure. Internal structures are shared between instances where applicable.
    */
   HFileBlock unpack(HFileContext fileContext, FSReader reader) throws IOException {
+    return unpack(fileContext, reader, false);
+  }
+
+  /**
+   * Retrieves the decompressed/decrypted view of this block. If {@code pooled}, the view is
+   * unpacked into a buffer of the {@link UnpackedBufferPool} of the calling thread and reports
+   * {@link MemoryType#SHARED}: it must be given back with {@link #releasePooledBuffer()}, and
+   * no cell of it may be used after that.
+   */
+  HFileBlock unpack(HFileContext fileContext, FSReader reader, boolean pooled)
+      throws IOException {
     if (!fileContext.isCompressedOrEncrypted()) {
       // TODO: cannot use our own fileContext here because HFileBlock(ByteBuffer, boolean),
       // which is used for block serialization to L2 cache, does not preserve encoding and
@@ -637,7 +657,7 @@ public class HFileBlock implements Cacheable {
     }
 
     HFileBlock unpacked = new HFileBlock(this);
-    unpacked.allocateBuffer(); // allocates space for the decompressed block
+    unpacked.allocateBuffer(pooled); // allocates space for the decompressed block
 
     HFileBlockDecodingContext ctx = blockType == BlockType.ENCODED_DATA ?
       reader.getBlockDecodingContext() : reader.getDefaultBlockDecodingContext();
@@ -652,17 +672,28 @@ public class HFileBlock implements Cacheable {
   }
 
   /**
-   * Always allocates a new buffer of the correct size. Copies header bytes
+   * Always allocates a new buffer of the correct size, or takes one from the
+   * {@link UnpackedBufferPool} if {@code pooled}. Copies header bytes
    * from the existing buffer. Does not change header fields.
    * Reserve room to keep checksum bytes too.
    */
-  private void allocateBuffer() {
+  private void allocateBuffer(boolean pooled) {
     int cksumBytes = totalChecksumBytes();
     int headerSize = headerSize();
     int capacityNeeded = headerSize + uncompressedSizeWithoutHeader + cksumBytes;
 
     // TODO we need consider allocating offheap here?
-    ByteBuffer newBuf = ByteBuffer.allocate(capacityNeeded);
+    ByteBuffer newBuf;
+    if (pooled) {
+      pooledBuf = UnpackedBufferPool.acquire(capacityNeeded);
+      memType = MemoryType.SHARED;
+      // Slice so that the capacity is exact; isUnpacked() relies on it.
+      newBuf = pooledBuf.duplicate();
+      newBuf.limit(capacityNeeded);
+      newBuf = newBuf.slice();
+    } else {
+      newBuf = ByteBuffer.allocate(capacityNeeded);
+    }
 
     // Copy header bytes into newBuf.
     // newBuf is HBB so no issue in calling array()
@@ -674,6 +705,23 @@ public class HFileBlock implements Cacheable {
     buf.limit(headerSize + uncompressedSizeWithoutHeader + cksumBytes);
   }
 
+  /**
+   * Gives the buffer of a block unpacked with {@code pooled} set back to the
+   * {@link UnpackedBufferPool}. Such a block does not belong to any cache, so the caller must
+   * not also return it to the cache. Releasing it again is a no-op.
+   * @return true if this block was unpacked into a pooled buffer, false otherwise
+   */
+  boolean releasePooledBuffer() {
+    if (pooledBuf == null) {
+      return false;
+    }
+    if (pooledBuf != RELEASED_BUFFER) {
+      UnpackedBufferPool.release(pooledBuf);
+      pooledBuf = RELEASED_BUFFER;
+    }
+    return true;
+  }
+
   /**
    * Return true when this block's buffer has been unpacked, false otherwise. Note this is a
    * calculated heuristic, not tracked attribute of the block.
@@ -721,8 +769,8 @@ public class HFileBlock implements Cacheable {
   public long heapSize() {
     long size = ClassSize.align(
         ClassSize.OBJECT +
-        // Block type, multi byte buffer, MemoryType and meta references
-        4 * ClassSize.REFERENCE +
+        // Block type, multi byte buffer, MemoryType, meta and pooled buffer references
+        5 * ClassSize.REFERENCE +
         // On-disk size, uncompressed size, and next block's on-disk size
         // bytePerChecksum and onDiskDataSize
         4 * Bytes.SIZEOF_INT +
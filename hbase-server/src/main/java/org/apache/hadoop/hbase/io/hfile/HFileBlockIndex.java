@@ -162,7 +162,8 @@ public class HFileBlockIndex {
     @Override
     public BlockWithScanInfo loadDataBlockWithScanInfo(Cell key, HFileBlock currentBlock,
         boolean cacheBlocks, boolean pread, boolean isCompaction,
-        DataBlockEncoding expectedDataBlockEncoding) throws IOException {
+        DataBlockEncoding expectedDataBlockEncoding, AccessPattern accessPattern)
+        throws IOException {
       // this would not be needed
       return null;
     }
@@ -288,7 +289,8 @@ public class HFileBlockIndex {
     @Override
     public BlockWithScanInfo loadDataBlockWithScanInfo(Cell key, HFileBlock currentBlock,
         boolean cacheBlocks, boolean pread, boolean isCompaction,
-        DataBlockEncoding expectedDataBlockEncoding) throws IOException {
+        DataBlockEncoding expectedDataBlockEncoding, AccessPattern accessPattern)
+        throws IOException {
       int rootLevelIndex = rootBlockContainingKey(key);
       if (rootLevelIndex < 0 || rootLevelIndex >= blockOffsets.length) {
         return null;
@@ -336,7 +338,7 @@ public class HFileBlockIndex {
             }
             block =
                 cachingBlockReader.readBlock(currentOffset, currentOnDiskSize, shouldCache, pread,
-                  isCompaction, true, expectedBlockType, expectedDataBlockEncoding);
+                  isCompaction, true, expectedBlockType, expectedDataBlockEncoding, accessPattern);
           }
 
           if (block == null) {
@@ -572,9 +574,20 @@ public class HFileBlockIndex {
     public HFileBlock seekToDataBlock(final Cell key, HFileBlock currentBlock, boolean cacheBlocks,
         boolean pread, boolean isCompaction, DataBlockEncoding expectedDataBlockEncoding)
         throws IOException {
+      return seekToDataBlock(key, currentBlock, cacheBlocks, pread, isCompaction,
+        expectedDataBlockEncoding, AccessPattern.POINT);
+    }
+
+    /**
+     * Same as {@link #seekToDataBlock(Cell, HFileBlock, boolean, boolean, boolean,
+     * DataBlockEncoding)}, saying how the caller goes through the file.
+     */
+    public HFileBlock seekToDataBlock(final Cell key, HFileBlock currentBlock, boolean cacheBlocks,
+        boolean pread, boolean isCompaction, DataBlockEncoding expectedDataBlockEncoding,
+        AccessPattern accessPattern) throws IOException {
       BlockWithScanInfo blockWithScanInfo = loadDataBlockWithScanInfo(key, currentBlock,
           cacheBlocks,
-          pread, isCompaction, expectedDataBlockEncoding);
+          pread, isCompaction, expectedDataBlockEncoding, accessPattern);
       if (blockWithScanInfo == null) {
         return null;
       } else {
@@ -596,9 +609,21 @@ public class HFileBlockIndex {
      *         scan info such as nextIndexedKey.
      * @throws IOException
      */
-    public abstract BlockWithScanInfo loadDataBlockWithScanInfo(Cell key, HFileBlock currentBlock,
+    public BlockWithScanInfo loadDataBlockWithScanInfo(Cell key, HFileBlock currentBlock,
         boolean cacheBlocks,
         boolean pread, boolean isCompaction, DataBlockEncoding expectedDataBlockEncoding)
+        throws IOException {
+      return loadDataBlockWithScanInfo(key, currentBlock, cacheBlocks, pread, isCompaction,
+        expectedDataBlockEncoding, AccessPattern.POINT);
+    }
+
+    /**
+     * Same as {@link #loadDataBlockWithScanInfo(Cell, HFileBlock, boolean, boolean, boolean,
+     * DataBlockEncoding)}, saying how the caller goes through the file.
+     */
+    public abstract BlockWithScanInfo loadDataBlockWithScanInfo(Cell key, HFileBlock currentBlock,
+        boolean cacheBlocks, boolean pread, boolean isCompaction,
+        DataBlockEncoding expectedDataBlockEncoding, AccessPattern accessPattern)
         throws IOException;
 
     /**
@@ -243,6 +243,8 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
       loadOnOpenBlocks.add(b);
     }
 
+    cacheConf.notifyHFileOpened(name);
+
     // Prefetch file blocks upon open if requested
     if (cacheConf.shouldPrefetchOnOpen()) {
       PrefetchExecutor.request(path, new Runnable() {
@@ -362,6 +364,10 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
 
   @Override
   public void returnBlock(HFileBlock block) {
+    if (block != null && block.releasePooledBuffer()) {
+      // Unpacked from a packed cached block, which was returned right after unpacking.
+      return;
+    }
     BlockCache blockCache = this.cacheConf.getBlockCache();
     if (blockCache != null && block != null) {
       BlockCacheKey cacheKey = new BlockCacheKey(this.getFileContext().getHFileName(),
@@ -482,6 +488,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     protected final boolean cacheBlocks;
     protected final boolean pread;
     protected final boolean isCompaction;
+    protected AccessPattern accessPattern = AccessPattern.POINT;
     private int currKeyLen;
     private int currValueLen;
     private int currMemstoreTSLen;
@@ -516,6 +523,11 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
       this.isCompaction = isCompaction;
     }
 
+    @Override
+    public void setAccessPattern(AccessPattern accessPattern) {
+      this.accessPattern = accessPattern;
+    }
+
     void updateCurrBlockRef(HFileBlock block) {
       if (block != null && this.curBlock != null &&
           block.getOffset() == this.curBlock.getOffset()) {
@@ -842,7 +854,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     public int seekTo(Cell key, boolean rewind) throws IOException {
       HFileBlockIndex.BlockIndexReader indexReader = reader.getDataBlockIndexReader();
       BlockWithScanInfo blockWithScanInfo = indexReader.loadDataBlockWithScanInfo(key, curBlock,
-          cacheBlocks, pread, isCompaction, getEffectiveDataBlockEncoding());
+          cacheBlocks, pread, isCompaction, getEffectiveDataBlockEncoding(), accessPattern);
       if (blockWithScanInfo == null || blockWithScanInfo.getHFileBlock() == null) {
         // This happens if the key e.g. falls before the beginning of the
         // file.
@@ -855,11 +867,13 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     @Override
     public boolean seekBefore(Cell key) throws IOException {
       HFileBlock seekToBlock = reader.getDataBlockIndexReader().seekToDataBlock(key, curBlock,
-          cacheBlocks, pread, isCompaction, reader.getEffectiveEncodingInCache(isCompaction));
+          cacheBlocks, pread, isCompaction, reader.getEffectiveEncodingInCache(isCompaction),
+          accessPattern);
       if (seekToBlock == null) {
         return false;
       }
       Cell firstKey = getFirstKeyCellInBlock(seekToBlock);
+      HFileBlock skippedBlock = null;
       if (reader.getComparator()
            .compareKeyIgnoresMvcc(firstKey, key) >= 0) {
         long previousBlockOffset = seekToBlock.getPrevBlockOffset();
@@ -871,8 +885,12 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
 
         // The first key in the current block 'seekToBlock' is greater than the given 
         // seekBefore key. We will go ahead by reading the next block that satisfies the
-        // given key. Return the current block before reading the next one.
-        reader.returnBlock(seekToBlock);
+        // given key. Return the current block once done with it, after the seek below:
+        // firstKey still points into it and its buffer may be pooled, in which case the next
+        // read could reuse it. A block that is our curBlock is returned along with curBlock.
+        if (seekToBlock != curBlock) {
+          skippedBlock = seekToBlock;
+        }
         // It is important that we compute and pass onDiskSize to the block
         // reader so that it does not have to read the header separately to
         // figure out the size.  Currently, we do not have a way to do this
@@ -881,11 +899,15 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
         int prevBlockSize = -1;
         seekToBlock = reader.readBlock(previousBlockOffset,
             prevBlockSize, cacheBlocks,
-            pread, isCompaction, true, BlockType.DATA, getEffectiveDataBlockEncoding());
+            pread, isCompaction, true, BlockType.DATA, getEffectiveDataBlockEncoding(),
+            accessPattern);
         // TODO shortcut: seek forward in this block to the last key of the
         // block.
       }
       loadBlockAndSeekToKey(seekToBlock, firstKey, true, key, true);
+      if (skippedBlock != null) {
+        reader.returnBlock(skippedBlock);
+      }
       return true;
     }
 
@@ -918,7 +940,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
         // it might turn out to be a non-data block.
         block = reader.readBlock(block.getOffset() + block.getOnDiskSizeWithHeader(),
             block.getNextBlockOnDiskSize(), cacheBlocks, pread,
-            isCompaction, true, null, getEffectiveDataBlockEncoding());
+            isCompaction, true, null, getEffectiveDataBlockEncoding(), accessPattern);
         if (block != null && !block.getBlockType().isData()) { // Findbugs: NP_NULL_ON_SOME_PATH
           // Whatever block we read we will be returning it unless
           // it is a datablock. Just in case the blocks are non data blocks
@@ -1122,7 +1144,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     protected void readAndUpdateNewBlock(long firstDataBlockOffset) throws IOException,
         CorruptHFileException {
       HFileBlock newBlock = reader.readBlock(firstDataBlockOffset, -1, cacheBlocks, pread,
-          isCompaction, true, BlockType.DATA, getEffectiveDataBlockEncoding());
+          isCompaction, true, BlockType.DATA, getEffectiveDataBlockEncoding(), accessPattern);
       if (newBlock.getOffset() < 0) {
         throw new IOException("Invalid block offset: " + newBlock.getOffset());
       }
@@ -1294,7 +1316,8 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
        if (cachedBlock != null) {
          if (cacheConf.shouldCacheCompressed(cachedBlock.getBlockType().getCategory())) {
            HFileBlock compressedBlock = cachedBlock;
-           cachedBlock = compressedBlock.unpack(hfileContext, fsBlockReader);
+           // Unpack into a pooled buffer; it goes back to the pool when the block is returned.
+           cachedBlock = compressedBlock.unpack(hfileContext, fsBlockReader, true);
            // In case of compressed block after unpacking we can return the compressed block
           if (compressedBlock != cachedBlock) {
             cache.returnBlock(cacheKey, compressedBlock);
@@ -1335,8 +1358,10 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
                      "; expected: " + expectedDataBlockEncoding +
                      ", actual: " + actualDataBlockEncoding);
              // This is an error scenario. so here we need to decrement the
-             // count.
-             cache.returnBlock(cacheKey, cachedBlock);
+             // count, unless the block was unpacked into a pooled buffer.
+             if (!cachedBlock.releasePooledBuffer()) {
+               cache.returnBlock(cacheKey, cachedBlock);
+             }
              cache.evictBlock(cacheKey);
            }
            return null;
@@ -1412,6 +1437,16 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
       boolean updateCacheMetrics, BlockType expectedBlockType,
       DataBlockEncoding expectedDataBlockEncoding)
       throws IOException {
+    return readBlock(dataBlockOffset, onDiskBlockSize, cacheBlock, pread, isCompaction,
+      updateCacheMetrics, expectedBlockType, expectedDataBlockEncoding, AccessPattern.POINT);
+  }
+
+  @Override
+  public HFileBlock readBlock(long dataBlockOffset, long onDiskBlockSize,
+      final boolean cacheBlock, boolean pread, final boolean isCompaction,
+      boolean updateCacheMetrics, BlockType expectedBlockType,
+      DataBlockEncoding expectedDataBlockEncoding, AccessPattern accessPattern)
+      throws IOException {
     if (dataBlockIndexReader == null) {
       throw new IOException("Block index not loaded");
     }
@@ -1483,14 +1518,19 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
         HFileBlock hfileBlock =
             fsBlockReader.readBlockData(dataBlockOffset, onDiskBlockSize, pread);
         validateBlockType(hfileBlock, expectedBlockType);
-        HFileBlock unpacked = hfileBlock.unpack(hfileContext, fsBlockReader);
         BlockType.BlockCategory category = hfileBlock.getBlockType().getCategory();
+        // A block cached packed is never the one handed out, so it can be unpacked into a
+        // pooled buffer just like on a cache hit.
+        HFileBlock unpacked = hfileBlock.unpack(hfileContext, fsBlockReader,
+          cacheConf.shouldCacheCompressed(category));
 
-        // Cache the block if necessary
+        // Cache the block if necessary. Index and bloom blocks are admitted as usual whatever the
+        // access pattern.
         if (cacheBlock && cacheConf.shouldCacheBlockOnRead(category)) {
           cacheConf.getBlockCache().cacheBlock(cacheKey,
             cacheConf.shouldCacheCompressed(category) ? hfileBlock : unpacked,
-            cacheConf.isInMemory(), this.cacheConf.isCacheDataInL1());
+            cacheConf.isInMemory(), this.cacheConf.isCacheDataInL1(),
+            category == BlockType.BlockCategory.DATA ? accessPattern : AccessPattern.POINT);
         }
 
         if (updateCacheMetrics && hfileBlock.getBlockType().isData()) {
@@ -163,6 +163,13 @@ public interface HFileScanner extends Shipper, Closeable {
    */
   Cell getNextIndexedKey();
 
+  /**
+   * Says how this scanner is going to go through the file, so the data blocks it reads are
+   * admitted to the block cache accordingly. Defaults to {@link AccessPattern#POINT}.
+   */
+  default void setAccessPattern(AccessPattern accessPattern) {
+  }
+
   /**
    * Close this HFile scanner and do necessary cleanup.
    */
@@ -19,7 +19,6 @@
 package org.apache.hadoop.hbase.io.hfile;
 
 import java.lang.ref.WeakReference;
-import java.nio.ByteBuffer;
 import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
@@ -95,7 +94,7 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
  */
 @InterfaceAudience.Private
 @JsonIgnoreProperties({"encodingCountsForTest"})
-public class LruBlockCache implements ResizableBlockCache, HeapSize {
+public class LruBlockCache implements FirstLevelBlockCache {
 
   private static final Log LOG = LogFactory.getLog(LruBlockCache.class);
 
@@ -351,6 +350,17 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
   @Override
   public void cacheBlock(BlockCacheKey cacheKey, Cacheable buf, boolean inMemory,
       final boolean cacheDataInL1) {
+    cacheBlock(cacheKey, buf, inMemory, cacheDataInL1, AccessPattern.POINT);
+  }
+
+  /**
+   * Cache the block with the specified name and buffer. A block of a probationary read is
+   * cached with an access time older than that of any other block, so it is the first single
+   * access block to be evicted, and is not handed to the victim handler, unless read again.
+   */
+  @Override
+  public void cacheBlock(BlockCacheKey cacheKey, Cacheable buf, boolean inMemory,
+      final boolean cacheDataInL1, AccessPattern accessPattern) {
 
     if (buf.heapSize() > maxBlockSize) {
       // If there are a lot of blocks that are too
@@ -369,7 +379,7 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     LruCachedBlock cb = map.get(cacheKey);
     if (cb != null) {
       // compare the contents, if they are not equal, we are in big trouble
-      if (compare(buf, cb.getBuffer()) != 0) {
+      if (BlockCacheUtil.compareCacheBlock(buf, cb.getBuffer()) != 0) {
         throw new RuntimeException("Cached block contents differ, which should not have happened."
           + "cacheKey:" + cacheKey);
       }
@@ -394,7 +404,12 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
       }
       return;
     }
-    cb = new LruCachedBlock(cacheKey, buf, count.incrementAndGet(), inMemory);
+    long accessTime = count.incrementAndGet();
+    if (accessPattern.isProbationary() && !inMemory) {
+      // Negative, yet still in admission order among probationary blocks
+      accessTime -= Long.MAX_VALUE;
+    }
+    cb = new LruCachedBlock(cacheKey, buf, accessTime, inMemory);
     long newSize = updateSizeMetrics(cb, false);
     map.put(cacheKey, cb);
     long val = elements.incrementAndGet();
@@ -426,15 +441,6 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     }
   }
 
-  private int compare(Cacheable left, Cacheable right) {
-    ByteBuffer l = ByteBuffer.allocate(left.getSerializedLength());
-    left.serialize(l);
-    ByteBuffer r = ByteBuffer.allocate(right.getSerializedLength());
-    right.serialize(r);
-    return Bytes.compareTo(l.array(), l.arrayOffset(), l.limit(),
-      r.array(), r.arrayOffset(), r.limit());
-  }
-
   /**
    * Cache the block with the specified name and buffer.
    * <p>
@@ -506,6 +512,7 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
    *
    * @return true if contains the block
    */
+  @Override
   public boolean containsBlock(BlockCacheKey cacheKey) {
     return map.containsKey(cacheKey);
   }
@@ -564,7 +571,7 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
       // When the eviction of the block happened because of invalidation of HFiles, no need to
       // update the stats counter.
       stats.evicted(block.getCachedTime(), block.getCacheKey().isPrimary());
-      if (victimHandler != null) {
+      if (victimHandler != null && !block.isOnProbation()) {
         if (victimHandler instanceof BucketCache) {
           boolean wait = getCurrentSize() < acceptableSize();
           boolean inMemory = block.getPriority() == BlockPriority.MEMORY;
@@ -1145,6 +1152,7 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     return counts;
   }
 
+  @Override
   public void setVictimCache(BlockCache handler) {
     assert victimHandler == null;
     victimHandler = handler;
@@ -1155,7 +1163,8 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     return map;
   }
 
-  BlockCache getVictimHandler() {
+  @Override
+  public BlockCache getVictimCache() {
     return this.victimHandler;
   }
 
@@ -83,6 +83,13 @@ public class LruCachedBlock implements HeapSize, Comparable<LruCachedBlock> {
     }
   }
 
+  /**
+   * @return true if the block was cached on probation and has not been read since
+   */
+  public boolean isOnProbation() {
+    return this.accessTime < 0;
+  }
+
   /**
    * @return Time we were cached at in nano seconds.
    */
@@ -0,0 +1,954 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.hadoop.util.StringUtils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+
+/**
+ * A block cache that is memory-aware using {@link org.apache.hadoop.hbase.io.HeapSize},
+ * memory-bound using the W-TinyLFU admission and eviction policy, and concurrent: backed by a
+ * {@link ConcurrentHashMap} so that {@link #getBlock} never blocks on the policy.<p>
+ *
+ * New blocks enter a small LRU <em>window</em>. Blocks that fall off the end of the window are
+ * candidates for the <em>main</em> space, which is a segmented LRU made of a
+ * <em>probation</em> and a <em>protected</em> segment. A candidate is only admitted if a
+ * {@link FrequencySketch} estimates it to have been requested more often than the block the main
+ * space would evict to make room for it; otherwise the candidate itself is discarded. Blocks hit
+ * while on probation are promoted to the protected segment, which demotes its own least recently
+ * used blocks back to probation when it is over its share. This keeps a single large scan from
+ * flushing the frequently used working set, while the window still lets bursts of new blocks be
+ * served from cache.<p>
+ *
+ * Unlike {@link LruBlockCache} there is no eviction thread and no sort of the whole map: every
+ * insert evicts inline, in amortized constant time, until the cache is back under its maximum
+ * size. Reads are recorded into a small lossy buffer that is applied to the policy by whichever
+ * thread next holds the eviction lock.<p>
+ *
+ * Blocks of in-memory column families are placed directly in the protected segment.
+ */
+@InterfaceAudience.Private
+public class TinyLfuBlockCache implements FirstLevelBlockCache {
+
+  private static final Log LOG = LogFactory.getLog(TinyLfuBlockCache.class);
+
+  /** Percentage of the cache given to the admission window. */
+  static final String WINDOW_PERCENTAGE_CONFIG_NAME = "hbase.tinylfu.blockcache.window.percentage";
+
+  /** Percentage of the main space (everything but the window) given to the protected segment. */
+  static final String PROTECTED_PERCENTAGE_CONFIG_NAME =
+      "hbase.tinylfu.blockcache.protected.percentage";
+
+  private static final String MAX_BLOCK_SIZE = "hbase.tinylfu.max.block.size";
+
+  static final float DEFAULT_WINDOW_FACTOR = 0.01f;
+  static final float DEFAULT_PROTECTED_FACTOR = 0.80f;
+  private static final long DEFAULT_MAX_BLOCK_SIZE = 16L * 1024L * 1024L;
+
+  /** Number of reads that may be pending before further reads stop reordering the policy */
+  private static final int READ_BUFFER_SIZE = 128;
+
+  /** Queue a node belongs to */
+  private static final byte NONE = 0;
+  private static final byte WINDOW = 1;
+  private static final byte PROBATION = 2;
+  private static final byte PROTECTED = 3;
+
+  /** Concurrent map (the cache) */
+  private final Map<BlockCacheKey, Node> map;
+
+  /** Guards the policy: the three queues, the segment sizes and the sketch */
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  /** Reads not yet applied to the policy; offers are dropped when it is full */
+  private final ArrayBlockingQueue<Node> readBuffer = new ArrayBlockingQueue<>(READ_BUFFER_SIZE);
+
+  private final AccessOrderDeque window = new AccessOrderDeque();
+  private final AccessOrderDeque probation = new AccessOrderDeque();
+  private final AccessOrderDeque protectedQueue = new AccessOrderDeque();
+
+  private final FrequencySketch sketch = new FrequencySketch();
+
+  /** Current size of cache, including the fixed overhead */
+  private final AtomicLong size;
+
+  /** Current number of cached elements */
+  private final AtomicLong elements = new AtomicLong(0);
+
+  /** Cache statistics */
+  private final CacheStats stats;
+
+  private final long maxBlockSize;
+  private final long blockSize;
+  private final float windowFactor;
+  private final float protectedFactor;
+  private final long overhead;
+
+  /** Maximum allowable size of cache; guarded by evictionLock for writes */
+  private volatile long maxSize;
+
+  /** Maximum size of the window and protected segments; guarded by evictionLock */
+  private long windowMaxSize;
+  private long protectedMaxSize;
+
+  /** Current size of the window and protected segments; guarded by evictionLock */
+  private long windowSize;
+  private long protectedSize;
+
+  /** Where to send victims (blocks evicted/missing from the cache) */
+  private BlockCache victimHandler = null;
+
+  /**
+   * Default constructor. Specify maximum size and expected average block size (approximation is
+   * fine).
+   *
+   * @param maxSize   maximum size of cache, in bytes
+   * @param blockSize approximate size of each block, in bytes
+   */
+  public TinyLfuBlockCache(long maxSize, long blockSize) {
+    this(maxSize, blockSize, DEFAULT_WINDOW_FACTOR, DEFAULT_PROTECTED_FACTOR,
+        DEFAULT_MAX_BLOCK_SIZE);
+  }
+
+  public TinyLfuBlockCache(long maxSize, long blockSize, Configuration conf) {
+    this(maxSize, blockSize,
+        conf.getFloat(WINDOW_PERCENTAGE_CONFIG_NAME, DEFAULT_WINDOW_FACTOR),
+        conf.getFloat(PROTECTED_PERCENTAGE_CONFIG_NAME, DEFAULT_PROTECTED_FACTOR),
+        conf.getLong(MAX_BLOCK_SIZE, DEFAULT_MAX_BLOCK_SIZE));
+  }
+
+  /**
+   * Configurable constructor.
+   *
+   * @param maxSize         maximum size of this cache, in bytes
+   * @param blockSize       expected average size of blocks, in bytes
+   * @param windowFactor    percentage of total size for the admission window
+   * @param protectedFactor percentage of the main space for the protected segment
+   * @param maxBlockSize    largest block, in bytes, that will be cached
+   */
+  public TinyLfuBlockCache(long maxSize, long blockSize, float windowFactor,
+      float protectedFactor, long maxBlockSize) {
+    if (windowFactor < 0 || windowFactor >= 1.0f || protectedFactor < 0
+        || protectedFactor >= 1.0f) {
+      throw new IllegalArgumentException("window and protected factors must be in [0, 1)");
+    }
+    this.blockSize = blockSize;
+    this.windowFactor = windowFactor;
+    this.protectedFactor = protectedFactor;
+    this.maxBlockSize = maxBlockSize;
+    int mapInitialSize = (int) Math.ceil(1.2 * maxSize / blockSize);
+    this.map = new ConcurrentHashMap<>(mapInitialSize, LruBlockCache.DEFAULT_LOAD_FACTOR,
+        LruBlockCache.DEFAULT_CONCURRENCY_LEVEL);
+    this.stats = new CacheStats(this.getClass().getSimpleName());
+    this.overhead = calculateOverhead(maxSize, blockSize);
+    this.size = new AtomicLong(this.overhead);
+    evictionLock.lock();
+    try {
+      resize(maxSize);
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public void setMaxSize(long maxSize) {
+    evictionLock.lock();
+    try {
+      resize(maxSize);
+      evictEntries();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  private void resize(long maxSize) {
+    assert evictionLock.isHeldByCurrentThread();
+    this.maxSize = maxSize;
+    this.windowMaxSize = (long) Math.floor(maxSize * windowFactor);
+    this.protectedMaxSize = (long) Math.floor((maxSize - windowMaxSize) * protectedFactor);
+    sketch.ensureCapacity(maxSize / Math.max(1, blockSize));
+  }
+
+  // BlockCache implementation
+
+  /**
+   * Cache the block with the specified name and buffer. Evicts inline, before returning, until
+   * the cache is no larger than its maximum size; this may evict the new block itself if the
+   * admission policy prefers the blocks already cached.
+   *
+   * @param cacheKey block's cache key
+   * @param buf      block buffer
+   * @param inMemory if block is in-memory
+   */
+  @Override
+  public void cacheBlock(BlockCacheKey cacheKey, Cacheable buf, boolean inMemory,
+      final boolean cacheDataInL1) {
+    if (buf.heapSize() > maxBlockSize) {
+      // If there are a lot of blocks that are too
+      // big this can make the logs way too noisy.
+      // So we log 2%
+      if (stats.failInsert() % 50 == 0) {
+        LOG.warn("Trying to cache too large a block "
+            + cacheKey.getHfileName() + " @ "
+            + cacheKey.getOffset()
+            + " is " + buf.heapSize()
+            + " which is larger than " + maxBlockSize);
+      }
+      return;
+    }
+    Node node = map.get(cacheKey);
+    if (node != null) {
+      warnAlreadyCached(cacheKey, buf, node);
+      return;
+    }
+    node = new Node(cacheKey, buf, inMemory);
+    evictionLock.lock();
+    try {
+      drainReadBuffer();
+      Node existing = map.putIfAbsent(cacheKey, node);
+      if (existing != null) {
+        warnAlreadyCached(cacheKey, buf, existing);
+        return;
+      }
+      size.addAndGet(node.heapSize());
+      elements.incrementAndGet();
+      sketch.increment(cacheKey.hashCode());
+      if (inMemory) {
+        protectedQueue.addLast(node, PROTECTED);
+        protectedSize += node.heapSize();
+      } else {
+        window.addLast(node, WINDOW);
+        windowSize += node.heapSize();
+      }
+      evictEntries();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Cache the block with the specified name and buffer.
+   *
+   * @param cacheKey block's cache key
+   * @param buf      block buffer
+   */
+  @Override
+  public void cacheBlock(BlockCacheKey cacheKey, Cacheable buf) {
+    cacheBlock(cacheKey, buf, false, false);
+  }
+
+  private static void warnAlreadyCached(BlockCacheKey cacheKey, Cacheable buf, Node node) {
+    // compare the contents, if they are not equal, we are in big trouble
+    if (BlockCacheUtil.compareCacheBlock(buf, node.getBuffer()) != 0) {
+      throw new RuntimeException("Cached block contents differ, which should not have happened."
+        + "cacheKey:" + cacheKey);
+    }
+    LOG.warn("Cached an already cached block: " + cacheKey + " cb:" + node.getCacheKey()
+        + ". This is harmless and can happen in rare cases (see HBASE-8547)");
+  }
+
+  /**
+   * Get the buffer of the block with the specified name.
+   *
+   * @param cacheKey           block's cache key
+   * @param caching            true if the caller caches blocks on cache misses
+   * @param repeat             Whether this is a repeat lookup for the same block
+   *                           (used to avoid double counting cache misses when doing double-check
+   *                           locking)
+   * @param updateCacheMetrics Whether to update cache metrics or not
+   *
+   * @return buffer of specified cache key, or null if not in cache
+   */
+  @Override
+  public Cacheable getBlock(BlockCacheKey cacheKey, boolean caching, boolean repeat,
+      boolean updateCacheMetrics) {
+    Node node = map.get(cacheKey);
+    if (node == null) {
+      if (!repeat && updateCacheMetrics) {
+        stats.miss(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+      }
+      // If there is another block cache then try and read there.
+      // However if this is a retry ( second time in double checked locking )
+      // And it's already a miss then the l2 will also be a miss.
+      if (victimHandler != null && !repeat) {
+        Cacheable result = victimHandler.getBlock(cacheKey, caching, repeat, updateCacheMetrics);
+
+        // Promote this to L1.
+        if (result != null && caching) {
+          if (result instanceof HFileBlock && ((HFileBlock) result).usesSharedMemory()) {
+            result = ((HFileBlock) result).deepClone();
+          }
+          cacheBlock(cacheKey, result, /* inMemory = */ false, /* cacheData = */ true);
+        }
+        return result;
+      }
+      return null;
+    }
+    if (updateCacheMetrics) stats.hit(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+    afterRead(node);
+    return node.getBuffer();
+  }
+
+  /**
+   * Records a read against the policy. The read is applied right away if the eviction lock is
+   * free, and otherwise left in the read buffer for the lock holder to apply. When the buffer is
+   * full the read is dropped; this only costs a little recency and frequency information.
+   */
+  private void afterRead(Node node) {
+    if (evictionLock.tryLock()) {
+      try {
+        drainReadBuffer();
+        onAccess(node);
+      } finally {
+        evictionLock.unlock();
+      }
+    } else {
+      readBuffer.offer(node);
+    }
+  }
+
+  private void drainReadBuffer() {
+    Node node;
+    while ((node = readBuffer.poll()) != null) {
+      onAccess(node);
+    }
+  }
+
+  private void onAccess(Node node) {
+    assert evictionLock.isHeldByCurrentThread();
+    switch (node.queue) {
+      case WINDOW:
+        sketch.increment(node.getCacheKey().hashCode());
+        window.moveToBack(node);
+        break;
+      case PROBATION:
+        sketch.increment(node.getCacheKey().hashCode());
+        probation.remove(node);
+        protectedQueue.addLast(node, PROTECTED);
+        protectedSize += node.heapSize();
+        demoteFromProtected();
+        break;
+      case PROTECTED:
+        sketch.increment(node.getCacheKey().hashCode());
+        protectedQueue.moveToBack(node);
+        break;
+      default:
+        // Evicted since the read was buffered
+        break;
+    }
+  }
+
+  /**
+   * Moves the least recently used protected blocks to probation while the protected segment is
+   * over its share.
+   */
+  private void demoteFromProtected() {
+    while (protectedSize > protectedMaxSize) {
+      Node demoted = protectedQueue.first;
+      if (demoted == null) {
+        break;
+      }
+      protectedQueue.remove(demoted);
+      protectedSize -= demoted.heapSize();
+      probation.addLast(demoted, PROBATION);
+    }
+  }
+
+  /**
+   * Moves the blocks that overflow the window to the back of probation, then evicts until the
+   * cache is within its maximum size. Each of these blocks is a candidate which competes with a
+   * victim: the blocks that were in probation before, from the front, then the least recently
+   * used protected blocks, and once those are gone the earlier candidates. Of each pair, the one
+   * the sketch estimates to be less frequently used is evicted.
+   */
+  private void evictEntries() {
+    assert evictionLock.isHeldByCurrentThread();
+    Node candidate = null;
+    while (windowSize > windowMaxSize) {
+      Node node = window.first;
+      if (node == null) {
+        break;
+      }
+      window.remove(node);
+      windowSize -= node.heapSize();
+      probation.addLast(node, PROBATION);
+      if (candidate == null) {
+        candidate = node;
+      }
+    }
+    demoteFromProtected();
+
+    Node victim = probation.first;
+    int evicted = 0;
+    while (size.get() > maxSize) {
+      if (candidate != null && (victim == candidate || victim == null)) {
+        // Only candidates are left in probation
+        victim = protectedQueue.first;
+        if (victim == null) {
+          victim = candidate;
+          candidate = candidate.next;
+        }
+      }
+      Node evict;
+      if (victim == null) {
+        // Only happens if the main space is all protected or the window holds everything
+        evict = protectedQueue.first != null ? protectedQueue.first : window.first;
+        if (evict == null) {
+          break;
+        }
+      } else if (candidate == null || admit(candidate, victim)) {
+        evict = victim;
+        victim = victim.next;
+      } else {
+        evict = candidate;
+        candidate = candidate.next;
+      }
+      evictNode(evict, true);
+      evicted++;
+    }
+    if (evicted > 0) {
+      stats.evict();
+    }
+  }
+
+  /**
+   * Determines whether the candidate should be admitted in place of the victim. A warm candidate
+   * that loses is still let in now and again so that a flood of requests for the victim's hash
+   * cannot pin it in the cache.
+   */
+  private boolean admit(Node candidate, Node victim) {
+    int victimFreq = sketch.frequency(victim.getCacheKey().hashCode());
+    int candidateFreq = sketch.frequency(candidate.getCacheKey().hashCode());
+    if (candidateFreq > victimFreq) {
+      return true;
+    } else if (candidateFreq <= 5) {
+      return false;
+    }
+    return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+  }
+
+  /**
+   * Removes the node from the map and its queue. Must be called with the eviction lock held.
+   *
+   * @param evictedByPolicy true if the block is evicted to free space, in which case it is
+   *          counted in the stats and handed to the victim handler
+   */
+  private void evictNode(Node node, boolean evictedByPolicy) {
+    if (!map.remove(node.getCacheKey(), node)) {
+      return;
+    }
+    switch (node.queue) {
+      case WINDOW:
+        window.remove(node);
+        windowSize -= node.heapSize();
+        break;
+      case PROBATION:
+        probation.remove(node);
+        break;
+      case PROTECTED:
+        protectedQueue.remove(node);
+        protectedSize -= node.heapSize();
+        break;
+      default:
+        break;
+    }
+    size.addAndGet(-node.heapSize());
+    elements.decrementAndGet();
+    if (evictedByPolicy) {
+      // When the eviction of the block happened because of invalidation of HFiles, no need to
+      // update the stats counter.
+      stats.evicted(node.getCachedTime(), node.getCacheKey().isPrimary());
+      if (victimHandler != null) {
+        // We hold the eviction lock here, so never wait on the victim handler.
+        boolean inMemory = node.getPriority() == BlockPriority.MEMORY;
+        if (victimHandler instanceof BucketCache) {
+          ((BucketCache) victimHandler).cacheBlockWithWait(node.getCacheKey(), node.getBuffer(),
+              inMemory, false);
+        } else {
+          victimHandler.cacheBlock(node.getCacheKey(), node.getBuffer(), inMemory, false);
+        }
+      }
+    }
+  }
+
+  /**
+   * Whether the cache contains block with specified cacheKey
+   *
+   * @return true if contains the block
+   */
+  @Override
+  public boolean containsBlock(BlockCacheKey cacheKey) {
+    return map.containsKey(cacheKey);
+  }
+
+  @Override
+  public boolean evictBlock(BlockCacheKey cacheKey) {
+    if (!map.containsKey(cacheKey)) {
+      return false;
+    }
+    evictionLock.lock();
+    try {
+      Node node = map.get(cacheKey);
+      if (node == null) {
+        return false;
+      }
+      evictNode(node, false);
+      return true;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Evicts all blocks for a specific HFile. This is an expensive operation implemented as a
+   * linear-time search through all blocks in the cache.
+   *
+   * @return the number of blocks evicted
+   */
+  @Override
+  public int evictBlocksByHfileName(String hfileName) {
+    int numEvicted = 0;
+    for (BlockCacheKey key : map.keySet()) {
+      if (key.getHfileName().equals(hfileName)) {
+        if (evictBlock(key)) {
+          ++numEvicted;
+        }
+      }
+    }
+    if (victimHandler != null) {
+      numEvicted += victimHandler.evictBlocksByHfileName(hfileName);
+    }
+    return numEvicted;
+  }
+
+  @Override
+  public CacheStats getStats() {
+    return this.stats;
+  }
+
+  @Override
+  public void shutdown() {
+    if (victimHandler != null) {
+      victimHandler.shutdown();
+    }
+  }
+
+  /**
+   * Get the maximum size of this cache.
+   *
+   * @return max size in bytes
+   */
+  public long getMaxSize() {
+    return this.maxSize;
+  }
+
+  @Override
+  public long size() {
+    return getMaxSize();
+  }
+
+  @Override
+  public long getFreeSize() {
+    return getMaxSize() - getCurrentSize();
+  }
+
+  @Override
+  public long getCurrentSize() {
+    return this.size.get();
+  }
+
+  @Override
+  public long getBlockCount() {
+    return this.elements.get();
+  }
+
+  @Override
+  public long heapSize() {
+    return getCurrentSize();
+  }
+
+  @Override
+  public void setVictimCache(BlockCache handler) {
+    assert victimHandler == null;
+    victimHandler = handler;
+  }
+
+  @Override
+  public BlockCache getVictimCache() {
+    return this.victimHandler;
+  }
+
+  @Override
+  public BlockCache[] getBlockCaches() {
+    return null;
+  }
+
+  @Override
+  public void returnBlock(BlockCacheKey cacheKey, Cacheable block) {
+    // As with LruBlockCache, only a block served from the victim handler may need returning.
+    if (this.victimHandler != null) {
+      this.victimHandler.returnBlock(cacheKey, block);
+    }
+  }
+
+  @VisibleForTesting
+  long getOverhead() {
+    return overhead;
+  }
+
+  /** @return the number of blocks in the protected segment, for tests */
+  @VisibleForTesting
+  int getProtectedCountForTest() {
+    evictionLock.lock();
+    try {
+      drainReadBuffer();
+      int count = 0;
+      for (Node node = protectedQueue.first; node != null; node = node.next) {
+        count++;
+      }
+      return count;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("blockCount", getBlockCount())
+      .add("currentSize", getCurrentSize())
+      .add("freeSize", getFreeSize())
+      .add("maxSize", getMaxSize())
+      .add("heapSize", heapSize())
+      .add("windowFactor", windowFactor)
+      .add("protectedFactor", protectedFactor)
+      .toString();
+  }
+
+  public void logStats() {
+    LOG.info("totalSize=" + StringUtils.byteDesc(heapSize()) + ", " +
+        "freeSize=" + StringUtils.byteDesc(getFreeSize()) + ", " +
+        "max=" + StringUtils.byteDesc(this.maxSize) + ", " +
+        "blockCount=" + getBlockCount() + ", " +
+        "accesses=" + stats.getRequestCount() + ", " +
+        "hits=" + stats.getHitCount() + ", " +
+        "hitRatio=" + (stats.getHitCount() == 0 ?
+          "0" : StringUtils.formatPercent(stats.getHitRatio(), 2)) + ", " +
+        "evictions=" + stats.getEvictionCount() + ", " +
+        "evicted=" + stats.getEvictedCount());
+  }
+
+  public final static long CACHE_FIXED_OVERHEAD = ClassSize.align(
+      (7 * Bytes.SIZEOF_LONG) + (12 * ClassSize.REFERENCE) +
+      (2 * Bytes.SIZEOF_FLOAT) + ClassSize.OBJECT);
+
+  private static long calculateOverhead(long maxSize, long blockSize) {
+    // FindBugs ICAST_INTEGER_MULTIPLY_CAST_TO_LONG
+    return CACHE_FIXED_OVERHEAD + ClassSize.CONCURRENT_HASHMAP
+           + ((long) Math.ceil(maxSize * 1.2 / blockSize) * ClassSize.CONCURRENT_HASHMAP_ENTRY)
+           + ((long) LruBlockCache.DEFAULT_CONCURRENCY_LEVEL
+               * ClassSize.CONCURRENT_HASHMAP_SEGMENT);
+  }
+
+  @Override
+  public Iterator<CachedBlock> iterator() {
+    final Iterator<Node> iterator = map.values().iterator();
+
+    return new Iterator<CachedBlock>() {
+      private final long now = System.nanoTime();
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public CachedBlock next() {
+        return new CachedBlockView(iterator.next(), now);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private static final class CachedBlockView implements CachedBlock {
+    private final Node node;
+    private final long now;
+
+    CachedBlockView(Node node, long now) {
+      this.node = node;
+      this.now = now;
+    }
+
+    @Override
+    public String toString() {
+      return BlockCacheUtil.toString(this, now);
+    }
+
+    @Override
+    public BlockPriority getBlockPriority() {
+      return node.getPriority();
+    }
+
+    @Override
+    public BlockType getBlockType() {
+      return node.getBuffer().getBlockType();
+    }
+
+    @Override
+    public long getOffset() {
+      return node.getCacheKey().getOffset();
+    }
+
+    @Override
+    public long getSize() {
+      return node.getBuffer().heapSize();
+    }
+
+    @Override
+    public long getCachedTime() {
+      return node.getCachedTime();
+    }
+
+    @Override
+    public String getFilename() {
+      return node.getCacheKey().getHfileName();
+    }
+
+    @Override
+    public int compareTo(CachedBlock other) {
+      int diff = this.getFilename().compareTo(other.getFilename());
+      if (diff != 0) return diff;
+      diff = Long.compare(this.getOffset(), other.getOffset());
+      if (diff != 0) return diff;
+      if (other.getCachedTime() < 0 || this.getCachedTime() < 0) {
+        throw new IllegalStateException(this.getCachedTime() + ", " + other.getCachedTime());
+      }
+      return Long.compare(other.getCachedTime(), this.getCachedTime());
+    }
+
+    @Override
+    public int hashCode() {
+      return node.getCacheKey().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof CachedBlock) {
+        CachedBlock cb = (CachedBlock)obj;
+        return compareTo(cb) == 0;
+      } else {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * A cached block linked into one of the policy's queues. The links and queue are guarded by the
+   * eviction lock.
+   */
+  private static final class Node extends LruCachedBlock {
+    Node prev;
+    Node next;
+    volatile byte queue = NONE;
+
+    Node(BlockCacheKey cacheKey, Cacheable buf, boolean inMemory) {
+      super(cacheKey, buf, 0, inMemory);
+    }
+
+    @Override
+    public BlockPriority getPriority() {
+      BlockPriority priority = super.getPriority();
+      if (priority == BlockPriority.MEMORY) {
+        return priority;
+      }
+      return queue == PROTECTED ? BlockPriority.MULTI : BlockPriority.SINGLE;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return this == obj;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this);
+    }
+  }
+
+  /**
+   * An intrusive doubly-linked list of nodes ordered from least to most recently used.
+   */
+  private static final class AccessOrderDeque {
+    Node first;
+    Node last;
+
+    void addLast(Node node, byte queue) {
+      node.queue = queue;
+      node.prev = last;
+      node.next = null;
+      if (last == null) {
+        first = node;
+      } else {
+        last.next = node;
+      }
+      last = node;
+    }
+
+    void remove(Node node) {
+      if (node.prev == null) {
+        first = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        last = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+      node.queue = NONE;
+    }
+
+    void moveToBack(Node node) {
+      if (node != last) {
+        byte queue = node.queue;
+        remove(node);
+        addLast(node, queue);
+      }
+    }
+  }
+
+  /**
+   * A probabilistic multiset estimating how often each block has been requested recently: a
+   * count-min sketch of four-bit counters, four counters per 64-bit slot. When the number of
+   * increments reaches ten times the table width all counters are halved, so that the history
+   * favours recent popularity. Not thread safe; the cache only uses it under the eviction lock.
+   */
+  @VisibleForTesting
+  static final class FrequencySketch {
+    private static final long[] SEED = { // A mixture of seeds from FNV-1a, CityHash, and Murmur3
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private long[] table = new long[0];
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    /**
+     * Grows the sketch to count roughly the given number of distinct blocks. Growing clears the
+     * history; the sketch is never shrunk.
+     */
+    void ensureCapacity(long maximumSize) {
+      int maximum = (int) Math.min(Math.max(maximumSize, 16), 1 << 30);
+      if (table.length >= maximum) {
+        return;
+      }
+      table = new long[ceilingPowerOfTwo(maximum)];
+      tableMask = table.length - 1;
+      sampleSize = 10 * table.length;
+      size = 0;
+    }
+
+    /** @return the estimated number of recent occurrences of the hash, at most 15 */
+    int frequency(int hashCode) {
+      int hash = spread(hashCode);
+      int start = (hash & 3) << 2;
+      int frequency = Integer.MAX_VALUE;
+      for (int i = 0; i < 4; i++) {
+        int index = indexOf(hash, i);
+        int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+        frequency = Math.min(frequency, count);
+      }
+      return frequency;
+    }
+
+    /** Increments the popularity of the hash unless it is already at the maximum count. */
+    void increment(int hashCode) {
+      int hash = spread(hashCode);
+      int start = (hash & 3) << 2;
+      boolean added = false;
+      for (int i = 0; i < 4; i++) {
+        added |= incrementAt(indexOf(hash, i), start + i);
+      }
+      if (added && (++size == sampleSize)) {
+        reset();
+      }
+    }
+
+    private boolean incrementAt(int i, int j) {
+      int offset = j << 2;
+      long mask = (0xfL << offset);
+      if ((table[i] & mask) != mask) {
+        table[i] += (1L << offset);
+        return true;
+      }
+      return false;
+    }
+
+    /** Halves every counter, adjusting for the truncation of odd counts. */
+    private void reset() {
+      int count = 0;
+      for (int i = 0; i < table.length; i++) {
+        count += Long.bitCount(table[i] & ONE_MASK);
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      size = (size >>> 1) - (count >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+      long hash = (item + SEED[i]) * SEED[i];
+      hash += (hash >>> 32);
+      return ((int) hash) & tableMask;
+    }
+
+    private static int spread(int x) {
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      return (x >>> 16) ^ x;
+    }
+
+    private static int ceilingPowerOfTwo(int x) {
+      return 1 << -Integer.numberOfLeadingZeros(x - 1);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A per-thread pool of the heap buffers that data blocks kept packed in the block cache are
+ * unpacked into when read. Such a block is unpacked again on every cache hit; without the pool
+ * each hit allocates a fresh buffer of the full uncompressed block size.
+ * <p>
+ * A pooled buffer is owned by the {@link HFileBlock} that was unpacked into it until the block
+ * is returned through {@link HFile.Reader#returnBlock(HFileBlock)}, which scanners do once
+ * they are shipped or closed. The buffer then goes back to the pool of the returning thread.
+ * Buffers of blocks that are never returned are simply garbage collected.
+ * <p>
+ * Each thread only ever touches its own pool so no synchronization is needed. The pool keeps
+ * at most {@link #MAX_BUFFERS} buffers and {@link #MAX_BYTES} bytes per thread; anything
+ * beyond is dropped.
+ */
+@InterfaceAudience.Private
+final class UnpackedBufferPool {
+  static final int MAX_BUFFERS = 8;
+  static final long MAX_BYTES = 2 * 1024 * 1024;
+
+  private static final ThreadLocal<UnpackedBufferPool> POOLS =
+      new ThreadLocal<UnpackedBufferPool>() {
+        @Override
+        protected UnpackedBufferPool initialValue() {
+          return new UnpackedBufferPool();
+        }
+      };
+
+  private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<ByteBuffer>(MAX_BUFFERS);
+  private long pooledBytes = 0;
+
+  private UnpackedBufferPool() {
+  }
+
+  /**
+   * @return a heap buffer with a capacity of at least {@code capacity}, taken from the pool of
+   *         the calling thread if it has one large enough. Position is 0 and limit is capacity.
+   */
+  static ByteBuffer acquire(int capacity) {
+    return POOLS.get().take(capacity);
+  }
+
+  /**
+   * Give a buffer obtained from {@link #acquire(int)} back to the pool of the calling thread.
+   * The caller must not touch the buffer afterwards.
+   */
+  static void release(ByteBuffer buf) {
+    POOLS.get().put(buf);
+  }
+
+  @VisibleForTesting
+  static int getPooledBufferCount() {
+    return POOLS.get().buffers.size();
+  }
+
+  private ByteBuffer take(int capacity) {
+    for (Iterator<ByteBuffer> it = buffers.iterator(); it.hasNext();) {
+      ByteBuffer buf = it.next();
+      if (buf.capacity() >= capacity) {
+        it.remove();
+        pooledBytes -= buf.capacity();
+        buf.clear();
+        return buf;
+      }
+    }
+    return ByteBuffer.allocate(capacity);
+  }
+
+  private void put(ByteBuffer buf) {
+    if (buffers.size() >= MAX_BUFFERS || pooledBytes + buf.capacity() > MAX_BYTES) {
+      return;
+    }
+    // Most recently used first; it is the most likely to still be in the CPU cache.
+    buffers.addFirst(buf);
+    pooledBytes += buf.capacity();
+  }
+}
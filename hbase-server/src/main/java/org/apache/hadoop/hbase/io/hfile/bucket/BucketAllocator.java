@@ -25,9 +25,10 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.collections.map.LinkedMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hbase.classification.InterfaceAudience;
@@ -46,72 +47,153 @@ import com.google.common.primitives.Ints;
  * a size and caches elements up to this size. For a completely empty bucket, this
  * size could be re-specified dynamically.
  * 
- * This class is not thread safe.
+ * This class is thread safe. Each bucket keeps its free items on a stack that is pushed and
+ * popped with compare-and-set, so allocating and freeing blocks take no lock. Each size queues
+ * the buckets which have free items, and the allocator queues the buckets which are completely
+ * free, so that neither allocating nor running out of space scans the buckets. Only moving a
+ * completely free bucket from one size to another, which happens when a size has run out of
+ * space, is serialized on the allocator.
+ * <p>
+ * The queues only hold hints: a queued bucket may have filled up or moved to another size since,
+ * and is dropped when found so. A bucket is queued again by the free that gives it a free item,
+ * or makes it completely free, if it is not queued already.
  */
 @InterfaceAudience.Private
 @JsonIgnoreProperties({"indexStatistics", "freeSize", "usedSize"})
 public final class BucketAllocator {
   private static final Log LOG = LogFactory.getLog(BucketAllocator.class);
 
+  /*
+   * Layout of a bucket's free stack head: the top item plus one (0 when the stack is empty) in
+   * the low bits, then the number of free items, then a stamp that changes on every update so
+   * that a pop racing with a pop and push of the same item cannot succeed (the ABA problem).
+   */
+  private static final int ITEM_BITS = 21;
+  private static final long ITEM_MASK = (1L << ITEM_BITS) - 1;
+  private static final int STAMP_SHIFT = 2 * ITEM_BITS;
+
+  /** Most items a bucket can hold, so that the head fields do not overflow */
+  static final int MAX_ITEMS_PER_BUCKET = (int) ITEM_MASK - 1;
+
+  /**
+   * Item field of the head of a bucket which is being moved to another size, or was never
+   * instantiated. The stamp keeps counting while closed.
+   */
+  private static final long CLOSED = ITEM_MASK;
+
+  /**
+   * The size a bucket is configured for, with the free stack of its items. Replaced as a whole
+   * while the bucket is closed; every operation reads it once, so that it never mixes the fields
+   * of two configurations.
+   */
+  private static final class Layout {
+    static final Layout UNINSTANTIATED = new Layout(-1, 0, 0);
+
+    final int sizeIndex;
+    final int itemAllocationSize;
+    final int itemCount;
+    // nextFree[i] is the item below i on the free stack, or -1. Only the thread that holds
+    // item i, having allocated it or being about to free it, writes nextFree[i].
+    final int[] nextFree;
+    // Set while the bucket is on the free bucket queue of this size
+    final AtomicBoolean queued = new AtomicBoolean();
+    // Set while the bucket is on the completely free bucket queue with this configuration
+    final AtomicBoolean completelyFreeQueued = new AtomicBoolean();
+
+    Layout(int sizeIndex, int itemAllocationSize, int itemCount) {
+      this.sizeIndex = sizeIndex;
+      this.itemAllocationSize = itemAllocationSize;
+      this.itemCount = itemCount;
+      this.nextFree = new int[itemCount];
+      // Items are handed out from the highest index down
+      for (int i = 0; i < itemCount; ++i) {
+        nextFree[i] = i - 1;
+      }
+    }
+  }
+
   @JsonIgnoreProperties({"completelyFree", "uninstantiated"})
   public final static class Bucket {
-    private long baseOffset;
-    private int itemAllocationSize, sizeIndex;
-    private int itemCount;
-    private int freeList[];
-    private int freeCount, usedCount;
+    private final long baseOffset;
+    // Written before the freeHead that opens the bucket for it
+    private volatile Layout layout = Layout.UNINSTANTIATED;
+    private final AtomicLong freeHead = new AtomicLong(CLOSED);
 
     public Bucket(long offset) {
       baseOffset = offset;
-      sizeIndex = -1;
     }
 
     void reconfigure(int sizeIndex, int[] bucketSizes, long bucketCapacity) {
       Preconditions.checkElementIndex(sizeIndex, bucketSizes.length);
-      this.sizeIndex = sizeIndex;
-      itemAllocationSize = bucketSizes[sizeIndex];
-      itemCount = (int) (bucketCapacity / (long) itemAllocationSize);
-      freeCount = itemCount;
-      usedCount = 0;
-      freeList = new int[itemCount];
-      for (int i = 0; i < freeCount; ++i)
-        freeList[i] = i;
+      long closed = freeHead.get();
+      assert isClosed(closed);
+      int itemAllocationSize = bucketSizes[sizeIndex];
+      int itemCount = (int) (bucketCapacity / (long) itemAllocationSize);
+      layout = new Layout(sizeIndex, itemAllocationSize, itemCount);
+      freeHead.set(head(itemCount - 1, itemCount, nextStamp(closed)));
+    }
+
+    private static long head(int top, int free, long stamp) {
+      return (stamp << STAMP_SHIFT) | (((long) free) << ITEM_BITS) | (top + 1);
+    }
+
+    private static boolean isClosed(long head) {
+      return (head & ITEM_MASK) == CLOSED;
+    }
+
+    private static int topOf(long head) {
+      return (int) (head & ITEM_MASK) - 1;
+    }
+
+    private static int freeOf(long head) {
+      return (int) ((head >>> ITEM_BITS) & ITEM_MASK);
+    }
+
+    private static long nextStamp(long head) {
+      return (head >>> STAMP_SHIFT) + 1;
     }
 
     public boolean isUninstantiated() {
-      return sizeIndex == -1;
+      return layout == Layout.UNINSTANTIATED;
     }
 
     public int sizeIndex() {
-      return sizeIndex;
+      return layout.sizeIndex;
     }
 
     public int getItemAllocationSize() {
-      return itemAllocationSize;
+      return layout.itemAllocationSize;
     }
 
     public boolean hasFreeSpace() {
-      return freeCount > 0;
+      return freeCount() > 0;
     }
 
     public boolean isCompletelyFree() {
-      return usedCount == 0;
+      return usedCount() == 0;
     }
 
     public int freeCount() {
-      return freeCount;
+      return freeCount(freeHead.get(), layout);
+    }
+
+    private static int freeCount(long head, Layout layout) {
+      return isClosed(head) ? layout.itemCount : freeOf(head);
     }
 
     public int usedCount() {
-      return usedCount;
+      Layout layout = this.layout;
+      return layout.itemCount - freeCount(freeHead.get(), layout);
     }
 
     public int getFreeBytes() {
-      return freeCount * itemAllocationSize;
+      Layout layout = this.layout;
+      return freeCount(freeHead.get(), layout) * layout.itemAllocationSize;
     }
 
     public int getUsedBytes() {
-      return usedCount * itemAllocationSize;
+      Layout layout = this.layout;
+      return (layout.itemCount - freeCount(freeHead.get(), layout)) * layout.itemAllocationSize;
     }
 
     public long getBaseOffset() {
@@ -121,76 +203,143 @@ public final class BucketAllocator {
     /**
      * Allocate a block in this bucket, return the offset representing the
      * position in physical space
-     * @return the offset in the IOEngine
+     * @param expectedSizeIndex the size the caller is allocating for
+     * @return the offset in the IOEngine, or -1 if the bucket has no free item or is no longer
+     *         configured for the expected size
      */
-    public long allocate() {
-      assert freeCount > 0; // Else should not have been called
-      assert sizeIndex != -1;
-      ++usedCount;
-      long offset = baseOffset + (freeList[--freeCount] * itemAllocationSize);
-      assert offset >= 0;
-      return offset;
+    public long allocate(int expectedSizeIndex) {
+      while (true) {
+        long head = freeHead.get();
+        // The layout is read after the head, so it is the one the head was published with or a
+        // later one. A later one fails the CAS below, but its free stack may be shorter than the
+        // item the head points at.
+        Layout layout = this.layout;
+        if (isClosed(head) || layout.sizeIndex != expectedSizeIndex) {
+          return -1;
+        }
+        int top = topOf(head);
+        if (top < 0) {
+          return -1;
+        }
+        if (top >= layout.itemCount) {
+          continue;
+        }
+        long next = head(layout.nextFree[top], freeOf(head) - 1, nextStamp(head));
+        if (freeHead.compareAndSet(head, next)) {
+          long offset = baseOffset + ((long) top * layout.itemAllocationSize);
+          assert offset >= 0;
+          return offset;
+        }
+      }
+    }
+
+    /**
+     * @return true if the bucket is open for the given size and has a free item
+     */
+    boolean canAllocate(int expectedSizeIndex) {
+      long head = freeHead.get();
+      return !isClosed(head) && topOf(head) >= 0 && layout.sizeIndex == expectedSizeIndex;
     }
 
+    /**
+     * Closes the bucket for allocation if all its items are free, so that it can be reconfigured
+     * for another size.
+     * @return true if the bucket was completely free and is now closed
+     */
+    boolean tryClose() {
+      long head = freeHead.get();
+      return !isClosed(head) && freeOf(head) == layout.itemCount
+          && freeHead.compareAndSet(head, (nextStamp(head) << STAMP_SHIFT) | CLOSED);
+    }
+
+    /**
+     * Marks the item at the given offset as allocated. Only used while rebuilding the allocator
+     * from a persisted map, before the allocator is shared.
+     */
     public void addAllocation(long offset) throws BucketAllocatorException {
+      int itemAllocationSize = layout.itemAllocationSize;
+      int[] nextFree = layout.nextFree;
       offset -= baseOffset;
       if (offset < 0 || offset % itemAllocationSize != 0)
         throw new BucketAllocatorException(
             "Attempt to add allocation for bad offset: " + offset + " base="
                 + baseOffset + ", bucket size=" + itemAllocationSize);
       int idx = (int) (offset / itemAllocationSize);
-      boolean matchFound = false;
-      for (int i = 0; i < freeCount; ++i) {
-        if (matchFound) freeList[i - 1] = freeList[i];
-        else if (freeList[i] == idx) matchFound = true;
+      long head = freeHead.get();
+      int top = topOf(head);
+      int prev = -1;
+      int cur = top;
+      while (cur >= 0 && cur != idx) {
+        prev = cur;
+        cur = nextFree[cur];
       }
-      if (!matchFound)
+      if (cur < 0)
         throw new BucketAllocatorException("Couldn't find match for index "
             + idx + " in free list");
-      ++usedCount;
-      --freeCount;
+      if (prev < 0) {
+        top = nextFree[idx];
+      } else {
+        nextFree[prev] = nextFree[idx];
+      }
+      freeHead.set(head(top, freeOf(head) - 1, nextStamp(head)));
     }
 
-    private void free(long offset) {
+    /**
+     * @param layout the layout of the bucket, which cannot change while the item being freed is
+     *          allocated
+     * @return the number of free items after the free
+     */
+    private int free(Layout layout, long offset) {
+      int itemCount = layout.itemCount;
+      int itemAllocationSize = layout.itemAllocationSize;
       offset -= baseOffset;
       assert offset >= 0;
       assert offset < itemCount * itemAllocationSize;
       assert offset % itemAllocationSize == 0;
-      assert usedCount > 0;
-      assert freeCount < itemCount; // Else duplicate free
       int item = (int) (offset / (long) itemAllocationSize);
-      assert !freeListContains(item);
-      --usedCount;
-      freeList[freeCount++] = item;
-    }
-
-    private boolean freeListContains(int blockNo) {
-      for (int i = 0; i < freeCount; ++i) {
-        if (freeList[i] == blockNo) return true;
+      while (true) {
+        long head = freeHead.get();
+        assert !isClosed(head);
+        assert freeOf(head) < itemCount; // Else duplicate free
+        layout.nextFree[item] = topOf(head);
+        if (freeHead.compareAndSet(head, head(item, freeOf(head) + 1, nextStamp(head)))) {
+          return freeOf(head) + 1;
+        }
       }
-      return false;
     }
   }
 
   final class BucketSizeInfo {
-    // Free bucket means it has space to allocate a block;
-    // Completely free bucket means it has no block.
-    private LinkedMap bucketList, freeBuckets, completelyFreeBuckets;
+    // The buckets configured for this size. Replaced, never modified, under the allocator lock.
+    private volatile Bucket[] bucketList = new Bucket[0];
+    // Buckets of this size which may have a free item; most allocations only touch the first
+    private final ConcurrentLinkedQueue<Bucket> freeBuckets = new ConcurrentLinkedQueue<Bucket>();
     private int sizeIndex;
 
     BucketSizeInfo(int sizeIndex) {
-      bucketList = new LinkedMap();
-      freeBuckets = new LinkedMap();
-      completelyFreeBuckets = new LinkedMap();
       this.sizeIndex = sizeIndex;
     }
 
-    public synchronized void instantiateBucket(Bucket b) {
+    public void instantiateBucket(Bucket b) {
       assert b.isUninstantiated() || b.isCompletelyFree();
       b.reconfigure(sizeIndex, bucketSizes, bucketCapacity);
-      bucketList.put(b, b);
-      freeBuckets.put(b, b);
-      completelyFreeBuckets.put(b, b);
+      Bucket[] list = bucketList;
+      Bucket[] newList = Arrays.copyOf(list, list.length + 1);
+      newList[list.length] = b;
+      bucketList = newList;
+      Layout layout = b.layout;
+      queueFree(b, layout);
+      queueCompletelyFree(b, layout);
+    }
+
+    int bucketCount() {
+      return bucketList.length;
+    }
+
+    private void queueFree(Bucket b, Layout layout) {
+      if (!layout.queued.get() && layout.queued.compareAndSet(false, true)) {
+        freeBuckets.offer(b);
+      }
     }
 
     public int sizeIndex() {
@@ -199,64 +348,55 @@ public final class BucketAllocator {
 
     /**
      * Find a bucket to allocate a block
-     * @return the offset in the IOEngine
+     * @return the offset in the IOEngine, or -1 if none of the buckets of this size has room
      */
     public long allocateBlock() {
-      Bucket b = null;
-      if (freeBuckets.size() > 0) {
-        // Use up an existing one first...
-        b = (Bucket) freeBuckets.lastKey();
-      }
-      if (b == null) {
-        b = grabGlobalCompletelyFreeBucket();
-        if (b != null) instantiateBucket(b);
+      Bucket b;
+      while ((b = freeBuckets.peek()) != null) {
+        long offset = b.allocate(sizeIndex);
+        if (offset >= 0) {
+          return offset;
+        }
+        // Full, or moved to another size since it was queued
+        if (freeBuckets.remove(b)) {
+          Layout layout = b.layout;
+          if (layout.sizeIndex == sizeIndex) {
+            layout.queued.set(false);
+            // A free that came in before the flag was cleared did not queue the bucket again
+            if (b.canAllocate(sizeIndex)) {
+              queueFree(b, layout);
+            }
+          }
+        }
       }
-      if (b == null) return -1;
-      long result = b.allocate();
-      blockAllocated(b);
-      return result;
+      return -1;
     }
 
-    void blockAllocated(Bucket b) {
-      if (!b.isCompletelyFree()) completelyFreeBuckets.remove(b);
-      if (!b.hasFreeSpace()) freeBuckets.remove(b);
-    }
-
-    public Bucket findAndRemoveCompletelyFreeBucket() {
-      Bucket b = null;
-      assert bucketList.size() > 0;
-      if (bucketList.size() == 1) {
-        // So we never get complete starvation of a bucket for a size
-        return null;
-      }
-
-      if (completelyFreeBuckets.size() > 0) {
-        b = (Bucket) completelyFreeBuckets.firstKey();
-        removeBucket(b);
+    private void removeBucket(Bucket b) {
+      Bucket[] list = bucketList;
+      Bucket[] newList = new Bucket[list.length - 1];
+      int j = 0;
+      for (Bucket bucket : list) {
+        if (bucket != b) {
+          newList[j++] = bucket;
+        }
       }
-      return b;
-    }
-
-    private synchronized void removeBucket(Bucket b) {
-      assert b.isCompletelyFree();
-      bucketList.remove(b);
-      freeBuckets.remove(b);
-      completelyFreeBuckets.remove(b);
+      assert j == newList.length;
+      bucketList = newList;
     }
 
     public void freeBlock(Bucket b, long offset) {
-      assert bucketList.containsKey(b);
-      // else we shouldn't have anything to free...
-      assert (!completelyFreeBuckets.containsKey(b));
-      b.free(offset);
-      if (!freeBuckets.containsKey(b)) freeBuckets.put(b, b);
-      if (b.isCompletelyFree()) completelyFreeBuckets.put(b, b);
+      Layout layout = b.layout;
+      int free = b.free(layout, offset);
+      queueFree(b, layout);
+      if (free == layout.itemCount) {
+        queueCompletelyFree(b, layout);
+      }
     }
 
-    public synchronized IndexStatistics statistics() {
+    public IndexStatistics statistics() {
       long free = 0, used = 0;
-      for (Object obj : bucketList.keySet()) {
-        Bucket b = (Bucket) obj;
+      for (Bucket b : bucketList) {
         free += b.freeCount();
         used += b.usedCount();
       }
@@ -304,8 +444,11 @@ public final class BucketAllocator {
   private final long bucketCapacity;
   private Bucket[] buckets;
   private BucketSizeInfo[] bucketSizeInfos;
+  // Buckets which may be completely free, to be moved to a size which ran out of space
+  private final ConcurrentLinkedQueue<Bucket> completelyFreeBuckets =
+      new ConcurrentLinkedQueue<Bucket>();
   private final long totalSize;
-  private long usedSize = 0;
+  private final AtomicLong usedSize = new AtomicLong(0);
 
   BucketAllocator(long availableSpace, int[] bucketSizes)
       throws BucketAllocatorException {
@@ -313,6 +456,11 @@ public final class BucketAllocator {
     Arrays.sort(this.bucketSizes);
     this.bigItemSize = Ints.max(this.bucketSizes);
     this.bucketCapacity = FEWEST_ITEMS_IN_BUCKET * bigItemSize;
+    if (bucketCapacity / this.bucketSizes[0] > MAX_ITEMS_PER_BUCKET) {
+      throw new BucketAllocatorException("Smallest bucket size " + this.bucketSizes[0]
+          + " is too small for the largest, " + bigItemSize + "; a bucket can hold at most "
+          + MAX_ITEMS_PER_BUCKET + " items");
+    }
     buckets = new Bucket[(int) (availableSpace / bucketCapacity)];
     if (buckets.length < this.bucketSizes.length)
       throw new BucketAllocatorException("Bucket allocator size too small (" + buckets.length +
@@ -391,14 +539,14 @@ public final class BucketAllocator {
         // the moment...
         BucketSizeInfo bsi = bucketSizeInfos[bucketSizeIndex];
         BucketSizeInfo oldbsi = bucketSizeInfos[b.sizeIndex()];
+        b.tryClose();
         oldbsi.removeBucket(b);
         bsi.instantiateBucket(b);
         reconfigured[bucketNo] = true;
       }
       realCacheSize.addAndGet(foundLen);
       buckets[bucketNo].addAllocation(foundOffset);
-      usedSize += buckets[bucketNo].getItemAllocationSize();
-      bucketSizeInfos[bucketSizeIndex].blockAllocated(b);
+      usedSize.addAndGet(buckets[bucketNo].getItemAllocationSize());
     }
 
     if (sizeNotMatchedCount > 0) {
@@ -423,7 +571,7 @@ public final class BucketAllocator {
   }
 
   public long getUsedSize() {
-    return this.usedSize;
+    return this.usedSize.get();
   }
 
   public long getFreeSize() {
@@ -441,7 +589,7 @@ public final class BucketAllocator {
    * @throws CacheFullException
    * @return the offset in the IOEngine
    */
-  public synchronized long allocateBlock(int blockSize) throws CacheFullException,
+  public long allocateBlock(int blockSize) throws CacheFullException,
       BucketAllocatorException {
     assert blockSize > 0;
     BucketSizeInfo bsi = roundUpToBucketSizeInfo(blockSize);
@@ -451,20 +599,74 @@ public final class BucketAllocator {
         " to accomodate if size seems reasonable and you want it cached.");
     }
     long offset = bsi.allocateBlock();
+    if (offset < 0) {
+      offset = allocateFromFreeBucket(bsi);
+    }
 
     // Ask caller to free up space and try again!
     if (offset < 0)
       throw new CacheFullException(blockSize, bsi.sizeIndex());
-    usedSize += bucketSizes[bsi.sizeIndex()];
+    usedSize.addAndGet(bucketSizes[bsi.sizeIndex()]);
     return offset;
   }
 
+  /**
+   * Slow path of {@link #allocateBlock(int)}: the size has no free item, so move a completely
+   * free bucket over from any size and allocate from it.
+   */
+  private synchronized long allocateFromFreeBucket(BucketSizeInfo bsi) {
+    // Another thread may have added a bucket, or freed a block, while we waited for the lock
+    long offset = bsi.allocateBlock();
+    if (offset >= 0) {
+      return offset;
+    }
+    Bucket b = grabGlobalCompletelyFreeBucket();
+    if (b == null) {
+      return -1;
+    }
+    bsi.instantiateBucket(b);
+    return b.allocate(bsi.sizeIndex());
+  }
+
+  private void queueCompletelyFree(Bucket b, Layout layout) {
+    if (!layout.completelyFreeQueued.get()
+        && layout.completelyFreeQueued.compareAndSet(false, true)) {
+      completelyFreeBuckets.offer(b);
+    }
+  }
+
+  /**
+   * Closes and removes a completely free bucket from its size so that it can be given to another
+   * size. Called with the allocator lock held, so queued buckets are not closed.
+   */
   private Bucket grabGlobalCompletelyFreeBucket() {
-    for (BucketSizeInfo bsi : bucketSizeInfos) {
-      Bucket b = bsi.findAndRemoveCompletelyFreeBucket();
-      if (b != null) return b;
+    List<Bucket> lastOfSize = null;
+    Bucket found = null;
+    Bucket b;
+    while (found == null && (b = completelyFreeBuckets.poll()) != null) {
+      Layout layout = b.layout;
+      layout.completelyFreeQueued.set(false);
+      BucketSizeInfo bsi = bucketSizeInfos[layout.sizeIndex];
+      if (bsi.bucketCount() == 1) {
+        // So we never get complete starvation of a bucket for a size
+        if (b.isCompletelyFree()) {
+          if (lastOfSize == null) {
+            lastOfSize = new ArrayList<Bucket>();
+          }
+          lastOfSize.add(b);
+        }
+      } else if (b.tryClose()) {
+        bsi.removeBucket(b);
+        found = b;
+      }
+      // Otherwise it is in use again; the free that empties it queues it again
     }
-    return null;
+    if (lastOfSize != null) {
+      for (Bucket last : lastOfSize) {
+        queueCompletelyFree(last, last.layout);
+      }
+    }
+    return found;
   }
 
   /**
@@ -472,13 +674,15 @@ public final class BucketAllocator {
    * @param offset block's offset
    * @return size freed
    */
-  public synchronized int freeBlock(long offset) {
+  public int freeBlock(long offset) {
     int bucketNo = (int) (offset / bucketCapacity);
     assert bucketNo >= 0 && bucketNo < buckets.length;
     Bucket targetBucket = buckets[bucketNo];
+    // The bucket cannot change size while it holds this block, so its size is stable here
+    int size = targetBucket.getItemAllocationSize();
     bucketSizeInfos[targetBucket.sizeIndex()].freeBlock(targetBucket, offset);
-    usedSize -= targetBucket.getItemAllocationSize();
-    return targetBucket.getItemAllocationSize();
+    usedSize.addAndGet(-size);
+    return size;
   }
 
   public int sizeIndexOfAllocation(long offset) {
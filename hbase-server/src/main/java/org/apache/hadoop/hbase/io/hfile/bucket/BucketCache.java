@@ -20,16 +20,12 @@
  */
 package org.apache.hadoop.hbase.io.hfile.bucket;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
@@ -49,12 +45,14 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.classification.InterfaceAudience;
 import org.apache.hadoop.hbase.io.HeapSize;
+import org.apache.hadoop.hbase.io.hfile.AccessPattern;
 import org.apache.hadoop.hbase.io.hfile.BlockCache;
 import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
 import org.apache.hadoop.hbase.io.hfile.BlockCacheUtil;
@@ -70,7 +68,6 @@ import org.apache.hadoop.hbase.io.hfile.HFileBlock;
 import org.apache.hadoop.hbase.nio.ByteBuff;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.hbase.util.HasThread;
-import org.apache.hadoop.hbase.util.IdReadWriteLock;
 import org.apache.hadoop.util.StringUtils;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -93,6 +90,11 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
  * <p>It also can be used as a secondary cache (e.g. using a file on ssd/fusionio to store
  * blocks) to enlarge cache space via
  * {@link org.apache.hadoop.hbase.io.hfile.LruBlockCache#setVictimCache}
+ *
+ * <p>With a persistent {@link IOEngine} and a persistence path, the backing map is kept in a
+ * {@link BucketCacheJournal} so the cache survives a restart, clean or not. Blocks recovered for
+ * an hfile that nobody opens again within {@link #PERSISTENCE_VALIDATION_DELAY_KEY} are dropped;
+ * the file went away while we were down.
  */
 @InterfaceAudience.Private
 public class BucketCache implements BlockCache, HeapSize {
@@ -113,6 +115,16 @@ public class BucketCache implements BlockCache, HeapSize {
   final static int DEFAULT_WRITER_THREADS = 3;
   final static int DEFAULT_WRITER_QUEUE_ITEMS = 64;
 
+  /** Milliseconds between checkpoints of the journal of a persistent cache */
+  public static final String PERSISTENCE_CHECKPOINT_INTERVAL_KEY =
+      "hbase.bucketcache.persistence.checkpoint.interval";
+  public static final long DEFAULT_PERSISTENCE_CHECKPOINT_INTERVAL = 10 * 60 * 1000;
+
+  /** Milliseconds recovered blocks wait for their hfile to be opened before they are dropped */
+  public static final String PERSISTENCE_VALIDATION_DELAY_KEY =
+      "hbase.bucketcache.persistence.validation.delay";
+  public static final long DEFAULT_PERSISTENCE_VALIDATION_DELAY = 10 * 60 * 1000;
+
   // Store/read block data
   final IOEngine ioEngine;
 
@@ -166,6 +178,11 @@ public class BucketCache implements BlockCache, HeapSize {
   private final BucketCacheStats cacheStats = new BucketCacheStats();
 
   private final String persistencePath;
+  /** Journal of the backing map; null unless the cache is persistent */
+  private final BucketCacheJournal journal;
+  /** Names of the hfiles we recovered blocks for and that have not been opened since */
+  private final Set<String> unverifiedHFiles =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
   private final long cacheCapacity;
   /** Approximate block size */
   private final long blockSize;
@@ -179,13 +196,6 @@ public class BucketCache implements BlockCache, HeapSize {
   // reset after a successful read/write.
   private volatile long ioErrorStartTime = -1;
 
-  /**
-   * A ReentrantReadWriteLock to lock on a particular block identified by offset.
-   * The purpose of this is to avoid freeing the block which is being read.
-   */
-  @VisibleForTesting
-  final IdReadWriteLock offsetLock = new IdReadWriteLock();
-
   private final NavigableSet<BlockCacheKey> blocksByHFile =
       new ConcurrentSkipListSet<BlockCacheKey>(new Comparator<BlockCacheKey>() {
         @Override
@@ -221,6 +231,13 @@ public class BucketCache implements BlockCache, HeapSize {
   public BucketCache(String ioEngineName, long capacity, int blockSize, int[] bucketSizes,
       int writerThreadNum, int writerQLen, String persistencePath, int ioErrorsTolerationDuration)
       throws FileNotFoundException, IOException {
+    this(ioEngineName, capacity, blockSize, bucketSizes, writerThreadNum, writerQLen,
+      persistencePath, ioErrorsTolerationDuration, HBaseConfiguration.create());
+  }
+
+  public BucketCache(String ioEngineName, long capacity, int blockSize, int[] bucketSizes,
+      int writerThreadNum, int writerQLen, String persistencePath, int ioErrorsTolerationDuration,
+      Configuration conf) throws FileNotFoundException, IOException {
     this.ioEngine = getIOEngineFromName(ioEngineName, capacity);
     this.writerThreads = new WriterThread[writerThreadNum];
     long blockNumCapacity = capacity / blockSize;
@@ -245,14 +262,22 @@ public class BucketCache implements BlockCache, HeapSize {
     this.backingMap = new ConcurrentHashMap<BlockCacheKey, BucketEntry>((int) blockNumCapacity);
 
     if (ioEngine.isPersistent() && persistencePath != null) {
+      this.journal = new BucketCacheJournal(persistencePath, capacity,
+          ioEngine.getClass().getName());
       try {
         retrieveFromFile(bucketSizes);
       } catch (IOException ioex) {
         LOG.error("Can't restore from file because of", ioex);
-      } catch (ClassNotFoundException cnfe) {
-        LOG.error("Can't restore from file in rebuild because can't deserialise",cnfe);
-        throw new RuntimeException(cnfe);
+        journal.delete();
+      }
+      // Start journaling from a snapshot of whatever we recovered
+      try {
+        journal.checkpoint(backingMap, deserialiserMap);
+      } catch (IOException ioex) {
+        LOG.error("Can't start the bucket cache journal; the cache will come back cold", ioex);
       }
+    } else {
+      this.journal = null;
     }
     final String threadName = Thread.currentThread().getName();
     this.cacheEnabled = true;
@@ -268,6 +293,25 @@ public class BucketCache implements BlockCache, HeapSize {
     // every five minutes.
     this.scheduleThreadPool.scheduleAtFixedRate(new StatisticsThread(this),
         statThreadPeriod, statThreadPeriod, TimeUnit.SECONDS);
+    if (journal != null) {
+      long checkpointInterval = conf.getLong(PERSISTENCE_CHECKPOINT_INTERVAL_KEY,
+          DEFAULT_PERSISTENCE_CHECKPOINT_INTERVAL);
+      this.scheduleThreadPool.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          checkpoint();
+        }
+      }, checkpointInterval, checkpointInterval, TimeUnit.MILLISECONDS);
+      if (!unverifiedHFiles.isEmpty()) {
+        this.scheduleThreadPool.schedule(new Runnable() {
+          @Override
+          public void run() {
+            evictUnverifiedHFiles();
+          }
+        }, conf.getLong(PERSISTENCE_VALIDATION_DELAY_KEY, DEFAULT_PERSISTENCE_VALIDATION_DELAY),
+            TimeUnit.MILLISECONDS);
+      }
+    }
     LOG.info("Started bucket cache; ioengine=" + ioEngineName +
         ", capacity=" + StringUtils.byteDesc(capacity) +
       ", blockSize=" + StringUtils.byteDesc(blockSize) + ", writerThreadNum=" +
@@ -345,6 +389,21 @@ public class BucketCache implements BlockCache, HeapSize {
     cacheBlockWithWait(cacheKey, cachedItem, inMemory, wait_when_cache);
   }
 
+  /**
+   * Cache the block with the specified name and buffer. A block of a probationary read gets an
+   * access counter older than that of any other block, so free space evicts it first unless it
+   * is read again.
+   */
+  @Override
+  public void cacheBlock(BlockCacheKey cacheKey, Cacheable cachedItem, boolean inMemory,
+      final boolean cacheDataInL1, AccessPattern accessPattern) {
+    long accessCounter = accessCount.incrementAndGet();
+    if (accessPattern.isProbationary() && !inMemory) {
+      accessCounter -= Long.MAX_VALUE;
+    }
+    cacheBlockWithWait(cacheKey, cachedItem, inMemory, wait_when_cache, accessCounter);
+  }
+
   /**
    * Cache the block to ramCache
    * @param cacheKey block's cache key
@@ -354,6 +413,11 @@ public class BucketCache implements BlockCache, HeapSize {
    */
   public void cacheBlockWithWait(BlockCacheKey cacheKey, Cacheable cachedItem, boolean inMemory,
       boolean wait) {
+    cacheBlockWithWait(cacheKey, cachedItem, inMemory, wait, accessCount.incrementAndGet());
+  }
+
+  private void cacheBlockWithWait(BlockCacheKey cacheKey, Cacheable cachedItem, boolean inMemory,
+      boolean wait, long accessCounter) {
     if (LOG.isTraceEnabled()) LOG.trace("Caching key=" + cacheKey + ", item=" + cachedItem);
     if (!cacheEnabled) {
       return;
@@ -366,8 +430,7 @@ public class BucketCache implements BlockCache, HeapSize {
     /*
      * Stuff the entry into the RAM cache so it can get drained to the persistent store
      */
-    RAMQueueEntry re =
-        new RAMQueueEntry(cacheKey, cachedItem, accessCount.incrementAndGet(), inMemory);
+    RAMQueueEntry re = new RAMQueueEntry(cacheKey, cachedItem, accessCounter, inMemory);
     if (ramCache.putIfAbsent(cacheKey, re) != null) {
       return;
     }
@@ -416,42 +479,46 @@ public class BucketCache implements BlockCache, HeapSize {
       return re.getData();
     }
     BucketEntry bucketEntry = backingMap.get(key);
-    if (bucketEntry != null) {
+    // Reads take no lock. They hold the entry instead, which keeps it from being freed and its
+    // space from being reused while they read; a shared block points into the cache, so it holds
+    // the entry until it is returned.
+    while (bucketEntry != null) {
+      if (!bucketEntry.tryRetain()) {
+        // Evicted. Retry only if the key has been cached again since.
+        BucketEntry current = backingMap.get(key);
+        bucketEntry = current == bucketEntry ? null : current;
+        continue;
+      }
+      boolean shared = false;
       long start = System.nanoTime();
-      ReentrantReadWriteLock lock = offsetLock.getLock(bucketEntry.offset());
       try {
-        lock.readLock().lock();
-        // We can not read here even if backingMap does contain the given key because its offset
-        // maybe changed. If we lock BlockCacheKey instead of offset, then we can only check
-        // existence here.
-        if (bucketEntry.equals(backingMap.get(key))) {
-          // TODO : change this area - should be removed after server cells and
-          // 12295 are available
-          int len = bucketEntry.getLength();
-          if (LOG.isTraceEnabled()) {
-            LOG.trace("Read offset=" + bucketEntry.offset() + ", len=" + len);
-          }
-          Cacheable cachedBlock = ioEngine.read(bucketEntry.offset(), len,
-              bucketEntry.deserializerReference(this.deserialiserMap));
-          long timeTaken = System.nanoTime() - start;
-          if (updateCacheMetrics) {
-            cacheStats.hit(caching, key.isPrimary(), key.getBlockType());
-            cacheStats.ioHit(timeTaken);
-          }
-          if (cachedBlock.getMemoryType() == MemoryType.SHARED) {
-            bucketEntry.refCount.incrementAndGet();
-          }
-          bucketEntry.access(accessCount.incrementAndGet());
-          if (this.ioErrorStartTime > 0) {
-            ioErrorStartTime = -1;
-          }
-          return cachedBlock;
+        // TODO : change this area - should be removed after server cells and
+        // 12295 are available
+        int len = bucketEntry.getLength();
+        if (LOG.isTraceEnabled()) {
+          LOG.trace("Read offset=" + bucketEntry.offset() + ", len=" + len);
         }
+        Cacheable cachedBlock = ioEngine.read(bucketEntry.offset(), len,
+            bucketEntry.deserializerReference(this.deserialiserMap));
+        shared = cachedBlock.getMemoryType() == MemoryType.SHARED;
+        long timeTaken = System.nanoTime() - start;
+        if (updateCacheMetrics) {
+          cacheStats.hit(caching, key.isPrimary(), key.getBlockType());
+          cacheStats.ioHit(timeTaken);
+        }
+        bucketEntry.access(accessCount.incrementAndGet());
+        if (this.ioErrorStartTime > 0) {
+          ioErrorStartTime = -1;
+        }
+        return cachedBlock;
       } catch (IOException ioex) {
         LOG.error("Failed reading block " + key + " from bucket cache", ioex);
         checkIOErrorIsTolerated();
+        break;
       } finally {
-        lock.readLock().unlock();
+        if (!shared) {
+          releaseBucketEntry(key, bucketEntry);
+        }
       }
     }
     if (!repeat && updateCacheMetrics) {
@@ -460,6 +527,31 @@ public class BucketCache implements BlockCache, HeapSize {
     return null;
   }
 
+  /**
+   * Frees the space of the given entry and removes it from the backing map, provided it is still
+   * mapped and no reader holds it. Every path that frees an entry goes through here, so an entry
+   * is freed at most once and never while a shared block still points into it.
+   * @return true if the entry was freed by this call
+   */
+  @VisibleForTesting
+  boolean freeBucketEntry(BlockCacheKey cacheKey, BucketEntry bucketEntry,
+      boolean decrementBlockNumber) {
+    if (!bucketEntry.tryMarkFreed()) {
+      // Held by a reader, or already freed
+      return false;
+    }
+    if (!backingMap.remove(cacheKey, bucketEntry)) {
+      // Not ours to free: it was never mapped, or was dropped along with the whole map
+      return false;
+    }
+    if (journal != null) {
+      // Before the space can be handed out again
+      journal.logRemove(cacheKey);
+    }
+    blockEvicted(cacheKey, bucketEntry, decrementBlockNumber);
+    return true;
+  }
+
   @VisibleForTesting
   void blockEvicted(BlockCacheKey cacheKey, BucketEntry bucketEntry, boolean decrementBlockNumber) {
     bucketAllocator.freeBlock(bucketEntry.offset());
@@ -475,8 +567,8 @@ public class BucketCache implements BlockCache, HeapSize {
     return evictBlock(cacheKey, true);
   }
 
-  // does not check for the ref count. Just tries to evict it if found in the
-  // bucket map
+  // called once the ref count has dropped to zero. Just tries to evict it if found in the
+  // bucket map and not taken again by a new reader
   private boolean forceEvict(BlockCacheKey cacheKey) {
     if (!cacheEnabled) {
       return false;
@@ -491,16 +583,8 @@ public class BucketCache implements BlockCache, HeapSize {
         return false;
       }
     }
-    ReentrantReadWriteLock lock = offsetLock.getLock(bucketEntry.offset());
-    try {
-      lock.writeLock().lock();
-      if (backingMap.remove(cacheKey, bucketEntry)) {
-        blockEvicted(cacheKey, bucketEntry, removedBlock == null);
-      } else {
-        return false;
-      }
-    } finally {
-      lock.writeLock().unlock();
+    if (!freeBucketEntry(cacheKey, bucketEntry, removedBlock == null)) {
+      return false;
     }
     cacheStats.evicted(bucketEntry.getCachedTime(), cacheKey.isPrimary());
     return true;
@@ -529,34 +613,34 @@ public class BucketCache implements BlockCache, HeapSize {
         return false;
       }
     }
-    ReentrantReadWriteLock lock = offsetLock.getLock(bucketEntry.offset());
-    try {
-      lock.writeLock().lock();
-      int refCount = bucketEntry.refCount.get();
-      if(refCount == 0) {
-        if (backingMap.remove(cacheKey, bucketEntry)) {
-          blockEvicted(cacheKey, bucketEntry, removedBlock == null);
-        } else {
-          return false;
+    while (!freeBucketEntry(cacheKey, bucketEntry, removedBlock == null)) {
+      if (bucketEntry.isFreed()) {
+        // Freed by someone else in the meantime, maybe by the last reader as it was marked
+        return bucketEntry.markedForEvict;
+      }
+      int refCount = bucketEntry.getRefCount();
+      if (refCount == 0) {
+        // The last reader let go of it since
+        continue;
+      }
+      if(!deletedBlock) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("This block " + cacheKey + " is still referred by " + refCount
+              + " readers. Can not be freed now");
         }
+        return false;
       } else {
-        if(!deletedBlock) {
-          if (LOG.isDebugEnabled()) {
-            LOG.debug("This block " + cacheKey + " is still referred by " + refCount
-                + " readers. Can not be freed now");
-          }
-          return false;
-        } else {
-          if (LOG.isDebugEnabled()) {
-            LOG.debug("This block " + cacheKey + " is still referred by " + refCount
-                + " readers. Can not be freed now. Hence will mark this"
-                + " for evicting at a later point");
-          }
-          bucketEntry.markedForEvict = true;
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("This block " + cacheKey + " is still referred by " + refCount
+              + " readers. Can not be freed now. Hence will mark this"
+              + " for evicting at a later point");
+        }
+        bucketEntry.markedForEvict = true;
+        // The last reader may have let go of it before it could see the mark
+        if (bucketEntry.getRefCount() != 0) {
+          break;
         }
       }
-    } finally {
-      lock.writeLock().unlock();
     }
     cacheStats.evicted(bucketEntry.getCachedTime(), cacheKey.isPrimary());
     return true;
@@ -850,7 +934,7 @@ public class BucketCache implements BlockCache, HeapSize {
             continue;
           }
           BucketEntry bucketEntry =
-            re.writeToCache(ioEngine, bucketAllocator, deserialiserMap, realCacheSize);
+            re.writeToCache(ioEngine, bucketAllocator, deserialiserMap, realCacheSize, journal);
           // Successfully added.  Up index and add bucketEntry. Clear io exceptions.
           bucketEntries[index] = bucketEntry;
           if (ioErrorStartTime > 0) {
@@ -897,6 +981,11 @@ public class BucketCache implements BlockCache, HeapSize {
         BlockCacheKey key = entries.get(i).getKey();
         // Only add if non-null entry.
         if (bucketEntries[i] != null) {
+          if (journal != null) {
+            // Logged ahead of the put, so any removal of the entry is logged after it
+            journal.logAdd(key, bucketEntries[i],
+              entries.get(i).getData().getDeserializer().getDeserialiserIdentifier());
+          }
           backingMap.put(key, bucketEntries[i]);
         }
         // Always remove from ramCache even if we failed adding it to the block cache above.
@@ -904,19 +993,21 @@ public class BucketCache implements BlockCache, HeapSize {
         if (ramCacheEntry != null) {
           heapSize.addAndGet(-1 * entries.get(i).getData().heapSize());
         } else if (bucketEntries[i] != null){
-          // Block should have already been evicted. Remove it and free space.
-          ReentrantReadWriteLock lock = offsetLock.getLock(bucketEntries[i].offset());
-          try {
-            lock.writeLock().lock();
-            if (backingMap.remove(key, bucketEntries[i])) {
-              blockEvicted(key, bucketEntries[i], false);
+          // Block should have already been evicted. Remove it and free space. If a reader got
+          // to it first, free it once the reader returns it.
+          if (!freeBucketEntry(key, bucketEntries[i], false)) {
+            bucketEntries[i].markedForEvict = true;
+            if (bucketEntries[i].getRefCount() == 0) {
+              freeBucketEntry(key, bucketEntries[i], false);
             }
-          } finally {
-            lock.writeLock().unlock();
           }
         }
       }
 
+      if (journal != null) {
+        journal.flush();
+      }
+
       long used = bucketAllocator.getUsedSize();
       if (used > acceptableSize()) {
         freeSpace("Used=" + used + " > acceptable=" + acceptableSize());
@@ -947,71 +1038,87 @@ public class BucketCache implements BlockCache, HeapSize {
 
   private void persistToFile() throws IOException {
     assert !cacheEnabled;
-    FileOutputStream fos = null;
-    ObjectOutputStream oos = null;
+    if (!ioEngine.isPersistent()) {
+      throw new IOException("Attempt to persist non-persistent cache mappings!");
+    }
     try {
-      if (!ioEngine.isPersistent()) {
-        throw new IOException("Attempt to persist non-persistent cache mappings!");
-      }
-      fos = new FileOutputStream(persistencePath, false);
-      oos = new ObjectOutputStream(fos);
-      oos.writeLong(cacheCapacity);
-      oos.writeUTF(ioEngine.getClass().getName());
-      oos.writeUTF(backingMap.getClass().getName());
-      oos.writeObject(deserialiserMap);
-      oos.writeObject(backingMap);
+      journal.checkpoint(backingMap, deserialiserMap);
     } finally {
-      if (oos != null) oos.close();
-      if (fos != null) fos.close();
+      journal.close();
     }
   }
 
-  @SuppressWarnings("unchecked")
-  private void retrieveFromFile(int[] bucketSizes) throws IOException, BucketAllocatorException,
-      ClassNotFoundException {
-    File persistenceFile = new File(persistencePath);
-    if (!persistenceFile.exists()) {
+  /**
+   * Periodic checkpoint of the journal. It bounds the log a restart has to replay.
+   */
+  private void checkpoint() {
+    if (!cacheEnabled) {
       return;
     }
-    assert !cacheEnabled;
-    FileInputStream fis = null;
-    ObjectInputStream ois = null;
     try {
-      if (!ioEngine.isPersistent())
-        throw new IOException(
-            "Attempt to restore non-persistent cache mappings!");
-      fis = new FileInputStream(persistencePath);
-      ois = new ObjectInputStream(fis);
-      long capacitySize = ois.readLong();
-      if (capacitySize != cacheCapacity)
-        throw new IOException("Mismatched cache capacity:"
-            + StringUtils.byteDesc(capacitySize) + ", expected: "
-            + StringUtils.byteDesc(cacheCapacity));
-      String ioclass = ois.readUTF();
-      String mapclass = ois.readUTF();
-      if (!ioEngine.getClass().getName().equals(ioclass))
-        throw new IOException("Class name for IO engine mismatch: " + ioclass
-            + ", expected:" + ioEngine.getClass().getName());
-      if (!backingMap.getClass().getName().equals(mapclass))
-        throw new IOException("Class name for cache map mismatch: " + mapclass
-            + ", expected:" + backingMap.getClass().getName());
-      UniqueIndexMap<Integer> deserMap = (UniqueIndexMap<Integer>) ois
-          .readObject();
-      ConcurrentHashMap<BlockCacheKey, BucketEntry> backingMapFromFile =
-          (ConcurrentHashMap<BlockCacheKey, BucketEntry>) ois.readObject();
-      BucketAllocator allocator = new BucketAllocator(cacheCapacity, bucketSizes,
-          backingMapFromFile, realCacheSize);
-      bucketAllocator = allocator;
-      deserialiserMap = deserMap;
-      backingMap = backingMapFromFile;
-    } finally {
-      if (ois != null) ois.close();
-      if (fis != null) fis.close();
-      if (!persistenceFile.delete()) {
-        throw new IOException("Failed deleting persistence file "
-            + persistenceFile.getAbsolutePath());
-      }
+      journal.checkpoint(backingMap, deserialiserMap);
+    } catch (IOException ioex) {
+      LOG.warn("Failed checkpointing bucket cache journal", ioex);
+    }
+  }
+
+  private void retrieveFromFile(int[] bucketSizes) throws IOException {
+    assert !cacheEnabled;
+    if (!ioEngine.isPersistent()) {
+      throw new IOException("Attempt to restore non-persistent cache mappings!");
+    }
+    UniqueIndexMap<Integer> deserMap = new UniqueIndexMap<Integer>();
+    ConcurrentHashMap<BlockCacheKey, BucketEntry> backingMapFromFile = journal.recover(deserMap);
+    if (backingMapFromFile == null) {
+      journal.delete();
+      return;
+    }
+    AtomicLong recoveredSize = new AtomicLong(0);
+    BucketAllocator allocator = new BucketAllocator(cacheCapacity, bucketSizes,
+        backingMapFromFile, recoveredSize);
+    long maxAccessCounter = 0;
+    for (Map.Entry<BlockCacheKey, BucketEntry> entry : backingMapFromFile.entrySet()) {
+      blocksByHFile.add(entry.getKey());
+      unverifiedHFiles.add(entry.getKey().getHfileName());
+      maxAccessCounter = Math.max(maxAccessCounter, entry.getValue().getAccessCounter());
+    }
+    bucketAllocator = allocator;
+    deserialiserMap = deserMap;
+    backingMap = backingMapFromFile;
+    realCacheSize.set(recoveredSize.get());
+    blockNumber.set(backingMapFromFile.size());
+    accessCount.set(maxAccessCounter);
+  }
+
+  /**
+   * Tells the cache the given hfile is still part of a store, so the blocks recovered for it on
+   * startup are kept.
+   */
+  public void notifyHFileOpened(String hfileName) {
+    if (!unverifiedHFiles.isEmpty()) {
+      unverifiedHFiles.remove(hfileName);
+    }
+  }
+
+  /**
+   * Drops the blocks recovered for hfiles that were not opened since startup.
+   * @return the number of blocks evicted
+   */
+  @VisibleForTesting
+  int evictUnverifiedHFiles() {
+    int files = 0;
+    int evicted = 0;
+    for (Iterator<String> it = unverifiedHFiles.iterator(); it.hasNext();) {
+      String hfileName = it.next();
+      it.remove();
+      evicted += evictBlocksByHfileName(hfileName);
+      files++;
     }
+    if (files > 0) {
+      LOG.info("Evicted " + evicted + " recovered blocks of " + files
+          + " hfiles that were not opened since startup");
+    }
+    return evicted;
   }
 
   /**
@@ -1155,7 +1262,10 @@ public class BucketCache implements BlockCache, HeapSize {
     private BlockPriority priority;
     // Set this when we were not able to forcefully evict the block
     private volatile boolean markedForEvict;
+    // Number of readers holding this entry, or FREED once its space has been given back to the
+    // allocator
     private AtomicInteger refCount = new AtomicInteger(0);
+    private static final int FREED = Integer.MIN_VALUE;
 
     /**
      * Time this block was cached.  Presumes we are created just before we are added to the cache.
@@ -1217,9 +1327,51 @@ public class BucketCache implements BlockCache, HeapSize {
       return this.priority;
     }
 
+    long getAccessCounter() {
+      return accessCounter;
+    }
+
     public long getCachedTime() {
       return cachedTime;
     }
+
+    /**
+     * Takes a reference for a reader, held while it reads and for as long as it keeps a shared
+     * block.
+     * @return false if the entry has already been freed
+     */
+    boolean tryRetain() {
+      while (true) {
+        int count = refCount.get();
+        if (count == FREED) {
+          return false;
+        }
+        if (refCount.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    /** @return the number of references left */
+    int release() {
+      return refCount.decrementAndGet();
+    }
+
+    /**
+     * Claims the entry for freeing. Succeeds only once, and only if no reader holds it.
+     */
+    boolean tryMarkFreed() {
+      return refCount.compareAndSet(0, FREED);
+    }
+
+    boolean isFreed() {
+      return refCount.get() == FREED;
+    }
+
+    int getRefCount() {
+      int count = refCount.get();
+      return count == FREED ? 0 : count;
+    }
   }
 
   /**
@@ -1314,12 +1466,16 @@ public class BucketCache implements BlockCache, HeapSize {
     public BucketEntry writeToCache(final IOEngine ioEngine,
         final BucketAllocator bucketAllocator,
         final UniqueIndexMap<Integer> deserialiserMap,
-        final AtomicLong realCacheSize) throws CacheFullException, IOException,
-        BucketAllocatorException {
+        final AtomicLong realCacheSize, final BucketCacheJournal journal)
+        throws CacheFullException, IOException, BucketAllocatorException {
       int len = data.getSerializedLength();
       // This cacheable thing can't be serialized
       if (len == 0) return null;
       long offset = bucketAllocator.allocateBlock(len);
+      if (journal != null) {
+        // The space may have just been freed. Its removal must be durable before we overwrite it
+        journal.syncIfDirty();
+      }
       BucketEntry bucketEntry = new BucketEntry(offset, len, accessCounter, inMemory);
       bucketEntry.setDeserialiserReference(data.getDeserializer(), deserialiserMap);
       try {
@@ -1462,19 +1618,25 @@ public class BucketCache implements BlockCache, HeapSize {
     if (block.getMemoryType() == MemoryType.SHARED) {
       BucketEntry bucketEntry = backingMap.get(cacheKey);
       if (bucketEntry != null) {
-        int refCount = bucketEntry.refCount.decrementAndGet();
-        if (bucketEntry.markedForEvict && refCount == 0) {
-          forceEvict(cacheKey);
-        }
+        releaseBucketEntry(cacheKey, bucketEntry);
       }
     }
   }
 
+  /**
+   * Drops a reader's hold on the entry, freeing it if it was marked for eviction meanwhile.
+   */
+  private void releaseBucketEntry(BlockCacheKey cacheKey, BucketEntry bucketEntry) {
+    if (bucketEntry.release() == 0 && bucketEntry.markedForEvict) {
+      forceEvict(cacheKey);
+    }
+  }
+
   @VisibleForTesting
   public int getRefCount(BlockCacheKey cacheKey) {
     BucketEntry bucketEntry = backingMap.get(cacheKey);
     if (bucketEntry != null) {
-      return bucketEntry.refCount.get();
+      return bucketEntry.getRefCount();
     }
     return 0;
   }
@@ -0,0 +1,517 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.io.ByteArrayOutputStream;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockPriority;
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache.BucketEntry;
+import org.apache.hadoop.util.StringUtils;
+
+/**
+ * Checksummed index journal of a persistent {@link BucketCache}. It lets the cache come back
+ * warm after a restart, clean or not.
+ * <p>
+ * The journal is a snapshot of the backing map, written at {@code path}, plus a log of the
+ * additions and removals made since, written at {@code path.log.<generation>}. Every record
+ * carries a CRC32. A log torn by a crash in the middle of its last record ends at that record,
+ * and replay goes on with the next generation; a damaged record ends the replay instead of
+ * corrupting the map. {@link #checkpoint(Map, UniqueIndexMap)} syncs the current log, starts a
+ * new log generation, writes a new snapshot next to the old one and only then drops the older
+ * files, so a crash at any point leaves a snapshot plus the logs that follow it.
+ * <p>
+ * A removal must be durable before the space it gave back is written again, or a recovered entry
+ * could point at another block's bytes: the cache syncs what it writes to that space, so after a
+ * power failure the new bytes may survive a removal that only made it to the page cache. The
+ * cache logs a removal before it frees the space and calls {@link #syncIfDirty()} between
+ * allocating space and writing to it.
+ */
+@InterfaceAudience.Private
+final class BucketCacheJournal {
+  private static final Log LOG = LogFactory.getLog(BucketCacheJournal.class);
+
+  private static final int MAGIC = 0x42434A31; // "BCJ1"
+
+  private static final byte HEADER = 1;
+  private static final byte ADD = 2;
+  private static final byte REMOVE = 3;
+  private static final byte END = 4;
+
+  /** {@link #readRecord(DataInputStream)} result for a record cut short by the end of file */
+  private static final byte TORN = -2;
+  /** {@link #readRecord(DataInputStream)} result for a record that fails its checks */
+  private static final byte DAMAGED = -1;
+
+  private final String path;
+  private final long capacity;
+  private final String ioEngineClass;
+
+  private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(256);
+  private final DataOutputStream record = new DataOutputStream(recordBuffer);
+  private final CRC32 crc = new CRC32();
+
+  // Replay happens before the journal is written to, single threaded
+  private byte[] readBytes = new byte[256];
+  private DataInputStream readBuffer;
+
+  /** Current log, or null when journaling is off until the next checkpoint */
+  private DataOutputStream log;
+  /** The file under {@link #log}, to sync it */
+  private FileOutputStream logStream;
+  private long generation;
+  /** Set when writing the current log failed; the snapshot it follows must not be kept */
+  private boolean logFailed;
+  /** Set when a removal was logged but not synced yet */
+  private volatile boolean dirty;
+  private final Object checkpointLock = new Object();
+
+  BucketCacheJournal(String path, long capacity, String ioEngineClass) {
+    this.path = path;
+    this.capacity = capacity;
+    this.ioEngineClass = ioEngineClass;
+  }
+
+  private File logFile(long gen) {
+    return new File(path + ".log." + gen);
+  }
+
+  /**
+   * Moves {@link #generation} past every log on disk, deleting the logs of generations older
+   * than {@code deleteBefore} along the way.
+   */
+  private void scanLogs(long deleteBefore) {
+    File snapshot = new File(path).getAbsoluteFile();
+    String prefix = snapshot.getName() + ".log.";
+    File[] files = snapshot.getParentFile().listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File f : files) {
+      String name = f.getName();
+      if (!name.startsWith(prefix)) {
+        continue;
+      }
+      long g;
+      try {
+        g = Long.parseLong(name.substring(prefix.length()));
+      } catch (NumberFormatException nfe) {
+        continue;
+      }
+      generation = Math.max(generation, g);
+      if (g < deleteBefore && !f.delete()) {
+        LOG.warn("Failed deleting bucket cache log " + f);
+      }
+    }
+  }
+
+  /**
+   * Rebuilds the backing map from the last snapshot and the logs that follow it. Returns null if
+   * there is nothing usable to recover. Nothing on disk is changed; the caller is expected to
+   * {@link #checkpoint(Map, UniqueIndexMap)} the recovered map before caching anything.
+   */
+  ConcurrentHashMap<BlockCacheKey, BucketEntry> recover(UniqueIndexMap<Integer> deserialiserMap)
+      throws IOException {
+    File snapshot = new File(path);
+    if (!snapshot.exists()) {
+      return null;
+    }
+    ConcurrentHashMap<BlockCacheKey, BucketEntry> map =
+        new ConcurrentHashMap<BlockCacheKey, BucketEntry>();
+    long gen;
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(snapshot)));
+    try {
+      gen = readHeader(in, snapshot);
+      if (gen < 0) {
+        return null;
+      }
+      byte type;
+      while ((type = readRecord(in)) == ADD) {
+        readAdd(map, deserialiserMap);
+      }
+      if (type != END) {
+        // Snapshots are renamed into place once complete, so this is damage, not a crash
+        LOG.warn("Bucket cache snapshot " + snapshot + " is corrupt; starting cold");
+        return null;
+      }
+    } finally {
+      in.close();
+    }
+    long records = 0;
+    for (File f = logFile(gen); f.exists(); f = logFile(++gen)) {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+      try {
+        if (readHeader(in, f) != gen) {
+          break;
+        }
+        byte type;
+        while ((type = readRecord(in)) == ADD || type == REMOVE) {
+          if (type == ADD) {
+            readAdd(map, deserialiserMap);
+          } else {
+            map.remove(readKey());
+          }
+          records++;
+        }
+        if (type == TORN) {
+          // A crash cut the tail of this log. Logs are synced before the next generation is
+          // started, so nothing the next one depends on was lost; go on with it
+          LOG.warn("Bucket cache log " + f + " ends in a torn record");
+        } else if (type != 0) {
+          // A damaged record. Whatever follows it cannot be trusted
+          LOG.warn("Stopped replaying bucket cache log " + f + " at a bad record");
+          break;
+        }
+      } finally {
+        in.close();
+      }
+    }
+    // Start the next generation past any log we did not replay, so it is never replayed
+    scanLogs(0);
+    LOG.info("Recovered " + map.size() + " bucket cache entries from " + path + " after replaying "
+        + records + " log records");
+    return map;
+  }
+
+  /**
+   * Writes a snapshot of {@code map} and starts a new log. The map may change while it is written:
+   * any change made after the new log is started is also in that log, and replaying it over the
+   * snapshot yields the right map.
+   */
+  void checkpoint(Map<BlockCacheKey, BucketEntry> map, UniqueIndexMap<Integer> deserialiserMap)
+      throws IOException {
+    synchronized (checkpointLock) {
+      checkpointInternal(map, deserialiserMap);
+    }
+  }
+
+  private void checkpointInternal(Map<BlockCacheKey, BucketEntry> map,
+      UniqueIndexMap<Integer> deserialiserMap) throws IOException {
+    long gen;
+    synchronized (this) {
+      closeLog();
+      gen = generation + 1;
+      logStream = new FileOutputStream(logFile(gen), false);
+      log = new DataOutputStream(new BufferedOutputStream(logStream));
+      generation = gen;
+      logFailed = false;
+      writeHeader(log, gen);
+      log.flush();
+    }
+    File snapshot = new File(path);
+    File tmp = new File(path + ".tmp");
+    FileOutputStream fos = new FileOutputStream(tmp, false);
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+      // Snapshot records are built outside the log lock, with their own buffer
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+      DataOutputStream rec = new DataOutputStream(buffer);
+      CRC32 checksum = new CRC32();
+      buffer.reset();
+      writeHeaderRecord(rec, gen);
+      writeRecord(out, buffer, checksum);
+      for (Map.Entry<BlockCacheKey, BucketEntry> e : map.entrySet()) {
+        BucketEntry entry = e.getValue();
+        if (entry.isFreed()) {
+          continue;
+        }
+        buffer.reset();
+        writeAdd(rec, e.getKey(), entry, deserialiserMap.unmap(entry.deserialiserIndex));
+        writeRecord(out, buffer, checksum);
+      }
+      buffer.reset();
+      rec.writeByte(END);
+      writeRecord(out, buffer, checksum);
+      out.flush();
+      fos.getFD().sync();
+    } finally {
+      fos.close();
+    }
+    synchronized (this) {
+      if (!tmp.renameTo(snapshot)) {
+        // Not atomic, but a missing snapshot only means a cold start
+        if (!snapshot.delete() || !tmp.renameTo(snapshot)) {
+          throw new IOException("Failed renaming " + tmp + " to " + snapshot);
+        }
+      }
+      if (logFailed) {
+        // The log went bad while we were writing; the new snapshot cannot be replayed either
+        snapshot.delete();
+        return;
+      }
+    }
+    scanLogs(gen);
+  }
+
+  /** Logs an entry about to be put in the backing map. */
+  synchronized void logAdd(BlockCacheKey key, BucketEntry entry, int deserialiserId) {
+    if (log == null) {
+      return;
+    }
+    try {
+      recordBuffer.reset();
+      writeAdd(record, key, entry, deserialiserId);
+      writeRecord(log, recordBuffer, crc);
+    } catch (IOException ioe) {
+      abandon(ioe);
+    }
+  }
+
+  /** Logs an entry just removed from the backing map, before its space is freed. */
+  synchronized void logRemove(BlockCacheKey key) {
+    if (log == null) {
+      return;
+    }
+    try {
+      recordBuffer.reset();
+      record.writeByte(REMOVE);
+      writeKey(record, key);
+      writeRecord(log, recordBuffer, crc);
+      dirty = true;
+    } catch (IOException ioe) {
+      abandon(ioe);
+    }
+  }
+
+  /**
+   * Makes logged removals durable. Called before writing to freshly allocated space, so cheap
+   * when nothing was removed since the last call.
+   */
+  void syncIfDirty() {
+    if (dirty) {
+      sync();
+    }
+  }
+
+  private synchronized void sync() {
+    if (log == null) {
+      return;
+    }
+    try {
+      log.flush();
+      logStream.getFD().sync();
+      dirty = false;
+    } catch (IOException ioe) {
+      abandon(ioe);
+    }
+  }
+
+  /** Pushes logged records out to the file, without syncing it. */
+  synchronized void flush() {
+    if (log == null) {
+      return;
+    }
+    try {
+      log.flush();
+    } catch (IOException ioe) {
+      abandon(ioe);
+    }
+  }
+
+  synchronized void close() {
+    try {
+      closeLog();
+    } catch (IOException ioe) {
+      LOG.warn("Failed closing bucket cache log", ioe);
+    }
+  }
+
+  /** Removes every journal file, for a cache that starts over cold. */
+  synchronized void delete() {
+    close();
+    new File(path).delete();
+    new File(path + ".tmp").delete();
+    scanLogs(Long.MAX_VALUE);
+  }
+
+  private void closeLog() throws IOException {
+    if (log != null) {
+      DataOutputStream out = log;
+      FileOutputStream stream = logStream;
+      log = null;
+      logStream = null;
+      try {
+        // Recovery may still replay this log ahead of the next one. Sync all of it, not only
+        // its removals: a torn record in this log must not hide what the next one logs
+        out.flush();
+        stream.getFD().sync();
+      } finally {
+        dirty = false;
+        out.close();
+      }
+    }
+  }
+
+  /**
+   * A log we failed to write can no longer be replayed safely, and neither can the snapshot it
+   * follows. Drop both; the next checkpoint starts journaling again.
+   */
+  private void abandon(IOException ioe) {
+    LOG.error("Failed writing bucket cache log; dropping the journal until the next checkpoint",
+        ioe);
+    logFailed = true;
+    try {
+      closeLog();
+    } catch (IOException e) {
+      // Already failing; ignore
+    }
+    if (new File(path).exists() && !new File(path).delete()) {
+      LOG.warn("Failed deleting bucket cache snapshot " + path);
+    }
+  }
+
+  private void writeHeader(DataOutputStream out, long gen) throws IOException {
+    recordBuffer.reset();
+    writeHeaderRecord(record, gen);
+    writeRecord(out, recordBuffer, crc);
+  }
+
+  private void writeHeaderRecord(DataOutputStream rec, long gen) throws IOException {
+    rec.writeByte(HEADER);
+    rec.writeInt(MAGIC);
+    rec.writeLong(capacity);
+    rec.writeUTF(ioEngineClass);
+    rec.writeLong(gen);
+  }
+
+  /** @return the generation in the header, or -1 if the file is not a usable journal */
+  private long readHeader(DataInputStream in, File f) throws IOException {
+    if (readRecord(in) != HEADER || readBuffer.readInt() != MAGIC) {
+      LOG.warn("Ignoring " + f + "; not a bucket cache journal");
+      return -1;
+    }
+    long capacitySize = readBuffer.readLong();
+    if (capacitySize != capacity) {
+      LOG.warn("Ignoring " + f + "; mismatched cache capacity: "
+          + StringUtils.byteDesc(capacitySize) + ", expected: " + StringUtils.byteDesc(capacity));
+      return -1;
+    }
+    String ioclass = readBuffer.readUTF();
+    if (!ioEngineClass.equals(ioclass)) {
+      LOG.warn("Ignoring " + f + "; class name for IO engine mismatch: " + ioclass
+          + ", expected: " + ioEngineClass);
+      return -1;
+    }
+    return readBuffer.readLong();
+  }
+
+  private static void writeAdd(DataOutputStream rec, BlockCacheKey key, BucketEntry entry,
+      int deserialiserId) throws IOException {
+    rec.writeByte(ADD);
+    writeKey(rec, key);
+    rec.writeLong(entry.offset());
+    rec.writeInt(entry.getLength());
+    rec.writeInt(deserialiserId);
+    rec.writeLong(entry.getAccessCounter());
+    rec.writeByte(entry.getPriority().ordinal());
+  }
+
+  private void readAdd(Map<BlockCacheKey, BucketEntry> map,
+      UniqueIndexMap<Integer> deserialiserMap) throws IOException {
+    BlockCacheKey key = readKey();
+    long offset = readBuffer.readLong();
+    int length = readBuffer.readInt();
+    int deserialiserId = readBuffer.readInt();
+    long accessCounter = readBuffer.readLong();
+    BlockPriority priority = BlockPriority.values()[readBuffer.readByte()];
+    BucketEntry entry = new BucketEntry(offset, length, accessCounter,
+        priority == BlockPriority.MEMORY);
+    if (priority == BlockPriority.MULTI) {
+      entry.access(accessCounter);
+    }
+    entry.deserialiserIndex = (byte) deserialiserMap.map(deserialiserId);
+    map.put(key, entry);
+  }
+
+  private static void writeKey(DataOutputStream rec, BlockCacheKey key) throws IOException {
+    rec.writeUTF(key.getHfileName());
+    rec.writeLong(key.getOffset());
+    rec.writeBoolean(key.isPrimary());
+    rec.writeUTF(key.getBlockType() == null ? "" : key.getBlockType().name());
+  }
+
+  private BlockCacheKey readKey() throws IOException {
+    String hfileName = readBuffer.readUTF();
+    long offset = readBuffer.readLong();
+    boolean primary = readBuffer.readBoolean();
+    String blockType = readBuffer.readUTF();
+    return new BlockCacheKey(hfileName, offset, primary,
+        blockType.isEmpty() ? null : BlockType.valueOf(blockType));
+  }
+
+  private static void writeRecord(DataOutputStream out, ByteArrayOutputStream buffer,
+      CRC32 checksum) throws IOException {
+    checksum.reset();
+    checksum.update(buffer.getBuffer(), 0, buffer.size());
+    out.writeInt(buffer.size());
+    out.write(buffer.getBuffer(), 0, buffer.size());
+    out.writeInt((int) checksum.getValue());
+  }
+
+  /**
+   * Reads the next record into {@link #readBuffer}.
+   * @return the record type, 0 at a clean end of file, {@link #TORN} for a record cut short by
+   *         the end of file or {@link #DAMAGED} for a record that fails its checks
+   */
+  private byte readRecord(DataInputStream in) throws IOException {
+    int length;
+    try {
+      length = in.readInt();
+    } catch (EOFException eof) {
+      return 0;
+    }
+    if (length <= 0 || length > 64 * 1024) {
+      return DAMAGED;
+    }
+    if (readBytes.length < length) {
+      readBytes = new byte[length];
+    }
+    try {
+      in.readFully(readBytes, 0, length);
+      int expected = in.readInt();
+      crc.reset();
+      crc.update(readBytes, 0, length);
+      if ((int) crc.getValue() != expected) {
+        return DAMAGED;
+      }
+    } catch (EOFException eof) {
+      return TORN;
+    }
+    readBuffer = new DataInputStream(new ByteArrayInputStream(readBytes, 0, length));
+    return readBuffer.readByte();
+  }
+}
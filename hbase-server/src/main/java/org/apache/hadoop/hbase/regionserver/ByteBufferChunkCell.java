@@ -0,0 +1,64 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * A {@link ByteBufferKeyValue} copied into a MemStoreLAB {@link Chunk}, which also remembers the
+ * id of that chunk so a {@link CellChunkMap} can refer to the cell by chunk id and offset alone.
+ */
+@InterfaceAudience.Private
+public class ByteBufferChunkCell extends ByteBufferKeyValue {
+
+  private final int chunkId;
+
+  public ByteBufferChunkCell(ByteBuffer buf, int offset, int length, long seqId, int chunkId) {
+    super(buf, offset, length, seqId);
+    this.chunkId = chunkId;
+  }
+
+  public int getChunkId() {
+    return this.chunkId;
+  }
+
+  @Override
+  public long heapOverhead() {
+    return super.heapOverhead() + Bytes.SIZEOF_INT;
+  }
+
+  /**
+   * @return the id of the chunk the given cell was copied into, or -1 if the cell does not live in
+   *         a MemStoreLAB chunk
+   */
+  static int getChunkId(Cell cell) {
+    if (cell instanceof ByteBufferChunkCell) {
+      return ((ByteBufferChunkCell) cell).getChunkId();
+    }
+    if (cell instanceof NoTagByteBufferChunkCell) {
+      return ((NoTagByteBufferChunkCell) cell).getChunkId();
+    }
+    return -1;
+  }
+}
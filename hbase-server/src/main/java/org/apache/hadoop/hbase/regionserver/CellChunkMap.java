@@ -0,0 +1,131 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hbase.regionserver;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.util.ByteBufferUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * CellChunkMap is an array of serialized references to Cells, kept inside MemStoreLAB chunks
+ * rather than as Java objects. Every reference is the id of the chunk holding the Cell data,
+ * followed by the offset and the length of the Cell in that chunk and by the Cell's sequence id.
+ * The referenced chunks are looked up through the {@link MemStoreChunkPool} registry, and a Cell
+ * object over the chunk data is only created when the Cell is read. Index chunks can be on- or
+ * off-heap, as the chunks of the MemStoreLAB are.
+ * <p>
+ * A CellChunkMap can be built only out of Cells which MemStoreLAB copied into registered chunks,
+ * see {@link ByteBufferChunkCell}.
+ */
+@InterfaceAudience.Private
+public class CellChunkMap extends CellFlatMap {
+
+  // chunk id, offset, length and sequence id of a Cell
+  public static final int SIZEOF_CELL_REF = 3 * Bytes.SIZEOF_INT + Bytes.SIZEOF_LONG;
+
+  private final Chunk[] chunks;               // the index chunks
+  private final int numOfCellsInsideChunk;    // the number of references one index chunk holds
+
+  /* The index chunks are written only when CellChunkMap is created, all sub-CellBlocks use
+   * boundary indexes. The references in the chunks must be ordered. */
+  public CellChunkMap(Comparator<? super Cell> comparator, Chunk[] chunks, int numOfCellsInsideChunk,
+      int min, int max, boolean descending) {
+    super(comparator, min, max, descending);
+    this.chunks = chunks;
+    this.numOfCellsInsideChunk = numOfCellsInsideChunk;
+  }
+
+  /**
+   * Write the references to the given ordered cells into index chunks taken from the given
+   * MemStoreLAB and create a CellChunkMap over them.
+   * @return the new CellChunkMap, or null if some cell does not live in a registered chunk or the
+   *         MemStoreLAB can not provide index chunks
+   */
+  public static CellChunkMap create(Comparator<? super Cell> comparator, MemStoreLAB memStoreLAB,
+      Cell[] cells, int numOfCells) {
+    for (int i = 0; i < numOfCells; i++) {
+      if (ByteBufferChunkCell.getChunkId(cells[i]) < 0) {
+        return null;
+      }
+    }
+    int numOfCellsInsideChunk = 0;
+    int numOfChunks = 0;
+    Chunk[] chunks = new Chunk[0];
+    int idx = 0;
+    while (idx < numOfCells) {
+      Chunk chunk = memStoreLAB.getNewExternalChunk();
+      if (chunk == null) {
+        return null;
+      }
+      int capacity = chunk.getData().capacity() / SIZEOF_CELL_REF;
+      if (numOfChunks == 0) {
+        numOfCellsInsideChunk = capacity;
+        chunks = new Chunk[(numOfCells + capacity - 1) / capacity];
+      } else if (capacity != numOfCellsInsideChunk) {
+        // chunks of different sizes, can not address the references by a fixed stride
+        return null;
+      }
+      int toWrite = Math.min(numOfCellsInsideChunk, numOfCells - idx);
+      int offset = chunk.alloc(toWrite * SIZEOF_CELL_REF);
+      assert offset == 0;
+      ByteBuffer buf = chunk.getData();
+      for (int i = 0; i < toWrite; i++, idx++) {
+        ByteBufferKeyValue cell = (ByteBufferKeyValue) cells[idx];
+        int pos = offset + i * SIZEOF_CELL_REF;
+        pos = ByteBufferUtils.putInt(buf, pos, ByteBufferChunkCell.getChunkId(cell));
+        pos = ByteBufferUtils.putInt(buf, pos, cell.getOffset());
+        pos = ByteBufferUtils.putInt(buf, pos, cell.getSerializedSize(true));
+        ByteBufferUtils.putLong(buf, pos, cell.getSequenceId());
+      }
+      chunks[numOfChunks++] = chunk;
+    }
+    return new CellChunkMap(comparator, chunks, numOfCellsInsideChunk, 0, numOfCells, false);
+  }
+
+  /* To be used by base class only to create a sub-CellFlatMap */
+  @Override
+  protected CellFlatMap createSubCellFlatMap(int min, int max, boolean descending) {
+    return new CellChunkMap(comparator(), this.chunks, this.numOfCellsInsideChunk, min, max,
+        descending);
+  }
+
+  @Override
+  protected Cell getCell(int i) {
+    if ((i < minCellIdx) || (i >= maxCellIdx)) return null;
+    int chunkIndex = i / numOfCellsInsideChunk;
+    ByteBuffer block = chunks[chunkIndex].getData();
+    int pos = (i - chunkIndex * numOfCellsInsideChunk) * SIZEOF_CELL_REF;
+    int chunkId = ByteBufferUtils.toInt(block, pos);
+    int offset = ByteBufferUtils.toInt(block, pos + Bytes.SIZEOF_INT);
+    int length = ByteBufferUtils.toInt(block, pos + 2 * Bytes.SIZEOF_INT);
+    long seqId = ByteBufferUtils.toLong(block, pos + 3 * Bytes.SIZEOF_INT);
+    Chunk chunk = MemStoreChunkPool.getRegisteredChunk(chunkId);
+    if (chunk == null) {
+      throw new IllegalStateException("Chunk " + chunkId + " referenced by the index of cell " + i
+          + " is not registered, it was already reclaimed");
+    }
+    return new ByteBufferChunkCell(chunk.getData(), offset, length, seqId, chunkId);
+  }
+}
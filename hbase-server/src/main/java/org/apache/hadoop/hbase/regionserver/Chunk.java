@@ -46,6 +46,9 @@ public abstract class Chunk {
   /** Size of chunk in bytes */
   protected final int size;
 
+  /** Id under which this chunk can be looked up in the {@link MemStoreChunkPool} registry */
+  private final int id;
+
   /**
    * Create an uninitialized chunk. Note that memory is not allocated yet, so this is cheap.
    *
@@ -53,6 +56,7 @@ public abstract class Chunk {
    */
   Chunk(int size) {
     this.size = size;
+    this.id = MemStoreChunkPool.nextChunkId();
   }
 
   /**
@@ -107,6 +111,13 @@ public abstract class Chunk {
     }
   }
 
+  /**
+   * @return the id of this chunk, unique among the chunks of this process
+   */
+  int getId() {
+    return this.id;
+  }
+
   /**
    * @return This chunk's backing data.
    */
@@ -116,7 +127,7 @@ public abstract class Chunk {
 
   @Override
   public String toString() {
-    return "Chunk@" + System.identityHashCode(this) + " allocs=" + allocCount.get() + "waste="
+    return "Chunk@" + System.identityHashCode(this) + " id=" + id + " allocs=" + allocCount.get() + "waste="
         + (data.capacity() - nextFreeOffset.get());
   }
 
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -62,12 +63,26 @@ public class CompactingMemStore extends AbstractMemStore {
   public static final String IN_MEMORY_FLUSH_THRESHOLD_FACTOR_KEY =
       "hbase.memstore.inmemoryflush.threshold.factor";
   private static final double IN_MEMORY_FLUSH_THRESHOLD_FACTOR_DEFAULT = 0.25;
+  // The index the flat segments of the pipeline are built with
+  public static final String COMPACTING_MEMSTORE_INDEX_KEY =
+      "hbase.hregion.compacting.memstore.index";
+  public static final String COMPACTING_MEMSTORE_INDEX_DEFAULT =
+      String.valueOf(IndexType.ARRAY_MAP);
+
+  /**
+   * Types of index of the flat segments
+   */
+  public enum IndexType {
+    ARRAY_MAP, // an array of references to Cell objects, see CellArrayMap
+    CHUNK_MAP  // serialized Cell references inside MSLAB chunks, see CellChunkMap
+  }
 
   private static final Log LOG = LogFactory.getLog(CompactingMemStore.class);
   private Store store;
   private RegionServicesForStores regionServices;
   private CompactionPipeline pipeline;
   private MemStoreCompactor compactor;
+  private final IndexType indexType;
 
   private long inmemoryFlushSize;       // the threshold on active size for in-memory flush
   private final AtomicBoolean inMemoryFlushInProgress = new AtomicBoolean(false);
@@ -75,12 +90,14 @@ public class CompactingMemStore extends AbstractMemStore {
   private final AtomicBoolean allowCompaction = new AtomicBoolean(true);
   private boolean compositeSnapshot = true;
 
-  public static final long DEEP_OVERHEAD = AbstractMemStore.DEEP_OVERHEAD
-      + 6 * ClassSize.REFERENCE // Store, RegionServicesForStores, CompactionPipeline,
-                                // MemStoreCompactor, inMemoryFlushInProgress, allowCompaction
+  public static final long DEEP_OVERHEAD = ClassSize.align(AbstractMemStore.DEEP_OVERHEAD
+      + 7 * ClassSize.REFERENCE // Store, RegionServicesForStores, CompactionPipeline,
+                                // MemStoreCompactor, inMemoryFlushInProgress, allowCompaction,
+                                // indexType
       + Bytes.SIZEOF_LONG // inmemoryFlushSize
+      + Bytes.SIZEOF_BOOLEAN // compositeSnapshot
       + 2 * ClassSize.ATOMIC_BOOLEAN// inMemoryFlushInProgress and allowCompaction
-      + CompactionPipeline.DEEP_OVERHEAD + MemStoreCompactor.DEEP_OVERHEAD;
+      + CompactionPipeline.DEEP_OVERHEAD + MemStoreCompactor.DEEP_OVERHEAD);
 
   public CompactingMemStore(Configuration conf, CellComparator c,
       HStore store, RegionServicesForStores regionServices,
@@ -89,10 +106,27 @@ public class CompactingMemStore extends AbstractMemStore {
     this.store = store;
     this.regionServices = regionServices;
     this.pipeline = new CompactionPipeline(getRegionServices());
+    this.indexType = getIndexType(conf);
     this.compactor = new MemStoreCompactor(this, compactionPolicy);
     initInmemoryFlushSize(conf);
   }
 
+  /**
+   * @return the index type of the flat segments configured in the given configuration
+   */
+  static IndexType getIndexType(Configuration conf) {
+    return IndexType.valueOf(conf.get(COMPACTING_MEMSTORE_INDEX_KEY,
+        COMPACTING_MEMSTORE_INDEX_DEFAULT).toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * @return the type of the flat segments this memstore creates
+   */
+  ImmutableSegment.Type getFlatSegmentType() {
+    return (indexType == IndexType.CHUNK_MAP) ? ImmutableSegment.Type.CHUNK_MAP_BASED
+        : ImmutableSegment.Type.ARRAY_MAP_BASED;
+  }
+
   private void initInmemoryFlushSize(Configuration conf) {
     long memstoreFlushSize = getRegionServices().getMemstoreFlushSize();
     int numStores = getRegionServices().getNumStores();
@@ -263,9 +297,17 @@ public class CompactingMemStore extends AbstractMemStore {
    * @param requesterVersion The caller must hold the VersionedList of the pipeline
    *           with version taken earlier. This version must be passed as a parameter here.
    *           The flattening happens only if versions match.
+   * @return true iff a segment was flattened
+   */
+  public boolean flattenOneSegment(long requesterVersion) {
+    return pipeline.flattenYoungestSegment(requesterVersion, getFlatSegmentType());
+  }
+
+  /**
+   * @return the in-memory compaction manager of this memstore, for its statistics
    */
-  public void flattenOneSegment(long requesterVersion) {
-    pipeline.flattenYoungestSegment(requesterVersion);
+  MemStoreCompactor getCompactor() {
+    return compactor;
   }
 
   public boolean hasImmutableSegments() {
@@ -177,9 +177,10 @@ public class CompactionPipeline {
    * Flattening of the segment that initially is not based on ConcurrentSkipListMap has no effect.
    * Return after one segment is successfully flatten.
    *
+   * @param flatType the type of the flat segment, see {@link ImmutableSegment#flatten}
    * @return true iff a segment was successfully flattened
    */
-  public boolean flattenYoungestSegment(long requesterVersion) {
+  public boolean flattenYoungestSegment(long requesterVersion, ImmutableSegment.Type flatType) {
 
     if(requesterVersion != version) {
       LOG.warn("Segment flattening failed, because versions do not match. Requester version: "
@@ -196,7 +197,7 @@ public class CompactionPipeline {
       for (ImmutableSegment s : pipeline) {
         // remember the old size in case this segment is going to be flatten
         MemstoreSize memstoreSize = new MemstoreSize();
-        if (s.flatten(memstoreSize)) {
+        if (s.flatten(memstoreSize, flatType)) {
           if(region != null) {
             region.addMemstoreSize(memstoreSize);
           }
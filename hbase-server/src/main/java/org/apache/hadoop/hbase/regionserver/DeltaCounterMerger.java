@@ -0,0 +1,383 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.hadoop.hbase.ArrayBackedTag;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.Tag;
+import org.apache.hadoop.hbase.TagType;
+import org.apache.hadoop.hbase.TagUtil;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.TimeRange;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * Sums the delta cells of a {@link org.apache.hadoop.hbase.HColumnDescriptor#DELTA_COUNTERS}
+ * family between the {@link KeyValueHeap} of a {@link StoreScanner} and its query matcher, so
+ * that filters, column trackers and per family limits only ever see summed counters.
+ * <p>
+ * The cells of a column arrive newest first. A run of deltas is summed up to and including the
+ * first cell that is not a delta, the base value; the sum is a single cell with the key of the
+ * newest one. Cells older than the base start the next run, the next older version of the
+ * counter. A run without a base value stays a delta, so a flush or minor compaction can still
+ * be merged with older files later.
+ * <p>
+ * As a flush or compaction writes the run out as that single cell, reads treat it as one too,
+ * the way an Increment would have written it: delete markers and the TTL decide on the whole run
+ * by its newest cell. A delete marker that sorts within a run therefore only ends it when it was
+ * written before every delta summed so far, as it then deleted the counter those deltas were added
+ * to. Otherwise the counter already had a newer cell when the marker was written; the marker is
+ * handed on after the sum, so it still applies to the cells older than the run. A run also ends
+ * at a cell that may not be summed: a value that is not a long or a cell newer than the read
+ * point, and for user scans a cell outside the time range of the scan. Such cells are left to the
+ * matcher as they are.
+ */
+@InterfaceAudience.Private
+class DeltaCounterMerger {
+
+  static final Tag DELTA_TAG =
+      new ArrayBackedTag(TagType.DELTA_COUNTER_TAG_TYPE, HConstants.EMPTY_BYTE_ARRAY);
+
+  // Only cells visible to every reader may be summed
+  private final long readPoint;
+  // The time range and TTL of a user scan, null when flushing or compacting
+  private final TimeRange timeRange;
+  private final long oldestUnexpiredTS;
+
+  private DeltaCounterMerger(long readPoint, TimeRange timeRange, long oldestUnexpiredTS) {
+    this.readPoint = readPoint;
+    this.timeRange = timeRange;
+    this.oldestUnexpiredTS = oldestUnexpiredTS;
+  }
+
+  /**
+   * @return a merger for a user scan, which sees every cell below its read point already
+   */
+  static DeltaCounterMerger forUserScan(Scan scan, ScanInfo scanInfo, long oldestUnexpiredTS) {
+    TimeRange timeRange = scan.getColumnFamilyTimeRange().get(scanInfo.getFamily());
+    if (timeRange == null) {
+      timeRange = scan.getTimeRange();
+    }
+    // Expired cells kept for min versions are returned as they are
+    return new DeltaCounterMerger(Long.MAX_VALUE, timeRange,
+        scanInfo.getMinVersions() > 0 ? Long.MIN_VALUE : oldestUnexpiredTS);
+  }
+
+  /**
+   * @param smallestReadPoint cells newer than this are written out as they are
+   * @return a merger for a flush or compaction
+   */
+  static DeltaCounterMerger forCompaction(long smallestReadPoint) {
+    return new DeltaCounterMerger(smallestReadPoint, null, Long.MIN_VALUE);
+  }
+
+  static boolean isDelta(Cell cell) {
+    return cell.getTagsLength() > 0
+        && CellUtil.getTag(cell, TagType.DELTA_COUNTER_TAG_TYPE) != null;
+  }
+
+  KeyValueHeap createHeap(List<? extends KeyValueScanner> scanners, CellComparator comparator)
+      throws IOException {
+    return new MergingHeap(scanners, comparator);
+  }
+
+  KeyValueHeap createReversedHeap(List<? extends KeyValueScanner> scanners,
+      CellComparator comparator) throws IOException {
+    return new ReversedMergingHeap(scanners, comparator);
+  }
+
+  /**
+   * The cells of a heap before they are summed.
+   */
+  private interface Source {
+    Cell peekRaw();
+
+    Cell nextRaw() throws IOException;
+  }
+
+  /**
+   * The summing state of one heap.
+   */
+  private class Cursor {
+    private final Source source;
+
+    // The cell peek() returns, and whether the heap already moved past the cells it sums. It is
+    // summed as soon as the heap moves, since peek() may not read.
+    private Cell top;
+    private boolean consumed;
+    // The delete markers the heap moved past while summing top, returned after it
+    private final Deque<Cell> markers = new ArrayDeque<Cell>();
+
+    Cursor(Source source) {
+      this.source = source;
+    }
+
+    Cell peek() {
+      return top;
+    }
+
+    Cell next() throws IOException {
+      Cell cell = top;
+      if (cell != null && !consumed) {
+        source.nextRaw();
+      }
+      if (markers.isEmpty()) {
+        advance();
+      } else {
+        top = markers.poll();
+      }
+      return cell;
+    }
+
+    /**
+     * Sums the next cells of the heap after it moved.
+     */
+    void advance() throws IOException {
+      top = merge();
+    }
+
+    /**
+     * Skips the delete markers held back before <code>key</code>.
+     * @return whether the heap has to seek forward to <code>key</code>; it may already have moved
+     *         past it while summing the current cell, which is then still at or after the key
+     */
+    boolean mustReseek(Cell key, CellComparator comparator) {
+      while (top != null && !markers.isEmpty() && comparator.compare(top, key) < 0) {
+        top = markers.poll();
+      }
+      return top == null || comparator.compare(top, key) < 0;
+    }
+
+    /**
+     * Called before any other seek, which may go back to cells already summed.
+     */
+    void reset() {
+      top = null;
+      markers.clear();
+    }
+
+    void shipped() {
+      if (top != null && consumed) {
+        // The heap no longer holds the blocks of a cell it moved past
+        top = KeyValueUtil.copyToNewKeyValue(top);
+      }
+      for (int i = markers.size(); i > 0; i--) {
+        markers.add(KeyValueUtil.copyToNewKeyValue(markers.poll()));
+      }
+    }
+
+    private Cell merge() throws IOException {
+      Cell first = source.peekRaw();
+      consumed = false;
+      if (first == null || !isMergeable(first) || first.getTimestamp() < oldestUnexpiredTS) {
+        return first;
+      }
+      source.nextRaw();
+      consumed = true;
+      boolean base = !isDelta(first);
+      int count = 1;
+      long sum = CellUtil.getValueAsLong(first);
+      long maxSeqId = first.getSequenceId();
+      long minSeqId = maxSeqId;
+      Cell cell;
+      while (!base && (cell = source.peekRaw()) != null
+          && CellUtil.matchingRowColumn(first, cell)) {
+        if (CellUtil.isDelete(cell)) {
+          if (CellUtil.isDeleteColumnOrFamily(cell) && cell.getSequenceId() < minSeqId) {
+            // Deleted the counter before any of the deltas were added, so they start a new one
+            break;
+          }
+          markers.add(cell);
+        } else if (isMergeable(cell)) {
+          base = !isDelta(cell);
+          count++;
+          sum += CellUtil.getValueAsLong(cell);
+          maxSeqId = Math.max(maxSeqId, cell.getSequenceId());
+          minSeqId = Math.min(minSeqId, cell.getSequenceId());
+        } else {
+          break;
+        }
+        source.nextRaw();
+      }
+      return count == 1 ? first : createMergedCell(first, sum, maxSeqId, base);
+    }
+
+    /**
+     * @return whether the cell may be summed into a run; a run may not start with an expired one
+     */
+    private boolean isMergeable(Cell cell) {
+      if (cell.getTypeByte() != KeyValue.Type.Put.getCode()
+          || cell.getValueLength() != Bytes.SIZEOF_LONG || cell.getSequenceId() > readPoint) {
+        return false;
+      }
+      return timeRange == null || timeRange.withinTimeRange(cell.getTimestamp());
+    }
+  }
+
+  private static Cell createMergedCell(Cell first, long sum, long maxSeqId, boolean base) {
+    List<Tag> tags = new ArrayList<Tag>();
+    List<Tag> carried = TagUtil.carryForwardTags(first);
+    if (carried != null) {
+      for (Tag tag : carried) {
+        if (tag.getType() != TagType.DELTA_COUNTER_TAG_TYPE) {
+          tags.add(tag);
+        }
+      }
+    }
+    if (!base) {
+      tags.add(DELTA_TAG);
+    }
+    KeyValue merged = new KeyValue(CellUtil.cloneRow(first), CellUtil.cloneFamily(first),
+        CellUtil.cloneQualifier(first), first.getTimestamp(), KeyValue.Type.Put,
+        Bytes.toBytes(sum), tags);
+    merged.setSequenceId(maxSeqId);
+    return merged;
+  }
+
+  private class MergingHeap extends KeyValueHeap implements Source {
+    private final Cursor cursor = new Cursor(this);
+    private final CellComparator cellComparator;
+
+    MergingHeap(List<? extends KeyValueScanner> scanners, CellComparator comparator)
+        throws IOException {
+      super(scanners, comparator);
+      this.cellComparator = comparator;
+      cursor.advance();
+    }
+
+    @Override
+    public Cell peekRaw() {
+      return super.peek();
+    }
+
+    @Override
+    public Cell nextRaw() throws IOException {
+      return super.next();
+    }
+
+    @Override
+    public Cell peek() {
+      return cursor.peek();
+    }
+
+    @Override
+    public Cell next() throws IOException {
+      return cursor.next();
+    }
+
+    @Override
+    public boolean seek(Cell seekKey) throws IOException {
+      cursor.reset();
+      super.seek(seekKey);
+      cursor.advance();
+      return cursor.peek() != null;
+    }
+
+    @Override
+    public boolean reseek(Cell seekKey) throws IOException {
+      if (cursor.mustReseek(seekKey, cellComparator)) {
+        super.reseek(seekKey);
+        cursor.advance();
+      }
+      return cursor.peek() != null;
+    }
+
+    @Override
+    public boolean requestSeek(Cell key, boolean forward, boolean useBloom) throws IOException {
+      if (!forward) {
+        cursor.reset();
+      } else if (!cursor.mustReseek(key, cellComparator)) {
+        return true;
+      }
+      super.requestSeek(key, forward, useBloom);
+      cursor.advance();
+      return cursor.peek() != null;
+    }
+
+    @Override
+    public void shipped() throws IOException {
+      cursor.shipped();
+      super.shipped();
+    }
+  }
+
+  private class ReversedMergingHeap extends ReversedKeyValueHeap implements Source {
+    private final Cursor cursor = new Cursor(this);
+
+    ReversedMergingHeap(List<? extends KeyValueScanner> scanners, CellComparator comparator)
+        throws IOException {
+      super(scanners, comparator);
+      cursor.advance();
+    }
+
+    @Override
+    public Cell peekRaw() {
+      return super.peek();
+    }
+
+    @Override
+    public Cell nextRaw() throws IOException {
+      return super.next();
+    }
+
+    @Override
+    public Cell peek() {
+      return cursor.peek();
+    }
+
+    @Override
+    public Cell next() throws IOException {
+      return cursor.next();
+    }
+
+    @Override
+    public boolean seekToPreviousRow(Cell seekKey) throws IOException {
+      cursor.reset();
+      super.seekToPreviousRow(seekKey);
+      cursor.advance();
+      return cursor.peek() != null;
+    }
+
+    @Override
+    public boolean backwardSeek(Cell seekKey) throws IOException {
+      cursor.reset();
+      super.backwardSeek(seekKey);
+      cursor.advance();
+      return cursor.peek() != null;
+    }
+
+    @Override
+    public void shipped() throws IOException {
+      cursor.shipped();
+      super.shipped();
+    }
+  }
+}
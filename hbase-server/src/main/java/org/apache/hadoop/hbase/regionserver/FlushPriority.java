@@ -0,0 +1,75 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.Locale;
+
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+
+/**
+ * How urgent a flush request is. The {@link MemStoreFlusher} keeps one queue per priority and
+ * serves the queues in weighted round robin, so that a region which blocks updates does not wait
+ * behind the periodic flushes of idle regions.
+ * @see FlushRequester
+ */
+@InterfaceAudience.Private
+public enum FlushPriority {
+  /** The region is above its blocking memstore size and rejects updates */
+  BLOCKING(16),
+  /** The global memstore size is above the low water mark */
+  GLOBAL_PRESSURE(8),
+  /** The region reached its memstore flush size */
+  NORMAL(4),
+  /** A WAL roll needs the region's oldest edits flushed */
+  WAL_ROLL(2),
+  /** The region has not been flushed for a while */
+  PERIODIC(1);
+
+  private final int defaultWeight;
+
+  FlushPriority(int defaultWeight) {
+    this.defaultWeight = defaultWeight;
+  }
+
+  /**
+   * @return the share of the flush handlers this priority gets when all queues are busy
+   */
+  int getDefaultWeight() {
+    return defaultWeight;
+  }
+
+  /**
+   * @return config key overriding the weight of this priority
+   */
+  String getWeightKey() {
+    return "hbase.regionserver.flush.queue.weight." + getMetricName();
+  }
+
+  /**
+   * @return lower camel case name used in config keys and metric names
+   */
+  String getMetricName() {
+    StringBuilder sb = new StringBuilder();
+    for (String part : name().toLowerCase(Locale.ROOT).split("_")) {
+      sb.append(sb.length() == 0 ? part
+          : Character.toUpperCase(part.charAt(0)) + part.substring(1));
+    }
+    return sb.toString();
+  }
+}
@@ -35,6 +35,19 @@ public interface FlushRequester {
    */
   void requestFlush(Region region, boolean forceFlushAllStores);
 
+  /**
+   * Tell the listener the cache needs to be flushed, with the given urgency. A request for a
+   * region which is already queued raises the priority of the queued request if needed.
+   *
+   * @param region the Region requesting the cache flush
+   * @param forceFlushAllStores whether we want to flush all stores. e.g., when request from log
+   *          rolling.
+   * @param priority how urgent the flush is
+   */
+  default void requestFlush(Region region, boolean forceFlushAllStores, FlushPriority priority) {
+    requestFlush(region, forceFlushAllStores);
+  }
+
   /**
    * Tell the listener the cache needs to be flushed after a delay
    *
@@ -45,6 +58,13 @@ public interface FlushRequester {
    */
   void requestDelayedFlush(Region region, long delay, boolean forceFlushAllStores);
 
+  /**
+   * @return milliseconds the oldest pending flush request has been waiting to be served
+   */
+  default long getFlushQueueWaitTime() {
+    return 0;
+  }
+
   /**
    * Register a FlushRequestListener
    *
@@ -54,9 +54,12 @@ import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -72,6 +75,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.logging.Log;
@@ -200,6 +204,26 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   public static final String HREGION_MVCC_PRE_ASSIGN = "hbase.hregion.mvcc.preassign";
   public static final boolean DEFAULT_HREGION_MVCC_PRE_ASSIGN = true;
 
+  /**
+   * Config key for combining the mini-batches of concurrent batchMutate calls against one region
+   * into a single row lock pass, WAL append and sync, and MVCC transaction.
+   */
+  public static final String HREGION_BATCH_COMBINE = "hbase.hregion.batch.combine";
+  public static final boolean DEFAULT_HREGION_BATCH_COMBINE = false;
+  /** Max number of mutations written by one combined mini-batch */
+  public static final String HREGION_BATCH_COMBINE_MAX_OPERATIONS =
+      "hbase.hregion.batch.combine.max.operations";
+  public static final int DEFAULT_HREGION_BATCH_COMBINE_MAX_OPERATIONS = 1000;
+
+  /**
+   * Config key for the number of region server threads, shared by all its regions, that write
+   * out the store snapshots of a flush in parallel. A flush writes the snapshots the threads have
+   * no room for itself, and the flushed files of all the stores are still committed in one step.
+   * 1 flushes the stores one after another on the flushing thread.
+   */
+  public static final String HREGION_FLUSH_STORE_THREADS = "hbase.hregion.flush.store.threads";
+  public static final int DEFAULT_HREGION_FLUSH_STORE_THREADS = 4;
+
   /**
    * This is the global default value for durability. All tables/mutations not
    * defining a durability or using USE_DEFAULT will default to this value.
@@ -250,6 +274,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   // - the row itself
   private final ConcurrentHashMap<HashedBytes, RowLockContext> lockedRows =
       new ConcurrentHashMap<HashedBytes, RowLockContext>();
+  // preallocated lock slots tried before lockedRows, see StripedRowLocks
+  private final StripedRowLocks stripedRowLocks;
 
   protected final Map<byte[], Store> stores = new ConcurrentSkipListMap<byte[], Store>(
       Bytes.BYTES_RAWCOMPARATOR);
@@ -276,18 +302,25 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   // Number of requests blocked by memstore size.
   private final LongAdder blockedRequestsCount = new LongAdder();
 
+  // WAL appends of this region and waits of its handlers on WAL syncs
+  private final RegionWALStats walStats = new RegionWALStats();
+
   // Compaction LongAdders
   final AtomicLong compactionsFinished = new AtomicLong(0L);
   final AtomicLong compactionsFailed = new AtomicLong(0L);
   final AtomicLong compactionNumFilesCompacted = new AtomicLong(0L);
   final AtomicLong compactionNumBytesCompacted = new AtomicLong(0L);
 
-  private final WAL wal;
+  // Only changes when a full flush moves the region to the WAL of another group, see
+  // switchWALIfRegrouped
+  private volatile WAL wal;
   private final HRegionFileSystem fs;
   protected final Configuration conf;
   private final Configuration baseConf;
   private final int rowLockWaitDuration;
   private CompactedHFilesDischarger compactedFileDischarger;
+  // Null unless hbase.hregion.batch.combine is enabled
+  private final MutationBatchCombiner batchCombiner;
   static final int DEFAULT_ROWLOCK_WAIT_DURATION = 30000;
 
   // The internal wait duration to acquire a lock before read/update
@@ -717,6 +750,12 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     }
     this.rowLockWaitDuration = conf.getInt("hbase.rowlock.wait.duration",
                     DEFAULT_ROWLOCK_WAIT_DURATION);
+    this.stripedRowLocks = new StripedRowLocks(conf.getInt(StripedRowLocks.ROW_LOCK_SLOTS_KEY,
+        StripedRowLocks.DEFAULT_ROW_LOCK_SLOTS));
+    this.batchCombiner = conf.getBoolean(HREGION_BATCH_COMBINE, DEFAULT_HREGION_BATCH_COMBINE)
+        ? new MutationBatchCombiner(conf.getInt(HREGION_BATCH_COMBINE_MAX_OPERATIONS,
+            DEFAULT_HREGION_BATCH_COMBINE_MAX_OPERATIONS))
+        : null;
 
     this.isLoadingCfsOnDemandDefault = conf.getBoolean(LOAD_CFS_ON_DEMAND_CONFIG_KEY, true);
     this.htableDescriptor = htd;
@@ -871,6 +910,12 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     status.setStatus("Writing region info on filesystem");
     fs.checkRegionInfoOnFilesystem();
 
+    if (ServerRegionReplicaUtil.shouldReplayRecoveredEdits(this)) {
+      // Pick up any HFiles the WAL splitter wrote for us before the stores list their files.
+      status.setStatus("Moving recovered HFiles into the Stores");
+      loadRecoveredHFilesIfAny();
+    }
+
     // Initialize all the HStores
     status.setStatus("Initializing all the Stores");
     long maxSeqId = initializeStores(reporter, status);
@@ -1246,6 +1291,10 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     writeRequestsCount.add(i);
   }
 
+  RegionWALStats getWALStats() {
+    return walStats;
+  }
+
   @Override
   public long getMemstoreSize() {
     return memstoreDataSize.get();
@@ -2418,6 +2467,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     // The max flushed sequence id after this flush operation completes. All edits in memstore
     // will be in advance of this sequence id.
     long flushedSeqId = HConstants.NO_SEQNUM;
+    // Whether this flush moved the region to the WAL of another group
+    boolean switchedWAL = false;
     byte[] encodedRegionName = getRegionInfo().getEncodedNameAsBytes();
     try {
       if (wal != null) {
@@ -2462,6 +2513,12 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       for (StoreFlushContext flush : storeFlushCtxs.values()) {
         flush.prepare();
       }
+
+      // Last under the updates lock, so that a failure above aborts the flush on a region
+      // still appending to the WAL the flush started on
+      if (wal != null && wal == this.wal && storesToFlush.size() == stores.size()) {
+        switchedWAL = switchWALIfRegrouped(wal);
+      }
     } catch (IOException ex) {
       doAbortFlushToWAL(wal, flushOpSeqId, committedFiles);
       throw ex;
@@ -2471,7 +2528,23 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     String s = "Finished memstore snapshotting " + this + ", syncing WAL and waiting on mvcc, " +
         "flushsize=" + totalSizeOfFlushableStores;
     status.setStatus(s);
-    doSyncOfUnflushedWALChanges(wal, getRegionInfo());
+    try {
+      doSyncOfUnflushedWALChanges(wal, getRegionInfo());
+    } catch (IOException ioe) {
+      if (!switchedWAL) {
+        throw ioe;
+      }
+      // New edits already go to the new WAL while the flush of the edits in the old one was
+      // aborted. No later flush can complete on the old WAL, so it would keep the region
+      // forever. Same as a dropped snapshot: the server aborts and the WALs are replayed.
+      DroppedSnapshotException dse = new DroppedSnapshotException("region: "
+          + Bytes.toStringBinary(getRegionInfo().getRegionName())
+          + ", WAL sync failed after moving to the WAL of another group");
+      dse.initCause(ioe);
+      this.closing.set(true);
+      rsServices.abort("Replay of WAL required. Forcing server shutdown", dse);
+      throw dse;
+    }
     return new PrepareFlushResult(storeFlushCtxs, committedFiles, storeFlushableSize, startTime,
         flushOpSeqId, flushedSeqId, totalSizeOfFlushableStores);
   }
@@ -2499,6 +2572,34 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         ((wal != null) ? "" : "; WAL is null, using passed sequenceid=" + sequenceId));
   }
 
+  /**
+   * Move this region to the WAL its group now maps to, if the grouping strategy has reassigned
+   * it. Must be called with the updates lock held, once all the stores are snapshotted: every
+   * edit of this region in the current WAL is then covered by the flush, which completes on the
+   * current WAL, while any new edit goes to the new one. This way the sequence id accounting of
+   * the current WAL lets go of the region once the flush is done.
+   * @return true if the region moved to another WAL
+   */
+  private boolean switchWALIfRegrouped(final WAL current) {
+    if (rsServices == null || writestate.readOnly || getRegionInfo().isMetaRegion()) {
+      return false;
+    }
+    WAL target;
+    try {
+      target = rsServices.getWAL(getRegionInfo());
+    } catch (IOException e) {
+      // Not a reason to fail the flush, stay on the current WAL and retry on the next one
+      LOG.warn("Failed to get the WAL of the group of " + this, e);
+      return false;
+    }
+    if (target != null && target != current) {
+      LOG.info("Moving " + this + " from WAL " + current + " to " + target);
+      this.wal = target;
+      return true;
+    }
+    return false;
+  }
+
   private void doAbortFlushToWAL(final WAL wal, final long flushOpSeqId,
       final Map<byte[], List<Path>> committedFiles) {
     if (wal == null) return;
@@ -2591,9 +2692,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       // just-made new flush store file. The new flushed file is still in the
       // tmp directory.
 
-      for (StoreFlushContext flush : storeFlushCtxs.values()) {
-        flush.flushCache(status);
-      }
+      flushStoreSnapshots(storeFlushCtxs.values(), status);
 
       // Switch snapshot (in memstore) -> new hfile (thus causing
       // all the store scanners to reset/reseek).
@@ -2705,6 +2804,61 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           FlushResult.Result.FLUSHED_NO_COMPACTION_NEEDED, flushOpSeqId);
   }
 
+  /**
+   * Write out the memstore snapshots of the given stores, in parallel on the store flush executor
+   * of the region server when there is one. Returns once every store is done; the first failure
+   * is rethrown after all the other stores have finished, so that nothing is still writing when
+   * the flush is aborted.
+   */
+  private void flushStoreSnapshots(Collection<StoreFlushContext> flushes,
+      final MonitoredTask status) throws IOException {
+    Executor executor = rsServices == null ? null : rsServices.getStoreFlushExecutor();
+    if (executor == null || flushes.size() <= 1) {
+      for (StoreFlushContext flush : flushes) {
+        flush.flushCache(status);
+      }
+      return;
+    }
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(flushes.size());
+    for (final StoreFlushContext flush : flushes) {
+      FutureTask<Void> future = new FutureTask<Void>(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          flush.flushCache(status);
+          return null;
+        }
+      });
+      // Runs on this thread when the executor has no thread left
+      executor.execute(future);
+      futures.add(future);
+    }
+    IOException failure = null;
+    boolean interrupted = false;
+    for (Future<Void> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException e) {
+          // Keep waiting, the flushed files must not be touched while a store is writing them
+          interrupted = true;
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            Throwable cause = e.getCause();
+            failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+          }
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
   /**
    * Method to safely get the next sequence number.
    * @return Next sequence number unassociated with any actual edit.
@@ -2784,6 +2938,26 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           throw new NoSuchColumnFamilyException("Empty family is invalid");
         }
         checkFamily(family);
+        if (this.htableDescriptor.getFamily(family).isDeltaCounters()) {
+          checkDeltaCounterDelete(family, delete.getFamilyCellMap().get(family));
+        }
+      }
+    }
+  }
+
+  /**
+   * The increments to a counter share timestamps and are summed into one version on read, so
+   * there is no single version a Delete could remove; only whole columns and families can be.
+   * @see HColumnDescriptor#DELTA_COUNTERS
+   */
+  private void checkDeltaCounterDelete(byte[] family, List<Cell> cells)
+      throws DoNotRetryIOException {
+    for (Cell cell : cells) {
+      byte type = cell.getTypeByte();
+      if (type == KeyValue.Type.Delete.getCode()
+          || type == KeyValue.Type.DeleteFamilyVersion.getCode()) {
+        throw new DoNotRetryIOException("Cannot delete a single version of the delta counter "
+            + "family " + Bytes.toString(family) + ", delete the column or family instead");
       }
     }
   }
@@ -2928,11 +3102,27 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     public boolean isDone() {
       return nextIndexToProcess == operations.length;
     }
+
+    /**
+     * Called by {@link #doMiniBatchMutate(BatchOperation)} once the WAL edit of a mini-batch is
+     * appended, before it is synced.
+     */
+    void walAppended() {
+    }
   }
 
   private static class MutationBatch extends BatchOperation<Mutation> {
     private long nonceGroup;
     private long nonce;
+    /** False when the caller already holds row locks, see {@link MutationBatchCombiner} */
+    boolean combinable = true;
+    /** Set when the combined mini-batch this batch was written with failed */
+    IOException combineFailure;
+    /** Set, under the combine lock, once a leader has taken this batch off the queue */
+    boolean claimed;
+    /** Counted down once the combined mini-batch this batch was written with completes */
+    final CountDownLatch combined = new CountDownLatch(1);
+
     public MutationBatch(Mutation[] operations, long nonceGroup, long nonce) {
       super(operations);
       this.nonceGroup = nonceGroup;
@@ -2970,6 +3160,253 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     }
   }
 
+  /**
+   * The mutations of several {@link MutationBatch}es laid out back to back, so that
+   * {@link #doMiniBatchMutate(BatchOperation)} writes them with one row lock pass, one WAL
+   * append and sync and one MVCC write entry. Only batches without nonces are combined, as a
+   * non-replay mini-batch can carry a single nonce.
+   */
+  private static class CombinedMutationBatch extends BatchOperation<Mutation> {
+    private final List<MutationBatch> batches;
+    private final ReentrantLock combineLock;
+
+    public CombinedMutationBatch(List<MutationBatch> batches, int numOperations,
+        ReentrantLock combineLock) {
+      super(new Mutation[numOperations]);
+      this.batches = batches;
+      this.combineLock = combineLock;
+      int offset = 0;
+      for (MutationBatch batch : batches) {
+        int length = batch.operations.length;
+        System.arraycopy(batch.operations, 0, this.operations, offset, length);
+        // Pre hooks have already run and may have resolved some operations
+        System.arraycopy(batch.retCodeDetails, 0, this.retCodeDetails, offset, length);
+        System.arraycopy(batch.walEditsFromCoprocessors, 0, this.walEditsFromCoprocessors, offset,
+            length);
+        offset += length;
+      }
+    }
+
+    /**
+     * The next combined mini-batch may be drained and appended while this one is synced, so the
+     * leader hands the combine lock on here.
+     */
+    @Override
+    void walAppended() {
+      releaseCombineLock();
+    }
+
+    void releaseCombineLock() {
+      if (combineLock.isHeldByCurrentThread()) {
+        combineLock.unlock();
+      }
+    }
+
+    /**
+     * Copies the per-operation results back to the batches this one was made of, marking them
+     * done. If <code>failure</code> is not null, operations not run yet are failed and the
+     * failure is handed to each batch so its caller can rethrow it.
+     */
+    void complete(IOException failure) {
+      int offset = 0;
+      for (MutationBatch batch : batches) {
+        int length = batch.operations.length;
+        for (int i = 0; i < length; i++) {
+          OperationStatus status = this.retCodeDetails[offset + i];
+          if (failure != null && status.getOperationStatusCode() == OperationStatusCode.NOT_RUN) {
+            status = OperationStatus.FAILURE;
+          }
+          batch.retCodeDetails[i] = status;
+        }
+        batch.combineFailure = failure;
+        batch.nextIndexToProcess = length;
+        batch.combined.countDown();
+        offset += length;
+      }
+    }
+
+    @Override
+    public Mutation getMutation(int index) {
+      return this.operations[index];
+    }
+
+    @Override
+    public long getNonceGroup(int index) {
+      return HConstants.NO_NONCE;
+    }
+
+    @Override
+    public long getNonce(int index) {
+      return HConstants.NO_NONCE;
+    }
+
+    @Override
+    public Mutation[] getMutationsForCoprocs() {
+      return this.operations;
+    }
+
+    @Override
+    public boolean isInReplay() {
+      return false;
+    }
+
+    @Override
+    public long getReplaySequenceId() {
+      return 0;
+    }
+  }
+
+  /**
+   * Group commit for concurrent batchMutate calls against this region. Every call queues its
+   * batch and then competes for the combine lock. The winner drains the queue, writes everything
+   * it found as one {@link CombinedMutationBatch} and hands the per-operation results back to the
+   * batches; callers whose batch was taken by another handler meanwhile wait for it to complete.
+   * The combine lock is released once the combined edit is appended to the WAL, so while one
+   * combined mini-batch waits on its sync the next one is drained and appended.
+   * <p>
+   * A caller that already holds a row lock must not queue its batch: the leader writing it
+   * would wait on that row lock while the caller waits on the combine lock.
+   */
+  private class MutationBatchCombiner {
+    private final ReentrantLock combineLock = new ReentrantLock();
+    private final ConcurrentLinkedQueue<MutationBatch> pending =
+        new ConcurrentLinkedQueue<MutationBatch>();
+    private final int maxOperations;
+    // Combined mini-batches written, and the batches they were made of
+    private final LongAdder miniBatchesWritten = new LongAdder();
+    private final LongAdder batchesWritten = new LongAdder();
+
+    MutationBatchCombiner(int maxOperations) {
+      this.maxOperations = maxOperations;
+    }
+
+    /**
+     * Only fresh client batches without nonces and without replication cluster ids can share a
+     * mini-batch, since a mini-batch is written with a single WALKey.
+     */
+    boolean canCombine(BatchOperation<?> batchOp) {
+      if (!(batchOp instanceof MutationBatch) || batchOp.nextIndexToProcess != 0
+          || batchOp.operations.length >= maxOperations) {
+        return false;
+      }
+      MutationBatch batch = (MutationBatch) batchOp;
+      if (!batch.combinable) {
+        return false;
+      }
+      if (batch.nonceGroup != HConstants.NO_NONCE || batch.nonce != HConstants.NO_NONCE) {
+        return false;
+      }
+      for (Mutation mutation : batch.operations) {
+        if (!mutation.getClusterIds().isEmpty()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    void mutate(MutationBatch batch) throws IOException {
+      pending.add(batch);
+      while (true) {
+        combineLock.lock();
+        if (batch.claimed) {
+          combineLock.unlock();
+          break;
+        }
+        CombinedMutationBatch combined;
+        try {
+          // Only the lock holder takes from the queue, so the peeked batch is the one polled
+          List<MutationBatch> batches = new ArrayList<MutationBatch>();
+          int numOperations = 0;
+          MutationBatch next;
+          while ((next = pending.peek()) != null
+              && (batches.isEmpty() || numOperations + next.operations.length <= maxOperations)) {
+            pending.poll();
+            next.claimed = true;
+            batches.add(next);
+            numOperations += next.operations.length;
+          }
+          combined = new CombinedMutationBatch(batches, numOperations, combineLock);
+        } catch (RuntimeException e) {
+          combineLock.unlock();
+          throw e;
+        }
+        writeCombined(combined);
+      }
+      awaitCombined(batch);
+      if (batch.combineFailure != null) {
+        throw batch.combineFailure;
+      }
+    }
+
+    /**
+     * The batch may already be appended to the WAL, so an interrupt cannot abandon it; the
+     * interrupt status is kept for the caller.
+     */
+    private void awaitCombined(MutationBatch batch) {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          batch.combined.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Writes the combined mini-batch. Called with the combine lock held; it is released once the
+     * edit is appended, or at the latest when the write completes.
+     */
+    private void writeCombined(CombinedMutationBatch combined) {
+      IOException failure = null;
+      try {
+        while (!combined.isDone()) {
+          checkResources();
+          doMiniBatchMutate(combined);
+        }
+      } catch (IOException e) {
+        failure = e;
+      } catch (RuntimeException e) {
+        failure = new IOException(e);
+      } finally {
+        combined.releaseCombineLock();
+        if (failure == null && !combined.isDone()) {
+          // Only reachable on an Error; the waiting callers must still get an answer
+          failure = new IOException("Combined mini-batch did not complete");
+        }
+        combined.complete(failure);
+      }
+      miniBatchesWritten.increment();
+      batchesWritten.add(combined.batches.size());
+      if (LOG.isTraceEnabled()) {
+        LOG.trace(getRegionInfo().getEncodedName() + " : combined " + combined.batches.size()
+            + " batches with " + combined.operations.length + " mutations");
+      }
+    }
+  }
+
+  /** @return the number of mini-batches written by the batch combiner, or 0 if it is off */
+  @VisibleForTesting
+  long getCombinedMiniBatchCount() {
+    return batchCombiner == null ? 0 : batchCombiner.miniBatchesWritten.sum();
+  }
+
+  /** @return the number of batches written by the batch combiner, or 0 if it is off */
+  @VisibleForTesting
+  long getCombinedBatchCount() {
+    return batchCombiner == null ? 0 : batchCombiner.batchesWritten.sum();
+  }
+
+  /** @return the number of batches waiting to be taken by the batch combiner */
+  @VisibleForTesting
+  int getPendingCombineCount() {
+    return batchCombiner == null ? 0 : batchCombiner.pending.size();
+  }
+
   private static class ReplayBatch extends BatchOperation<MutationReplay> {
     private long replaySeqId = 0;
     public ReplayBatch(MutationReplay[] operations, long seqId) {
@@ -3074,7 +3511,11 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           }
           initialized = true;
         }
-        doMiniBatchMutate(batchOp);
+        if (batchCombiner != null && batchCombiner.canCombine(batchOp)) {
+          batchCombiner.mutate((MutationBatch) batchOp);
+        } else {
+          doMiniBatchMutate(batchOp);
+        }
         long newSize = this.getMemstoreSize();
         requestFlushIfNeeded(newSize);
       }
@@ -3343,6 +3784,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
                 this.getReplicationScope());
             // TODO: Use the doAppend methods below... complicated by the replay stuff above.
             txid = this.wal.append(this.getRegionInfo(), walKey, walEdit, true);
+            batchOp.walAppended();
             if (txid != 0) {
               sync(txid, durability);
             }
@@ -3707,7 +4149,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           }
           // All edits for the given row (across all column families) must happen atomically.
           if (mutation != null) {
-            doBatchMutate(mutation);
+            // We hold the row lock, so this mutation must not wait on other handlers' batches
+            doBatchMutate(mutation, false);
           } else {
             mutateRow(rowMutations);
           }
@@ -3764,8 +4207,15 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
 
   private void doBatchMutate(Mutation mutation) throws IOException {
+    doBatchMutate(mutation, true);
+  }
+
+  private void doBatchMutate(Mutation mutation, boolean combinable) throws IOException {
     // Currently this is only called for puts and deletes, so no nonces.
-    OperationStatus[] batchMutate = this.batchMutate(new Mutation[]{mutation});
+    MutationBatch batch =
+        new MutationBatch(new Mutation[]{mutation}, HConstants.NO_NONCE, HConstants.NO_NONCE);
+    batch.combinable = combinable;
+    OperationStatus[] batchMutate = this.batchMutate(batch);
     if (batchMutate[0].getOperationStatusCode().equals(OperationStatusCode.SANITY_CHECK_FAILURE)) {
       throw new FailedSanityCheckException(batchMutate[0].getExceptionMsg());
     } else if (batchMutate[0].getOperationStatusCode().equals(OperationStatusCode.BAD_FAMILY)) {
@@ -3856,7 +4306,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
     if (this.memstoreDataSize.get() > this.blockingMemStoreSize) {
       blockedRequestsCount.increment();
-      requestFlush();
+      requestFlush(FlushPriority.BLOCKING);
       throw new RegionTooBusyException("Above memstore limit, " +
           "regionName=" + (this.getRegionInfo() == null ? "unknown" :
           this.getRegionInfo().getRegionNameAsString()) +
@@ -3935,7 +4385,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   private void applyToMemstore(final Store store, final List<Cell> cells, final boolean delta,
       MemstoreSize memstoreSize) throws IOException {
     // Any change in how we update Store/MemStore needs to also be done in other applyToMemstore!!!!
-    boolean upsert = delta && store.getFamily().getMaxVersions() == 1;
+    // Delta counter families keep every delta until a flush or compaction sums them.
+    boolean upsert = delta && store.getFamily().getMaxVersions() == 1
+        && !store.getScanInfo().isDeltaCounters();
     if (upsert) {
       ((HStore) store).upsert(cells, getSmallestReadPoint(), memstoreSize);
     } else {
@@ -4010,17 +4462,25 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   }
 
   private void requestFlush() {
+    requestFlush(FlushPriority.NORMAL);
+  }
+
+  private void requestFlush(FlushPriority priority) {
     if (this.rsServices == null) {
       return;
     }
     synchronized (writestate) {
-      if (this.writestate.isFlushRequested()) {
+      // A blocking request goes through even if a flush was requested already, so that the
+      // flusher can move the queued request up. Not while a flush runs though: the flusher no
+      // longer holds a request for us then, and a new one would only flush what came in since
+      if (this.writestate.isFlushRequested()
+          && (priority != FlushPriority.BLOCKING || this.writestate.flushing)) {
         return;
       }
       writestate.flushRequested = true;
     }
     // Make request outside of synchronize block; HBASE-818.
-    this.rsServices.getFlushRequester().requestFlush(this, false);
+    this.rsServices.getFlushRequester().requestFlush(this, false, priority);
     if (LOG.isDebugEnabled()) {
       LOG.debug("Flush requested on " + this.getRegionInfo().getEncodedName());
     }
@@ -4166,6 +4626,45 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return seqid;
   }
 
+  /**
+   * Move the HFiles that splitting the WAL wrote for this region, when configured with
+   * {@link WALSplitter#SPLIT_WAL_TO_HFILE}, into the store directories. The files carry the
+   * sequence ids of their edits, so the stores account for them like for flushed files and no
+   * replay is needed.
+   * @throws IOException
+   */
+  private void loadRecoveredHFilesIfAny() throws IOException {
+    FileSystem fs = this.fs.getFileSystem();
+    Path recoveredDir = WALSplitter.getRegionDirRecoveredHFilesDir(this.fs.getRegionDir());
+    if (!fs.exists(recoveredDir)) {
+      return;
+    }
+    for (HColumnDescriptor family : htableDescriptor.getFamilies()) {
+      String familyName = family.getNameAsString();
+      for (Path file : WALSplitter.getRecoveredHFiles(fs, this.fs.getRegionDir(), familyName)) {
+        Path dst = this.fs.commitRecoveredHFile(familyName, file);
+        LOG.info("Moved recovered HFile " + file + " to " + dst);
+      }
+    }
+    // A region is only opened once the WALs holding its edits are split, so no split writes
+    // here any more. What is left is of no use: temporary files of a failed or retried split,
+    // or the files of a dropped family.
+    FileStatus[] left = FSUtils.listStatus(fs, recoveredDir);
+    if (left != null) {
+      for (FileStatus familyDir : left) {
+        FileStatus[] files = FSUtils.listStatus(fs, familyDir.getPath());
+        if (files != null) {
+          for (FileStatus file : files) {
+            LOG.info("Deleting leftover recovered HFile " + file.getPath());
+          }
+        }
+      }
+    }
+    if (!fs.delete(recoveredDir, true)) {
+      LOG.warn("Failed delete of " + recoveredDir);
+    }
+  }
+
   /*
    * @param edits File of recovered edits.
    * @param maxSeqIdInStores Maximum sequenceid found in each store.  Edits in wal
@@ -5325,11 +5824,13 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   }
 
   protected RowLock getRowLockInternal(byte[] row, boolean readLock) throws IOException {
-    // create an object to use a a key in the row lock map
-    HashedBytes rowKey = new HashedBytes(row);
-
+    int rowHash = Bytes.hashCode(row);
+    final StripedRowLocks.Slot slot = stripedRowLocks.getSlot(rowHash);
+    boolean slotted = false;
     RowLockContext rowLockContext = null;
-    RowLockImpl result = null;
+    RowLock result = null;
+    Lock lock = null;
+    boolean locked = false;
     TraceScope traceScope = null;
 
     // If we're tracing start a span to show how long this took.
@@ -5339,32 +5840,53 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     }
 
     try {
-      // Keep trying until we have a lock or error out.
-      // TODO: do we need to add a time component here?
-      while (result == null) {
-        rowLockContext = computeIfAbsent(lockedRows, rowKey, () -> new RowLockContext(rowKey));
-        // Now try an get the lock.
-        // This can fail as
-        if (readLock) {
-          result = rowLockContext.newReadLock();
-        } else {
-          result = rowLockContext.newWriteLock();
+      if (slot != null && slot.reference(row, rowHash)) {
+        // The slot is free or already held for this row; nothing to allocate.
+        slotted = true;
+        result = readLock ? slot.readRowLock : slot.writeRowLock;
+        lock = readLock ? slot.readWriteLock.readLock() : slot.readWriteLock.writeLock();
+      } else {
+        if (slot != null) {
+          stripedRowLocks.collided();
+        }
+        // create an object to use a a key in the row lock map
+        HashedBytes rowKey = new HashedBytes(row);
+        RowLockImpl rowLockImpl = null;
+        // Keep trying until we have a lock or error out.
+        // TODO: do we need to add a time component here?
+        while (rowLockImpl == null) {
+          rowLockContext = computeIfAbsent(lockedRows, rowKey,
+              () -> new RowLockContext(rowKey, slot));
+          // Now try an get the lock.
+          // This can fail as
+          if (readLock) {
+            rowLockImpl = rowLockContext.newReadLock();
+          } else {
+            rowLockImpl = rowLockContext.newWriteLock();
+          }
         }
+        result = rowLockImpl;
+        lock = rowLockImpl.getLock();
       }
-      if (!result.getLock().tryLock(this.rowLockWaitDuration, TimeUnit.MILLISECONDS)) {
-        if (traceScope != null) {
-          traceScope.getSpan().addTimelineAnnotation("Failed to get row lock");
+      if (!lock.tryLock(0, TimeUnit.MILLISECONDS)) {
+        stripedRowLocks.contended();
+        if (!lock.tryLock(this.rowLockWaitDuration, TimeUnit.MILLISECONDS)) {
+          if (traceScope != null) {
+            traceScope.getSpan().addTimelineAnnotation("Failed to get row lock");
+          }
+          throw new IOException("Timed out waiting for lock for row: "
+              + Bytes.toStringBinary(row) + " in region " + getRegionInfo().getEncodedName());
         }
-        result = null;
-        // Clean up the counts just in case this was the thing keeping the context alive.
-        rowLockContext.cleanUp();
-        throw new IOException("Timed out waiting for lock for row: " + rowKey + " in region "
-            + getRegionInfo().getEncodedName());
       }
-      rowLockContext.setThreadName(Thread.currentThread().getName());
+      locked = true;
+      if (slotted) {
+        slot.setThreadName(Thread.currentThread().getName());
+      } else {
+        rowLockContext.setThreadName(Thread.currentThread().getName());
+      }
       return result;
     } catch (InterruptedException ie) {
-      LOG.warn("Thread interrupted waiting for lock on row: " + rowKey);
+      LOG.warn("Thread interrupted waiting for lock on row: " + Bytes.toStringBinary(row));
       InterruptedIOException iie = new InterruptedIOException();
       iie.initCause(ie);
       if (traceScope != null) {
@@ -5373,6 +5895,14 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       Thread.currentThread().interrupt();
       throw iie;
     } finally {
+      if (!locked && result != null) {
+        // Clean up the counts just in case this was the thing keeping the slot or context alive.
+        if (slotted) {
+          slot.unreference();
+        } else {
+          rowLockContext.cleanUp();
+        }
+      }
       if (traceScope != null) {
         traceScope.close();
       }
@@ -5398,17 +5928,24 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return lockedRows;
   }
 
+  public StripedRowLocks getStripedRowLocks() {
+    return stripedRowLocks;
+  }
+
   @VisibleForTesting
   class RowLockContext {
     private final HashedBytes row;
+    // the lock slot this row collided with, if any
+    private final StripedRowLocks.Slot slot;
     final ReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
     final AtomicBoolean usable = new AtomicBoolean(true);
     final AtomicInteger count = new AtomicInteger(0);
     final Object lock = new Object();
     private String threadName;
 
-    RowLockContext(HashedBytes row) {
+    RowLockContext(HashedBytes row, StripedRowLocks.Slot slot) {
       this.row = row;
+      this.slot = slot;
     }
 
     RowLockImpl newWriteLock() {
@@ -5442,6 +5979,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           }
         }
       }
+      if (slot != null) {
+        slot.endOverflow();
+      }
     }
 
     public void setThreadName(String threadName) {
@@ -5754,6 +6294,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     private final long maxResultSize;
     private final ScannerContext defaultScannerContext;
     private final FilterWrapper filter;
+    // Whether next() copies the cells it returns, see setCopyCellsFromPooledBlocks
+    private boolean copyCellsFromPooledBlocks;
 
     @Override
     public HRegionInfo getRegionInfo() {
@@ -5782,6 +6324,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
        */
       defaultScannerContext = ScannerContext.newBuilder()
           .setBatchLimit(scan.getBatch()).build();
+      this.copyCellsFromPooledBlocks = region.cachesDataCompressed();
       this.stopRow = scan.getStopRow();
       this.includeStopRow = scan.includeStopRow();
 
@@ -5914,12 +6457,33 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       startRegionOperation(Operation.SCAN);
       readRequestsCount.increment();
       try {
-        return nextRaw(outResults, scannerContext);
+        int from = outResults.size();
+        boolean moreValues = nextRaw(outResults, scannerContext);
+        if (copyCellsFromPooledBlocks) {
+          for (int i = from; i < outResults.size(); i++) {
+            outResults.set(i, KeyValueUtil.copyToNewKeyValue(outResults.get(i)));
+          }
+        }
+        return moreValues;
       } finally {
         closeRegionOperation(Operation.SCAN);
       }
     }
 
+    /**
+     * Blocks the stores keep compressed in the block cache are unpacked into pooled buffers, which
+     * go back to the pool when the scanner is shipped or closed and are then overwritten by the
+     * next read on the thread. So by default {@link #next(List, ScannerContext)} copies the cells
+     * it returns for such a region, as coprocessors and internal reads like
+     * {@link HRegion#get(Get, boolean)} keep them after the scanner is closed. The copy can be
+     * turned off by a caller that is done with the cells before then, like the RPC get, which
+     * closes the scanner once the response is shipped. {@link #nextRaw(List, ScannerContext)}
+     * never copies.
+     */
+    void setCopyCellsFromPooledBlocks(boolean copy) {
+      this.copyCellsFromPooledBlocks = copy;
+    }
+
     @Override
     public boolean nextRaw(List<Cell> outResults) throws IOException {
       // Use the RegionScanner's context by default
@@ -6911,6 +7475,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     RegionScanner scanner = null;
     try {
       scanner = getScanner(scan, null, nonceGroup, nonce);
+      // Copies the cells off pooled block buffers, as the results outlive the scanner
       scanner.next(results);
     } finally {
       if (scanner != null)
@@ -6927,6 +7492,19 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return results;
   }
 
+  /**
+   * @return true if any store keeps its data blocks compressed in the block cache, see
+   *         {@link org.apache.hadoop.hbase.io.hfile.CacheConfig#shouldCacheDataCompressed()}
+   */
+  private boolean cachesDataCompressed() {
+    for (Store store : stores.values()) {
+      if (store.getCacheConfig().shouldCacheDataCompressed()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   void metricsUpdateForGet(List<Cell> results, long before) {
     if (this.metricsRegion != null) {
       this.metricsRegion.updateGet(EnvironmentEdgeManager.currentTime() - before);
@@ -6987,8 +7565,14 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         stats.setHeapOccupancy((int)(occupancy * 100));
       }
     }
-    stats.setCompactionPressure((int)rsServices.getCompactionPressure()*100 > 100 ? 100 :
-                (int)rsServices.getCompactionPressure()*100);
+    stats.setCompactionPressure((int) Math.min(100, rsServices.getCompactionPressure() * 100));
+    FlushRequester flushRequester = rsServices.getFlushRequester();
+    if (flushRequester != null) {
+      stats.setFlushQueueWait(
+          (int) Math.min(Integer.MAX_VALUE, flushRequester.getFlushQueueWaitTime()));
+    }
+    stats.setWalSyncLatency((int) Math.min(Integer.MAX_VALUE, rsServices.getWALSyncLatency()));
+    stats.setCompactionQueueLength(rsServices.getCompactionQueueSize());
     return stats.build();
   }
 
@@ -7249,7 +7833,11 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     RowLock rowLock = null;
     MemstoreSize memstoreSize = new MemstoreSize();
     try {
-      rowLock = getRowLockInternal(mutation.getRow(), false);
+      // Deltas to counter families commute, so they only share the row lock. A caller that wants
+      // the resulting values takes it exclusively, which waits for the deltas in flight and keeps
+      // new ones out until its own is visible along with the values it read.
+      rowLock = getRowLockInternal(mutation.getRow(),
+        !returnResults && isDeltaCounterMutation(op, mutation));
       lock(this.updatesLock.readLock());
       try {
         Result cpResult = doCoprocessorPreCall(op, mutation);
@@ -7320,6 +7908,22 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     }
   }
 
+  /**
+   * @return True if <code>mutation</code> is an Increment touching only delta counter families
+   * @see HColumnDescriptor#DELTA_COUNTERS
+   */
+  private boolean isDeltaCounterMutation(Operation op, Mutation mutation) {
+    if (op != Operation.INCREMENT) {
+      return false;
+    }
+    for (byte[] family : mutation.getFamilyCellMap().keySet()) {
+      if (!this.stores.get(family).getScanInfo().isDeltaCounters()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private WriteEntry doWALAppend(WALEdit walEdit, Durability durability, long nonceGroup,
       long nonce)
   throws IOException {
@@ -7434,10 +8038,12 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   throws IOException {
     byte [] columnFamily = store.getFamily().getName();
     List<Cell> toApply = new ArrayList<Cell>(deltas.size());
+    // Increments to a delta counter family are written as is; only read when asked for results.
+    boolean writeDeltas = op == Operation.INCREMENT && store.getScanInfo().isDeltaCounters();
     // Get previous values for all columns in this family.
-    List<Cell> currentValues = get(mutation, store, deltas,
-        null/*Default IsolationLevel*/,
-        op == Operation.INCREMENT? ((Increment)mutation).getTimeRange(): null);
+    List<Cell> currentValues = writeDeltas && results == null ? Collections.<Cell>emptyList()
+        : get(mutation, store, deltas, null/*Default IsolationLevel*/,
+            op == Operation.INCREMENT? ((Increment)mutation).getTimeRange(): null);
     // Iterate the input columns and update existing values if they were found, otherwise
     // add new column initialized to the delta amount
     int currentValuesIndex = 0;
@@ -7464,6 +8070,23 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           // If delta amount to apply is 0, don't write WAL or MemStore.
           long deltaAmount = getLongValue(delta);
           apply = deltaAmount != 0;
+          if (writeDeltas) {
+            // Return the new total but store only the amount; nothing to store if zero.
+            if (results != null) {
+              results.add(reckonIncrement(delta, deltaAmount, currentValue, columnFamily, now,
+                (Increment)mutation));
+            }
+            if (apply) {
+              newCell = reckonDeltaCounter(delta, deltaAmount, columnFamily, now,
+                (Increment)mutation);
+              if (coprocessorHost != null) {
+                newCell = coprocessorHost.postMutationBeforeWAL(mutationType, mutation, null,
+                  newCell);
+              }
+              toApply.add(newCell);
+            }
+            continue;
+          }
           newCell = reckonIncrement(delta, deltaAmount, currentValue, columnFamily, now,
             (Increment)mutation);
           break;
@@ -7522,6 +8145,28 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       tags);
   }
 
+  /**
+   * Calculate the delta cell to store for an increment to a delta counter family.
+   * @see HColumnDescriptor#DELTA_COUNTERS
+   */
+  private Cell reckonDeltaCounter(final Cell delta, final long deltaAmount,
+      byte [] columnFamily, final long now, Mutation mutation) {
+    List<Tag> tags = TagUtil.carryForwardTags(delta);
+    tags = TagUtil.carryForwardTTLTag(tags, mutation.getTTL());
+    if (tags == null) {
+      tags = new ArrayList<Tag>(1);
+    }
+    tags.add(DeltaCounterMerger.DELTA_TAG);
+    byte [] amountInBytes = Bytes.toBytes(deltaAmount);
+    byte [] row = mutation.getRow();
+    return new KeyValue(row, 0, row.length,
+      columnFamily, 0, columnFamily.length,
+      delta.getQualifierArray(), delta.getQualifierOffset(), delta.getQualifierLength(),
+      now, KeyValue.Type.Put,
+      amountInBytes, 0, amountInBytes.length,
+      tags);
+  }
+
   private Cell reckonAppend(final Cell delta, final Cell currentValue, final long now,
       Append mutation)
   throws IOException {
@@ -7635,7 +8280,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   public static final long FIXED_OVERHEAD = ClassSize.align(
       ClassSize.OBJECT +
       ClassSize.ARRAY +
-      50 * ClassSize.REFERENCE + 2 * Bytes.SIZEOF_INT +
+      53 * ClassSize.REFERENCE + 2 * Bytes.SIZEOF_INT +
       (14 * Bytes.SIZEOF_LONG) +
       6 * Bytes.SIZEOF_BOOLEAN);
 
@@ -8006,13 +8651,13 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
    */
   private void sync(long txid, Durability durability) throws IOException {
     if (this.getRegionInfo().isMetaRegion()) {
-      this.wal.sync(txid);
+      syncWAL(txid);
     } else {
       switch(durability) {
       case USE_DEFAULT:
         // do what table defaults to
         if (shouldSyncWAL()) {
-          this.wal.sync(txid);
+          syncWAL(txid);
         }
         break;
       case SKIP_WAL:
@@ -8024,7 +8669,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       case SYNC_WAL:
       case FSYNC_WAL:
         // sync the WAL edit (SYNC and FSYNC treated the same for now)
-        this.wal.sync(txid);
+        syncWAL(txid);
         break;
       default:
         throw new RuntimeException("Unknown durability " + durability);
@@ -8032,6 +8677,12 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     }
   }
 
+  private void syncWAL(long txid) throws IOException {
+    long start = System.nanoTime();
+    this.wal.sync(txid);
+    walStats.synced((System.nanoTime() - start) / 1000);
+  }
+
   /**
    * Check whether we should sync the wal from the table's durability settings
    */
@@ -464,6 +464,20 @@ public class HRegionFileSystem {
     return dstPath;
   }
 
+  /**
+   * Move a HFile the WAL splitter wrote for this region into the family store directory,
+   * giving it a new unique store file name.
+   * @param familyName Family that will gain the file
+   * @param recoveredPath {@link Path} to the recovered HFile
+   * @return The new {@link Path} of the committed file
+   * @throws IOException
+   */
+  Path commitRecoveredHFile(final String familyName, final Path recoveredPath)
+      throws IOException {
+    Path dstPath = preCommitStoreFile(familyName, recoveredPath, -1, true);
+    return commitStoreFile(recoveredPath, dstPath);
+  }
+
   /*
    * Moves file from staging dir to region dir
    * @param buildPath {@link Path} to the file to commit.
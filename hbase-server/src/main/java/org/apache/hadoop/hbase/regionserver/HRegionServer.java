@@ -45,6 +45,10 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -125,6 +129,7 @@ import org.apache.hadoop.hbase.regionserver.throttle.FlushThroughputControllerFa
 import org.apache.hadoop.hbase.regionserver.throttle.ThroughputController;
 import org.apache.hadoop.hbase.regionserver.wal.MetricsWAL;
 import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
+import org.apache.hadoop.hbase.regionserver.wal.WALEdit;
 import org.apache.hadoop.hbase.replication.regionserver.Replication;
 import org.apache.hadoop.hbase.replication.regionserver.ReplicationLoad;
 import org.apache.hadoop.hbase.security.Superusers;
@@ -182,6 +187,7 @@ import org.apache.hadoop.hbase.util.VersionInfo;
 import org.apache.hadoop.hbase.wal.AbstractFSWALProvider;
 import org.apache.hadoop.hbase.wal.WAL;
 import org.apache.hadoop.hbase.wal.WALFactory;
+import org.apache.hadoop.hbase.wal.WALKey;
 import org.apache.hadoop.hbase.zookeeper.ClusterStatusTracker;
 import org.apache.hadoop.hbase.zookeeper.MasterAddressTracker;
 import org.apache.hadoop.hbase.zookeeper.MetaTableLocator;
@@ -282,6 +288,13 @@ public class HRegionServer extends HasThread implements
    */
   protected final Map<String, Region> onlineRegions = new ConcurrentHashMap<String, Region>();
 
+  /**
+   * WAL stats of the online regions, keyed by encoded region name as bytes, so the WAL listener
+   * can find them for each append without building a String on the WAL's append thread.
+   */
+  private final Map<byte[], RegionWALStats> regionWALStats =
+      new ConcurrentSkipListMap<byte[], RegionWALStats>(Bytes.BYTES_COMPARATOR);
+
   /**
    * Map of encoded region names to the DataNode locations they should be hosted on
    * We store the value as InetSocketAddress since this is used only in HDFS
@@ -363,6 +376,8 @@ public class HRegionServer extends HasThread implements
   public static final String REGIONSERVER = "regionserver";
 
   MetricsRegionServer metricsRegionServer;
+  // Listener of all the WALs of this server, source of the WAL sync latency reported to clients
+  private MetricsWAL metricsWAL;
   MetricsTable metricsTable;
   private SpanReceiverHost spanReceiverHost;
 
@@ -508,6 +523,9 @@ public class HRegionServer extends HasThread implements
 
   private volatile ThroughputController flushThroughputController;
 
+  // Writes the store snapshots of region flushes in parallel, null when they are written serially
+  private ThreadPoolExecutor storeFlushExecutor;
+
   protected SecureBulkLoadManager secureBulkLoadManager;
 
   /**
@@ -911,6 +929,23 @@ public class HRegionServer extends HasThread implements
     this.periodicFlusher = new PeriodicMemstoreFlusher(this.threadWakeFrequency, this);
     this.leases = new Leases(this.threadWakeFrequency);
 
+    int storeFlushThreads = conf.getInt(HRegion.HREGION_FLUSH_STORE_THREADS,
+        HRegion.DEFAULT_HREGION_FLUSH_STORE_THREADS);
+    if (storeFlushThreads > 1) {
+      // Bounded for all regions. A flush that finds every thread busy writes the store on its
+      // own thread, also once the executor is shut down, so that it never waits on a queue.
+      this.storeFlushExecutor = new ThreadPoolExecutor(storeFlushThreads, storeFlushThreads, 60,
+          TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+          Threads.newDaemonThreadFactory(getName() + ".storeFlusher"),
+          new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+              r.run();
+            }
+          });
+      this.storeFlushExecutor.allowCoreThreadTimeOut(true);
+    }
+
     // Create the thread to clean the moved regions list
     movedRegionsCleaner = MovedRegionsCleaner.create(this);
 
@@ -1507,8 +1542,12 @@ public class HRegionServer extends HasThread implements
       float initialCountPercentage = conf.getFloat(MemStoreLAB.CHUNK_POOL_INITIALSIZE_KEY,
           MemStoreLAB.POOL_INITIAL_SIZE_DEFAULT);
       int chunkSize = conf.getInt(MemStoreLAB.CHUNK_SIZE_KEY, MemStoreLAB.CHUNK_SIZE_DEFAULT);
+      int stripes = conf.getInt(MemStoreLAB.CHUNK_POOL_STRIPES_KEY,
+          MemStoreLAB.POOL_STRIPES_DEFAULT);
+      long arenaSize = conf.getLong(MemStoreLAB.CHUNK_POOL_ARENA_SIZE_KEY,
+          MemStoreLAB.POOL_ARENA_SIZE_DEFAULT);
       MemStoreChunkPool pool = MemStoreChunkPool.initialize(globalMemStoreSize, poolSizePercentage,
-          initialCountPercentage, chunkSize, offheap);
+          initialCountPercentage, chunkSize, offheap, stripes, arenaSize);
       if (pool != null && this.hMemManager != null) {
         // Register with Heap Memory manager
         this.hMemManager.registerTuneObserver(pool);
@@ -1746,7 +1785,19 @@ public class HRegionServer extends HasThread implements
 
     // listeners the wal factory will add to wals it creates.
     final List<WALActionsListener> listeners = new ArrayList<WALActionsListener>();
-    listeners.add(new MetricsWAL());
+    this.metricsWAL = new MetricsWAL();
+    listeners.add(this.metricsWAL);
+    // Attribute what gets appended to the region it came from, for region and table metrics
+    listeners.add(new WALActionsListener.Base() {
+      @Override
+      public void postAppend(final long entryLen, final long elapsedTimeMillis,
+          final WALKey logKey, final WALEdit logEdit) {
+        RegionWALStats stats = regionWALStats.get(logKey.getEncodedRegionName());
+        if (stats != null) {
+          stats.appended(entryLen);
+        }
+      }
+    });
     if (this.replicationSourceHandler != null &&
         this.replicationSourceHandler.getWALActionsListener() != null) {
       // Replication handler is an implementation of WALActionsListener.
@@ -2334,6 +2385,9 @@ public class HRegionServer extends HasThread implements
     if (this.compactSplitThread != null) {
       this.compactSplitThread.join();
     }
+    if (this.storeFlushExecutor != null) {
+      this.storeFlushExecutor.shutdown();
+    }
     if (this.service != null) this.service.shutdown();
     if (this.replicationSourceHandler != null &&
         this.replicationSourceHandler == this.replicationSinkHandler) {
@@ -2645,6 +2699,10 @@ public class HRegionServer extends HasThread implements
   @Override
   public void addToOnlineRegions(Region region) {
     this.onlineRegions.put(region.getRegionInfo().getEncodedName(), region);
+    if (region instanceof HRegion) {
+      regionWALStats.put(region.getRegionInfo().getEncodedNameAsBytes(),
+        ((HRegion) region).getWALStats());
+    }
     configurationManager.registerObserver(region);
   }
 
@@ -3137,6 +3195,7 @@ public class HRegionServer extends HasThread implements
   @Override
   public boolean removeFromOnlineRegions(final Region r, ServerName destination) {
     Region toReturn = this.onlineRegions.remove(r.getRegionInfo().getEncodedName());
+    regionWALStats.remove(r.getRegionInfo().getEncodedNameAsBytes());
     if (destination != null) {
       long closeSeqNum = r.getMaxFlushedSeqId();
       if (closeSeqNum == HConstants.NO_SEQNUM) {
@@ -3596,6 +3655,16 @@ public class HRegionServer extends HasThread implements
     return max;
   }
 
+  @Override
+  public int getCompactionQueueSize() {
+    return compactSplitThread == null ? 0 : compactSplitThread.getCompactionQueueSize();
+  }
+
+  @Override
+  public long getWALSyncLatency() {
+    return metricsWAL == null ? 0 : metricsWAL.getSyncTimeP99();
+  }
+
   @Override
   public HeapMemoryManager getHeapMemoryManager() {
     return hMemManager;
@@ -3615,6 +3684,11 @@ public class HRegionServer extends HasThread implements
     return flushThroughputController;
   }
 
+  @Override
+  public Executor getStoreFlushExecutor() {
+    return storeFlushExecutor;
+  }
+
   @Override
   public double getFlushPressure() {
     if (getRegionServerAccounting() == null || cacheFlusher == null) {
@@ -254,6 +254,7 @@ public class HStore implements Store {
     switch (inMemoryCompaction) {
       case BASIC :
       case EAGER :
+      case ADAPTIVE :
         className = CompactingMemStore.class.getName();
         this.memstore = new CompactingMemStore(conf, this.comparator, this,
             this.getHRegion().getRegionServicesForStores(), inMemoryCompaction);
@@ -2345,6 +2346,37 @@ public class HStore implements Store {
     return majorCompactedCellsSize;
   }
 
+  @Override
+  public long getMemStoreFlattenCount() {
+    MemStoreCompactor compactor = getMemStoreCompactor();
+    return compactor == null ? 0 : compactor.getFlattenCount();
+  }
+
+  @Override
+  public long getMemStoreMergeCount() {
+    MemStoreCompactor compactor = getMemStoreCompactor();
+    return compactor == null ? 0 : compactor.getMergeCount();
+  }
+
+  @Override
+  public long getMemStoreCompactionCount() {
+    MemStoreCompactor compactor = getMemStoreCompactor();
+    return compactor == null ? 0 : compactor.getCompactionCount();
+  }
+
+  @Override
+  public long getMemStoreCompactionBytesEliminated() {
+    MemStoreCompactor compactor = getMemStoreCompactor();
+    return compactor == null ? 0 : compactor.getBytesEliminated();
+  }
+
+  private MemStoreCompactor getMemStoreCompactor() {
+    if (this.memstore instanceof CompactingMemStore) {
+      return ((CompactingMemStore) this.memstore).getCompactor();
+    }
+    return null;
+  }
+
   /**
    * Returns the StoreEngine that is backing this concrete implementation of Store.
    * @return Returns the {@link StoreEngine} object used internally inside this HStore object.
@@ -45,6 +45,12 @@ public class ImmutableMemStoreLAB implements MemStoreLAB {
     throw new IllegalStateException("This is an Immutable MemStoreLAB.");
   }
 
+  @Override
+  public Chunk getNewExternalChunk() {
+    // The chunk goes back along with the chunks of the first LAB, which this LAB closes
+    return this.mslabs.isEmpty() ? null : this.mslabs.get(0).getNewExternalChunk();
+  }
+
   @Override
   public void close() {
     // 'openScannerCount' here tracks the scanners opened on segments which directly refer to this
@@ -47,6 +47,7 @@ public class ImmutableSegment extends Segment {
       + ClassSize.TIMERANGE;
   public static final long DEEP_OVERHEAD_CSLM = DEEP_OVERHEAD + ClassSize.CONCURRENT_SKIPLISTMAP;
   public static final long DEEP_OVERHEAD_CAM = DEEP_OVERHEAD + ClassSize.CELL_ARRAY_MAP;
+  public static final long DEEP_OVERHEAD_CCM = DEEP_OVERHEAD + ClassSize.CELL_CHUNK_MAP;
 
   /**
    * Types of ImmutableSegment
@@ -54,6 +55,7 @@ public class ImmutableSegment extends Segment {
   public enum Type {
     SKIPLIST_MAP_BASED,
     ARRAY_MAP_BASED,
+    CHUNK_MAP_BASED
   }
 
   /**
@@ -90,20 +92,20 @@ public class ImmutableSegment extends Segment {
   }
 
   /**------------------------------------------------------------------------
-   * C-tor to be used when new CELL_ARRAY BASED ImmutableSegment is a result of compaction of a
+   * C-tor to be used when new flat ImmutableSegment is a result of compaction of a
    * list of older ImmutableSegments.
    * The given iterator returns the Cells that "survived" the compaction.
-   * The input parameter "type" exists for future use when more types of flat ImmutableSegments
-   * are going to be introduced.
+   * The input parameter "type" is either ARRAY_MAP_BASED or CHUNK_MAP_BASED. A CHUNK_MAP_BASED
+   * segment falls back to ARRAY_MAP_BASED when its Cells can not be indexed by a CellChunkMap.
    */
   protected ImmutableSegment(CellComparator comparator, MemStoreSegmentsIterator iterator,
       MemStoreLAB memStoreLAB, int numOfCells, Type type, boolean merge) {
 
     super(null, // initiailize the CellSet with NULL
         comparator, memStoreLAB);
-    this.type = type;
-    // build the true CellSet based on CellArrayMap
-    CellSet cs = createCellArrayMapSet(numOfCells, iterator, merge);
+    this.type = Type.ARRAY_MAP_BASED;
+    // build the true CellSet based on CellArrayMap or CellChunkMap
+    CellSet cs = createCellArrayMapSet(numOfCells, iterator, merge, type == Type.CHUNK_MAP_BASED);
 
     this.setCellSet(null, cs);            // update the CellSet of the new Segment
     this.timeRange = this.timeRangeTracker == null ? null : this.timeRangeTracker.toTimeRange();
@@ -165,6 +167,16 @@ public class ImmutableSegment extends Segment {
    * Change the CellSet of this ImmutableSegment from one based on ConcurrentSkipListMap to one
    * based on CellArrayMap.
    * If this ImmutableSegment is not based on ConcurrentSkipListMap , this is NOOP
+   */
+  public boolean flatten(MemstoreSize memstoreSize) {
+    return flatten(memstoreSize, Type.ARRAY_MAP_BASED);
+  }
+
+  /**------------------------------------------------------------------------
+   * Change the CellSet of this ImmutableSegment from one based on ConcurrentSkipListMap to one
+   * based on the given flat type, CellArrayMap or CellChunkMap. When CellChunkMap is asked for,
+   * but not all the Cells live in registered MSLAB chunks, CellArrayMap is used instead.
+   * If this ImmutableSegment is not based on ConcurrentSkipListMap , this is NOOP
    *
    * Synchronization of the CellSet replacement:
    * The reference to the CellSet is AtomicReference and is updated only when ImmutableSegment
@@ -172,21 +184,32 @@ public class ImmutableSegment extends Segment {
    * thread of compaction, but to be on the safe side the initial CellSet is locally saved
    * before the flattening and then replaced using CAS instruction.
    */
-  public boolean flatten(MemstoreSize memstoreSize) {
+  public boolean flatten(MemstoreSize memstoreSize, Type flatType) {
     if (isFlat()) return false;
     CellSet oldCellSet = getCellSet();
     int numOfCells = getCellsCount();
 
-    // build the new (CellSet CellArrayMap based)
-    CellSet  newCellSet = recreateCellArrayMapSet(numOfCells);
-    type = Type.ARRAY_MAP_BASED;
+    // build the new (CellSet CellArrayMap or CellChunkMap based)
+    Cell[] cells = recreateCellArray(numOfCells);
+    CellSet newCellSet = null;
+    long newSegmentSizeDelta;
+    if (flatType == Type.CHUNK_MAP_BASED) {
+      newCellSet = createCellChunkMapSet(cells, cells.length);
+    }
+    if (newCellSet != null) {
+      type = Type.CHUNK_MAP_BASED;
+      // no Cell objects are kept any more, all the meta-data is the serialized references
+      newSegmentSizeDelta = cells.length * ClassSize.CELL_CHUNK_MAP_ENTRY - heapOverhead();
+    } else {
+      newCellSet = new CellSet(new CellArrayMap(getComparator(), cells, 0, cells.length, false));
+      type = Type.ARRAY_MAP_BASED;
+      // arrange the meta-data size, decrease all meta-data sizes related to SkipList
+      // (recreateCellArray doesn't take the care for the sizes)
+      newSegmentSizeDelta = -(numOfCells * ClassSize.CONCURRENT_SKIPLISTMAP_ENTRY);
+      // add size of CellArrayMap and meta-data overhead per Cell
+      newSegmentSizeDelta = newSegmentSizeDelta + numOfCells * ClassSize.CELL_ARRAY_MAP_ENTRY;
+    }
     setCellSet(oldCellSet,newCellSet);
-
-    // arrange the meta-data size, decrease all meta-data sizes related to SkipList
-    // (recreateCellArrayMapSet doesn't take the care for the sizes)
-    long newSegmentSizeDelta = -(numOfCells * ClassSize.CONCURRENT_SKIPLISTMAP_ENTRY);
-    // add size of CellArrayMap and meta-data overhead per Cell
-    newSegmentSizeDelta = newSegmentSizeDelta + numOfCells * ClassSize.CELL_ARRAY_MAP_ENTRY;
     incSize(0, newSegmentSizeDelta);
     if (memstoreSize != null) {
       memstoreSize.incMemstoreSize(0, newSegmentSizeDelta);
@@ -197,9 +220,10 @@ public class ImmutableSegment extends Segment {
 
   /////////////////////  PRIVATE METHODS  /////////////////////
   /*------------------------------------------------------------------------*/
-  // Create CellSet based on CellArrayMap from compacting iterator
+  // Create CellSet based on CellArrayMap from compacting iterator, or based on CellChunkMap if
+  // asked to and possible
   private CellSet createCellArrayMapSet(int numOfCells, MemStoreSegmentsIterator iterator,
-      boolean merge) {
+      boolean merge, boolean chunkMap) {
 
     Cell[] cells = new Cell[numOfCells];   // build the Cell Array
     int i = 0;
@@ -220,11 +244,32 @@ public class ImmutableSegment extends Segment {
       updateMetaInfo(c, true, useMSLAB, null); // updates the size per cell
       i++;
     }
+    if (chunkMap) {
+      CellSet ccmSet = createCellChunkMapSet(cells, i);
+      if (ccmSet != null) {
+        type = Type.CHUNK_MAP_BASED;
+        // the sizes were counted per CellArrayMap entry, replace them with the index entries
+        incSize(0, i * ClassSize.CELL_CHUNK_MAP_ENTRY - heapOverhead());
+        return ccmSet;
+      }
+    }
     // build the immutable CellSet
     CellArrayMap cam = new CellArrayMap(getComparator(), cells, 0, i, false);
     return new CellSet(cam);
   }
 
+  /*------------------------------------------------------------------------*/
+  // Create CellSet based on CellChunkMap from the given ordered cells, the index is written into
+  // chunks of this segment's MSLAB. Returns null if the Cells can not be indexed this way.
+  private CellSet createCellChunkMapSet(Cell[] cells, int numOfCells) {
+    MemStoreLAB memStoreLAB = getMemStoreLAB();
+    if (memStoreLAB == null) {
+      return null;
+    }
+    CellChunkMap ccm = CellChunkMap.create(getComparator(), memStoreLAB, cells, numOfCells);
+    return (ccm == null) ? null : new CellSet(ccm);
+  }
+
   @Override
   protected long heapOverheadChange(Cell cell, boolean succ) {
     if (succ) {
@@ -237,15 +282,17 @@ public class ImmutableSegment extends Segment {
               .align(ClassSize.CELL_ARRAY_MAP_ENTRY + ((ExtendedCell) cell).heapOverhead());
         }
         return ClassSize.align(ClassSize.CELL_ARRAY_MAP_ENTRY + KeyValue.FIXED_OVERHEAD);
+      case CHUNK_MAP_BASED:
+        return ClassSize.CELL_CHUNK_MAP_ENTRY;
       }
     }
     return 0;
   }
 
   /*------------------------------------------------------------------------*/
-  // Create CellSet based on CellArrayMap from current ConcurrentSkipListMap based CellSet
+  // Create the ordered array of the Cells in current ConcurrentSkipListMap based CellSet
   // (without compacting iterator)
-  private CellSet recreateCellArrayMapSet(int numOfCells) {
+  private Cell[] recreateCellArray(int numOfCells) {
 
     Cell[] cells = new Cell[numOfCells];   // build the Cell Array
     Cell curCell;
@@ -262,9 +309,6 @@ public class ImmutableSegment extends Segment {
     } finally {
       segmentScanner.close();
     }
-
-    // build the immutable CellSet
-    CellArrayMap cam = new CellArrayMap(getComparator(), cells, 0, idx, false);
-    return new CellSet(cam);
+    return (idx == numOfCells) ? cells : Arrays.copyOf(cells, idx);
   }
 }
@@ -184,7 +184,7 @@ public class LogRoller extends HasThread implements Closeable {
       requester = this.services.getFlushRequester();
       if (requester != null) {
         // force flushing all stores to clean old logs
-        requester.requestFlush(r, true);
+        requester.requestFlush(r, true, FlushPriority.WAL_ROLL);
         scheduled = true;
       }
     }
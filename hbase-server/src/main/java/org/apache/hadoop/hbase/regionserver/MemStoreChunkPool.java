@@ -18,12 +18,17 @@
  */
 package org.apache.hadoop.hbase.regionserver;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -47,6 +52,12 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
  * {@link MemStoreChunkPool#getChunk()} is called when MemStoreLAB allocating
  * bytes, and {@link MemStoreChunkPool#putbackChunks(BlockingQueue)} is called
  * when MemStore clearing snapshot for flush
+ *
+ * The reclaimed chunks are kept in a number of striped free lists. A thread
+ * takes chunks from the list its id maps to and only steals from the other
+ * lists when its own one is empty, so that the handlers writing to different
+ * MemStoreLABs do not all contend on a single queue. Off heap chunks are
+ * sliced out of large pre-allocated {@link OffheapChunkArena}s.
  */
 @SuppressWarnings("javadoc")
 @InterfaceAudience.Private
@@ -58,10 +69,23 @@ public class MemStoreChunkPool implements HeapMemoryTuneObserver {
   /** Boolean whether we have disabled the memstore chunk pool entirely. */
   static boolean chunkPoolDisabled = false;
 
+  // Source of the ids of all chunks, pooled or not
+  private static final AtomicInteger chunkIdGenerator = new AtomicInteger();
+  // The chunks that a CellChunkMap index may refer to, keyed by chunk id. MemStoreLABs register
+  // their chunks here and unregister them when the chunks are reclaimed.
+  private static final ConcurrentMap<Integer, Chunk> registeredChunks =
+      new ConcurrentHashMap<Integer, Chunk>();
+
   private int maxCount;
 
-  // A queue of reclaimed chunks
-  private final BlockingQueue<Chunk> reclaimedChunks;
+  // Striped free lists of reclaimed chunks
+  private final ConcurrentLinkedQueue<Chunk>[] reclaimedChunks;
+  // Number of chunks in all the free lists
+  private final AtomicInteger reclaimedCount = new AtomicInteger();
+  // Spreads batches of put back chunks over the free lists
+  private final AtomicInteger nextPutbackStripe = new AtomicInteger();
+  // Source of the off heap chunk buffers, null when on heap or when the arenas are disabled
+  private final OffheapChunkArena arena;
   private final int chunkSize;
   private final float poolSizePercentage;
 
@@ -71,20 +95,40 @@ public class MemStoreChunkPool implements HeapMemoryTuneObserver {
   private static final int statThreadPeriod = 60 * 5;
   private final AtomicLong chunkCount = new AtomicLong();
   private final AtomicLong reusedChunkCount = new AtomicLong();
+  // getChunk() calls which could not be served from the free lists
+  private final LongAdder missCount = new LongAdder();
+  // Chunks dropped because the pool was full
+  private final LongAdder discardedChunkCount = new LongAdder();
   private final boolean offheap;
 
   MemStoreChunkPool(int chunkSize, int maxCount, int initialCount, float poolSizePercentage,
       boolean offheap) {
+    this(chunkSize, maxCount, initialCount, poolSizePercentage, offheap,
+        MemStoreLAB.POOL_STRIPES_DEFAULT, MemStoreLAB.POOL_ARENA_SIZE_DEFAULT);
+  }
+
+  @SuppressWarnings("unchecked")
+  MemStoreChunkPool(int chunkSize, int maxCount, int initialCount, float poolSizePercentage,
+      boolean offheap, int stripes, long arenaSize) {
     this.maxCount = maxCount;
     this.chunkSize = chunkSize;
     this.poolSizePercentage = poolSizePercentage;
     this.offheap = offheap;
-    this.reclaimedChunks = new LinkedBlockingQueue<>();
+    if (stripes <= 0) {
+      stripes = Runtime.getRuntime().availableProcessors();
+    }
+    this.reclaimedChunks = new ConcurrentLinkedQueue[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.reclaimedChunks[i] = new ConcurrentLinkedQueue<>();
+    }
+    this.arena = offheap && arenaSize >= chunkSize && maxCount > 0
+        ? new OffheapChunkArena(chunkSize, arenaSize, maxCount) : null;
     for (int i = 0; i < initialCount; i++) {
-      Chunk chunk = this.offheap ? new OffheapChunk(chunkSize) : new OnheapChunk(chunkSize);
+      Chunk chunk = createChunk();
       chunk.init();
-      reclaimedChunks.add(chunk);
+      reclaimedChunks[i % stripes].add(chunk);
     }
+    reclaimedCount.set(initialCount);
     chunkCount.set(initialCount);
     final String n = Thread.currentThread().getName();
     scheduleThreadPool = Executors.newScheduledThreadPool(1, new ThreadFactoryBuilder()
@@ -104,17 +148,18 @@ public class MemStoreChunkPool implements HeapMemoryTuneObserver {
    * @see #putbackChunks(BlockingQueue)
    */
   Chunk getChunk() {
-    Chunk chunk = reclaimedChunks.poll();
+    Chunk chunk = pollReclaimedChunk();
     if (chunk != null) {
       chunk.reset();
       reusedChunkCount.incrementAndGet();
     } else {
+      missCount.increment();
       // Make a chunk iff we have not yet created the maxCount chunks
       while (true) {
         long created = this.chunkCount.get();
         if (created < this.maxCount) {
-          chunk = this.offheap ? new OffheapChunk(this.chunkSize) : new OnheapChunk(this.chunkSize);
           if (this.chunkCount.compareAndSet(created, created + 1)) {
+            chunk = createChunk();
             break;
           }
         } else {
@@ -125,17 +170,64 @@ public class MemStoreChunkPool implements HeapMemoryTuneObserver {
     return chunk;
   }
 
+  private Chunk createChunk() {
+    if (this.arena != null) {
+      ByteBuffer buffer = this.arena.allocate();
+      if (buffer != null) {
+        return new OffheapChunk(buffer);
+      }
+    }
+    return this.offheap ? new OffheapChunk(this.chunkSize) : new OnheapChunk(this.chunkSize);
+  }
+
+  private int getStripe() {
+    return (int) (Thread.currentThread().getId() % reclaimedChunks.length);
+  }
+
+  private Chunk pollReclaimedChunk() {
+    int stripe = getStripe();
+    for (int i = 0; i < reclaimedChunks.length; i++) {
+      Chunk chunk = reclaimedChunks[(stripe + i) % reclaimedChunks.length].poll();
+      if (chunk != null) {
+        reclaimedCount.decrementAndGet();
+        return chunk;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reserve room for one more chunk in the free lists.
+   * @return false if the pool is full
+   */
+  private boolean reserveSlot() {
+    while (true) {
+      int count = reclaimedCount.get();
+      if (count >= this.maxCount) {
+        discardedChunkCount.increment();
+        return false;
+      }
+      if (reclaimedCount.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
   /**
    * Add the chunks to the pool, when the pool achieves the max size, it will
    * skip the remaining chunks
    * @param chunks
    */
-  synchronized void putbackChunks(BlockingQueue<Chunk> chunks) {
-    int toAdd = Math.min(chunks.size(), this.maxCount - reclaimedChunks.size());
+  void putbackChunks(BlockingQueue<Chunk> chunks) {
+    // The chunks of a flushed MemStoreLAB are handed back by the flusher, spread them so that the
+    // writers polling their own free list find some
+    int stripe = nextPutbackStripe.getAndIncrement() & Integer.MAX_VALUE;
     Chunk chunk = null;
-    while ((chunk = chunks.poll()) != null && toAdd > 0) {
-      reclaimedChunks.add(chunk);
-      toAdd--;
+    while ((chunk = chunks.poll()) != null) {
+      if (!reserveSlot()) {
+        continue;
+      }
+      reclaimedChunks[stripe++ % reclaimedChunks.length].add(chunk);
     }
   }
 
@@ -144,21 +236,51 @@ public class MemStoreChunkPool implements HeapMemoryTuneObserver {
    * skip it
    * @param chunk
    */
-  synchronized void putbackChunk(Chunk chunk) {
-    if (reclaimedChunks.size() < this.maxCount) {
-      reclaimedChunks.add(chunk);
+  void putbackChunk(Chunk chunk) {
+    if (reserveSlot()) {
+      reclaimedChunks[getStripe()].add(chunk);
     }
   }
 
   int getPoolSize() {
-    return this.reclaimedChunks.size();
+    return this.reclaimedCount.get();
   }
 
   /*
    * Only used in testing
    */
   void clearChunks() {
-    this.reclaimedChunks.clear();
+    while (pollReclaimedChunk() != null) {
+      // drop them all
+    }
+  }
+
+  /**
+   * @return the number of chunk requests that were served from the free lists
+   */
+  long getHitCount() {
+    return reusedChunkCount.get();
+  }
+
+  /**
+   * @return the number of chunk requests that found the free lists empty
+   */
+  long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * @return the number of chunks this pool has created
+   */
+  long getCreatedChunkCount() {
+    return chunkCount.get();
+  }
+
+  /**
+   * @return the number of chunks given back while the pool was full, and so left to the GC
+   */
+  long getDiscardedChunkCount() {
+    return discardedChunkCount.sum();
   }
 
   private class StatisticsThread extends Thread {
@@ -177,9 +299,11 @@ public class MemStoreChunkPool implements HeapMemoryTuneObserver {
       long created = chunkCount.get();
       long reused = reusedChunkCount.get();
       long total = created + reused;
-      LOG.debug("Stats: current pool size=" + reclaimedChunks.size()
+      LOG.debug("Stats: current pool size=" + reclaimedCount.get()
           + ",created chunk count=" + created
           + ",reused chunk count=" + reused
+          + ",missed chunk count=" + missCount.sum()
+          + ",discarded chunk count=" + discardedChunkCount.sum()
           + ",reuseRatio=" + (total == 0 ? "0" : StringUtils.formatPercent(
               (float) reused / (float) total, 2)));
     }
@@ -188,10 +312,22 @@ public class MemStoreChunkPool implements HeapMemoryTuneObserver {
   /**
    * @return the global MemStoreChunkPool instance
    */
+  static MemStoreChunkPool initialize(long globalMemStoreSize, float poolSizePercentage,
+      float initialCountPercentage, int chunkSize, boolean offheap) {
+    return initialize(globalMemStoreSize, poolSizePercentage, initialCountPercentage, chunkSize,
+        offheap, MemStoreLAB.POOL_STRIPES_DEFAULT, MemStoreLAB.POOL_ARENA_SIZE_DEFAULT);
+  }
+
+  /**
+   * @param stripes number of free lists, 0 for one per available processor
+   * @param arenaSize size of the direct buffers off heap chunks are sliced from, 0 to allocate
+   *          each off heap chunk on its own
+   * @return the global MemStoreChunkPool instance
+   */
   @edu.umd.cs.findbugs.annotations.SuppressWarnings(value = "LI_LAZY_INIT_STATIC",
       justification = "Method is called by single thread at the starting of RS")
   static MemStoreChunkPool initialize(long globalMemStoreSize, float poolSizePercentage,
-      float initialCountPercentage, int chunkSize, boolean offheap) {
+      float initialCountPercentage, int chunkSize, boolean offheap, int stripes, long arenaSize) {
     if (GLOBAL_INSTANCE != null) return GLOBAL_INSTANCE;
     if (chunkPoolDisabled) return null;
 
@@ -212,7 +348,7 @@ public class MemStoreChunkPool implements HeapMemoryTuneObserver {
     LOG.info("Allocating MemStoreChunkPool with chunk size " + StringUtils.byteDesc(chunkSize)
         + ", max count " + maxCount + ", initial count " + initialCount);
     GLOBAL_INSTANCE = new MemStoreChunkPool(chunkSize, maxCount, initialCount, poolSizePercentage,
-        offheap);
+        offheap, stripes, arenaSize);
     return GLOBAL_INSTANCE;
   }
 
@@ -227,6 +363,37 @@ public class MemStoreChunkPool implements HeapMemoryTuneObserver {
     return this.maxCount;
   }
 
+  static int nextChunkId() {
+    // Skip the negative ids, -1 stands for 'no chunk'
+    return chunkIdGenerator.getAndIncrement() & Integer.MAX_VALUE;
+  }
+
+  /**
+   * Make the given chunk reachable by its id through {@link #getRegisteredChunk(int)}.
+   */
+  static void registerChunk(Chunk chunk) {
+    registeredChunks.put(chunk.getId(), chunk);
+  }
+
+  /**
+   * Remove the given chunk from the id registry, called once no index may refer to it any more.
+   */
+  static void unregisterChunk(Chunk chunk) {
+    registeredChunks.remove(chunk.getId(), chunk);
+  }
+
+  /**
+   * @return the registered chunk with the given id, or null if there is none
+   */
+  static Chunk getRegisteredChunk(int id) {
+    return registeredChunks.get(id);
+  }
+
+  @VisibleForTesting
+  static int getRegisteredChunkCount() {
+    return registeredChunks.size();
+  }
+
   @VisibleForTesting
   static void clearDisableFlag() {
     chunkPoolDisabled = false;
@@ -252,12 +419,8 @@ public class MemStoreChunkPool implements HeapMemoryTuneObserver {
         // itself. If the extra chunks are serving already, do not pool those when we get them back
         LOG.info("Max count for chunks decreased from " + this.maxCount + " to " + newMaxCount);
         this.maxCount = newMaxCount;
-        if (this.reclaimedChunks.size() > newMaxCount) {
-          synchronized (this) {
-            while (this.reclaimedChunks.size() > newMaxCount) {
-              this.reclaimedChunks.poll();
-            }
-          }
+        while (this.reclaimedCount.get() > newMaxCount && pollReclaimedChunk() != null) {
+          discardedChunkCount.increment();
         }
       }
     }
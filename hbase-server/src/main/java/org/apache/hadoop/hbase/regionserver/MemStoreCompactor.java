@@ -21,6 +21,9 @@ package org.apache.hadoop.hbase.regionserver;
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.MemoryCompactionPolicy;
 import org.apache.hadoop.hbase.classification.InterfaceAudience;
@@ -38,6 +41,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * the compacting ratio and aborts the compaction if it is not worthy.
  * The MemStoreScanner is used to traverse the compaction pipeline. The MemStoreScanner
  * is included in internal store scanner, where all compaction logic is implemented.
+ * With the {@link MemoryCompactionPolicy#ADAPTIVE} policy the action is chosen per compaction:
+ * the pipeline is compacted when a sample of its cells shows enough of them would be eliminated,
+ * merged when it holds too many segments for scans to merge cheaply, and flattened otherwise.
  * Threads safety: It is assumed that the compaction pipeline is immutable,
  * therefore no special synchronization is required.
  */
@@ -50,10 +56,34 @@ public class MemStoreCompactor {
           // compactingMemStore, versionedList, action, isInterrupted (the reference)
           // "action" is an enum and thus it is a class with static final constants,
           // so counting only the size of the reference to it and not the size of the internals
-          + Bytes.SIZEOF_INT            // compactionKVMax
+          + 5 * Bytes.SIZEOF_INT        // compactionKVMax, adaptiveMergeThreshold,
+                                        // adaptiveSampleSize, adaptiveScanLimit,
+                                        // lastEstimateScanned
+          + Bytes.SIZEOF_DOUBLE         // adaptiveCompactionThreshold
+          + 4 * Bytes.SIZEOF_LONG       // flattenCount, mergeCount, compactionCount,
+                                        // bytesEliminated
           + ClassSize.ATOMIC_BOOLEAN    // isInterrupted (the internals)
       );
 
+  // The fraction of pipeline cells an in-memory compaction has to eliminate, as estimated from a
+  // sample, for the adaptive policy to compact the data rather than only flatten or merge
+  public static final String ADAPTIVE_COMPACTION_THRESHOLD_KEY =
+      "hbase.hregion.compacting.memstore.adaptive.compaction.threshold";
+  public static final double ADAPTIVE_COMPACTION_THRESHOLD_DEFAULT = 0.3;
+  // The number of pipeline segments above which the adaptive policy merges them
+  public static final String ADAPTIVE_MERGE_THRESHOLD_KEY =
+      "hbase.hregion.compacting.memstore.adaptive.merge.threshold";
+  public static final int ADAPTIVE_MERGE_THRESHOLD_DEFAULT = 4;
+  // The number of cells the adaptive policy samples to estimate the duplicate ratio
+  public static final String ADAPTIVE_SAMPLE_SIZE_KEY =
+      "hbase.hregion.compacting.memstore.adaptive.sample.size";
+  public static final int ADAPTIVE_SAMPLE_SIZE_DEFAULT = 1000;
+  // The number of cells the adaptive policy scans at most to take its sample; the sample spans
+  // only the first cells of larger pipelines
+  public static final String ADAPTIVE_SCAN_LIMIT_KEY =
+      "hbase.hregion.compacting.memstore.adaptive.scan.limit";
+  public static final int ADAPTIVE_SCAN_LIMIT_DEFAULT = 10000;
+
   // The upper bound for the number of segments we store in the pipeline prior to merging.
   // This constant is subject to further experimentation.
   private static final int THRESHOLD_PIPELINE_SEGMENTS = 30; // stands here for infinity
@@ -71,6 +101,21 @@ public class MemStoreCompactor {
   // the limit to the size of the groups to be later provided to MemStoreSegmentsIterator
   private final int compactionKVMax;
 
+  // the settings of the adaptive policy
+  private final double adaptiveCompactionThreshold;
+  private final int adaptiveMergeThreshold;
+  private final int adaptiveSampleSize;
+  private final int adaptiveScanLimit;
+
+  // the number of cells the last duplicate ratio estimate scanned
+  private volatile int lastEstimateScanned;
+
+  // decisions taken and their outcome, written only by the compacting thread
+  private volatile long flattenCount;
+  private volatile long mergeCount;
+  private volatile long compactionCount;
+  private volatile long bytesEliminated;
+
   /**
    * Types of actions to be done on the pipeline upon MemStoreCompaction invocation.
    * Note that every value covers the previous ones, i.e. if MERGE is the action it implies
@@ -80,7 +125,8 @@ public class MemStoreCompactor {
     NOOP,
     FLATTEN,  // flatten the youngest segment in the pipeline
     MERGE,    // merge all the segments in the pipeline into one
-    COMPACT   // copy-compact the data of all the segments in the pipeline
+    COMPACT,  // copy-compact the data of all the segments in the pipeline
+    ADAPT     // choose one of the above on every compaction, by sampling the pipeline
   }
 
   private Action action = Action.FLATTEN;
@@ -88,8 +134,15 @@ public class MemStoreCompactor {
   public MemStoreCompactor(CompactingMemStore compactingMemStore,
       MemoryCompactionPolicy compactionPolicy) {
     this.compactingMemStore = compactingMemStore;
-    this.compactionKVMax = compactingMemStore.getConfiguration()
-        .getInt(HConstants.COMPACTION_KV_MAX, HConstants.COMPACTION_KV_MAX_DEFAULT);
+    Configuration conf = compactingMemStore.getConfiguration();
+    this.compactionKVMax =
+        conf.getInt(HConstants.COMPACTION_KV_MAX, HConstants.COMPACTION_KV_MAX_DEFAULT);
+    this.adaptiveCompactionThreshold =
+        conf.getDouble(ADAPTIVE_COMPACTION_THRESHOLD_KEY, ADAPTIVE_COMPACTION_THRESHOLD_DEFAULT);
+    this.adaptiveMergeThreshold =
+        conf.getInt(ADAPTIVE_MERGE_THRESHOLD_KEY, ADAPTIVE_MERGE_THRESHOLD_DEFAULT);
+    this.adaptiveSampleSize = conf.getInt(ADAPTIVE_SAMPLE_SIZE_KEY, ADAPTIVE_SAMPLE_SIZE_DEFAULT);
+    this.adaptiveScanLimit = conf.getInt(ADAPTIVE_SCAN_LIMIT_KEY, ADAPTIVE_SCAN_LIMIT_DEFAULT);
     initiateAction(compactionPolicy);
   }
 
@@ -125,13 +178,6 @@ public class MemStoreCompactor {
       isInterrupted.compareAndSet(false, true);
   }
 
-  /**----------------------------------------------------------------------
-   * The interface to check whether user requested the index-compaction
-   */
-  public boolean isIndexCompaction() {
-    return (action == Action.MERGE);
-  }
-
   /**----------------------------------------------------------------------
   * Reset the interruption indicator and clear the pointers in order to allow good
   * garbage collection
@@ -145,12 +191,16 @@ public class MemStoreCompactor {
    * Decide what to do with the new and old segments in the compaction pipeline.
    * Implements basic in-memory compaction policy.
    */
-  private Action policy() {
+  private Action policy() throws IOException {
 
     if (isInterrupted.get()) {      // if the entire process is interrupted cancel flattening
       return Action.NOOP;           // the compaction also doesn't start when interrupted
     }
 
+    if (action == Action.ADAPT) {
+      return adaptivePolicy();
+    }
+
     if (action == Action.COMPACT) { // compact according to the user request
       LOG.debug("In-Memory Compaction Pipeline for store " + compactingMemStore.getFamilyName()
           + " is going to be compacted, number of"
@@ -173,6 +223,87 @@ public class MemStoreCompactor {
     return Action.FLATTEN;
   }
 
+  /**----------------------------------------------------------------------
+   * Decide what to do with the segments in the compaction pipeline from their current content.
+   * Compacting pays off only when enough cells get eliminated, merging bounds the number of
+   * segments every scan has to merge, flattening is always worth it.
+   */
+  private Action adaptivePolicy() throws IOException {
+    double duplicateRatio = estimateDuplicateRatio();
+    if (duplicateRatio >= adaptiveCompactionThreshold) {
+      LOG.debug("In-Memory Compaction Pipeline for store " + compactingMemStore.getFamilyName()
+          + " is going to be compacted, estimated duplicate ratio is " + duplicateRatio);
+      return Action.COMPACT;
+    }
+    int numOfSegments = versionedList.getNumOfSegments();
+    if (numOfSegments > adaptiveMergeThreshold) {
+      LOG.debug("In-Memory Compaction Pipeline for store " + compactingMemStore.getFamilyName()
+          + " is going to be merged, as there are " + numOfSegments + " segments"
+          + " and the estimated duplicate ratio is " + duplicateRatio);
+      return Action.MERGE;
+    }
+    LOG.debug("The youngest segment in the in-Memory Compaction Pipeline for store "
+        + compactingMemStore.getFamilyName() + " is going to be flattened, the estimated"
+        + " duplicate ratio is " + duplicateRatio);
+    return Action.FLATTEN;
+  }
+
+  /**----------------------------------------------------------------------
+   * Estimate the fraction of the pipeline cells that a compaction would eliminate, from every
+   * n-th cell of a merged scan over all the segments, n chosen so that the sample spans the whole
+   * key range, or as much of it as the scan limit allows. A cell counts as eliminated when it is a
+   * version beyond the maximal number of versions of the family, or when a delete marker of its
+   * column precedes it. The cells between the sampled ones are still scanned, as whether a cell
+   * is eliminated depends on the cells of its column before it.
+   */
+  @VisibleForTesting
+  double estimateDuplicateRatio() throws IOException {
+    if (adaptiveSampleSize <= 0) {
+      return 0;
+    }
+    int maxVersions = compactingMemStore.getStore().getScanInfo().getMaxVersions();
+    int scanLimit = Math.max(adaptiveSampleSize, adaptiveScanLimit);
+    int stride =
+        Math.max(1, Math.min(versionedList.getNumOfCells(), scanLimit) / adaptiveSampleSize);
+    MemStoreSegmentsIterator iterator =
+        new MemStoreMergerSegmentsIterator(versionedList.getStoreSegments(),
+            compactingMemStore.getComparator(), compactionKVMax, compactingMemStore.getStore());
+    int scanned = 0;
+    int sampled = 0;
+    int eliminated = 0;
+    int versions = 0;
+    boolean columnDeleted = false;
+    Cell prev = null;
+    try {
+      while (sampled < adaptiveSampleSize && scanned < scanLimit && iterator.hasNext()) {
+        Cell cell = iterator.next();
+        if (prev != null && CellUtil.matchingRowColumn(prev, cell)) {
+          versions++;
+        } else {
+          versions = 1;
+          columnDeleted = false;
+        }
+        boolean cellEliminated = false;
+        if (CellUtil.isDelete(cell)) {
+          columnDeleted = true;
+        } else {
+          cellEliminated = columnDeleted || versions > maxVersions;
+        }
+        if (scanned++ % stride == 0) {
+          sampled++;
+          if (cellEliminated) {
+            eliminated++;
+          }
+        }
+        prev = cell;
+      }
+    } finally {
+      iterator.close();
+    }
+    lastEstimateScanned = scanned;
+    return (sampled == 0) ? 0 : (double) eliminated / sampled;
+  }
+
   /**----------------------------------------------------------------------
   * The worker thread performs the compaction asynchronously.
   * The solo (per compactor) thread only reads the compaction pipeline.
@@ -190,22 +321,34 @@ public class MemStoreCompactor {
       }
       if (nextStep == Action.FLATTEN) {
         // Youngest Segment in the pipeline is with SkipList index, make it flat
-        compactingMemStore.flattenOneSegment(versionedList.getVersion());
+        if (compactingMemStore.flattenOneSegment(versionedList.getVersion())) {
+          flattenCount++;
+        }
         return;
       }
 
       // Create one segment representing all segments in the compaction pipeline,
       // either by compaction or by merge
       if (!isInterrupted.get()) {
-        result = createSubstitution();
+        result = createSubstitution(nextStep);
       }
 
       // Substitute the pipeline with one segment
       if (!isInterrupted.get()) {
+        long dataSizeBefore = 0;
+        for (ImmutableSegment s : versionedList.getStoreSegments()) {
+          dataSizeBefore += s.keySize();
+        }
         if (resultSwapped = compactingMemStore.swapCompactedSegments(
-            versionedList, result, (action==Action.MERGE))) {
+            versionedList, result, (nextStep==Action.MERGE))) {
           // update the wal so it can be truncated and not get too long
           compactingMemStore.updateLowestUnflushedSequenceIdInWAL(true); // only if greater
+          if (nextStep == Action.MERGE) {
+            mergeCount++;
+          } else {
+            compactionCount++;
+            bytesEliminated += Math.max(0, dataSizeBefore - result.keySize());
+          }
         }
       }
     } catch (IOException e) {
@@ -231,12 +374,12 @@ public class MemStoreCompactor {
    * Creation of the ImmutableSegment either by merge or copy-compact of the segments of the
    * pipeline, based on the Compactor Iterator. The new ImmutableSegment is returned.
    */
-  private ImmutableSegment createSubstitution() throws IOException {
+  private ImmutableSegment createSubstitution(Action nextStep) throws IOException {
 
     ImmutableSegment result = null;
     MemStoreSegmentsIterator iterator = null;
 
-    switch (action) {
+    switch (nextStep) {
     case COMPACT:
       iterator =
           new MemStoreCompactorSegmentsIterator(versionedList.getStoreSegments(),
@@ -245,7 +388,7 @@ public class MemStoreCompactor {
 
       result = SegmentFactory.instance().createImmutableSegmentByCompaction(
           compactingMemStore.getConfiguration(), compactingMemStore.getComparator(), iterator,
-          versionedList.getNumOfCells(), ImmutableSegment.Type.ARRAY_MAP_BASED);
+          versionedList.getNumOfCells(), compactingMemStore.getFlatSegmentType());
       iterator.close();
       break;
     case MERGE:
@@ -256,16 +399,52 @@ public class MemStoreCompactor {
 
       result = SegmentFactory.instance().createImmutableSegmentByMerge(
           compactingMemStore.getConfiguration(), compactingMemStore.getComparator(), iterator,
-          versionedList.getNumOfCells(), ImmutableSegment.Type.ARRAY_MAP_BASED,
+          versionedList.getNumOfCells(), compactingMemStore.getFlatSegmentType(),
           versionedList.getStoreSegments());
       iterator.close();
       break;
-    default: throw new RuntimeException("Unknown action " + action); // sanity check
+    default: throw new RuntimeException("Unknown action " + nextStep); // sanity check
     }
 
     return result;
   }
 
+  /**
+   * @return the number of times the youngest pipeline segment was flattened
+   */
+  public long getFlattenCount() {
+    return flattenCount;
+  }
+
+  /**
+   * @return the number of times the pipeline segments were merged into one
+   */
+  public long getMergeCount() {
+    return mergeCount;
+  }
+
+  /**
+   * @return the number of times the pipeline segments were compacted into one
+   */
+  public long getCompactionCount() {
+    return compactionCount;
+  }
+
+  /**
+   * @return the number of cells the last estimate of the duplicate ratio scanned
+   */
+  @VisibleForTesting
+  int getLastEstimateScanned() {
+    return lastEstimateScanned;
+  }
+
+  /**
+   * @return the total size of the cell data eliminated by in-memory compactions
+   */
+  public long getBytesEliminated() {
+    return bytesEliminated;
+  }
+
   /**----------------------------------------------------------------------
    * Initiate the action according to user config, after its default is Action.MERGE
    */
@@ -279,6 +458,8 @@ public class MemStoreCompactor {
       break;
     case EAGER: action = Action.COMPACT;
       break;
+    case ADAPTIVE: action = Action.ADAPT;
+      break;
     default:
       throw new RuntimeException("Unknown memstore type " + compType); // sanity check
     }
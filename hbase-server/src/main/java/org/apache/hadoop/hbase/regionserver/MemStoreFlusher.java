@@ -20,6 +20,7 @@ package org.apache.hadoop.hbase.regionserver;
 
 import static org.apache.hadoop.util.StringUtils.humanReadableInt;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 
 import java.io.IOException;
@@ -27,13 +28,13 @@ import java.lang.Thread.UncaughtExceptionHandler;
 import java.lang.management.MemoryType;
 import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.DelayQueue;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.ThreadFactory;
@@ -64,6 +65,11 @@ import org.apache.htrace.TraceScope;
 /**
  * Thread that flushes cache on request
  *
+ * Flush requests are queued by {@link FlushPriority}, one delay queue per
+ * priority, and the flush handlers serve the queues with ready entries in
+ * smooth weighted round robin. A region has at most one queued request; a
+ * more urgent request for it moves the queued one up.
+ *
  * NOTE: This class extends Thread rather than Chore because the sleep time
  * can be interrupted when there is something to do, rather than the Chore
  * sleep time which is invariant.
@@ -77,10 +83,14 @@ class MemStoreFlusher implements FlushRequester {
   private Configuration conf;
   // These two data members go together.  Any entry in the one must have
   // a corresponding entry in the other.
-  private final BlockingQueue<FlushQueueEntry> flushQueue =
-    new DelayQueue<FlushQueueEntry>();
+  private final Map<FlushPriority, DelayQueue<FlushQueueEntry>> flushQueues =
+    new EnumMap<FlushPriority, DelayQueue<FlushQueueEntry>>(FlushPriority.class);
   private final Map<Region, FlushRegionEntry> regionsInQueue =
     new HashMap<Region, FlushRegionEntry>();
+  // Flush handlers wait on this for queued entries, it also guards the round robin state
+  private final Object queueSignal = new Object();
+  private final int[] queueWeights = new int[FlushPriority.values().length];
+  private final int[] queueCredits = new int[FlushPriority.values().length];
   private AtomicBoolean wakeupPending = new AtomicBoolean();
 
   private final long threadWakeFrequency;
@@ -109,6 +119,11 @@ class MemStoreFlusher implements FlushRequester {
       90000);
     int handlerCount = conf.getInt("hbase.hstore.flusher.count", 2);
     this.flushHandlers = new FlushHandler[handlerCount];
+    for (FlushPriority priority : FlushPriority.values()) {
+      flushQueues.put(priority, new DelayQueue<FlushQueueEntry>());
+      queueWeights[priority.ordinal()] =
+          Math.max(1, conf.getInt(priority.getWeightKey(), priority.getDefaultWeight()));
+    }
     LOG.info("globalMemStoreLimit="
         + TraditionalBinaryPrefix
             .long2String(this.server.getRegionServerAccounting().getGlobalMemstoreLimit(), "", 1)
@@ -229,7 +244,7 @@ class MemStoreFlusher implements FlushRequester {
         FlushQueueEntry fqe = null;
         try {
           wakeupPending.set(false); // allow someone to wake us up again
-          fqe = flushQueue.poll(threadWakeFrequency, TimeUnit.MILLISECONDS);
+          fqe = pollFlushQueues(threadWakeFrequency);
           if (fqe == null || fqe instanceof WakeupFlushThread) {
             FlushType type = isAboveLowWaterMark();
             if (type != FlushType.NORMAL) {
@@ -255,6 +270,10 @@ class MemStoreFlusher implements FlushRequester {
             continue;
           }
           FlushRegionEntry fre = (FlushRegionEntry) fqe;
+          MetricsRegionServer metrics = server.getRegionServerMetrics();
+          if (metrics != null) {
+            metrics.updateFlushQueueTime(fre.getPriority(), fre.getQueuedTime());
+          }
           if (!flushRegion(fre)) {
             break;
           }
@@ -271,7 +290,9 @@ class MemStoreFlusher implements FlushRequester {
       }
       synchronized (regionsInQueue) {
         regionsInQueue.clear();
-        flushQueue.clear();
+        for (DelayQueue<FlushQueueEntry> flushQueue : flushQueues.values()) {
+          flushQueue.clear();
+        }
       }
 
       // Signal anyone waiting, so they see the close flag
@@ -283,8 +304,73 @@ class MemStoreFlusher implements FlushRequester {
 
   private void wakeupFlushThread() {
     if (wakeupPending.compareAndSet(false, true)) {
-      flushQueue.add(new WakeupFlushThread());
+      enqueue(new WakeupFlushThread(), FlushPriority.GLOBAL_PRESSURE);
+    }
+  }
+
+  private void enqueue(FlushQueueEntry fqe, FlushPriority priority) {
+    flushQueues.get(priority).add(fqe);
+    synchronized (queueSignal) {
+      queueSignal.notify();
+    }
+  }
+
+  /**
+   * Take the next ready entry from the flush queues, waiting up to the given time for one.
+   * @return the entry, or null if none became ready in time
+   */
+  @VisibleForTesting
+  FlushQueueEntry pollFlushQueues(long timeoutMs) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    synchronized (queueSignal) {
+      while (true) {
+        FlushQueueEntry fqe = pollNextEntry();
+        if (fqe != null) {
+          return fqe;
+        }
+        long wait = deadline - System.currentTimeMillis();
+        if (wait <= 0) {
+          return null;
+        }
+        // Wake up when the first delayed entry becomes ready
+        for (DelayQueue<FlushQueueEntry> flushQueue : flushQueues.values()) {
+          FlushQueueEntry head = flushQueue.peek();
+          if (head != null) {
+            wait = Math.min(wait, head.getDelay(TimeUnit.MILLISECONDS));
+          }
+        }
+        queueSignal.wait(Math.max(1, wait));
+      }
+    }
+  }
+
+  /**
+   * Smooth weighted round robin over the queues which have a ready entry: each such queue earns
+   * its weight in credits, the richest one is served and pays back the total weight. Over time
+   * every busy queue gets a share of the polls proportional to its weight, and the polls of a
+   * queue are spread evenly rather than bunched together. Call with queueSignal held.
+   */
+  private FlushQueueEntry pollNextEntry() {
+    FlushPriority next = null;
+    int totalWeight = 0;
+    for (FlushPriority priority : FlushPriority.values()) {
+      FlushQueueEntry head = flushQueues.get(priority).peek();
+      if (head == null || head.getDelay(TimeUnit.MILLISECONDS) > 0) {
+        continue;
+      }
+      int i = priority.ordinal();
+      queueCredits[i] += queueWeights[i];
+      totalWeight += queueWeights[i];
+      if (next == null || queueCredits[i] > queueCredits[next.ordinal()]) {
+        next = priority;
+      }
+    }
+    if (next == null) {
+      return null;
     }
+    queueCredits[next.ordinal()] -= totalWeight;
+    // Null if an emergency flush just removed the entry
+    return flushQueues.get(next).poll();
   }
 
   private Region getBiggestMemstoreRegion(
@@ -354,13 +440,25 @@ class MemStoreFlusher implements FlushRequester {
 
   @Override
   public void requestFlush(Region r, boolean forceFlushAllStores) {
+    requestFlush(r, forceFlushAllStores, FlushPriority.NORMAL);
+  }
+
+  @Override
+  public void requestFlush(Region r, boolean forceFlushAllStores, FlushPriority priority) {
     synchronized (regionsInQueue) {
-      if (!regionsInQueue.containsKey(r)) {
-        // This entry has no delay so it will be added at the top of the flush
+      FlushRegionEntry queued = regionsInQueue.get(r);
+      if (queued == null) {
+        // This entry has no delay so it will be added at the top of its flush
         // queue.  It'll come out near immediately.
-        FlushRegionEntry fqe = new FlushRegionEntry(r, forceFlushAllStores);
+        FlushRegionEntry fqe = new FlushRegionEntry(r, forceFlushAllStores, priority);
         this.regionsInQueue.put(r, fqe);
-        this.flushQueue.add(fqe);
+        enqueue(fqe, priority);
+      } else if (priority.compareTo(queued.getPriority()) < 0
+          && flushQueues.get(queued.getPriority()).remove(queued)) {
+        // Move the queued request to the more urgent queue. If it could not be removed a
+        // handler took it already.
+        queued.promote(priority, forceFlushAllStores);
+        enqueue(queued, priority);
       }
     }
   }
@@ -370,16 +468,34 @@ class MemStoreFlusher implements FlushRequester {
     synchronized (regionsInQueue) {
       if (!regionsInQueue.containsKey(r)) {
         // This entry has some delay
-        FlushRegionEntry fqe = new FlushRegionEntry(r, forceFlushAllStores);
+        FlushRegionEntry fqe =
+            new FlushRegionEntry(r, forceFlushAllStores, FlushPriority.PERIODIC);
         fqe.requeue(delay);
         this.regionsInQueue.put(r, fqe);
-        this.flushQueue.add(fqe);
+        enqueue(fqe, FlushPriority.PERIODIC);
       }
     }
   }
 
+  @Override
+  public long getFlushQueueWaitTime() {
+    long wait = 0;
+    for (DelayQueue<FlushQueueEntry> flushQueue : flushQueues.values()) {
+      // The head of a queue is the entry which became due first
+      FlushQueueEntry head = flushQueue.peek();
+      if (head instanceof FlushRegionEntry) {
+        wait = Math.max(wait, ((FlushRegionEntry) head).getQueuedTime());
+      }
+    }
+    return wait;
+  }
+
   public int getFlushQueueSize() {
-    return flushQueue.size();
+    int size = 0;
+    for (DelayQueue<FlushQueueEntry> flushQueue : flushQueues.values()) {
+      size += flushQueue.size();
+    }
+    return size;
   }
 
   /**
@@ -461,7 +577,7 @@ class MemStoreFlusher implements FlushRequester {
 
         // Put back on the queue.  Have it come back out of the queue
         // after a delay of this.blockingWaitTime / 100 ms.
-        this.flushQueue.add(fqe.requeue(this.blockingWaitTime / 100));
+        enqueue(fqe.requeue(this.blockingWaitTime / 100), fqe.getPriority());
         // Tell a lie, it's not flushed but it's ok
         return true;
       }
@@ -489,7 +605,7 @@ class MemStoreFlusher implements FlushRequester {
       if (fqe != null && emergencyFlush) {
         // Need to remove from region from delay queue.  When NOT an
         // emergencyFlush, then item was removed via a flushQueue.poll.
-        flushQueue.remove(fqe);
+        flushQueues.get(fqe.getPriority()).remove(fqe);
       }
     }
 
@@ -652,18 +768,20 @@ class MemStoreFlusher implements FlushRequester {
   @Override
   public String toString() {
     return "flush_queue="
-        + flushQueue.size();
+        + getFlushQueueSize();
   }
 
   public String dumpQueue() {
     StringBuilder queueList = new StringBuilder();
     queueList.append("Flush Queue Queue dump:\n");
-    queueList.append("  Flush Queue:\n");
-    java.util.Iterator<FlushQueueEntry> it = flushQueue.iterator();
+    for (Map.Entry<FlushPriority, DelayQueue<FlushQueueEntry>> e : flushQueues.entrySet()) {
+      queueList.append("  Flush Queue " + e.getKey() + ":\n");
+      java.util.Iterator<FlushQueueEntry> it = e.getValue().iterator();
 
-    while(it.hasNext()){
-      queueList.append("    "+it.next().toString());
-      queueList.append("\n");
+      while(it.hasNext()){
+        queueList.append("    "+it.next().toString());
+        queueList.append("\n");
+      }
     }
 
     return queueList.toString();
@@ -737,12 +855,18 @@ class MemStoreFlusher implements FlushRequester {
     private int requeueCount = 0;
 
     private boolean forceFlushAllStores;
+    private FlushPriority priority;
 
     FlushRegionEntry(final Region r, boolean forceFlushAllStores) {
+      this(r, forceFlushAllStores, FlushPriority.NORMAL);
+    }
+
+    FlushRegionEntry(final Region r, boolean forceFlushAllStores, FlushPriority priority) {
       this.region = r;
       this.createTime = EnvironmentEdgeManager.currentTime();
       this.whenToExpire = this.createTime;
       this.forceFlushAllStores = forceFlushAllStores;
+      this.priority = priority;
     }
 
     /**
@@ -768,6 +892,31 @@ class MemStoreFlusher implements FlushRequester {
       return forceFlushAllStores;
     }
 
+    /**
+     * @return the priority of the queue this entry is in.
+     */
+    public FlushPriority getPriority() {
+      return priority;
+    }
+
+    /**
+     * Raise the priority of this entry and make it ready now. Only call while
+     * the entry is out of the delay queue.
+     */
+    void promote(FlushPriority priority, boolean forceFlushAllStores) {
+      this.priority = priority;
+      this.forceFlushAllStores |= forceFlushAllStores;
+      this.whenToExpire = Math.min(this.whenToExpire, EnvironmentEdgeManager.currentTime());
+    }
+
+    /**
+     * @return milliseconds this entry has been ready to flush, i.e. waiting
+     * for a flush handler.
+     */
+    public long getQueuedTime() {
+      return Math.max(0, EnvironmentEdgeManager.currentTime() - this.whenToExpire);
+    }
+
     /**
      * @param when When to expire, when to come up out of the queue.
      * Specify in milliseconds.  This method adds EnvironmentEdgeManager.currentTime()
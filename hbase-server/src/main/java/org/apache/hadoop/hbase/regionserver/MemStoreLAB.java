@@ -61,6 +61,12 @@ public interface MemStoreLAB {
   String CHUNK_POOL_INITIALSIZE_KEY = "hbase.hregion.memstore.chunkpool.initialsize";
   float POOL_MAX_SIZE_DEFAULT = 1.0f;
   float POOL_INITIAL_SIZE_DEFAULT = 0.0f;
+  // Number of free lists the pool is striped over, 0 means one per available processor
+  String CHUNK_POOL_STRIPES_KEY = "hbase.hregion.memstore.chunkpool.stripes";
+  int POOL_STRIPES_DEFAULT = 0;
+  // Size of the direct buffers off heap chunks are carved from, 0 disables the arenas
+  String CHUNK_POOL_ARENA_SIZE_KEY = "hbase.hregion.memstore.chunkpool.arena.size";
+  long POOL_ARENA_SIZE_DEFAULT = 64L * 1024 * 1024;
 
   /**
    * Allocates slice in this LAB and copy the passed Cell into this area. Returns new Cell instance
@@ -68,6 +74,15 @@ public interface MemStoreLAB {
    */
   Cell copyCellInto(Cell cell);
 
+  /**
+   * Returns a new, registered chunk which is owned by this LAB but not used for its own cell
+   * allocations, e.g. to hold a {@link CellChunkMap} index. The chunk is given back together with
+   * the other chunks of this LAB. Returns null when this MemStoreLAB can not hand out chunks.
+   */
+  default Chunk getNewExternalChunk() {
+    return null;
+  }
+
   /**
    * Close instance since it won't be used any more, try to put the chunks back to pool
    */
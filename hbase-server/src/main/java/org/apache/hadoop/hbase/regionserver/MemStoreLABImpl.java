@@ -18,17 +18,21 @@
  */
 package org.apache.hadoop.hbase.regionserver;
 
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.ExtendedCell;
 import org.apache.hadoop.hbase.KeyValueUtil;
 import org.apache.hadoop.hbase.classification.InterfaceAudience;
 
@@ -59,12 +63,18 @@ import com.google.common.base.Preconditions;
  * When the Chunk comes pool, it can be either an on heap or an off heap backed chunk. The chunks,
  * which this MemStoreLAB creates on its own (when no chunk available from pool), those will be
  * always on heap backed.
+ * When the memstore index type is {@link CompactingMemStore.IndexType#CHUNK_MAP}, every chunk this
+ * MemStoreLAB uses is registered with {@link MemStoreChunkPool#registerChunk(Chunk)} and the
+ * copied cells remember their chunk id, so that a {@link CellChunkMap} can index them.
  */
 @InterfaceAudience.Private
 public class MemStoreLABImpl implements MemStoreLAB {
 
   static final Log LOG = LogFactory.getLog(MemStoreLABImpl.class);
 
+  // Unused tail bytes of the chunks retired by all the MemStoreLABs of this server
+  private static final LongAdder wastedChunkBytes = new LongAdder();
+
   private AtomicReference<Chunk> curChunk = new AtomicReference<Chunk>();
   // A queue of chunks from pool contained by this memstore LAB
   // TODO: in the future, it would be better to have List implementation instead of Queue,
@@ -74,6 +84,8 @@ public class MemStoreLABImpl implements MemStoreLAB {
   private final int chunkSize;
   private final int maxAlloc;
   private final MemStoreChunkPool chunkPool;
+  // Chunks registered by id for the CellChunkMap index, null when that index is not in use
+  private final Queue<Chunk> registeredChunkQueue;
 
   // This flag is for closing this instance, its set when clearing snapshot of
   // memstore
@@ -99,6 +111,11 @@ public class MemStoreLABImpl implements MemStoreLAB {
       // too many non-reclaimable chunks
       pooledChunkQueue = new LinkedBlockingQueue<>(chunkPool.getMaxCount());
     }
+    if (CompactingMemStore.getIndexType(conf) == CompactingMemStore.IndexType.CHUNK_MAP) {
+      registeredChunkQueue = new ConcurrentLinkedQueue<>();
+    } else {
+      registeredChunkQueue = null;
+    }
 
     // if we don't exclude allocations >CHUNK_SIZE, we'd infiniteloop on one!
     Preconditions.checkArgument(maxAlloc <= chunkSize,
@@ -130,7 +147,51 @@ public class MemStoreLABImpl implements MemStoreLAB {
       // try to retire this chunk
       tryRetireChunk(c);
     }
-    return CellUtil.copyCellTo(cell, c.getData(), allocOffset, size);
+    if (registeredChunkQueue == null) {
+      return CellUtil.copyCellTo(cell, c.getData(), allocOffset, size);
+    }
+    return copyToChunkCell(cell, c, allocOffset, size);
+  }
+
+  /**
+   * Same as {@link CellUtil#copyCellTo(Cell, java.nio.ByteBuffer, int, int)}, but makes a Cell
+   * which knows the id of the chunk it lives in.
+   */
+  private static Cell copyToChunkCell(Cell cell, Chunk c, int offset, int len) {
+    if (cell instanceof ExtendedCell) {
+      ((ExtendedCell) cell).write(c.getData(), offset);
+    } else {
+      KeyValueUtil.appendTo(cell, c.getData(), offset, true);
+    }
+    if (cell.getTagsLength() == 0) {
+      return new NoTagByteBufferChunkCell(c.getData(), offset, len, cell.getSequenceId(),
+          c.getId());
+    }
+    return new ByteBufferChunkCell(c.getData(), offset, len, cell.getSequenceId(), c.getId());
+  }
+
+  @Override
+  public Chunk getNewExternalChunk() {
+    if (registeredChunkQueue == null || closed) {
+      return null;
+    }
+    Chunk c = null;
+    if (chunkPool != null) {
+      c = chunkPool.getChunk();
+    }
+    boolean pooledChunk = (c != null);
+    if (!pooledChunk) {
+      c = new OnheapChunk(chunkSize);
+    }
+    c.init();
+    registerChunk(c);
+    if (pooledChunk && !this.pooledChunkQueue.offer(c)) {
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("Chunk queue is full, won't reuse this new chunk. Current queue size: "
+            + pooledChunkQueue.size());
+      }
+    }
+    return c;
   }
 
   /**
@@ -142,9 +203,8 @@ public class MemStoreLABImpl implements MemStoreLAB {
     this.closed = true;
     // We could put back the chunks to pool for reusing only when there is no
     // opening scanner which will read their data
-    if (chunkPool != null && openScannerCount.get() == 0
-        && reclaimed.compareAndSet(false, true)) {
-      chunkPool.putbackChunks(this.pooledChunkQueue);
+    if (openScannerCount.get() == 0 && reclaimed.compareAndSet(false, true)) {
+      recycleChunks();
     }
   }
 
@@ -162,12 +222,38 @@ public class MemStoreLABImpl implements MemStoreLAB {
   @Override
   public void decScannerCount() {
     int count = this.openScannerCount.decrementAndGet();
-    if (this.closed && chunkPool != null && count == 0
-        && reclaimed.compareAndSet(false, true)) {
+    if (this.closed && count == 0 && reclaimed.compareAndSet(false, true)) {
+      recycleChunks();
+    }
+  }
+
+  /**
+   * Unregister the chunks of this LAB and give the pooled ones back to the pool. Called once, when
+   * this LAB is closed and no scanner reads its data any more.
+   */
+  private void recycleChunks() {
+    if (registeredChunkQueue != null) {
+      Chunk c;
+      while ((c = registeredChunkQueue.poll()) != null) {
+        MemStoreChunkPool.unregisterChunk(c);
+      }
+    }
+    if (chunkPool != null) {
       chunkPool.putbackChunks(this.pooledChunkQueue);
     }
   }
 
+  private void registerChunk(Chunk c) {
+    MemStoreChunkPool.registerChunk(c);
+    registeredChunkQueue.add(c);
+    if (closed && reclaimed.get()) {
+      // raced with recycleChunks(), nobody is going to read from this chunk
+      if (registeredChunkQueue.remove(c)) {
+        MemStoreChunkPool.unregisterChunk(c);
+      }
+    }
+  }
+
   /**
    * Try to retire the current chunk if it is still
    * <code>c</code>. Postcondition is that curChunk.get()
@@ -176,15 +262,25 @@ public class MemStoreLABImpl implements MemStoreLAB {
    * @return true if we won the race to retire the chunk
    */
   private void tryRetireChunk(Chunk c) {
-    curChunk.compareAndSet(c, null);
-    // If the CAS succeeds, that means that we won the race
-    // to retire the chunk. We could use this opportunity to
-    // update metrics on external fragmentation.
-    //
+    if (curChunk.compareAndSet(c, null)) {
+      // We won the race to retire the chunk, account for the
+      // tail that no allocation will use (external fragmentation).
+      int used = c.getNextFreeOffset();
+      if (used >= 0) {
+        wastedChunkBytes.add(c.size - used);
+      }
+    }
     // If the CAS fails, that means that someone else already
     // retired the chunk for us.
   }
 
+  /**
+   * @return the bytes left unused at the end of the chunks retired by all MemStoreLABs so far
+   */
+  static long getWastedChunkBytes() {
+    return wastedChunkBytes.sum();
+  }
+
   /**
    * Get the current chunk, or, if there is no current chunk,
    * allocate a new one from the JVM.
@@ -214,6 +310,9 @@ public class MemStoreLABImpl implements MemStoreLAB {
         // we won race - now we need to actually do the expensive
         // allocation step
         c.init();
+        if (registeredChunkQueue != null) {
+          registerChunk(c);
+        }
         if (pooledChunk) {
           if (!this.closed && !this.pooledChunkQueue.offer(c)) {
             if (LOG.isTraceEnabled()) {
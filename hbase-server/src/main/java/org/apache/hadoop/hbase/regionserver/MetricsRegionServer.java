@@ -136,6 +136,10 @@ public class MetricsRegionServer {
     serverSource.updateFlushOutputSize(fileSize);
   }
 
+  public void updateFlushQueueTime(FlushPriority priority, long t) {
+    serverSource.updateFlushQueueTime(priority.getMetricName(), t);
+  }
+
   public void updateCompaction(boolean isMajor, long t, int inputFileCount, int outputFileCount,
       long inputBytes, long outputBytes) {
     serverSource.updateCompactionTime(isMajor, t);
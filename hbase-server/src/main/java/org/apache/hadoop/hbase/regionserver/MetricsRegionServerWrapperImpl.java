@@ -836,6 +836,35 @@ class MetricsRegionServerWrapperImpl
     return blockedRequestsCount;
   }
 
+  @Override
+  public long getMemStoreChunkPoolHitCount() {
+    MemStoreChunkPool pool = MemStoreChunkPool.getPool();
+    return pool == null ? 0 : pool.getHitCount();
+  }
+
+  @Override
+  public long getMemStoreChunkPoolMissCount() {
+    MemStoreChunkPool pool = MemStoreChunkPool.getPool();
+    return pool == null ? 0 : pool.getMissCount();
+  }
+
+  @Override
+  public long getMemStoreChunkCreatedCount() {
+    MemStoreChunkPool pool = MemStoreChunkPool.getPool();
+    return pool == null ? 0 : pool.getCreatedChunkCount();
+  }
+
+  @Override
+  public long getMemStoreChunkDiscardedCount() {
+    MemStoreChunkPool pool = MemStoreChunkPool.getPool();
+    return pool == null ? 0 : pool.getDiscardedChunkCount();
+  }
+
+  @Override
+  public long getMemStoreChunkWastedBytes() {
+    return MemStoreLABImpl.getWastedChunkBytes();
+  }
+
   @Override
   public long getAverageRegionSize() {
     return averageRegionSize;
@@ -52,6 +52,10 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
   private long minStoreFileAge;
   private long avgStoreFileAge;
   private long numReferenceFiles;
+  private long memStoreFlattenCount;
+  private long memStoreMergeCount;
+  private long memStoreCompactionCount;
+  private long memStoreCompactionBytesEliminated;
 
   private ScheduledFuture<?> regionMetricsUpdateTask;
 
@@ -162,6 +166,36 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
     return this.region.compactionsFailed.get();
   }
 
+  @Override
+  public long getRowLockContendedCount() {
+    return this.region.getStripedRowLocks().getContendedAcquisitions();
+  }
+
+  @Override
+  public long getRowLockSlotCollisionCount() {
+    return this.region.getStripedRowLocks().getSlotCollisions();
+  }
+
+  @Override
+  public long getMemStoreFlattenCount() {
+    return memStoreFlattenCount;
+  }
+
+  @Override
+  public long getMemStoreMergeCount() {
+    return memStoreMergeCount;
+  }
+
+  @Override
+  public long getMemStoreCompactionCount() {
+    return memStoreCompactionCount;
+  }
+
+  @Override
+  public long getMemStoreCompactionBytesEliminated() {
+    return memStoreCompactionBytesEliminated;
+  }
+
   @Override
   public long getMaxStoreFileAge() {
     return maxStoreFileAge;
@@ -197,6 +231,10 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
       long tempMaxStoreFileAge = 0;
       long tempMinStoreFileAge = Long.MAX_VALUE;
       long tempNumReferenceFiles = 0;
+      long tempMemStoreFlattenCount = 0;
+      long tempMemStoreMergeCount = 0;
+      long tempMemStoreCompactionCount = 0;
+      long tempMemStoreCompactionBytesEliminated = 0;
 
       long avgAgeNumerator = 0;
       long numHFiles = 0;
@@ -218,6 +256,10 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
           avgAgeNumerator += store.getAvgStoreFileAge() * storeHFiles;
           numHFiles += storeHFiles;
           tempNumReferenceFiles += store.getNumReferenceFiles();
+          tempMemStoreFlattenCount += store.getMemStoreFlattenCount();
+          tempMemStoreMergeCount += store.getMemStoreMergeCount();
+          tempMemStoreCompactionCount += store.getMemStoreCompactionCount();
+          tempMemStoreCompactionBytesEliminated += store.getMemStoreCompactionBytesEliminated();
         }
       }
 
@@ -234,6 +276,10 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
       }
 
       numReferenceFiles = tempNumReferenceFiles;
+      memStoreFlattenCount = tempMemStoreFlattenCount;
+      memStoreMergeCount = tempMemStoreMergeCount;
+      memStoreCompactionCount = tempMemStoreCompactionCount;
+      memStoreCompactionBytesEliminated = tempMemStoreCompactionBytesEliminated;
     }
   }
 
@@ -250,4 +296,24 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
     return region.getRegionInfo().getReplicaId();
   }
 
+  @Override
+  public long getWALAppendBytes() {
+    return region.getWALStats().getAppendBytes();
+  }
+
+  @Override
+  public long getWALAppendCount() {
+    return region.getWALStats().getAppendCount();
+  }
+
+  @Override
+  public long getWALSyncWaitTimeMean() {
+    return region.getWALStats().getSyncWaitMean();
+  }
+
+  @Override
+  public long getWALSyncWaitTime99th() {
+    return region.getWALStats().getSyncWait99th();
+  }
+
 }
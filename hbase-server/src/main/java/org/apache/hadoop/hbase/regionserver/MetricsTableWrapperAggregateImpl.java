@@ -78,6 +78,15 @@ public class MetricsTableWrapperAggregateImpl implements MetricsTableWrapperAggr
         metricsTable.setReadRequestsCount(metricsTable.getReadRequestsCount() + r.getReadRequestsCount());
         metricsTable.setWriteRequestsCount(metricsTable.getWriteRequestsCount() + r.getWriteRequestsCount());
         metricsTable.setTotalRequestsCount(metricsTable.getReadRequestsCount() + metricsTable.getWriteRequestsCount());
+        if (r instanceof HRegion) {
+          RegionWALStats walStats = ((HRegion) r).getWALStats();
+          metricsTable.setWALAppendBytes(metricsTable.getWALAppendBytes()
+              + walStats.getAppendBytes());
+          metricsTable.setWALAppendCount(metricsTable.getWALAppendCount()
+              + walStats.getAppendCount());
+          metricsTable.setWALSyncWaitTime99th(Math.max(metricsTable.getWALSyncWaitTime99th(),
+            walStats.getSyncWait99th()));
+        }
       }
 
       for(Map.Entry<TableName, MetricsTableValues> entry : localMetricsTableMap.entrySet()) {
@@ -159,6 +168,33 @@ public class MetricsTableWrapperAggregateImpl implements MetricsTableWrapperAggr
       return metricsTable.getTableSize();
   }
 
+  @Override
+  public long getWALAppendBytes(String table) {
+    MetricsTableValues metricsTable = metricsTableMap.get(TableName.valueOf(table));
+    if (metricsTable == null)
+      return 0;
+    else
+      return metricsTable.getWALAppendBytes();
+  }
+
+  @Override
+  public long getWALAppendCount(String table) {
+    MetricsTableValues metricsTable = metricsTableMap.get(TableName.valueOf(table));
+    if (metricsTable == null)
+      return 0;
+    else
+      return metricsTable.getWALAppendCount();
+  }
+
+  @Override
+  public long getWALSyncWaitTime99th(String table) {
+    MetricsTableValues metricsTable = metricsTableMap.get(TableName.valueOf(table));
+    if (metricsTable == null)
+      return 0;
+    else
+      return metricsTable.getWALSyncWaitTime99th();
+  }
+
   @Override
   public void close() throws IOException {
     tableMetricsUpdateTask.cancel(true);
@@ -172,6 +208,9 @@ public class MetricsTableWrapperAggregateImpl implements MetricsTableWrapperAggr
     private long memstoresSize;
     private long storeFilesSize;
     private long tableSize;
+    private long walAppendBytes;
+    private long walAppendCount;
+    private long walSyncWaitTime99th;
 
     public long getTotalRequestsCount() {
       return totalRequestsCount;
@@ -220,6 +259,30 @@ public class MetricsTableWrapperAggregateImpl implements MetricsTableWrapperAggr
     public void setTableSize(long tableSize) {
       this.tableSize = tableSize;
     }
+
+    public long getWALAppendBytes() {
+      return walAppendBytes;
+    }
+
+    public void setWALAppendBytes(long walAppendBytes) {
+      this.walAppendBytes = walAppendBytes;
+    }
+
+    public long getWALAppendCount() {
+      return walAppendCount;
+    }
+
+    public void setWALAppendCount(long walAppendCount) {
+      this.walAppendCount = walAppendCount;
+    }
+
+    public long getWALSyncWaitTime99th() {
+      return walSyncWaitTime99th;
+    }
+
+    public void setWALSyncWaitTime99th(long walSyncWaitTime99th) {
+      this.walSyncWaitTime99th = walSyncWaitTime99th;
+    }
   }
 
 }
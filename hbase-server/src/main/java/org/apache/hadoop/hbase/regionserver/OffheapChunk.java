@@ -33,6 +33,16 @@ public class OffheapChunk extends Chunk {
     super(size);
   }
 
+  /**
+   * Create a chunk over an already allocated direct buffer, e.g. a slice of an
+   * {@link OffheapChunkArena}.
+   */
+  OffheapChunk(ByteBuffer data) {
+    super(data.capacity());
+    Preconditions.checkArgument(data.isDirect(), "Off heap chunk needs a direct buffer");
+    this.data = data;
+  }
+
   @Override
   public void init() {
     assert nextFreeOffset.get() == UNINITIALIZED;
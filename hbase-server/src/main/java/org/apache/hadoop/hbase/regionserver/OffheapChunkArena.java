@@ -0,0 +1,90 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.nio.ByteBuffer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.util.StringUtils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * Hands out the backing buffers of the off heap chunks of the {@link MemStoreChunkPool}.
+ * <p>
+ * Instead of one {@link ByteBuffer#allocateDirect(int)} call per chunk, the arena allocates large
+ * direct buffers and carves them into chunk sized slices. Direct allocations serialize on the
+ * JVM's direct memory reservation and the buffers are zeroed, so every page is touched at
+ * allocation time; doing that once per arena keeps this cost out of the write path. Slices are
+ * never given back: the pool keeps its off heap chunks for the life of the region server.
+ */
+@InterfaceAudience.Private
+class OffheapChunkArena {
+  private static final Log LOG = LogFactory.getLog(OffheapChunkArena.class);
+
+  private final int chunkSize;
+  private final int chunksPerArena;
+  // Upper bound of the chunks this arena will ever hand out
+  private final int maxChunks;
+
+  private ByteBuffer currentArena;
+  private int carvedChunks;
+  private int arenaCount;
+
+  OffheapChunkArena(int chunkSize, long arenaSize, int maxChunks) {
+    Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+    Preconditions.checkArgument(arenaSize >= chunkSize, "arenaSize must hold at least one chunk");
+    this.chunkSize = chunkSize;
+    this.chunksPerArena = (int) Math.min(arenaSize / chunkSize, Integer.MAX_VALUE / chunkSize);
+    this.maxChunks = maxChunks;
+  }
+
+  /**
+   * @return a direct buffer of chunkSize bytes, or null once the arena handed out maxChunks buffers
+   */
+  synchronized ByteBuffer allocate() {
+    if (carvedChunks >= maxChunks) {
+      return null;
+    }
+    int slot = carvedChunks % chunksPerArena;
+    if (slot == 0) {
+      // Do not reserve more than the pool can ever use
+      int chunks = Math.min(chunksPerArena, maxChunks - carvedChunks);
+      currentArena = ByteBuffer.allocateDirect(chunks * chunkSize);
+      arenaCount++;
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Allocated off heap chunk arena #" + arenaCount + " of "
+            + StringUtils.byteDesc((long) chunks * chunkSize));
+      }
+    }
+    ByteBuffer dup = currentArena.duplicate();
+    dup.position(slot * chunkSize);
+    dup.limit(slot * chunkSize + chunkSize);
+    carvedChunks++;
+    return dup.slice();
+  }
+
+  @VisibleForTesting
+  synchronized int getArenaCount() {
+    return arenaCount;
+  }
+}
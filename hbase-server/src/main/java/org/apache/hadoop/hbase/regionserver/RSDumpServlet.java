@@ -107,6 +107,13 @@ public class RSDumpServlet extends StateDumpServlet {
     StringBuilder sb = new StringBuilder();
     for (Region region : hrs.getOnlineRegions()) {
       HRegion hRegion = (HRegion)region;
+      for (StripedRowLocks.Slot slot : hRegion.getStripedRowLocks().getHeldSlots()) {
+        sb.setLength(0);
+        sb.append(hRegion.getTableDesc().getTableName()).append(",")
+          .append(hRegion.getRegionInfo().getEncodedName()).append(",");
+        sb.append(slot.toString());
+        out.println(sb.toString());
+      }
       if (hRegion.getLockedRows().size() > 0) {
         for (HRegion.RowLockContext rowLockContext : hRegion.getLockedRows().values()) {
           sb.setLength(0);
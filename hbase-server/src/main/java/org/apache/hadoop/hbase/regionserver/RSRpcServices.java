@@ -2336,6 +2336,11 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     RegionScanner scanner = null;
     try {
       scanner = region.getScanner(scan);
+      if (scanner instanceof RegionScannerImpl) {
+        // Closed only once the results are shipped, so they can stay in the blocks they were read
+        // from, pooled buffers included
+        ((RegionScannerImpl) scanner).setCopyCellsFromPooledBlocks(false);
+      }
       scanner.next(results);
     } finally {
       if (scanner != null) {
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.hbase.Abortable;
@@ -250,11 +251,28 @@ public interface RegionServerServices extends OnlineRegions, FavoredNodesForRegi
    */
   double getCompactionPressure();
 
+  /**
+   * @return the number of compaction requests queued on this regionserver
+   */
+  int getCompactionQueueSize();
+
+  /**
+   * @return the recent 99th percentile of the WAL sync time on this regionserver, in milliseconds
+   */
+  long getWALSyncLatency();
+
   /**
    * @return the controller to avoid flush too fast
    */
   ThroughputController getFlushThroughputController();
 
+  /**
+   * @return the executor that the regions of this server share to write out the store snapshots
+   *         of a flush in parallel, or null to write them one after another. It runs a task on the
+   *         calling thread when it has no thread left for it.
+   */
+  Executor getStoreFlushExecutor();
+
   /**
    * @return the flush pressure of all stores on this regionserver. The value should be greater than
    *         or equal to 0.0, and any value greater than 1.0 means we enter the emergency state that
@@ -0,0 +1,117 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.metrics.Snapshot;
+import org.apache.hadoop.hbase.metrics.impl.FastLongHistogram;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+
+/**
+ * The WAL traffic a single region is responsible for: the bytes and entries it had appended,
+ * and how long its handlers waited for WAL syncs. Exported per region, and summed up per table,
+ * so it can be told which tenant drives or suffers from WAL pressure on a shared server.
+ * <p>
+ * Sync waits are kept in a histogram over fixed windows; the getters report on the last
+ * finished window.
+ */
+@InterfaceAudience.Private
+public class RegionWALStats {
+
+  // Length of the windows the sync wait percentiles are computed over
+  private static final long SYNC_WAIT_WINDOW_MS = 60 * 1000;
+
+  private final LongAdder appendBytes = new LongAdder();
+  private final LongAdder appendCount = new LongAdder();
+  // Sync waits, in microseconds, of the current window, and the summary of the last finished one.
+  // The histogram is only created on the first sync wait, as regions of tables that skip or
+  // defer WAL syncs never wait on one.
+  private volatile FastLongHistogram syncWaitWindow;
+  private final AtomicLong syncWaitWindowStart =
+      new AtomicLong(EnvironmentEdgeManager.currentTime());
+  private volatile long syncWaitMean = 0;
+  private volatile long syncWait99th = 0;
+
+  /**
+   * Record an entry of the region appended to the WAL.
+   * @param bytes serialized size of the entry
+   */
+  void appended(long bytes) {
+    appendBytes.add(bytes);
+    appendCount.increment();
+  }
+
+  /**
+   * Record a wait of a handler of the region on a WAL sync.
+   * @param waitMicros how long the handler waited, in microseconds
+   */
+  void synced(long waitMicros) {
+    FastLongHistogram window = syncWaitWindow;
+    if (window == null) {
+      synchronized (this) {
+        window = syncWaitWindow;
+        if (window == null) {
+          window = new FastLongHistogram();
+          syncWaitWindow = window;
+        }
+      }
+    }
+    window.add(waitMicros, 1);
+    rollSyncWaitWindow();
+  }
+
+  public long getAppendBytes() {
+    return appendBytes.sum();
+  }
+
+  public long getAppendCount() {
+    return appendCount.sum();
+  }
+
+  /**
+   * @return mean sync wait of the last finished window, in microseconds
+   */
+  public long getSyncWaitMean() {
+    rollSyncWaitWindow();
+    return syncWaitMean;
+  }
+
+  /**
+   * @return 99th percentile sync wait of the last finished window, in microseconds
+   */
+  public long getSyncWait99th() {
+    rollSyncWaitWindow();
+    return syncWait99th;
+  }
+
+  private void rollSyncWaitWindow() {
+    long now = EnvironmentEdgeManager.currentTime();
+    long start = syncWaitWindowStart.get();
+    if (now - start >= SYNC_WAIT_WINDOW_MS && syncWaitWindowStart.compareAndSet(start, now)) {
+      FastLongHistogram window = syncWaitWindow;
+      Snapshot snapshot = window == null ? null : window.snapshotAndReset();
+      boolean empty = snapshot == null || snapshot.getCount() == 0;
+      syncWaitMean = empty ? 0 : snapshot.getMean();
+      syncWait99th = empty ? 0 : snapshot.get99thPercentile();
+    }
+  }
+}
@@ -64,7 +64,8 @@ class ReversedStoreScanner extends StoreScanner implements KeyValueScanner {
   protected void resetKVHeap(List<? extends KeyValueScanner> scanners,
       CellComparator comparator) throws IOException {
     // Combine all seeked scanners with a heap
-    heap = new ReversedKeyValueHeap(scanners, comparator);
+    heap = deltaMerger == null ? new ReversedKeyValueHeap(scanners, comparator)
+        : deltaMerger.createReversedHeap(scanners, comparator);
   }
 
   @Override
@@ -48,11 +48,12 @@ public class ScanInfo {
   private boolean usePread;
   private long cellsPerTimeoutCheck;
   private boolean parallelSeekEnabled;
+  private boolean deltaCounters;
   private final Configuration conf;
 
   public static final long FIXED_OVERHEAD = ClassSize.align(ClassSize.OBJECT
       + (2 * ClassSize.REFERENCE) + (2 * Bytes.SIZEOF_INT)
-      + (4 * Bytes.SIZEOF_LONG) + (3 * Bytes.SIZEOF_BOOLEAN));
+      + (4 * Bytes.SIZEOF_LONG) + (4 * Bytes.SIZEOF_BOOLEAN));
 
   /**
    * @param conf
@@ -65,7 +66,7 @@ public class ScanInfo {
   public ScanInfo(final Configuration conf, final HColumnDescriptor family, final long ttl,
       final long timeToPurgeDeletes, final CellComparator comparator) {
     this(conf, family.getName(), family.getMinVersions(), family.getMaxVersions(), ttl, family
-        .getKeepDeletedCells(), timeToPurgeDeletes, comparator);
+        .getKeepDeletedCells(), timeToPurgeDeletes, comparator, family.isDeltaCounters());
   }
 
   /**
@@ -82,6 +83,26 @@ public class ScanInfo {
   public ScanInfo(final Configuration conf, final byte[] family, final int minVersions,
       final int maxVersions, final long ttl, final KeepDeletedCells keepDeletedCells,
       final long timeToPurgeDeletes, final CellComparator comparator) {
+    this(conf, family, minVersions, maxVersions, ttl, keepDeletedCells, timeToPurgeDeletes,
+        comparator, false);
+  }
+
+  /**
+   * @param conf
+   * @param family Name of this store's column family
+   * @param minVersions Store's MIN_VERSIONS setting
+   * @param maxVersions Store's VERSIONS setting
+   * @param ttl Store's TTL (in ms)
+   * @param timeToPurgeDeletes duration in ms after which a delete marker can
+   *        be purged during a major compaction.
+   * @param keepDeletedCells Store's keepDeletedCells setting
+   * @param comparator The store's comparator
+   * @param deltaCounters Store's DELTA_COUNTERS setting
+   */
+  public ScanInfo(final Configuration conf, final byte[] family, final int minVersions,
+      final int maxVersions, final long ttl, final KeepDeletedCells keepDeletedCells,
+      final long timeToPurgeDeletes, final CellComparator comparator,
+      final boolean deltaCounters) {
     this.family = family;
     this.minVersions = minVersions;
     this.maxVersions = maxVersions;
@@ -89,6 +110,7 @@ public class ScanInfo {
     this.keepDeletedCells = keepDeletedCells;
     this.timeToPurgeDeletes = timeToPurgeDeletes;
     this.comparator = comparator;
+    this.deltaCounters = deltaCounters;
     this.tableMaxRowSize =
       conf.getLong(HConstants.TABLE_MAX_ROWSIZE_KEY, HConstants.TABLE_MAX_ROWSIZE_DEFAULT);
     this.usePread = conf.getBoolean("hbase.storescanner.use.pread", false);
@@ -134,6 +156,13 @@ public class ScanInfo {
     return maxVersions;
   }
 
+  /**
+   * @return True if this is a delta counter family, see {@link HColumnDescriptor#DELTA_COUNTERS}
+   */
+  public boolean isDeltaCounters() {
+    return deltaCounters;
+  }
+
   public long getTtl() {
     return ttl;
   }
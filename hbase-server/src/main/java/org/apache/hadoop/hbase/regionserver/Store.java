@@ -475,6 +475,27 @@ public interface Store extends HeapSize, StoreConfigInformation, PropagatingConf
    */
   long getMajorCompactedCellsSize();
 
+  /**
+   * @return The number of times in-memory compaction flattened a memstore segment, 0 if the
+   *         memstore does not compact in memory
+   */
+  long getMemStoreFlattenCount();
+
+  /**
+   * @return The number of times in-memory compaction merged the memstore segments
+   */
+  long getMemStoreMergeCount();
+
+  /**
+   * @return The number of times in-memory compaction compacted the memstore segments
+   */
+  long getMemStoreCompactionCount();
+
+  /**
+   * @return The total amount of memstore data eliminated by in-memory compactions, in bytes
+   */
+  long getMemStoreCompactionBytesEliminated();
+
   /*
    * @param o Observer who wants to know about changes in set of Readers
    */
@@ -36,6 +36,7 @@ import org.apache.hadoop.hbase.KeyValueUtil;
 import org.apache.hadoop.hbase.classification.InterfaceAudience;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.io.TimeRange;
+import org.apache.hadoop.hbase.io.hfile.AccessPattern;
 import org.apache.hadoop.hbase.io.hfile.HFileScanner;
 import org.apache.hadoop.hbase.regionserver.querymatcher.ScanQueryMatcher;
 
@@ -92,6 +93,14 @@ public class StoreFileScanner implements KeyValueScanner {
     this.canOptimizeForNonNullColumn = canOptimizeForNonNullColumn;
   }
 
+  /**
+   * Says how this scanner is going to go through its file, so the data blocks it reads are
+   * admitted to the block cache accordingly.
+   */
+  void setAccessPattern(AccessPattern accessPattern) {
+    hfs.setAccessPattern(accessPattern);
+  }
+
   boolean isPrimaryReplica() {
     return reader.isPrimaryReplicaReader();
   }
@@ -43,6 +43,7 @@ import org.apache.hadoop.hbase.client.IsolationLevel;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.executor.ExecutorService;
 import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.io.hfile.AccessPattern;
 import org.apache.hadoop.hbase.regionserver.ScannerContext.LimitScope;
 import org.apache.hadoop.hbase.regionserver.ScannerContext.NextState;
 import org.apache.hadoop.hbase.regionserver.handler.ParallelSeekHandler;
@@ -128,6 +129,8 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
 
   // A flag whether use pread for scan
   private final boolean scanUsePread;
+  // How the store file scanners read their files, a hint for block cache admission
+  private final AccessPattern accessPattern;
   // Indicates whether there was flush during the course of the scan
   protected volatile boolean flushed = false;
   // generally we get one file from a flush
@@ -139,6 +142,10 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
 
   protected final long readPt;
 
+  // Sums the cells of delta counter families below the matcher; null for other families and raw
+  // scans
+  protected DeltaCounterMerger deltaMerger;
+
   // used by the injection framework to test race between StoreScanner construction and compaction
   enum StoreScannerCompactionRace {
     BEFORE_SEEK,
@@ -170,16 +177,21 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
      this.maxRowSize = scanInfo.getTableMaxRowSize();
     if (get) {
       this.scanUsePread = true;
+      this.accessPattern = AccessPattern.POINT;
     } else {
       switch (scan.getReadType()) {
         case STREAM:
           this.scanUsePread = false;
+          // Asked for streaming reads, so expected to go through much of the data
+          this.accessPattern = AccessPattern.FULL_SCAN;
           break;
         case PREAD:
           this.scanUsePread = true;
+          this.accessPattern = AccessPattern.SHORT_SCAN;
           break;
         default:
           this.scanUsePread = scanInfo.isUsePread();
+          this.accessPattern = AccessPattern.SHORT_SCAN;
           break;
       }
     }
@@ -216,6 +228,9 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
     }
     matcher = UserScanQueryMatcher.create(scan, scanInfo, columns, oldestUnexpiredTS, now,
       store.getCoprocessorHost());
+    if (scanInfo.isDeltaCounters() && !scan.isRaw()) {
+      deltaMerger = DeltaCounterMerger.forUserScan(scan, scanInfo, oldestUnexpiredTS);
+    }
 
     this.store.addChangedReaderObserver(this);
 
@@ -298,6 +313,10 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
         earliestPutTs, oldestUnexpiredTS, now, dropDeletesFromRow, dropDeletesToRow,
         store.getCoprocessorHost());
     }
+    if (scanInfo.isDeltaCounters()) {
+      // Collapse the deltas that every reader can see into one cell per counter
+      deltaMerger = DeltaCounterMerger.forCompaction(smallestReadPoint);
+    }
 
     // Filter the list of scanners using Bloom filters, time range, TTL, etc.
     scanners = selectScannersFrom(scanners);
@@ -350,6 +369,11 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
           earliestPutTs, oldestUnexpiredTS, now, null, null, null);
       }
     }
+    if (scanInfo.isDeltaCounters() && !(scanType == ScanType.USER_SCAN && scan.isRaw())) {
+      deltaMerger = scanType == ScanType.USER_SCAN
+          ? DeltaCounterMerger.forUserScan(scan, scanInfo, oldestUnexpiredTS)
+          : DeltaCounterMerger.forCompaction(Long.MAX_VALUE);
+    }
 
     // Seek all scanners to the initial key
     seekScanners(scanners, matcher.getStartKey(), false, parallelSeekEnabled);
@@ -408,7 +432,8 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
   protected void resetKVHeap(List<? extends KeyValueScanner> scanners,
       CellComparator comparator) throws IOException {
     // Combine all seeked scanners with a heap
-    heap = new KeyValueHeap(scanners, comparator);
+    heap = deltaMerger == null ? new KeyValueHeap(scanners, comparator)
+        : deltaMerger.createHeap(scanners, comparator);
   }
 
   /**
@@ -443,6 +468,9 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
       }
 
       if (kvs.shouldUseScanner(scan, store, expiredTimestampCutoff)) {
+        if (kvs instanceof StoreFileScanner) {
+          ((StoreFileScanner) kvs).setAccessPattern(accessPattern);
+        }
         scanners.add(kvs);
       } else {
         kvs.close();
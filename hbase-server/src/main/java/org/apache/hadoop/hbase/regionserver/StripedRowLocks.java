@@ -0,0 +1,272 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.regionserver.Region.RowLock;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * A fixed size table of reusable row lock slots, indexed by row hash. A row whose slot is free,
+ * or already held for that same row, is locked without allocating anything; HRegion falls back
+ * to its map of {@link HRegion.RowLockContext}s when the slot is held for a different row.
+ * <p>
+ * Every row maps to exactly one slot, and a row is never locked through its slot and through
+ * the fallback map at the same time. Fallback users register themselves on the slot they
+ * collided with (see {@link Slot#reference(byte[], int)}) and a slot cannot be claimed for a new
+ * row while any are registered, so two threads asking for the same row always end up on the same
+ * lock.
+ * <p>
+ * Also keeps the row lock contention counters reported through {@link MetricsRegionWrapper}.
+ */
+@InterfaceAudience.Private
+public class StripedRowLocks {
+
+  /** Number of row lock slots per region. Rounded up to a power of two; 0 disables the slots. */
+  public static final String ROW_LOCK_SLOTS_KEY = "hbase.hregion.rowlock.slots";
+  public static final int DEFAULT_ROW_LOCK_SLOTS = 64;
+  private static final int MAX_ROW_LOCK_SLOTS = 1 << 16;
+
+  // Slots are created on first use so that idle regions don't pay for the locks.
+  private final AtomicReferenceArray<Slot> slots;
+  private final int mask;
+
+  private final LongAdder contendedAcquisitions = new LongAdder();
+  private final LongAdder slotCollisions = new LongAdder();
+
+  StripedRowLocks(int numSlots) {
+    if (numSlots <= 0) {
+      this.slots = null;
+      this.mask = 0;
+    } else {
+      int size = numSlots >= MAX_ROW_LOCK_SLOTS ? MAX_ROW_LOCK_SLOTS
+          : Integer.highestOneBit((numSlots << 1) - 1);
+      this.slots = new AtomicReferenceArray<>(size);
+      this.mask = size - 1;
+    }
+  }
+
+  /**
+   * @return the slot the row with the given hash maps to, or null if slots are disabled
+   */
+  Slot getSlot(int rowHash) {
+    if (slots == null) {
+      return null;
+    }
+    int index = (rowHash ^ (rowHash >>> 16)) & mask;
+    Slot slot = slots.get(index);
+    if (slot == null) {
+      slots.compareAndSet(index, null, new Slot());
+      slot = slots.get(index);
+    }
+    return slot;
+  }
+
+  int getNumSlots() {
+    return slots == null ? 0 : slots.length();
+  }
+
+  /**
+   * @return the slots currently referenced by a lock holder or waiter
+   */
+  public List<Slot> getHeldSlots() {
+    List<Slot> held = new ArrayList<>();
+    if (slots != null) {
+      for (int i = 0; i < slots.length(); i++) {
+        Slot slot = slots.get(i);
+        if (slot != null && slot.refs.get() > 0) {
+          held.add(slot);
+        }
+      }
+    }
+    return held;
+  }
+
+  void contended() {
+    contendedAcquisitions.increment();
+  }
+
+  void collided() {
+    slotCollisions.increment();
+  }
+
+  /**
+   * @return number of row lock acquisitions that could not be granted immediately
+   */
+  public long getContendedAcquisitions() {
+    return contendedAcquisitions.sum();
+  }
+
+  /**
+   * @return number of row lock acquisitions that fell back to the lock map
+   */
+  public long getSlotCollisions() {
+    return slotCollisions.sum();
+  }
+
+  /**
+   * A reusable lock, held for at most one row at a time.
+   */
+  @InterfaceAudience.Private
+  public static final class Slot {
+    private static final int CLAIMING = -1;
+
+    final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
+    final RowLock readRowLock = new SlotRowLock(this, readWriteLock.readLock());
+    final RowLock writeRowLock = new SlotRowLock(this, readWriteLock.writeLock());
+
+    // 0 when free, CLAIMING while the row is being changed, otherwise the number of threads
+    // holding or waiting for the lock.
+    private final AtomicInteger refs = new AtomicInteger(0);
+    // Number of fallback map lock users whose row maps to this slot.
+    private final AtomicInteger overflow = new AtomicInteger(0);
+    private volatile byte[] row;
+    private volatile int rowHash;
+    private volatile String threadName;
+
+    private Slot() {
+    }
+
+    /**
+     * Takes a reference on this slot for the given row, claiming it if it is free. If that is not
+     * possible the caller is registered as a fallback user of this slot instead, and must call
+     * {@link #endOverflow()} once it has released its fallback lock.
+     * @return true if the slot was referenced, false if the caller has to use the fallback path
+     */
+    boolean reference(byte[] row, int rowHash) {
+      if (join(row, rowHash) || claim(row, rowHash)) {
+        return true;
+      }
+      // Register before looking at the slot again: a concurrent claim either sees us and backs
+      // off, or has published its row by the time we look and we join it.
+      overflow.incrementAndGet();
+      if (join(row, rowHash)) {
+        overflow.decrementAndGet();
+        return true;
+      }
+      return false;
+    }
+
+    void endOverflow() {
+      overflow.decrementAndGet();
+    }
+
+    void unreference() {
+      while (true) {
+        int c = refs.get();
+        if (c == 1) {
+          if (refs.compareAndSet(1, CLAIMING)) {
+            this.row = null;
+            this.threadName = null;
+            refs.set(0);
+            return;
+          }
+        } else if (refs.compareAndSet(c, c - 1)) {
+          return;
+        }
+      }
+    }
+
+    private boolean join(byte[] row, int rowHash) {
+      while (true) {
+        int c = refs.get();
+        if (c == CLAIMING) {
+          Thread.yield();
+          continue;
+        }
+        if (c == 0 || !holds(row, rowHash)) {
+          return false;
+        }
+        if (refs.compareAndSet(c, c + 1)) {
+          // The slot may have been released and claimed again between the check and the CAS.
+          if (holds(row, rowHash)) {
+            return true;
+          }
+          unreference();
+          return false;
+        }
+      }
+    }
+
+    private boolean claim(byte[] row, int rowHash) {
+      if (!refs.compareAndSet(0, CLAIMING)) {
+        return false;
+      }
+      if (overflow.get() > 0) {
+        // Someone may hold this very row through the fallback map.
+        refs.set(0);
+        return false;
+      }
+      this.row = row;
+      this.rowHash = rowHash;
+      refs.set(1);
+      return true;
+    }
+
+    private boolean holds(byte[] row, int rowHash) {
+      return this.rowHash == rowHash && Bytes.equals(this.row, row);
+    }
+
+    void setThreadName(String threadName) {
+      this.threadName = threadName;
+    }
+
+    @Override
+    public String toString() {
+      return "RowLockSlot{" +
+          "row=" + Bytes.toStringBinary(row) +
+          ", readWriteLock=" + readWriteLock +
+          ", count=" + refs +
+          ", threadName=" + threadName +
+          '}';
+    }
+  }
+
+  private static final class SlotRowLock implements RowLock {
+    private final Slot slot;
+    private final Lock lock;
+
+    SlotRowLock(Slot slot, Lock lock) {
+      this.slot = slot;
+      this.lock = lock;
+    }
+
+    @Override
+    public void release() {
+      lock.unlock();
+      slot.unreference();
+    }
+
+    @Override
+    public String toString() {
+      return "SlotRowLock{" +
+          "slot=" + slot +
+          ", lock=" + lock +
+          '}';
+    }
+  }
+}
@@ -84,6 +84,13 @@ class ColumnCount {
     return this.length;
   }
 
+  /**
+   * @return the current version count
+   */
+  public int getCount() {
+    return this.count;
+  }
+
   /**
    * Decrement the current version count
    * @return current count
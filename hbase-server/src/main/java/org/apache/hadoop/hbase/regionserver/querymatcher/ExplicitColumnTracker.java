@@ -64,6 +64,7 @@ public class ExplicitColumnTracker implements ColumnTracker {
    * Keeps track of the latest timestamp included for current column. Used to eliminate duplicates.
    */
   private long latestTSOfCurrentColumn;
+  private final boolean deltaCounters;
   private long oldestStamp;
 
   /**
@@ -75,9 +76,24 @@ public class ExplicitColumnTracker implements ColumnTracker {
    */
   public ExplicitColumnTracker(NavigableSet<byte[]> columns, int minVersions, int maxVersions,
       long oldestUnexpiredTS) {
+    this(columns, minVersions, maxVersions, oldestUnexpiredTS, false);
+  }
+
+  /**
+   * @param columns columns specified user in query
+   * @param minVersions minimum number of versions to keep
+   * @param maxVersions maximum versions to return per column
+   * @param oldestUnexpiredTS the oldest timestamp we are interested in, based on TTL
+   * @param deltaCounters whether to include the delta cells of a delta counter family that a
+   *          flush or compaction could not sum into the newest version of their counter without
+   *          counting them as versions
+   */
+  public ExplicitColumnTracker(NavigableSet<byte[]> columns, int minVersions, int maxVersions,
+      long oldestUnexpiredTS, boolean deltaCounters) {
     this.maxVersions = maxVersions;
     this.minVersions = minVersions;
     this.oldestStamp = oldestUnexpiredTS;
+    this.deltaCounters = deltaCounters;
     this.columns = new ColumnCount[columns.size()];
     int i = 0;
     for (byte[] column : columns) {
@@ -154,7 +170,9 @@ public class ExplicitColumnTracker implements ColumnTracker {
   public ScanQueryMatcher.MatchCode checkVersions(Cell cell, long timestamp, byte type,
       boolean ignoreCount) throws IOException {
     assert !CellUtil.isDelete(type);
-    if (ignoreCount) {
+    // A delta before the newest version of its counter is part of that version
+    if (ignoreCount || (deltaCounters && this.column.getCount() == 0
+        && ScanQueryMatcher.isDeltaCounter(cell))) {
       return ScanQueryMatcher.MatchCode.INCLUDE;
     }
     // Check if it is a duplicate timestamp
@@ -376,14 +376,14 @@ public class LegacyScanQueryMatcher extends ScanQueryMatcher {
       hasNullColumn = true;
       // use a specialized scan for wildcard column tracker.
       columnTracker = new ScanWildcardColumnTracker(scanInfo.getMinVersions(), maxVersions,
-          oldestUnexpiredTS);
+          oldestUnexpiredTS, scanInfo.isDeltaCounters());
     } else {
       // We can share the ExplicitColumnTracker, diff is we reset
       // between rows, not between storefiles.
       // whether there is null column in the explicit column query
       hasNullColumn = columns.first().length == 0;
       columnTracker = new ExplicitColumnTracker(columns, scanInfo.getMinVersions(), maxVersions,
-          oldestUnexpiredTS);
+          oldestUnexpiredTS, scanInfo.isDeltaCounters());
     }
     DeleteTracker deletes = instantiateDeleteTracker(regionCoprocessorHost);
     if (dropDeletesFromRow == null) {
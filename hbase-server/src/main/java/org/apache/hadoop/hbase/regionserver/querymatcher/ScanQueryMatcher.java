@@ -345,6 +345,16 @@ public abstract class ScanQueryMatcher implements ShipperListener {
     }
   }
 
+  /**
+   * @return whether <code>cell</code> is an increment amount of a delta counter family that a
+   *         flush or compaction left to be summed later
+   * @see org.apache.hadoop.hbase.HColumnDescriptor#DELTA_COUNTERS
+   */
+  static boolean isDeltaCounter(Cell cell) {
+    return cell.getTagsLength() > 0
+        && CellUtil.getTag(cell, TagType.DELTA_COUNTER_TAG_TYPE) != null;
+  }
+
   protected static Cell createStartKeyFromRow(byte[] startRow, ScanInfo scanInfo) {
     return CellUtil.createFirstDeleteFamilyCellOnRow(startRow, scanInfo.getFamily());
   }
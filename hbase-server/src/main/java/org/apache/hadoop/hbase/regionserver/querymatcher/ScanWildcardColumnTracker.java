@@ -44,6 +44,8 @@ public class ScanWildcardColumnTracker implements ColumnTracker {
    */
   private long latestTSOfCurrentColumn;
   private byte latestTypeOfCurrentColumn;
+  // whether unsummed deltas of the newest counter version are kept without counting as versions
+  private final boolean deltaCounters;
 
   private long oldestStamp;
 
@@ -54,9 +56,23 @@ public class ScanWildcardColumnTracker implements ColumnTracker {
    * @param oldestUnexpiredTS oldest timestamp that has not expired according to the TTL.
    */
   public ScanWildcardColumnTracker(int minVersion, int maxVersion, long oldestUnexpiredTS) {
+    this(minVersion, maxVersion, oldestUnexpiredTS, false);
+  }
+
+  /**
+   * @param minVersion Minimum number of versions to keep
+   * @param maxVersion Maximum number of versions to return
+   * @param oldestUnexpiredTS oldest timestamp that has not expired according to the TTL.
+   * @param deltaCounters whether to include the delta cells of a delta counter family that a
+   *          flush or compaction could not sum into the newest version of their counter without
+   *          counting them as versions
+   */
+  public ScanWildcardColumnTracker(int minVersion, int maxVersion, long oldestUnexpiredTS,
+      boolean deltaCounters) {
     this.maxVersions = maxVersion;
     this.minVersions = minVersion;
     this.oldestStamp = oldestUnexpiredTS;
+    this.deltaCounters = deltaCounters;
   }
 
   /**
@@ -74,11 +90,10 @@ public class ScanWildcardColumnTracker implements ColumnTracker {
   @Override
   public ScanQueryMatcher.MatchCode checkVersions(Cell cell, long timestamp, byte type,
       boolean ignoreCount) throws IOException {
-
     if (columnCell == null) {
       // first iteration.
       resetCell(cell);
-      if (ignoreCount) {
+      if (ignoreCount || isPendingDelta(cell)) {
         return ScanQueryMatcher.MatchCode.INCLUDE;
       }
       // do not count a delete marker as another version
@@ -86,7 +101,7 @@ public class ScanWildcardColumnTracker implements ColumnTracker {
     }
     int cmp = CellComparator.compareQualifiers(cell, this.columnCell);
     if (cmp == 0) {
-      if (ignoreCount) {
+      if (ignoreCount || isPendingDelta(cell)) {
         return ScanQueryMatcher.MatchCode.INCLUDE;
       }
 
@@ -103,7 +118,7 @@ public class ScanWildcardColumnTracker implements ColumnTracker {
     if (cmp > 0) {
       // switched columns, lets do something.x
       resetCell(cell);
-      if (ignoreCount) {
+      if (ignoreCount || isPendingDelta(cell)) {
         return ScanQueryMatcher.MatchCode.INCLUDE;
       }
       return checkVersion(type, timestamp);
@@ -118,6 +133,14 @@ public class ScanWildcardColumnTracker implements ColumnTracker {
         + Bytes.toStringBinary(CellUtil.cloneQualifier(cell)));
   }
 
+  /**
+   * @return whether <code>cell</code> is a delta that a flush or compaction could not sum into
+   *         the newest version of its counter, which it is part of, so it must not count as one
+   */
+  private boolean isPendingDelta(Cell cell) {
+    return deltaCounters && currentCount == 0 && ScanQueryMatcher.isDeltaCounter(cell);
+  }
+
   private void resetCell(Cell columnCell) {
     this.columnCell = columnCell;
     currentCount = 0;
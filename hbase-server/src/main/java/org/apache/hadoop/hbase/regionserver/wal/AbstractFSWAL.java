@@ -501,7 +501,7 @@ public abstract class AbstractFSWAL<W> implements WAL {
   /**
    * retrieve the next path to use for writing. Increments the internal filenum.
    */
-  private Path getNewPath() throws IOException {
+  protected Path getNewPath() throws IOException {
     this.filenum.set(System.currentTimeMillis());
     Path newPath = getCurrentFileName();
     while (fs.exists(newPath)) {
@@ -944,6 +944,14 @@ public abstract class AbstractFSWAL<W> implements WAL {
     }
   }
 
+  protected void postSyncBatch(final int batchSize, final long waitTimeNanos) {
+    if (!listeners.isEmpty()) {
+      for (WALActionsListener listener : listeners) {
+        listener.postSyncBatch(batchSize, waitTimeNanos);
+      }
+    }
+  }
+
   protected long stampSequenceIdAndPublishToRingBuffer(HRegionInfo hri, WALKey key, WALEdit edits,
       boolean inMemstore, RingBuffer<RingBufferTruck> ringBuffer)
       throws IOException {
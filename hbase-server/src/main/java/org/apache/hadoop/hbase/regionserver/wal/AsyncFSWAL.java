@@ -31,15 +31,19 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.lang.reflect.Field;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -125,6 +129,14 @@ import org.apache.htrace.TraceScope;
  * </ol>
  * For a broken writer roll request, the only difference is that we can bypass the wait for safe
  * point stage. See the comments in the {@link #syncFailed(Throwable)} method for more details.
+ * <p>
+ * If {@link #ASYNC_WAL_USE_STANDBY_WRITER} is set, every roll also opens the writer for the next
+ * roll ahead of time, on its own pipeline. When a sync has been outstanding longer than what
+ * {@link SlowSyncDetector} allows, typically because one datanode in the pipeline hangs, we treat
+ * the current writer as broken without waiting for the pipeline to time out. The unacked entries
+ * are moved back to {@link #toWriteAppends} and the roll that follows picks up the standby writer,
+ * so it does not have to wait for a new pipeline to be set up either. Late acks from the abandoned
+ * writer are ignored, its entries will be written to the new writer again.
  */
 @InterfaceAudience.LimitedPrivate(HBaseInterfaceAudience.CONFIG)
 public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
@@ -142,6 +154,9 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
   public static final String ASYNC_WAL_CREATE_MAX_RETRIES = "hbase.wal.async.create.retries";
   public static final int DEFAULT_ASYNC_WAL_CREATE_MAX_RETRIES = 10;
 
+  public static final String ASYNC_WAL_USE_STANDBY_WRITER = "hbase.wal.async.standby.writer";
+  public static final boolean DEFAULT_ASYNC_WAL_USE_STANDBY_WRITER = false;
+
   private final EventLoop eventLoop;
 
   private final Lock consumeLock = new ReentrantLock();
@@ -190,6 +205,21 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
 
   private long highestProcessedAppendTxidAtLastSync;
 
+  // null if we do not keep a standby writer
+  private final SlowSyncDetector slowSyncDetector;
+
+  // start time of the syncs issued on the current writer and not acked yet, oldest first
+  private final Deque<Long> outstandingSyncStartTimes = new ArrayDeque<>();
+
+  private boolean slowSyncCheckScheduled;
+
+  // the writer the next roll will switch to, only replaced under the rollWriterLock
+  private volatile AsyncWriter standbyWriter;
+
+  private Path standbyPath;
+
+  private long standbyFilenum;
+
   public AsyncFSWAL(FileSystem fs, Path rootDir, String logDir, String archiveDir,
       Configuration conf, List<WALActionsListener> listeners, boolean failIfWALExists,
       String prefix, String suffix, EventLoop eventLoop)
@@ -227,6 +257,9 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
     batchSize = conf.getLong(WAL_BATCH_SIZE, DEFAULT_WAL_BATCH_SIZE);
     createMaxRetries =
         conf.getInt(ASYNC_WAL_CREATE_MAX_RETRIES, DEFAULT_ASYNC_WAL_CREATE_MAX_RETRIES);
+    slowSyncDetector =
+        conf.getBoolean(ASYNC_WAL_USE_STANDBY_WRITER, DEFAULT_ASYNC_WAL_USE_STANDBY_WRITER)
+            ? new SlowSyncDetector(conf) : null;
     rollWriter();
   }
 
@@ -265,6 +298,10 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
     // safe to use writerBroken as a guard.
     // Do not forget to revisit this if we change the implementation of
     // FanOutOneBlockAsyncDFSOutput!
+    markWriterBroken();
+  }
+
+  private void markWriterBroken() {
     consumeLock.lock();
     try {
       if (writerBroken) {
@@ -282,11 +319,17 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
       toWriteAppends.addFirst(iter.next());
     }
     highestUnsyncedTxid = highestSyncedTxid.get();
+    outstandingSyncStartTimes.clear();
     // request a roll.
     requestLogRoll();
   }
 
   private void syncCompleted(AsyncWriter writer, long processedTxid, long startTimeNs) {
+    if (slowSyncDetector != null) {
+      // acks come back in the order the syncs were issued
+      outstandingSyncStartTimes.poll();
+      slowSyncDetector.syncCompleted(System.nanoTime() - startTimeNs);
+    }
     highestSyncedTxid.set(processedTxid);
     for (Iterator<FSWALEntry> iter = unackedAppends.iterator(); iter.hasNext();) {
       if (iter.next().getTxid() <= processedTxid) {
@@ -327,15 +370,73 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
     long currentHighestProcessedAppendTxid = highestProcessedAppendTxid;
     highestProcessedAppendTxidAtLastSync = currentHighestProcessedAppendTxid;
     final long startTimeNs = System.nanoTime();
+    if (slowSyncDetector != null) {
+      outstandingSyncStartTimes.addLast(startTimeNs);
+      scheduleSlowSyncCheck(startTimeNs);
+    }
     writer.sync().whenComplete((result, error) -> {
+      if (writer != this.writer) {
+        // we have already switched away from this writer because it was too slow, and its
+        // unacked entries have been written to the new one.
+        return;
+      }
       if (error != null) {
         syncFailed(error);
-      } else {
+      } else if (!writerBroken) {
+        // if the writer is broken this is a late ack after we gave up on a slow writer, the
+        // unacked entries have already been moved back to toWriteAppends.
         syncCompleted(writer, currentHighestProcessedAppendTxid, startTimeNs);
       }
     });
   }
 
+  private void scheduleSlowSyncCheck(long startTimeNs) {
+    long thresholdNs = slowSyncDetector.getThresholdNanos();
+    if (slowSyncCheckScheduled || thresholdNs < 0) {
+      return;
+    }
+    slowSyncCheckScheduled = true;
+    long delayNs = Math.max(0, startTimeNs + thresholdNs - System.nanoTime());
+    eventLoop.schedule(this::checkSlowSync, delayNs, TimeUnit.NANOSECONDS);
+  }
+
+  private void checkSlowSync() {
+    slowSyncCheckScheduled = false;
+    Long oldestStartTimeNs = outstandingSyncStartTimes.peek();
+    if (oldestStartTimeNs == null || writerBroken) {
+      return;
+    }
+    long thresholdNs = slowSyncDetector.getThresholdNanos();
+    long elapsedNs = System.nanoTime() - oldestStartTimeNs;
+    if (elapsedNs < thresholdNs) {
+      scheduleSlowSyncCheck(oldestStartTimeNs);
+      return;
+    }
+    if (!canSwitchToStandbyWriter()) {
+      // nothing better to go to, wait for the pipeline to recover or to fail.
+      return;
+    }
+    LOG.warn("Sync not acked after " + TimeUnit.NANOSECONDS.toMillis(elapsedNs)
+        + " ms, switching to standby writer, current pipeline: "
+        + Arrays.toString(getPipeline()));
+    markWriterBroken();
+  }
+
+  private boolean canSwitchToStandbyWriter() {
+    AsyncWriter standby = this.standbyWriter;
+    if (standby == null) {
+      return false;
+    }
+    if (!(standby instanceof AsyncProtobufLogWriter)) {
+      return true;
+    }
+    // if the standby pipeline is made up of the very same datanodes we gain nothing.
+    Set<DatanodeInfo> current = new HashSet<>(Arrays.asList(getPipeline()));
+    DatanodeInfo[] standbyPipeline = ((AsyncProtobufLogWriter) standby).getOutput().getPipeline();
+    return current.size() != standbyPipeline.length
+        || !current.containsAll(Arrays.asList(standbyPipeline));
+  }
+
   private void addTimeAnnotation(SyncFuture future, String annotation) {
     TraceScope scope = Trace.continueSpan(future.getSpan());
     Trace.addTimelineAnnotation(annotation);
@@ -602,8 +703,23 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
     }
   }
 
+  @Override
+  protected Path getNewPath() throws IOException {
+    if (standbyWriter != null) {
+      filenum.set(standbyFilenum);
+      return standbyPath;
+    }
+    return super.getNewPath();
+  }
+
   @Override
   protected AsyncWriter createWriterInstance(Path path) throws IOException {
+    AsyncWriter standby = this.standbyWriter;
+    if (standby != null && path.equals(standbyPath)) {
+      this.standbyWriter = null;
+      this.standbyPath = null;
+      return standby;
+    }
     boolean overwrite = false;
     for (int retry = 0;; retry++) {
       try {
@@ -687,14 +803,47 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
     } else {
       oldFileLen = 0L;
     }
+    if (slowSyncDetector != null && nextWriter != null) {
+      openStandbyWriter();
+    }
     return oldFileLen;
   }
 
+  private void openStandbyWriter() {
+    // The standby file must sort after the current one, see getNewPath.
+    long nextFilenum = Math.max(System.currentTimeMillis(), filenum.get() + 1);
+    Path path = computeFilename(nextFilenum);
+    try {
+      while (fs.exists(path)) {
+        nextFilenum++;
+        path = computeFilename(nextFilenum);
+      }
+      // Created the same way as any other writer, including the retries and overwriting a file
+      // left behind by an earlier failed attempt
+      AsyncWriter standby = createWriterInstance(path);
+      this.standbyPath = path;
+      this.standbyFilenum = nextFilenum;
+      this.standbyWriter = standby;
+    } catch (IOException e) {
+      LOG.warn("Failed to open standby wal writer " + path + ", will try again on next roll", e);
+    }
+  }
+
   @Override
   protected void doShutdown() throws IOException {
     waitForSafePoint();
     this.writer.close();
     this.writer = null;
+    AsyncWriter standby = this.standbyWriter;
+    if (standby != null) {
+      this.standbyWriter = null;
+      try {
+        standby.close();
+        fs.delete(standbyPath, false);
+      } catch (IOException e) {
+        LOG.warn("Failed to close and remove standby wal writer " + standbyPath, e);
+      }
+    }
     closeExecutor.shutdown();
   }
 
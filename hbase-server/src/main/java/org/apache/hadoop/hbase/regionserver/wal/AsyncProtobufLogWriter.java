@@ -38,6 +38,8 @@ import org.apache.hadoop.hbase.classification.InterfaceAudience;
 import org.apache.hadoop.hbase.io.ByteBufferWriter;
 import org.apache.hadoop.hbase.io.asyncfs.AsyncFSOutput;
 import org.apache.hadoop.hbase.io.asyncfs.AsyncFSOutputHelper;
+import org.apache.hadoop.hbase.shaded.com.google.protobuf.CodedOutputStream;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.WALKey;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.WALHeader;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.WALTrailer;
 import org.apache.hadoop.hbase.wal.AsyncFSWALProvider;
@@ -75,10 +77,7 @@ public class AsyncProtobufLogWriter extends AbstractProtobufLogWriter
 
     @Override
     public void write(ByteBuffer b, int off, int len) throws IOException {
-      ByteBuffer bb = b.duplicate();
-      bb.position(off);
-      bb.limit(off + len);
-      out.write(bb);
+      out.write(b, off, len);
     }
 
     @Override
@@ -99,6 +98,10 @@ public class AsyncProtobufLogWriter extends AbstractProtobufLogWriter
 
   private OutputStream asyncOutputWrapper;
 
+  // Scratch space the WALKey of each entry is serialized into, only used from the event loop.
+  // Serializing through writeDelimitedTo would allocate a new buffer on every append.
+  private byte[] keyBuf = new byte[256];
+
   public AsyncProtobufLogWriter(EventLoop eventLoop) {
     this.eventLoop = eventLoop;
   }
@@ -108,8 +111,8 @@ public class AsyncProtobufLogWriter extends AbstractProtobufLogWriter
     int buffered = output.buffered();
     entry.setCompressionContext(compressionContext);
     try {
-      entry.getKey().getBuilder(compressor).setFollowingKvCount(entry.getEdit().size()).build()
-          .writeDelimitedTo(asyncOutputWrapper);
+      writeKey(entry.getKey().getBuilder(compressor)
+          .setFollowingKvCount(entry.getEdit().size()).build());
     } catch (IOException e) {
       throw new AssertionError("should not happen", e);
     }
@@ -123,6 +126,17 @@ public class AsyncProtobufLogWriter extends AbstractProtobufLogWriter
     length.addAndGet(output.buffered() - buffered);
   }
 
+  private void writeKey(WALKey key) throws IOException {
+    int size = CodedOutputStream.computeMessageSizeNoTag(key);
+    if (keyBuf.length < size) {
+      keyBuf = new byte[Math.max(size, keyBuf.length * 2)];
+    }
+    CodedOutputStream cos = CodedOutputStream.newInstance(keyBuf, 0, size);
+    cos.writeMessageNoTag(key);
+    cos.flush();
+    output.write(keyBuf, 0, size);
+  }
+
   @Override
   public CompletableFuture<Long> sync() {
     return output.flush(false);
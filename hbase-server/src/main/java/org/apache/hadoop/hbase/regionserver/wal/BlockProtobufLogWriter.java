@@ -0,0 +1,174 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.io.ByteArrayOutputStream;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.WALHeader;
+import org.apache.hadoop.hbase.wal.WAL.Entry;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+
+/**
+ * Writer for protobuf-based WAL which batches entries into compressed, checksummed blocks. The
+ * entries are encoded exactly as by {@link ProtobufLogWriter}, dictionary compression included,
+ * but into a buffer which is compressed with the configured {@link Compression.Algorithm} and
+ * written out as a block on every sync, or once it grows past the block size. The dictionaries
+ * are kept across blocks. The file looks like:
+ * <p>
+ * &lt;PB_WAL_MAGIC&gt;&lt;WALHeader&gt;&lt;algorithm name&gt;&lt;Block&gt;...&lt;Block&gt;
+ * &lt;Trailer&gt;&lt;TrailerSize&gt;&lt;PB_WAL_COMPLETE_MAGIC&gt;
+ * </p>
+ * where each block is the uncompressed size, the compressed size and the CRC32 of the compressed
+ * bytes as ints, followed by the compressed bytes. Entries never span blocks, so a block which
+ * was only partly written when the server died is dropped as a whole by
+ * {@link ProtobufLogReader}, which reads these files as well as plain ones.
+ * <p>
+ * Enable it with "hbase.regionserver.hlog.writer.impl". Not supported together with WAL
+ * encryption.
+ */
+@InterfaceAudience.Private
+public class BlockProtobufLogWriter extends ProtobufLogWriter {
+
+  private static final Log LOG = LogFactory.getLog(BlockProtobufLogWriter.class);
+
+  public static final String WAL_BLOCK_COMPRESSION = "hbase.regionserver.wal.block.compression";
+  public static final String DEFAULT_WAL_BLOCK_COMPRESSION = Compression.Algorithm.LZ4.getName();
+  public static final String WAL_BLOCK_SIZE = "hbase.regionserver.wal.block.size";
+  public static final int DEFAULT_WAL_BLOCK_SIZE = 64 * 1024;
+
+  /** Uncompressed size, compressed size and checksum */
+  static final int BLOCK_HEADER_SIZE = 3 * (Integer.SIZE / Byte.SIZE);
+
+  // Appends and syncs come from different threads, both guarded by this
+  private final ByteArrayOutputStream blockBuffer = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream compressedBuffer = new ByteArrayOutputStream();
+  private final CRC32 checksum = new CRC32();
+  private Compression.Algorithm algorithm;
+  private Compressor blockCompressor;
+  private CompressionOutputStream compressionStream;
+  private int blockSize;
+
+  @Override
+  protected void initOutput(FileSystem fs, Path path, boolean overwritable, int bufferSize,
+      short replication, long blockSize) throws IOException {
+    this.algorithm = Compression.getCompressionAlgorithmByName(
+      conf.get(WAL_BLOCK_COMPRESSION, DEFAULT_WAL_BLOCK_COMPRESSION));
+    this.blockSize = conf.getInt(WAL_BLOCK_SIZE, DEFAULT_WAL_BLOCK_SIZE);
+    if (algorithm != Compression.Algorithm.NONE) {
+      this.blockCompressor = algorithm.getCompressor();
+      this.compressionStream =
+          algorithm.createPlainCompressionStream(compressedBuffer, blockCompressor);
+    }
+    super.initOutput(fs, path, overwritable, bufferSize, replication, blockSize);
+  }
+
+  @Override
+  protected long writeMagicAndWALHeader(byte[] magic, WALHeader header) throws IOException {
+    output.write(magic);
+    header.writeDelimitedTo(output);
+    output.writeUTF(algorithm.getName());
+    return output.getPos();
+  }
+
+  @Override
+  protected OutputStream getOutputStreamForCellEncoder() {
+    return this.blockBuffer;
+  }
+
+  @Override
+  public synchronized void append(Entry entry) throws IOException {
+    entry.setCompressionContext(compressionContext);
+    entry.getKey().getBuilder(compressor).setFollowingKvCount(entry.getEdit().size()).build()
+        .writeDelimitedTo(blockBuffer);
+    for (Cell cell : entry.getEdit().getCells()) {
+      cellEncoder.write(cell);
+    }
+    if (blockBuffer.size() >= blockSize) {
+      writeBlock();
+    }
+    length.set(output.getPos() + blockBuffer.size());
+  }
+
+  @Override
+  public void sync() throws IOException {
+    synchronized (this) {
+      if (this.output == null) return; // Presume closed
+      writeBlock();
+    }
+    super.sync();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      if (this.output != null) {
+        writeBlock();
+      }
+      super.close();
+    } finally {
+      if (blockCompressor != null) {
+        algorithm.returnCompressor(blockCompressor);
+        blockCompressor = null;
+      }
+    }
+  }
+
+  private void writeBlock() throws IOException {
+    int uncompressedSize = blockBuffer.size();
+    if (uncompressedSize == 0) {
+      return;
+    }
+    byte[] block;
+    int compressedSize;
+    if (compressionStream != null) {
+      compressedBuffer.reset();
+      compressionStream.resetState();
+      compressionStream.write(blockBuffer.getBuffer(), 0, uncompressedSize);
+      compressionStream.flush();
+      compressionStream.finish();
+      block = compressedBuffer.getBuffer();
+      compressedSize = compressedBuffer.size();
+    } else {
+      block = blockBuffer.getBuffer();
+      compressedSize = uncompressedSize;
+    }
+    checksum.reset();
+    checksum.update(block, 0, compressedSize);
+    output.writeInt(uncompressedSize);
+    output.writeInt(compressedSize);
+    output.writeInt((int) checksum.getValue());
+    output.write(block, 0, compressedSize);
+    blockBuffer.reset();
+    length.set(output.getPos());
+    if (LOG.isTraceEnabled()) {
+      LOG.trace("Wrote WAL block of " + uncompressedSize + " bytes compressed to " + compressedSize);
+    }
+  }
+}
@@ -36,6 +36,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -125,6 +126,11 @@ public class FSHLog extends AbstractFSWAL<Writer> {
    */
   private final RingBufferEventHandler ringBufferEventHandler;
 
+  /**
+   * Decides how long sync runners wait for more syncs to batch up before they call hflush.
+   */
+  private final SyncBatchController syncBatchController;
+
   /**
    * FSDataOutputStream associated with the current SequenceFile.writer
    */
@@ -233,6 +239,7 @@ public class FSHLog extends AbstractFSWAL<Writer> {
     // because SyncFuture.NOT_DONE = 0.
     this.disruptor.getRingBuffer().next();
     int maxHandlersCount = conf.getInt(HConstants.REGION_SERVER_HANDLER_COUNT, 200);
+    this.syncBatchController = new SyncBatchController(conf);
     this.ringBufferEventHandler = new RingBufferEventHandler(
         conf.getInt("hbase.regionserver.hlog.syncer.count", 5), maxHandlersCount);
     this.disruptor.setDefaultExceptionHandler(new RingBufferExceptionHandler());
@@ -462,6 +469,8 @@ public class FSHLog extends AbstractFSWAL<Writer> {
     // Keep around last exception thrown. Clear on successful sync.
     private final BlockingQueue<SyncFuture> syncFutures;
     private volatile SyncFuture takeSyncFuture = null;
+    // Set while we hold off syncing so more sync futures can join the batch
+    private volatile boolean collecting = false;
 
     /**
      * UPDATE!
@@ -498,6 +507,41 @@ public class FSHLog extends AbstractFSWAL<Writer> {
       for (int i = 0; i < syncFutureCount; ++i) {
         this.syncFutures.add(syncFutures[i]);
       }
+      if (this.collecting) {
+        LockSupport.unpark(getThread());
+      }
+    }
+
+    /**
+     * Give more sync futures the chance to join the batch of the one we took, for as long as the
+     * {@link SyncBatchController} finds it worth it.
+     * @return How long we waited, in nanoseconds.
+     */
+    private long waitForBatch() {
+      long waitNanos = syncBatchController.getBatchWaitNanos();
+      if (waitNanos <= 0) {
+        return 0;
+      }
+      int targetBatchSize = syncBatchController.getTargetBatchSize();
+      long start = System.nanoTime();
+      long deadline = start + waitNanos;
+      long now = start;
+      this.collecting = true;
+      try {
+        // The one we took is not in the queue anymore, hence the + 1
+        while (this.syncFutures.size() + 1 < targetBatchSize && now < deadline
+            && !isInterrupted()) {
+          LockSupport.parkNanos(this, deadline - now);
+          now = System.nanoTime();
+        }
+      } finally {
+        this.collecting = false;
+      }
+      return now - start;
+    }
+
+    boolean isCollecting() {
+      return this.collecting;
     }
 
     /**
@@ -586,6 +630,11 @@ public class FSHLog extends AbstractFSWAL<Writer> {
             }
             break;
           }
+          long batchWaitNanos = waitForBatch();
+          if (batchWaitNanos > 0) {
+            // Sync up to the latest sequence offered while we waited.
+            currentSequence = this.sequence;
+          }
           // I got something. Lets run. Save off current sequence number in case it changes
           // while we run.
           TraceScope scope = Trace.continueSpan(takeSyncFuture.getSpan());
@@ -595,6 +644,7 @@ public class FSHLog extends AbstractFSWAL<Writer> {
             Trace.addTimelineAnnotation("syncing writer");
             writer.sync();
             Trace.addTimelineAnnotation("writer synced");
+            syncBatchController.syncCompleted(System.nanoTime() - start);
             currentSequence = updateHighestSyncedSequence(currentSequence);
           } catch (IOException e) {
             LOG.error("Error syncing, request close of WAL", e);
@@ -616,6 +666,7 @@ public class FSHLog extends AbstractFSWAL<Writer> {
             }
           }
           postSync(System.nanoTime() - start, syncCount);
+          postSyncBatch(syncCount, batchWaitNanos);
         } catch (InterruptedException e) {
           // Presume legit interrupt.
           Thread.currentThread().interrupt();
@@ -953,6 +1004,30 @@ public class FSHLog extends AbstractFSWAL<Writer> {
       return false;
     }
 
+    /**
+     * Pick the SyncRunner to hand the batch to. Prefer one that is still collecting a batch so
+     * our syncs join it, then the next one with nothing in hand, so the syncs do not queue up
+     * behind an hflush in flight; fall back to plain round robin if all are busy.
+     * @return index into syncRunners, always in the range [0, syncRunners.length)
+     */
+    private int pickSyncRunner() {
+      int count = this.syncRunners.length;
+      for (int i = 0; i < count; i++) {
+        int index = (this.syncRunnerIndex + i) % count;
+        if (this.syncRunners[index].isCollecting()) {
+          return index;
+        }
+      }
+      int next = (this.syncRunnerIndex + 1) % count;
+      for (int i = 0; i < count; i++) {
+        int index = (next + i) % count;
+        if (this.syncRunners[index].areSyncFuturesReleased()) {
+          return index;
+        }
+      }
+      return next;
+    }
+
     private boolean isOutstandingSyncsFromRunners() {
       // Look at SyncFutures in the SyncRunners
       for (SyncRunner syncRunner: syncRunners) {
@@ -978,6 +1053,9 @@ public class FSHLog extends AbstractFSWAL<Writer> {
       try {
         if (truck.type() == RingBufferTruck.Type.SYNC) {
           this.syncFutures[this.syncFuturesCount++] = truck.unloadSync();
+          if (syncBatchController.isEnabled()) {
+            syncBatchController.syncArrived(System.nanoTime());
+          }
           // Force flush of syncs if we are carrying a full complement of syncFutures.
           if (this.syncFuturesCount == this.syncFutures.length) {
             endOfBatch = true;
@@ -1023,17 +1101,7 @@ public class FSHLog extends AbstractFSWAL<Writer> {
           if (!endOfBatch || this.syncFuturesCount <= 0) {
             return;
           }
-          // syncRunnerIndex is bound to the range [0, Integer.MAX_INT - 1] as follows:
-          //   * The maximum value possible for syncRunners.length is Integer.MAX_INT
-          //   * syncRunnerIndex starts at 0 and is incremented only here
-          //   * after the increment, the value is bounded by the '%' operator to
-          //     [0, syncRunners.length), presuming the value was positive prior to
-          //     the '%' operator.
-          //   * after being bound to [0, Integer.MAX_INT - 1], the new value is stored in
-          //     syncRunnerIndex ensuring that it can't grow without bound and overflow.
-          //   * note that the value after the increment must be positive, because the most it
-          //     could have been prior was Integer.MAX_INT - 1 and we only increment by 1.
-          this.syncRunnerIndex = (this.syncRunnerIndex + 1) % this.syncRunners.length;
+          this.syncRunnerIndex = pickSyncRunner();
           try {
             // Below expects that the offer 'transfers' responsibility for the outstanding syncs to
             // the syncRunner. We should never get an exception in here.
@@ -22,10 +22,14 @@ package org.apache.hadoop.hbase.regionserver.wal;
 import com.google.common.annotations.VisibleForTesting;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.metrics.Snapshot;
+import org.apache.hadoop.hbase.metrics.impl.FastLongHistogram;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.hbase.wal.WALKey;
 import org.apache.hadoop.hbase.CompatibilitySingletonFactory;
 import org.apache.hadoop.util.StringUtils;
@@ -38,7 +42,15 @@ import org.apache.hadoop.util.StringUtils;
 public class MetricsWAL extends WALActionsListener.Base {
   private static final Log LOG = LogFactory.getLog(MetricsWAL.class);
 
+  // Length of the windows the sync time percentile is computed over
+  private static final long SYNC_TIME_WINDOW_MS = 10 * 1000;
+
   private final MetricsWALSource source;
+  // Sync times of the current window, and the 99th percentile of the last finished one
+  private final FastLongHistogram syncTimeWindow = new FastLongHistogram();
+  private final AtomicLong syncTimeWindowStart =
+      new AtomicLong(EnvironmentEdgeManager.currentTime());
+  private volatile long syncTimeP99 = 0;
 
   public MetricsWAL() {
     this(CompatibilitySingletonFactory.getInstance(MetricsWALSource.class));
@@ -51,7 +63,34 @@ public class MetricsWAL extends WALActionsListener.Base {
 
   @Override
   public void postSync(final long timeInNanos, final int handlerSyncs) {
-    source.incrementSyncTime(timeInNanos/1000000L);
+    long timeInMillis = timeInNanos / 1000000L;
+    source.incrementSyncTime(timeInMillis);
+    syncTimeWindow.add(timeInMillis, 1);
+    rollSyncTimeWindow();
+  }
+
+  @Override
+  public void postSyncBatch(final int batchSize, final long waitTimeNanos) {
+    source.incrementSyncBatchSize(batchSize);
+    source.incrementSyncBatchWaitTime(waitTimeNanos / 1000L);
+  }
+
+  /**
+   * @return the 99th percentile of the sync times of the last finished window, in milliseconds.
+   *         Reported to clients as part of the write pressure of the server.
+   */
+  public long getSyncTimeP99() {
+    rollSyncTimeWindow();
+    return syncTimeP99;
+  }
+
+  private void rollSyncTimeWindow() {
+    long now = EnvironmentEdgeManager.currentTime();
+    long start = syncTimeWindowStart.get();
+    if (now - start >= SYNC_TIME_WINDOW_MS && syncTimeWindowStart.compareAndSet(start, now)) {
+      Snapshot snapshot = syncTimeWindow.snapshotAndReset();
+      syncTimeP99 = snapshot.getCount() == 0 ? 0 : snapshot.get99thPercentile();
+    }
   }
 
   @Override
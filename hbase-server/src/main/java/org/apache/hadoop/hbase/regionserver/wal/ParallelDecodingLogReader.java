@@ -0,0 +1,191 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.regionserver.wal.ProtobufLogReader.DecodedBatch;
+import org.apache.hadoop.hbase.regionserver.wal.ProtobufLogReader.RawBatch;
+import org.apache.hadoop.hbase.util.Threads;
+import org.apache.hadoop.hbase.wal.WAL.Entry;
+import org.apache.hadoop.hbase.wal.WAL.Reader;
+
+/**
+ * Reads a WAL ahead of the caller, decoding batches of entries on a pool of threads while the
+ * calling thread only does the I/O and finds the entry boundaries. Entries come out of
+ * {@link #next()} in file order. Only for files where
+ * {@link ProtobufLogReader#canDecodeInParallel()}, see {@link #wrap}.
+ * <p>
+ * {@link #getPosition()} is that of the last entry handed out, as the wrapped reader would report
+ * it had it read that entry itself. {@link #seek(long)} drops whatever was read ahead and starts
+ * reading again from the new position.
+ * <p>
+ * An entry that cannot be decoded is handled where it is in the file, once every entry before it
+ * was handed out, the way the wrapped reader handles it: an incomplete one ends the entries for
+ * now and is read again by the next call, corruption is thrown.
+ */
+@InterfaceAudience.Private
+public class ParallelDecodingLogReader implements Reader {
+
+  private final ProtobufLogReader reader;
+  private final ExecutorService pool;
+  private final int batchBytes;
+  private final int maxPendingBatches;
+  private final Deque<Future<DecodedBatch>> pending = new ArrayDeque<Future<DecodedBatch>>();
+  private DecodedBatch current;
+  private int currentIndex;
+  private boolean endOfFile;
+  private long position;
+
+  private ParallelDecodingLogReader(ProtobufLogReader reader, int threads, int batchBytes)
+      throws IOException {
+    this.reader = reader;
+    this.position = reader.getPosition();
+    this.batchBytes = batchBytes;
+    // enough batches in flight to keep all threads busy while the caller consumes one
+    this.maxPendingBatches = 2 * threads;
+    this.pool = Threads.getBoundedCachedThreadPool(threads, 60, TimeUnit.SECONDS,
+      Threads.newDaemonThreadFactory("WALDecoder"));
+  }
+
+  /**
+   * @return a reader decoding on the given number of threads, or the passed reader if it cannot
+   *         decode in parallel or there would be a single thread anyway. Subclasses of
+   *         ProtobufLogReader are left alone as they may change how entries are read.
+   */
+  public static Reader wrap(Reader reader, int threads, int batchBytes) throws IOException {
+    if (threads > 1 && reader != null && reader.getClass() == ProtobufLogReader.class
+        && ((ProtobufLogReader) reader).canDecodeInParallel()) {
+      return new ParallelDecodingLogReader((ProtobufLogReader) reader, threads, batchBytes);
+    }
+    return reader;
+  }
+
+  @Override
+  public Entry next() throws IOException {
+    while (current == null || currentIndex == current.entries.size()) {
+      if (current != null && current.failure != null) {
+        return failAt(current);
+      }
+      fill();
+      Future<DecodedBatch> batch = pending.poll();
+      if (batch == null) {
+        return null;
+      }
+      try {
+        current = batch.get();
+        currentIndex = 0;
+      } catch (InterruptedException e) {
+        throw (InterruptedIOException) new InterruptedIOException().initCause(e);
+      } catch (ExecutionException e) {
+        // Not an entry that could not be decoded, those come back in the batch
+        endOfFile = true;
+        cancelPending();
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      }
+    }
+    position = current.getPosition(currentIndex);
+    return current.entries.get(currentIndex++);
+  }
+
+  /**
+   * Entries are always freshly decoded, the passed one is not reused.
+   */
+  @Override
+  public Entry next(Entry reuse) throws IOException {
+    return next();
+  }
+
+  /**
+   * Called once every entry before the one that could not be decoded was handed out.
+   * @return null for an incomplete entry or block, after going back to its start
+   * @throws IOException the corruption found
+   */
+  private Entry failAt(DecodedBatch batch) throws IOException {
+    cancelPending();
+    if (batch.failure instanceof EOFException) {
+      endOfFile = false;
+      reader.seek(batch.failurePosition);
+      position = batch.failurePosition;
+      return null;
+    }
+    // Whatever follows a bad entry is not to be trusted either, same as when reading serially
+    endOfFile = true;
+    throw batch.failure;
+  }
+
+  private void fill() throws IOException {
+    while (!endOfFile && pending.size() < maxPendingBatches) {
+      final RawBatch raw = reader.readRawBatch(batchBytes);
+      if (raw == null) {
+        endOfFile = true;
+      } else {
+        pending.add(pool.submit(() -> reader.decodeBatch(raw)));
+      }
+    }
+  }
+
+  private void cancelPending() {
+    for (Future<DecodedBatch> batch : pending) {
+      batch.cancel(true);
+    }
+    pending.clear();
+    current = null;
+  }
+
+  @Override
+  public void seek(long pos) throws IOException {
+    cancelPending();
+    endOfFile = false;
+    reader.seek(pos);
+    position = pos;
+  }
+
+  @Override
+  public long getPosition() throws IOException {
+    return position;
+  }
+
+  @Override
+  public void reset() throws IOException {
+    cancelPending();
+    endOfFile = false;
+    reader.reset();
+    position = reader.getPosition();
+  }
+
+  @Override
+  public void close() throws IOException {
+    cancelPending();
+    pool.shutdownNow();
+    reader.close();
+  }
+}
@@ -19,12 +19,15 @@
 
 package org.apache.hadoop.hbase.regionserver.wal;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.CRC32;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -34,7 +37,9 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.hbase.codec.Codec;
+import org.apache.hadoop.hbase.io.ByteArrayOutputStream;
 import org.apache.hadoop.hbase.io.LimitInputStream;
+import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.HBaseInterfaceAudience;
 import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos;
@@ -57,6 +62,10 @@ import com.google.protobuf.InvalidProtocolBufferException;
  * ProtobufLogReader#initReader(FSDataInputStream). A WALTrailer is an extensible structure
  * which is appended at the end of the WAL. This is empty for now; it can contain some meta
  * information such as Region level stats, etc in future.
+ * <p>
+ * Files written by {@link BlockProtobufLogWriter} carry the same entries inside compressed blocks;
+ * those are read one block at a time, and the position reported while in the middle of a block
+ * is the start of that block.
  */
 @InterfaceAudience.LimitedPrivate({HBaseInterfaceAudience.COPROC, HBaseInterfaceAudience.PHOENIX,
   HBaseInterfaceAudience.CONFIG})
@@ -92,11 +101,19 @@ public class ProtobufLogReader extends ReaderBase {
   static {
     writerClsNames.add(ProtobufLogWriter.class.getSimpleName());
     writerClsNames.add(AsyncProtobufLogWriter.class.getSimpleName());
+    writerClsNames.add(BlockProtobufLogWriter.class.getSimpleName());
   }
   
   // cell codec classname
   private String codecClsName = null;
 
+  // Only set for files written by BlockProtobufLogWriter: the current decompressed block, where
+  // it starts in the file, and how the blocks are compressed
+  private BlockInputStream blockInput;
+  private long blockStart;
+  private Compression.Algorithm blockCompression;
+  private final CRC32 blockChecksum = new CRC32();
+
   @InterfaceAudience.Private
   public long trailerSize() {
     if (trailerPresent) {
@@ -149,6 +166,9 @@ public class ProtobufLogReader extends ReaderBase {
 
   @Override
   public long getPosition() throws IOException {
+    if (blockInput != null && blockInput.available() > 0) {
+      return blockStart;
+    }
     return inputStream.getPos();
   }
 
@@ -225,6 +245,10 @@ public class ProtobufLogReader extends ReaderBase {
       this.hasCompression = header.hasHasCompression() && header.getHasCompression();
       this.hasTagCompression = header.hasHasTagCompression() && header.getHasTagCompression();
     }
+    if (BlockProtobufLogWriter.class.getSimpleName().equals(builder.getWriterClsName())) {
+      this.blockCompression = Compression.getCompressionAlgorithmByName(stream.readUTF());
+      this.blockInput = new BlockInputStream();
+    }
     this.inputStream = stream;
     this.walEditsStopOffset = this.fileLength;
     long currentPosition = stream.getPos();
@@ -306,7 +330,8 @@ public class ProtobufLogReader extends ReaderBase {
   @Override
   protected void initAfterCompression(String cellCodecClsName) throws IOException {
     WALCellCodec codec = getCodec(this.conf, cellCodecClsName, this.compressionContext);
-    this.cellDecoder = codec.getDecoder(this.inputStream);
+    this.cellDecoder =
+        codec.getDecoder(this.blockInput != null ? this.blockInput : this.inputStream);
     if (this.hasCompression) {
       this.byteStringUncompressor = codec.getByteStringUncompressor();
     }
@@ -324,6 +349,9 @@ public class ProtobufLogReader extends ReaderBase {
 
   @Override
   protected boolean readNext(Entry entry) throws IOException {
+    if (blockInput != null) {
+      return readNextFromBlock(entry);
+    }
     while (true) {
       // OriginalPosition might be < 0 on local fs; if so, it is useless to us.
       long originalPosition = this.inputStream.getPos();
@@ -419,6 +447,338 @@ public class ProtobufLogReader extends ReaderBase {
     }
   }
 
+  private boolean readNextFromBlock(Entry entry) throws IOException {
+    while (true) {
+      if (blockInput.available() == 0) {
+        long position = this.inputStream.getPos();
+        if (trailerPresent && position == this.walEditsStopOffset) {
+          if (LOG.isTraceEnabled()) {
+            LOG.trace("Reached end of expected edits area at offset " + position);
+          }
+          return false;
+        }
+        try {
+          readBlock();
+        } catch (EOFException eof) {
+          // A block at the tail, cut short by a crash or not fully synced yet when we got here.
+          // Go back to its start in hope that next time through it will be complete. A bad
+          // block anywhere else is thrown as a plain IOException and not caught here.
+          if (LOG.isTraceEnabled()) {
+            LOG.trace("Encountered an incomplete block, seeking back to " + position, eof);
+          }
+          seekOnFs(position);
+          return false;
+        }
+        blockStart = position;
+      }
+      // The block passed its checksum, so anything wrong from here on is real corruption
+      if (readBufferedEntry(blockInput, cellDecoder, byteStringUncompressor, entry)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Read one entry out of a buffer holding whole entries.
+   * @return false if the entry has no cells and should be skipped
+   */
+  private static boolean readBufferedEntry(ByteArrayInputStream in, Codec.Decoder decoder,
+      WALCellCodec.ByteStringUncompressor uncompressor, Entry entry) throws IOException {
+    int firstByte = in.read();
+    if (firstByte == -1) {
+      throw new IOException("Entry cut short by the end of the buffer");
+    }
+    int size = CodedInputStream.readRawVarint32(firstByte, in);
+    WALKey.Builder builder = WALKey.newBuilder();
+    ProtobufUtil.mergeFrom(builder, new LimitInputStream(in, size), size);
+    if (!builder.isInitialized()) {
+      throw new IOException("Partial PB in a buffer of whole entries");
+    }
+    WALKey walKey = builder.build();
+    entry.getKey().readFieldsFromPb(walKey, uncompressor);
+    if (!walKey.hasFollowingKvCount() || 0 == walKey.getFollowingKvCount()) {
+      return false;
+    }
+    int expectedCells = walKey.getFollowingKvCount();
+    int actualCells = entry.getEdit().readFromCells(decoder, expectedCells);
+    if (expectedCells != actualCells) {
+      throw new IOException("Only read " + actualCells + " of " + expectedCells + " WAL KVs");
+    }
+    return true;
+  }
+
+  /**
+   * Read, verify and decompress the block at the current position of the stream.
+   * @throws EOFException if the block is not all there
+   * @throws IOException if the block is corrupt, see {@link #unusableBlock(String, long)}
+   */
+  private void readBlock() throws IOException {
+    RawBatch raw = readRawBlock();
+    blockInput.reset(uncompressBlock(raw, blockChecksum), raw.uncompressedSize);
+  }
+
+  private RawBatch readRawBlock() throws IOException {
+    long position = this.inputStream.getPos();
+    int uncompressedSize = this.inputStream.readInt();
+    int compressedSize = this.inputStream.readInt();
+    int checksum = this.inputStream.readInt();
+    // available may be < 0 on local fs for instance.  If so, can't depend on it.
+    long available = this.inputStream.available();
+    if (uncompressedSize <= 0 || compressedSize <= 0
+        || (available > 0 && available < compressedSize)) {
+      throw unusableBlock("Invalid or incomplete block at " + position + ", uncompressed size="
+          + uncompressedSize + ", compressed size=" + compressedSize + ", available=" + available,
+        position + BlockProtobufLogWriter.BLOCK_HEADER_SIZE + Math.max(compressedSize, 0));
+    }
+    byte[] compressed = new byte[compressedSize];
+    this.inputStream.readFully(compressed);
+    return new RawBatch(position, compressed, compressedSize, uncompressedSize, checksum);
+  }
+
+  /**
+   * Verify the checksum of a block and decompress it.
+   * @throws IOException if the checksum does not match, see {@link #unusableBlock(String, long)}
+   */
+  private byte[] uncompressBlock(RawBatch raw, CRC32 crc) throws IOException {
+    crc.reset();
+    crc.update(raw.data, 0, raw.length);
+    if ((int) crc.getValue() != raw.checksum) {
+      throw unusableBlock("Block checksum mismatch at " + raw.position + ", compressed size="
+          + raw.length, raw.position + BlockProtobufLogWriter.BLOCK_HEADER_SIZE + raw.length);
+    }
+    if (blockCompression == Compression.Algorithm.NONE) {
+      return raw.data;
+    }
+    byte[] block = new byte[raw.uncompressedSize];
+    Compression.decompress(block, 0, new ByteArrayInputStream(raw.data), raw.length,
+      raw.uncompressedSize, blockCompression);
+    return block;
+  }
+
+  /**
+   * A block that cannot be used is expected at the tail of a file that was not closed, as the
+   * last block may have been cut short by a crash or not be fully synced yet. That is reported
+   * as an EOFException, which readers treat like a partial entry. Anywhere else it is
+   * corruption, and treating it as the end of the file would silently drop every entry after
+   * it, so it is reported as an IOException that fails the split or has the file skipped as
+   * corrupt, depending on hbase.hlog.split.skip.errors.
+   * @param blockEnd where the block ends according to its header
+   */
+  private IOException unusableBlock(String message, long blockEnd) {
+    if (!trailerPresent && blockEnd >= this.fileLength) {
+      return new EOFException(message);
+    }
+    return new IOException(message + ", block ends at " + blockEnd + " but file length is "
+        + this.fileLength + (trailerPresent ? " with a trailer" : ""));
+  }
+
+  /**
+   * @return whether entries can be read with {@link #readRawBatch(int)} and turned into entries
+   *         by {@link #decodeBatch(RawBatch)} on other threads. That is the case when no entry
+   *         depends on dictionaries built up by the entries before it and the cells are written
+   *         by the plain {@link WALCellCodec}, so the entry boundaries are known without decoding.
+   */
+  boolean canDecodeInParallel() {
+    String cellCodecClsName =
+        codecClsName != null ? codecClsName : WALCellCodec.getWALCellCodecClass(conf);
+    return !hasCompression && WALCellCodec.class.getName().equals(cellCodecClsName);
+  }
+
+  /**
+   * Read the serialized form of the next whole entries, about maxBytes of them, or the next
+   * block for block files. Only finds the entry boundaries, the decoding is left to
+   * {@link #decodeBatch(RawBatch)}. Stops at an incomplete entry or block, just like
+   * {@link #next()} would.
+   * @return null if there is nothing more to read
+   */
+  RawBatch readRawBatch(int maxBytes) throws IOException {
+    long position = this.inputStream.getPos();
+    if (trailerPresent && position == this.walEditsStopOffset) {
+      return null;
+    }
+    if (blockInput != null) {
+      try {
+        return readRawBlock();
+      } catch (EOFException eof) {
+        seekOnFs(position);
+        return null;
+      }
+    }
+    ByteArrayOutputStream batch = new ByteArrayOutputStream(maxBytes);
+    // Each entry is staged on its own so that an incomplete one can be left out
+    ByteArrayOutputStream entryBuffer = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(entryBuffer);
+    byte[] buf = new byte[1024];
+    while (batch.size() < maxBytes
+        && !(trailerPresent && this.inputStream.getPos() == this.walEditsStopOffset)) {
+      long entryStart = this.inputStream.getPos();
+      entryBuffer.reset();
+      try {
+        int firstByte = this.inputStream.read();
+        if (firstByte == -1) {
+          break;
+        }
+        int size = CodedInputStream.readRawVarint32(firstByte, this.inputStream);
+        byte[] key = new byte[size];
+        this.inputStream.readFully(key);
+        WALKey walKey = WALKey.parseFrom(key);
+        writeRawVarint32(out, size);
+        out.write(key);
+        int cells = walKey.hasFollowingKvCount() ? walKey.getFollowingKvCount() : 0;
+        for (int i = 0; i < cells; i++) {
+          int length = this.inputStream.readInt();
+          if (length < 0) {
+            throw new EOFException("Negative cell length " + length);
+          }
+          out.writeInt(length);
+          if (buf.length < length) {
+            buf = new byte[length];
+          }
+          this.inputStream.readFully(buf, 0, length);
+          out.write(buf, 0, length);
+        }
+      } catch (EOFException
+          | org.apache.hadoop.hbase.shaded.com.google.protobuf.InvalidProtocolBufferException e) {
+        // Leave the incomplete entry out and the stream where it starts
+        if (LOG.isTraceEnabled()) {
+          LOG.trace("Encountered a malformed edit at " + entryStart + ", ending the batch", e);
+        }
+        seekOnFs(entryStart);
+        break;
+      }
+      batch.write(entryBuffer.getBuffer(), 0, entryBuffer.size());
+    }
+    if (batch.size() == 0) {
+      return null;
+    }
+    return new RawBatch(position, batch.getBuffer(), batch.size(), batch.size(), 0);
+  }
+
+  private static void writeRawVarint32(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  /**
+   * Turn a batch read by {@link #readRawBatch(int)} into entries. Does not touch the state of
+   * this reader, so it is safe to call for several batches at once from different threads.
+   * Decoding stops at the first entry that cannot be decoded; the entries before it are still
+   * returned, see {@link DecodedBatch#failure}.
+   */
+  DecodedBatch decodeBatch(RawBatch raw) {
+    DecodedBatch batch = new DecodedBatch();
+    long entryStart = raw.position;
+    try {
+      byte[] data = raw.data;
+      int length = raw.length;
+      long blockEnd = -1;
+      if (blockInput != null) {
+        data = uncompressBlock(raw, new CRC32());
+        length = raw.uncompressedSize;
+        blockEnd = raw.position + BlockProtobufLogWriter.BLOCK_HEADER_SIZE + raw.length;
+      }
+      ByteArrayInputStream in = new ByteArrayInputStream(data, 0, length);
+      Codec.Decoder decoder = getCodec(this.conf, codecClsName, null).getDecoder(in);
+      while (in.available() > 0) {
+        if (blockEnd < 0) {
+          entryStart = raw.position + (length - in.available());
+        }
+        Entry entry = new Entry();
+        if (readBufferedEntry(in, decoder, null, entry)) {
+          // The position getPosition() would report after reading the entry serially
+          long position;
+          if (blockEnd < 0) {
+            position = raw.position + (length - in.available());
+          } else {
+            position = in.available() > 0 ? raw.position : blockEnd;
+          }
+          batch.add(entry, position);
+        }
+      }
+    } catch (IOException e) {
+      if (blockInput != null) {
+        batch.fail(e, entryStart);
+      } else {
+        // Same as for a malformed edit in readNext
+        batch.fail((EOFException) new EOFException("Malformed edit in batch read at "
+            + entryStart).initCause(e), entryStart);
+      }
+    }
+    return batch;
+  }
+
+  /**
+   * The serialized form of a batch of whole entries, or a block as found in the file.
+   */
+  static class RawBatch {
+    final byte[] data;
+    final int length;
+    final int uncompressedSize;
+    final int checksum;
+    final long position;
+
+    RawBatch(long position, byte[] data, int length, int uncompressedSize, int checksum) {
+      this.position = position;
+      this.data = data;
+      this.length = length;
+      this.uncompressedSize = uncompressedSize;
+      this.checksum = checksum;
+    }
+  }
+
+  /**
+   * The entries of a {@link RawBatch}, each with the position of the reader right after it.
+   */
+  static class DecodedBatch {
+    final List<Entry> entries = new ArrayList<Entry>();
+    private long[] positions = new long[16];
+    // What the entry after the last one failed with, or null, and where that entry starts; the
+    // start of the block for block files. An EOFException is what readNext would have taken for
+    // an incomplete entry or block, anything else is corruption it would have thrown.
+    IOException failure;
+    long failurePosition;
+
+    void add(Entry entry, long position) {
+      if (entries.size() == positions.length) {
+        positions = Arrays.copyOf(positions, positions.length * 2);
+      }
+      positions[entries.size()] = position;
+      entries.add(entry);
+    }
+
+    long getPosition(int index) {
+      return positions[index];
+    }
+
+    void fail(IOException failure, long position) {
+      this.failure = failure;
+      this.failurePosition = position;
+    }
+  }
+
+  /**
+   * The decompressed content of one block, which the cell decoder reads from.
+   */
+  private static class BlockInputStream extends ByteArrayInputStream {
+    BlockInputStream() {
+      super(new byte[0]);
+    }
+
+    void reset(byte[] block, int length) {
+      this.buf = block;
+      this.pos = 0;
+      this.mark = 0;
+      this.count = length;
+    }
+
+    void clear() {
+      reset(new byte[0], 0);
+    }
+  }
+
   private IOException extractHiddenEof(Exception ex) {
     // There are two problems we are dealing with here. Hadoop stream throws generic exception
     // for EOF, not EOFException; and scanner further hides it inside RuntimeException.
@@ -441,5 +801,8 @@ public class ProtobufLogReader extends ReaderBase {
   @Override
   protected void seekOnFs(long pos) throws IOException {
     this.inputStream.seek(pos);
+    if (blockInput != null) {
+      blockInput.clear();
+    }
   }
 }
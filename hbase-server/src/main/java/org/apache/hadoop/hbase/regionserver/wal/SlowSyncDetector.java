@@ -0,0 +1,104 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+
+/**
+ * Tells {@link AsyncFSWAL} how long a sync may stay outstanding on the active pipeline before it
+ * should give up on that pipeline and move to the standby writer.
+ * <p>
+ * The limit is the configured percentile of the most recent sync latencies, but never less than
+ * a configured floor, so that a pipeline which is merely a little slower than usual does not
+ * cause a switch. No limit is reported until the window has been filled once. Samples are kept
+ * across log rolls, the latency distribution is a property of the cluster rather than of one
+ * pipeline.
+ * <p>
+ * Not thread safe. AsyncFSWAL only touches it from its event loop.
+ */
+@InterfaceAudience.Private
+class SlowSyncDetector {
+
+  static final String PERCENTILE_KEY = "hbase.wal.async.standby.switch.percentile";
+  static final double DEFAULT_PERCENTILE = 99.9;
+
+  static final String MIN_THRESHOLD_KEY = "hbase.wal.async.standby.switch.min.ms";
+  static final long DEFAULT_MIN_THRESHOLD_MS = 100;
+
+  static final String WINDOW_SIZE_KEY = "hbase.wal.async.standby.switch.window";
+  static final int DEFAULT_WINDOW_SIZE = 4096;
+
+  private final double percentile;
+
+  private final long minThresholdNanos;
+
+  private final long[] window;
+
+  // total number of samples seen, the next one goes to window[count % window.length]
+  private long count;
+
+  // -1 until the window has been filled once
+  private long thresholdNanos = -1;
+
+  SlowSyncDetector(Configuration conf) {
+    this(conf.getDouble(PERCENTILE_KEY, DEFAULT_PERCENTILE),
+        TimeUnit.MILLISECONDS.toNanos(conf.getLong(MIN_THRESHOLD_KEY, DEFAULT_MIN_THRESHOLD_MS)),
+        conf.getInt(WINDOW_SIZE_KEY, DEFAULT_WINDOW_SIZE));
+  }
+
+  SlowSyncDetector(double percentile, long minThresholdNanos, int windowSize) {
+    if (percentile <= 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile should be in (0, 100], got " + percentile);
+    }
+    if (windowSize <= 0) {
+      throw new IllegalArgumentException("window size should be positive, got " + windowSize);
+    }
+    this.percentile = percentile;
+    this.minThresholdNanos = minThresholdNanos;
+    this.window = new long[windowSize];
+  }
+
+  /**
+   * Record the latency of a sync that completed on the active pipeline.
+   */
+  void syncCompleted(long elapsedNanos) {
+    window[(int) (count % window.length)] = elapsedNanos;
+    count++;
+    // Sorting the whole window on every sync is a waste, the percentile moves slowly anyway.
+    if (count >= window.length && (count % Math.max(1, window.length / 16) == 0
+        || thresholdNanos < 0)) {
+      long[] sorted = Arrays.copyOf(window, window.length);
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+      thresholdNanos = Math.max(minThresholdNanos, sorted[Math.max(0, index)]);
+    }
+  }
+
+  /**
+   * @return how long a sync may be outstanding before the active pipeline is considered stuck,
+   *         or -1 if we do not know yet
+   */
+  long getThresholdNanos() {
+    return thresholdNanos;
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+
+/**
+ * Group commit controller for the {@link FSHLog} sync runners. Decides how long a runner that
+ * has taken a sync request holds off calling hflush so that more requests can join its batch.
+ * <p>
+ * Waiting only pays off when further syncs are expected to arrive while we wait, and it never
+ * makes sense to wait longer than an hflush takes: by then a second hflush would have served
+ * the late comers as well. So the wait is the measured hflush latency, but only if the gap
+ * between sync arrivals is shorter than that, and only as much of it as fits within the target
+ * latency once a pessimistic hflush time, mean plus four deviations, is taken off. A runner
+ * stops waiting early once it holds as many syncs as usually arrive during one hflush.
+ * <p>
+ * Arrivals are recorded by the single ring buffer consumer thread; hflush times by the sync
+ * runners.
+ */
+@InterfaceAudience.Private
+class SyncBatchController {
+
+  /**
+   * Latency, hflush included, a sync may see because it was held back to join a batch. Zero, the
+   * default, disables waiting.
+   */
+  static final String TARGET_LATENCY_KEY = "hbase.regionserver.wal.sync.batch.target.latency.ms";
+  static final long DEFAULT_TARGET_LATENCY_MS = 0;
+
+  // Weight of a new sample in the moving averages below
+  private static final double ALPHA = 0.125;
+  private static final double BETA = 0.25;
+
+  private final long targetLatencyNanos;
+
+  // Smoothed hflush time and its mean deviation, as TCP keeps for round trip times
+  private volatile long syncNanos = -1;
+  private volatile long syncDeviationNanos = 0;
+  // Smoothed gap between two sync arrivals
+  private volatile long arrivalGapNanos = -1;
+  private long lastArrivalNanos = -1;
+
+  SyncBatchController(Configuration conf) {
+    this(TimeUnit.MILLISECONDS.toNanos(
+      conf.getLong(TARGET_LATENCY_KEY, DEFAULT_TARGET_LATENCY_MS)));
+  }
+
+  SyncBatchController(long targetLatencyNanos) {
+    this.targetLatencyNanos = targetLatencyNanos;
+  }
+
+  boolean isEnabled() {
+    return targetLatencyNanos > 0;
+  }
+
+  /**
+   * Record a sync request coming off the ring buffer.
+   */
+  void syncArrived(long nowNanos) {
+    if (lastArrivalNanos >= 0) {
+      long gap = nowNanos - lastArrivalNanos;
+      arrivalGapNanos = arrivalGapNanos < 0 ? gap : (long) (arrivalGapNanos + ALPHA
+          * (gap - arrivalGapNanos));
+    }
+    lastArrivalNanos = nowNanos;
+  }
+
+  /**
+   * Record how long an hflush took.
+   */
+  synchronized void syncCompleted(long elapsedNanos) {
+    if (syncNanos < 0) {
+      syncNanos = elapsedNanos;
+      syncDeviationNanos = elapsedNanos / 2;
+      return;
+    }
+    syncDeviationNanos = (long) (syncDeviationNanos + BETA
+        * (Math.abs(elapsedNanos - syncNanos) - syncDeviationNanos));
+    syncNanos = (long) (syncNanos + ALPHA * (elapsedNanos - syncNanos));
+  }
+
+  /**
+   * @return how long a runner should wait for more syncs before calling hflush, zero if it
+   *         should go ahead right away
+   */
+  long getBatchWaitNanos() {
+    long sync = syncNanos;
+    long gap = arrivalGapNanos;
+    if (!isEnabled() || sync < 0 || gap < 0) {
+      return 0;
+    }
+    long slack = targetLatencyNanos - (sync + 4 * syncDeviationNanos);
+    long wait = Math.min(slack, sync);
+    return gap < wait ? wait : 0;
+  }
+
+  /**
+   * @return the number of syncs after which a waiting runner should stop waiting
+   */
+  int getTargetBatchSize() {
+    long sync = syncNanos;
+    long gap = arrivalGapNanos;
+    if (sync <= 0 || gap <= 0) {
+      return 1;
+    }
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, sync / gap));
+  }
+}
@@ -113,6 +113,14 @@ public interface WALActionsListener {
    */
   void postSync(final long timeInNanos, final int handlerSyncs);
 
+  /**
+   * For notification after a batch of syncs has been synced.  Used by metrics system at least.
+   * @param batchSize How many sync handler calls were in the batch.
+   * @param waitTimeNanos How long the batch was held back, in nanoseconds, to let more sync
+   * calls join it.
+   */
+  void postSyncBatch(final int batchSize, final long waitTimeNanos);
+
   static class Base implements WALActionsListener {
     @Override
     public void preLogRoll(Path oldPath, Path newPath) throws IOException {}
@@ -146,5 +154,8 @@ public interface WALActionsListener {
 
     @Override
     public void postSync(final long timeInNanos, final int handlerSyncs) {}
+
+    @Override
+    public void postSyncBatch(final int batchSize, final long waitTimeNanos) {}
   }
 }
@@ -32,11 +32,11 @@ import org.apache.hadoop.hbase.replication.ReplicationException;
 import org.apache.hadoop.hbase.replication.ReplicationFactory;
 import org.apache.hadoop.hbase.replication.ReplicationQueuesClient;
 import org.apache.hadoop.hbase.replication.ReplicationQueuesClientArguments;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.hbase.zookeeper.ZooKeeperWatcher;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableSet;
@@ -47,13 +47,38 @@ import org.apache.zookeeper.KeeperException;
 /**
  * Implementation of a log cleaner that checks if a log is still scheduled for
  * replication before deleting it when its TTL is over.
+ * <p>
+ * The replication queues are read into a {@link ReplicationWALRetention}, which only keeps the
+ * oldest queued log of each region server and WAL group. Logs older than that, and logs of
+ * servers no queue refers to, are deleted without looking them up in the queues.
+ * <p>
+ * Reading all replication queues is expensive on clusters with many region servers and peers.
+ * With {@link #REFRESH_PERIOD_KEY} set, one read is reused by the cleaner runs that follow within
+ * that period. WALs modified after the read, less {@link #CLOCK_SKEW_KEY}, are kept until the
+ * next read as they may have been queued after it. The period defaults to 0, which reads the
+ * queues on every run as before.
  */
 @InterfaceAudience.LimitedPrivate(HBaseInterfaceAudience.CONFIG)
 public class ReplicationLogCleaner extends BaseLogCleanerDelegate {
   private static final Log LOG = LogFactory.getLog(ReplicationLogCleaner.class);
+
+  /**
+   * Milliseconds one read of the replication queues is reused for. 0, the default, reads them
+   * on every cleaner run.
+   */
+  public static final String REFRESH_PERIOD_KEY =
+      "hbase.master.logcleaner.replication.refresh.period";
+  public static final long DEFAULT_REFRESH_PERIOD = 0;
+
+  public static final String CLOCK_SKEW_KEY = "hbase.master.logcleaner.replication.clock.skew";
+  public static final long DEFAULT_CLOCK_SKEW = 30000;
+
   private ZooKeeperWatcher zkw;
   private ReplicationQueuesClient replicationQueues;
   private boolean stopped = false;
+  private long refreshPeriod = DEFAULT_REFRESH_PERIOD;
+  private long clockSkew = DEFAULT_CLOCK_SKEW;
+  private ReplicationWALRetention retention;
 
 
   @Override
@@ -64,25 +89,36 @@ public class ReplicationLogCleaner extends BaseLogCleanerDelegate {
       return files;
     }
 
-    final Set<String> wals;
-    try {
-      // The concurrently created new WALs may not be included in the return list,
-      // but they won't be deleted because they're not in the checking set.
-      wals = replicationQueues.getAllWALs();
-    } catch (KeeperException e) {
-      LOG.warn("Failed to read zookeeper, skipping checking deletable files");
-      return Collections.emptyList();
+    long now = EnvironmentEdgeManager.currentTime();
+    final boolean reused = retention != null && now - retention.getCreateTime() < refreshPeriod;
+    if (!reused) {
+      try {
+        // The concurrently created new WALs may not be included in the return list,
+        // but they won't be deleted because they're not in the checking set.
+        retention = new ReplicationWALRetention(replicationQueues.getAllWALs(), now);
+      } catch (KeeperException e) {
+        LOG.warn("Failed to read zookeeper, skipping checking deletable files");
+        retention = null;
+        return Collections.emptyList();
+      }
     }
+    final ReplicationWALRetention current = retention;
     return Iterables.filter(files, new Predicate<FileStatus>() {
       @Override
       public boolean apply(FileStatus file) {
         String wal = file.getPath().getName();
-        boolean logInReplicationQueue = wals.contains(wal);
+        if (reused && file.getModificationTime() >= current.getCreateTime() - clockSkew) {
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Log is newer than the replication queues we read, keeping: " + wal);
+          }
+          return false;
+        }
+        boolean logInReplicationQueue = current.isRetained(wal);
         if (LOG.isDebugEnabled()) {
           if (logInReplicationQueue) {
-            LOG.debug("Found log in ZK, keeping: " + wal);
+            LOG.debug("Log is not older than the oldest one queued in ZK, keeping: " + wal);
           } else {
-            LOG.debug("Didn't find this log in ZK, deleting: " + wal);
+            LOG.debug("Log is older than any queued in ZK, deleting: " + wal);
           }
         }
        return !logInReplicationQueue;
@@ -104,6 +140,8 @@ public class ReplicationLogCleaner extends BaseLogCleanerDelegate {
   @VisibleForTesting
   public void setConf(Configuration conf, ZooKeeperWatcher zk) {
     super.setConf(conf);
+    this.refreshPeriod = conf.getLong(REFRESH_PERIOD_KEY, DEFAULT_REFRESH_PERIOD);
+    this.clockSkew = conf.getLong(CLOCK_SKEW_KEY, DEFAULT_CLOCK_SKEW);
     try {
       this.zkw = zk;
       this.replicationQueues = ReplicationFactory.getReplicationQueuesClient(
@@ -0,0 +1,114 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.replication.master;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.wal.AbstractFSWALProvider;
+
+/**
+ * The oldest WAL still referenced by the replication queues, per WAL prefix (that is per region
+ * server and WAL group), taken from one consistent read of the queues.
+ * <p>
+ * Every WAL rolled by a server is queued for every peer, and a queue only ever lets go of its
+ * oldest WALs, so each queue holds all the WALs of a prefix from its oldest one on. A WAL is
+ * thus retained if its file number is at least the oldest one referenced for its prefix, and
+ * everything older, or of a prefix no queue refers to, can be deleted in bulk without knowing
+ * the individual WALs in the queues. Only the few referenced WALs whose name carries no file
+ * number are kept by name.
+ * <p>
+ * The index only says something about WALs that existed when the queues were read, a WAL rolled
+ * afterwards may have been queued after the read. Callers that keep an index around have to
+ * check {@link #getCreateTime()} against the modification time of the WALs themselves.
+ */
+@InterfaceAudience.Private
+class ReplicationWALRetention {
+
+  private final long createTime;
+
+  private final Map<String, Long> oldestFileNumByPrefix = new HashMap<>();
+
+  private final Set<String> unnumberedWALs = new HashSet<>();
+
+  /**
+   * @param wals the WALs referenced by all replication queues
+   * @param createTime the time, before the queues were read, this index is valid for
+   */
+  ReplicationWALRetention(Set<String> wals, long createTime) {
+    this.createTime = createTime;
+    for (String wal : wals) {
+      long fileNum = getFileNum(wal);
+      if (fileNum < 0) {
+        unnumberedWALs.add(wal);
+      } else {
+        oldestFileNumByPrefix.merge(getPrefix(wal), fileNum, Math::min);
+      }
+    }
+  }
+
+  long getCreateTime() {
+    return createTime;
+  }
+
+  /**
+   * @param wal name of an archived WAL
+   * @return true if the WAL may still be needed for replication
+   */
+  boolean isRetained(String wal) {
+    long fileNum = getFileNum(wal);
+    if (fileNum < 0) {
+      return unnumberedWALs.contains(wal);
+    }
+    Long oldest = oldestFileNumByPrefix.get(getPrefix(wal));
+    return oldest != null && fileNum >= oldest.longValue();
+  }
+
+  /**
+   * @return the prefix of the given numbered WAL. Meta WALs, which are never replicated, get a
+   *         prefix of their own.
+   */
+  private static String getPrefix(String wal) {
+    String prefix = AbstractFSWALProvider.getWALPrefixFromWALName(wal);
+    return wal.endsWith(AbstractFSWALProvider.META_WAL_PROVIDER_ID)
+        ? prefix + AbstractFSWALProvider.META_WAL_PROVIDER_ID : prefix;
+  }
+
+  /**
+   * @return the file number of the given WAL, or -1 if the name does not carry one
+   */
+  static long getFileNum(String wal) {
+    String name = wal;
+    if (name.endsWith(AbstractFSWALProvider.META_WAL_PROVIDER_ID)) {
+      name = name.substring(0, name.length() - AbstractFSWALProvider.META_WAL_PROVIDER_ID.length());
+    }
+    int index = name.lastIndexOf('.');
+    if (index < 0) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(name.substring(index + 1));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
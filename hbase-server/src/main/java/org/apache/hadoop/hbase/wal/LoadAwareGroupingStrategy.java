@@ -0,0 +1,294 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import static org.apache.hadoop.hbase.util.CollectionUtils.computeIfAbsent;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CompatibilitySingletonFactory;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.regionserver.wal.MetricsWALSource;
+import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
+import org.apache.hadoop.hbase.regionserver.wal.WALEdit;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.RegionEventDescriptor;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.RegionEventDescriptor.EventType;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.wal.RegionGroupingProvider.RegionGroupingStrategy;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A WAL grouping strategy with "hbase.wal.regiongrouping.numgroups" groups which follows the
+ * append load of the regions. New regions go to the group with the least throughput. Each group
+ * counts the bytes appended per region, and when one of the groups rolls its WAL (at most once
+ * every "hbase.wal.regiongrouping.loadaware.rebalance.period" ms) the hottest regions of groups
+ * well above the average throughput are reassigned to the coldest groups.
+ * <p>
+ * A reassigned region keeps writing to its current WAL until its next flush of all stores, when
+ * it switches over to the WAL of its new group. See HRegion#switchWALIfRegrouped.
+ * <p>
+ * A region is forgotten once its close marker is appended, whether it is closing for a move, a
+ * split, a merge or a shutdown; if it opens here again it is placed as a new region.
+ */
+@InterfaceAudience.Private
+public class LoadAwareGroupingStrategy implements RegionGroupingStrategy {
+  private static final Log LOG = LogFactory.getLog(LoadAwareGroupingStrategy.class);
+
+  static final String REBALANCE_PERIOD = "hbase.wal.regiongrouping.loadaware.rebalance.period";
+  static final long DEFAULT_REBALANCE_PERIOD = 60 * 1000;
+  /** How far above the average throughput a group may be before regions are moved off it */
+  static final String IMBALANCE_SLOP = "hbase.wal.regiongrouping.loadaware.slop";
+  static final float DEFAULT_IMBALANCE_SLOP = 0.2f;
+  static final String MAX_MOVES = "hbase.wal.regiongrouping.loadaware.max.moves";
+  static final int DEFAULT_MAX_MOVES = 2;
+
+  private String[] groupNames;
+  private long rebalancePeriod;
+  private float slop;
+  private int maxMoves;
+  private MetricsWALSource metrics;
+
+  /** Current group of each region, keyed by encoded region name */
+  private final ConcurrentMap<String, String> assignments = new ConcurrentHashMap<>();
+  /** Bytes appended per region since the last rebalance, keyed by encoded region name */
+  private final ConcurrentMap<byte[], LongAdder> appendedBytes =
+      new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+  /** Smoothed append throughput per region in bytes per second, guarded by this */
+  private final Map<String, Double> regionRates = new HashMap<>();
+  /** Smoothed append throughput per group as of the last rebalance */
+  private volatile Map<String, Double> groupRates = Collections.emptyMap();
+  private long lastRebalance;
+
+  @Override
+  public void init(Configuration config, String providerId) {
+    int regionGroupNumber = config.getInt(BoundedGroupingStrategy.NUM_REGION_GROUPS,
+      BoundedGroupingStrategy.DEFAULT_NUM_REGION_GROUPS);
+    groupNames = new String[regionGroupNumber];
+    for (int i = 0; i < regionGroupNumber; i++) {
+      groupNames[i] = providerId + GROUP_NAME_DELIMITER + "regiongroup-" + i;
+    }
+    rebalancePeriod = config.getLong(REBALANCE_PERIOD, DEFAULT_REBALANCE_PERIOD);
+    slop = config.getFloat(IMBALANCE_SLOP, DEFAULT_IMBALANCE_SLOP);
+    maxMoves = config.getInt(MAX_MOVES, DEFAULT_MAX_MOVES);
+    metrics = CompatibilitySingletonFactory.getInstance(MetricsWALSource.class);
+    lastRebalance = EnvironmentEdgeManager.currentTime();
+  }
+
+  @Override
+  public String group(byte[] identifier, byte[] namespace) {
+    return computeIfAbsent(assignments, Bytes.toString(identifier), this::leastLoadedGroup);
+  }
+
+  @Override
+  public WALActionsListener getGroupListener(String group) {
+    return new WALActionsListener.Base() {
+      @Override
+      public void postAppend(long entryLen, long elapsedTimeMillis, WALKey logKey,
+          WALEdit logEdit) {
+        recordAppend(logKey.getEncodedRegionName(), entryLen);
+        if (logEdit.isMetaEdit() && isRegionClose(logEdit)) {
+          regionClosed(logKey.getEncodedRegionName());
+        }
+      }
+
+      @Override
+      public void postLogRoll(Path oldPath, Path newPath) throws IOException {
+        rebalance(EnvironmentEdgeManager.currentTime());
+      }
+    };
+  }
+
+  private static boolean isRegionClose(WALEdit logEdit) {
+    for (Cell cell : logEdit.getCells()) {
+      try {
+        RegionEventDescriptor event = WALEdit.getRegionEventDescriptor(cell);
+        if (event != null && event.getEventType() == EventType.REGION_CLOSE) {
+          return true;
+        }
+      } catch (IOException e) {
+        LOG.warn("Failed to parse region event marker", e);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Drop everything kept about a region which closed, so that it no longer counts towards the
+   * group it was in.
+   */
+  @VisibleForTesting
+  synchronized void regionClosed(byte[] encodedRegionName) {
+    String region = Bytes.toString(encodedRegionName);
+    assignments.remove(region);
+    appendedBytes.remove(encodedRegionName);
+    regionRates.remove(region);
+  }
+
+  @VisibleForTesting
+  void recordAppend(byte[] encodedRegionName, long bytes) {
+    computeIfAbsent(appendedBytes, encodedRegionName, LongAdder::new).add(bytes);
+  }
+
+  /**
+   * Pick the group with the least throughput, or with the fewest regions if tied, which is what
+   * happens for all groups until the first rebalance.
+   */
+  private String leastLoadedGroup() {
+    Map<String, Integer> regionCounts = new HashMap<>();
+    for (String group : assignments.values()) {
+      regionCounts.merge(group, 1, Integer::sum);
+    }
+    Map<String, Double> rates = groupRates;
+    String best = null;
+    double bestRate = 0;
+    int bestCount = 0;
+    for (String group : groupNames) {
+      double rate = rates.getOrDefault(group, 0.0);
+      int count = regionCounts.getOrDefault(group, 0);
+      if (best == null || rate < bestRate || (rate == bestRate && count < bestCount)) {
+        best = group;
+        bestRate = rate;
+        bestCount = count;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Fold the bytes appended since the last rebalance into the per region rates, then move the
+   * hottest regions off any group that is more than the slop above the average throughput.
+   * @return the number of regions which were moved
+   */
+  @VisibleForTesting
+  synchronized int rebalance(long now) {
+    if (now - lastRebalance < rebalancePeriod) {
+      return 0;
+    }
+    double seconds = Math.max(1, now - lastRebalance) / 1000.0;
+    lastRebalance = now;
+
+    // Regions that did not append anything decay towards zero and are eventually forgotten
+    Map<String, Double> windowRates = new HashMap<>();
+    for (Iterator<Map.Entry<byte[], LongAdder>> it = appendedBytes.entrySet().iterator();
+        it.hasNext();) {
+      Map.Entry<byte[], LongAdder> e = it.next();
+      long bytes = e.getValue().sumThenReset();
+      if (bytes == 0) {
+        it.remove();
+      } else {
+        windowRates.put(Bytes.toString(e.getKey()), bytes / seconds);
+      }
+    }
+    for (Iterator<Map.Entry<String, Double>> it = regionRates.entrySet().iterator();
+        it.hasNext();) {
+      Map.Entry<String, Double> e = it.next();
+      double rate = (e.getValue() + windowRates.getOrDefault(e.getKey(), 0.0)) / 2;
+      if (rate < 1 && !windowRates.containsKey(e.getKey())) {
+        it.remove();
+      } else {
+        e.setValue(rate);
+      }
+    }
+    for (Map.Entry<String, Double> e : windowRates.entrySet()) {
+      regionRates.putIfAbsent(e.getKey(), e.getValue());
+    }
+
+    Map<String, Double> loads = new HashMap<>();
+    double total = 0;
+    for (String group : groupNames) {
+      loads.put(group, 0.0);
+    }
+    for (Map.Entry<String, Double> e : regionRates.entrySet()) {
+      String group = assignments.get(e.getKey());
+      if (group != null && loads.containsKey(group)) {
+        loads.merge(group, e.getValue(), Double::sum);
+        total += e.getValue();
+      }
+    }
+    double limit = total / groupNames.length * (1 + slop);
+
+    int moves = 0;
+    while (moves < maxMoves) {
+      String hot = null;
+      String cold = null;
+      for (String group : groupNames) {
+        if (hot == null || loads.get(group) > loads.get(hot)) {
+          hot = group;
+        }
+        if (cold == null || loads.get(group) < loads.get(cold)) {
+          cold = group;
+        }
+      }
+      double gap = loads.get(hot) - loads.get(cold);
+      if (loads.get(hot) <= limit || gap <= 0) {
+        break;
+      }
+      // The hottest region which does not simply make the cold group the new hot one
+      String candidate = null;
+      double candidateRate = 0;
+      for (Map.Entry<String, Double> e : regionRates.entrySet()) {
+        double rate = e.getValue();
+        if (rate > candidateRate && rate < gap && hot.equals(assignments.get(e.getKey()))) {
+          candidate = e.getKey();
+          candidateRate = rate;
+        }
+      }
+      if (candidate == null) {
+        break;
+      }
+      assignments.put(candidate, cold);
+      loads.put(hot, loads.get(hot) - candidateRate);
+      loads.put(cold, loads.get(cold) + candidateRate);
+      moves++;
+      LOG.info("Moving region " + candidate + " appending " + (long) candidateRate
+          + " bytes/sec from WAL group " + hot + " to " + cold);
+    }
+
+    groupRates = loads;
+    for (int i = 0; i < groupNames.length; i++) {
+      metrics.setGroupAppendRate("regiongroup-" + i, loads.get(groupNames[i]).longValue());
+    }
+    return moves;
+  }
+
+  @VisibleForTesting
+  int getAssignedRegionCount() {
+    return assignments.size();
+  }
+
+  @VisibleForTesting
+  Map<String, Double> getGroupRates() {
+    return groupRates;
+  }
+}
@@ -51,6 +51,8 @@ import org.apache.hadoop.hbase.util.IdReadWriteLock;
  *                                  "bounded".</li>
  *   <li><em>identity</em> : each region belongs to its own group.</li>
  *   <li><em>bounded</em> : bounded number of groups and region evenly assigned to each group.</li>
+ *   <li><em>loadAware</em> : bounded number of groups, regions moved between groups at log roll
+ *                            to even out the append throughput of the groups.</li>
  * </ul>
  * Optionally, a FQCN to a custom implementation may be given.
  */
@@ -69,6 +71,14 @@ public class RegionGroupingProvider implements WALProvider {
      */
     String group(final byte[] identifier, byte[] namespace);
     void init(Configuration config, String providerId);
+
+    /**
+     * @return an extra listener to register on the WAL of the given group, or null if the
+     *         strategy does not need to see what is written to the group
+     */
+    default WALActionsListener getGroupListener(String group) {
+      return null;
+    }
   }
 
   /**
@@ -78,7 +88,8 @@ public class RegionGroupingProvider implements WALProvider {
     defaultStrategy(BoundedGroupingStrategy.class),
     identity(IdentityGroupingStrategy.class),
     bounded(BoundedGroupingStrategy.class),
-    namespace(NamespaceGroupingStrategy.class);
+    namespace(NamespaceGroupingStrategy.class),
+    loadAware(LoadAwareGroupingStrategy.class);
 
     final Class<? extends RegionGroupingStrategy> clazz;
     Strategies(Class<? extends RegionGroupingStrategy> clazz) {
@@ -165,7 +176,16 @@ public class RegionGroupingProvider implements WALProvider {
     if (META_WAL_PROVIDER_ID.equals(providerId)) {
       return factory.createProvider(providerClass, listeners, META_WAL_PROVIDER_ID);
     } else {
-      return factory.createProvider(providerClass, listeners, group);
+      List<WALActionsListener> groupListeners = listeners;
+      WALActionsListener groupListener = strategy.getGroupListener(group);
+      if (groupListener != null) {
+        groupListeners = new ArrayList<WALActionsListener>();
+        if (listeners != null) {
+          groupListeners.addAll(listeners);
+        }
+        groupListeners.add(groupListener);
+      }
+      return factory.createProvider(providerClass, groupListeners, group);
     }
   }
 
@@ -62,13 +62,16 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
 import org.apache.hadoop.hbase.CellScanner;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.CoordinatedStateManager;
 import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.MetaTableAccessor;
 import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.TableName;
@@ -86,15 +89,22 @@ import org.apache.hadoop.hbase.coordination.BaseCoordinatedStateManager;
 import org.apache.hadoop.hbase.coordination.ZKSplitLogManagerCoordination;
 import org.apache.hadoop.hbase.exceptions.RegionOpeningException;
 import org.apache.hadoop.hbase.io.HeapSize;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
 import org.apache.hadoop.hbase.master.SplitLogManager;
 import org.apache.hadoop.hbase.monitoring.MonitoredTask;
 import org.apache.hadoop.hbase.monitoring.TaskMonitor;
 import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.HStore;
 import org.apache.hadoop.hbase.regionserver.LastSequenceId;
+import org.apache.hadoop.hbase.regionserver.StoreFileWriter;
 import org.apache.hadoop.hbase.regionserver.wal.AbstractFSWAL;
+import org.apache.hadoop.hbase.regionserver.wal.ParallelDecodingLogReader;
 import org.apache.hadoop.hbase.regionserver.wal.WALCellCodec;
 import org.apache.hadoop.hbase.regionserver.wal.WALEdit;
 import org.apache.hadoop.hbase.regionserver.wal.WALEditsReplaySink;
+import org.apache.hadoop.hbase.security.EncryptionUtil;
 import org.apache.hadoop.hbase.shaded.com.google.protobuf.TextFormat;
 import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
 import org.apache.hadoop.hbase.shaded.protobuf.RequestConverter;
@@ -112,6 +122,7 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.CancelableProgressable;
 import org.apache.hadoop.hbase.util.ClassSize;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.util.FSTableDescriptors;
 import org.apache.hadoop.hbase.util.FSUtils;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.hbase.util.Threads;
@@ -134,6 +145,16 @@ public class WALSplitter {
   /** By default we retry errors in splitting, rather than skipping. */
   public static final boolean SPLIT_SKIP_ERRORS_DEFAULT = false;
 
+  /**
+   * Whether to write each region's edits out as sorted HFiles that the region moves into its
+   * stores on open, instead of recovered edits files it has to replay and flush.
+   */
+  public static final String SPLIT_WAL_TO_HFILE = "hbase.wal.split.to.hfile";
+  public static final boolean SPLIT_WAL_TO_HFILE_DEFAULT = false;
+
+  /** Directory under the region dir holding the HFiles written in split to HFile mode */
+  public static final String RECOVERED_HFILES_DIR = "recovered.hfiles";
+
   // Parameters for split process
   protected final Path rootDir;
   protected final FileSystem fs;
@@ -170,11 +191,16 @@ public class WALSplitter {
   // Number of writer threads
   private final int numWriterThreads;
 
+  // Threads decoding the WAL being split, and how many bytes of entries each of them gets at once
+  private final int numDecoderThreads;
+  private final int decoderBatchSize;
+
   // Min batch size when replay WAL edits
   private final int minBatchSize;
 
   // the file being split currently
-  private FileStatus fileBeingSplit;
+  @VisibleForTesting
+  FileStatus fileBeingSplit;
 
   @VisibleForTesting
   WALSplitter(final WALFactory factory, Configuration conf, Path rootDir,
@@ -201,6 +227,10 @@ public class WALSplitter {
     this.distributedLogReplay = (RecoveryMode.LOG_REPLAY == mode);
 
     this.numWriterThreads = this.conf.getInt("hbase.regionserver.hlog.splitlog.writer.threads", 3);
+    this.numDecoderThreads =
+        this.conf.getInt("hbase.regionserver.hlog.splitlog.decoder.threads", 4);
+    this.decoderBatchSize =
+        this.conf.getInt("hbase.regionserver.hlog.splitlog.decoder.batch.size", 1024 * 1024);
     if (csm != null && this.distributedLogReplay) {
       outputSink = new LogReplayOutputSink(controller, entryBuffers, numWriterThreads);
     } else {
@@ -208,7 +238,11 @@ public class WALSplitter {
         LOG.info("ZooKeeperWatcher is passed in as NULL so disable distrubitedLogRepaly.");
       }
       this.distributedLogReplay = false;
-      outputSink = new LogRecoveredEditsOutputSink(controller, entryBuffers, numWriterThreads);
+      if (this.conf.getBoolean(SPLIT_WAL_TO_HFILE, SPLIT_WAL_TO_HFILE_DEFAULT)) {
+        outputSink = new RecoveredHFilesOutputSink(controller, entryBuffers, numWriterThreads);
+      } else {
+        outputSink = new LogRecoveredEditsOutputSink(controller, entryBuffers, numWriterThreads);
+      }
     }
 
   }
@@ -302,6 +336,8 @@ public class WALSplitter {
         LOG.warn("Nothing to split in log file " + logPath);
         return true;
       }
+      // Entries still come out in order, so each region sees its edits in order
+      in = ParallelDecodingLogReader.wrap(in, numDecoderThreads, decoderBatchSize);
       int numOpenedFilesBeforeReporting = conf.getInt("hbase.splitlog.report.openedfiles", 3);
       int numOpenedFilesLastCheck = 0;
       outputSink.setReporter(reporter);
@@ -603,6 +639,45 @@ public class WALSplitter {
     return new Path(regiondir, HConstants.RECOVERED_EDITS_DIR);
   }
 
+  /**
+   * @param regiondir This regions directory in the filesystem.
+   * @return The directory that holds, one subdirectory per family, the HFiles written for the
+   *         region <code>regiondir</code> when splitting in {@link #SPLIT_WAL_TO_HFILE} mode
+   */
+  public static Path getRegionDirRecoveredHFilesDir(final Path regiondir) {
+    return new Path(regiondir, RECOVERED_HFILES_DIR);
+  }
+
+  /**
+   * Returns the completed HFiles the splitter wrote for a family of a region, excluding files
+   * with '.temp' suffix that a split may still be writing.
+   * @param fs
+   * @param regiondir
+   * @param familyName
+   * @return HFiles waiting to be moved into the store, empty if there are none
+   * @throws IOException
+   */
+  public static List<Path> getRecoveredHFiles(final FileSystem fs, final Path regiondir,
+      final String familyName) throws IOException {
+    List<Path> hfiles = new ArrayList<Path>();
+    Path familyDir = new Path(getRegionDirRecoveredHFilesDir(regiondir), familyName);
+    FileStatus[] files = FSUtils.listStatus(fs, familyDir, new PathFilter() {
+      @Override
+      public boolean accept(Path p) {
+        return !p.getName().endsWith(RECOVERED_LOG_TMPFILE_SUFFIX);
+      }
+    });
+    if (files == null) {
+      return hfiles;
+    }
+    for (FileStatus status : files) {
+      if (status.isFile()) {
+        hfiles.add(status.getPath());
+      }
+    }
+    return hfiles;
+  }
+
   /**
    * Returns sorted set of edit files made by splitter, excluding files
    * with '.temp' suffix.
@@ -1550,7 +1625,7 @@ public class WALSplitter {
       return new WriterAndPath(regionedits, w, entry.getKey().getSequenceId());
     }
 
-    private void filterCellByStore(Entry logEntry) {
+    void filterCellByStore(Entry logEntry) {
       Map<byte[], Long> maxSeqIdInStores =
           regionMaxSeqIdInStores.get(Bytes.toString(logEntry.getKey().getEncodedRegionName()));
       if (maxSeqIdInStores == null || maxSeqIdInStores.isEmpty()) {
@@ -1586,7 +1661,13 @@ public class WALSplitter {
         LOG.warn("got an empty buffer, skipping");
         return;
       }
+      appendToRecoveredEdits(entries);
+    }
 
+    /**
+     * Write the given entries, all of one region, to that region's recovered edits file.
+     */
+    void appendToRecoveredEdits(List<Entry> entries) throws IOException {
       WriterAndPath wap = null;
 
       long startTime = System.nanoTime();
@@ -1654,6 +1735,388 @@ public class WALSplitter {
     }
   }
 
+  /**
+   * Class that sorts each region's edits and writes them out as HFiles under the region's
+   * {@link #RECOVERED_HFILES_DIR}, one subdirectory per family. On open the region moves these
+   * files into its stores, bulk load style, rather than replaying recovered edits into the
+   * memstore and flushing them. Edits of hbase:meta and region event markers still go out as
+   * recovered edits.
+   */
+  class RecoveredHFilesOutputSink extends LogRecoveredEditsOutputSink {
+    // Edits buffered per region, keyed by encoded region name. A writer thread claims a buffer
+    // in regionsInUse before it adds to it or writes it out, so the buffers need no locking.
+    private final Map<String, RegionCells> regionCells =
+        new ConcurrentHashMap<String, RegionCells>();
+    private final Set<RegionCells> regionsInUse = new HashSet<RegionCells>();
+    private final Map<TableName, HTableDescriptor> tableDescriptors =
+        new ConcurrentHashMap<TableName, HTableDescriptor>();
+    // Heap held by all region buffers
+    private final AtomicLong totalBufferedSize = new AtomicLong();
+    // Write out a region once it holds this much, and the largest regions once all regions
+    // together hold totalLimit
+    private final long regionFlushSize;
+    private final long totalLimit;
+
+    public RecoveredHFilesOutputSink(PipelineController controller, EntryBuffers entryBuffers,
+        int numWriters) {
+      super(controller, entryBuffers, numWriters);
+      this.regionFlushSize =
+          conf.getLong("hbase.wal.split.to.hfile.region.flush.size", 64 * 1024 * 1024);
+      this.totalLimit = conf.getLong("hbase.wal.split.to.hfile.buffer.size", 256 * 1024 * 1024);
+    }
+
+    @Override
+    public void append(RegionEntryBuffer buffer) throws IOException {
+      List<Entry> entries = buffer.entryBuffer;
+      if (entries.isEmpty()) {
+        LOG.warn("got an empty buffer, skipping");
+        return;
+      }
+      if (TableName.META_TABLE_NAME.equals(buffer.getTableName())) {
+        appendToRecoveredEdits(entries);
+        return;
+      }
+      RegionCells rc = getRegionCells(buffer);
+      if (rc == null) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("No need to write edits for region "
+              + Bytes.toString(buffer.getEncodedRegionName()));
+        }
+        return;
+      }
+
+      long startTime = System.nanoTime();
+      List<Entry> events = null;
+      int editsCount = 0;
+      int skippedCount = 0;
+      claimRegionCells(rc);
+      try {
+        for (Entry logEntry : entries) {
+          if (hasMetaFamilyCell(logEntry)) {
+            if (events == null) {
+              events = new ArrayList<Entry>();
+            }
+            events.add(logEntry);
+            continue;
+          }
+          filterCellByStore(logEntry);
+          if (logEntry.getEdit().isEmpty()) {
+            skippedCount++;
+            continue;
+          }
+          long seqId = logEntry.getKey().getSequenceId();
+          for (Cell cell : logEntry.getEdit().getCells()) {
+            CellUtil.setSequenceId(cell, seqId);
+            rc.add(cell, seqId);
+          }
+          editsCount++;
+        }
+        rc.incrementEdits(editsCount);
+        rc.incrementSkippedEdits(skippedCount);
+        if (rc.heapSize >= regionFlushSize) {
+          writeRegionCells(rc);
+        }
+        rc.incrementNanoTime(System.nanoTime() - startTime);
+      } finally {
+        doneWithRegionCells(rc);
+      }
+      if (events != null) {
+        appendToRecoveredEdits(events);
+      }
+      writeLargestRegionCells();
+    }
+
+    /**
+     * Write out the regions holding the most edits until all regions together hold less than
+     * totalLimit, the same as {@link EntryBuffers} picks the biggest region buffer to write.
+     */
+    private void writeLargestRegionCells() throws IOException {
+      while (totalBufferedSize.get() >= totalLimit) {
+        RegionCells rc = claimLargestRegionCells();
+        if (rc == null) {
+          // What is left is being added to or written out by other writer threads
+          return;
+        }
+        try {
+          writeRegionCells(rc);
+        } finally {
+          doneWithRegionCells(rc);
+        }
+      }
+    }
+
+    /**
+     * Wait until no other writer thread adds to or writes out the region, then claim it.
+     */
+    private void claimRegionCells(RegionCells rc) throws IOException {
+      synchronized (regionsInUse) {
+        try {
+          while (regionsInUse.contains(rc)) {
+            regionsInUse.wait();
+          }
+        } catch (InterruptedException e) {
+          IOException iie = new InterruptedIOException();
+          iie.initCause(e);
+          throw iie;
+        }
+        regionsInUse.add(rc);
+      }
+    }
+
+    /**
+     * @return the unclaimed region holding the most edits, now claimed, or null if there is none
+     */
+    private RegionCells claimLargestRegionCells() {
+      synchronized (regionsInUse) {
+        RegionCells largest = null;
+        for (RegionCells rc : regionCells.values()) {
+          if (rc.heapSize > 0 && !regionsInUse.contains(rc)
+              && (largest == null || rc.heapSize > largest.heapSize)) {
+            largest = rc;
+          }
+        }
+        if (largest != null) {
+          regionsInUse.add(largest);
+        }
+        return largest;
+      }
+    }
+
+    private void doneWithRegionCells(RegionCells rc) {
+      synchronized (regionsInUse) {
+        regionsInUse.remove(rc);
+        regionsInUse.notifyAll();
+      }
+    }
+
+    private boolean hasMetaFamilyCell(Entry entry) {
+      ArrayList<Cell> cells = entry.getEdit().getCells();
+      for (int i = 0; i < cells.size(); i++) {
+        if (CellUtil.matchingFamily(cells.get(i), WALEdit.METAFAMILY)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * @return the buffer for the region, or null if its edits need not be written
+     */
+    private RegionCells getRegionCells(RegionEntryBuffer buffer) throws IOException {
+      byte[] region = buffer.getEncodedRegionName();
+      String encodedRegionName = Bytes.toString(region);
+      RegionCells rc = regionCells.get(encodedRegionName);
+      if (rc != null) {
+        return rc;
+      }
+      if (blacklistedRegions.contains(region)) {
+        return null;
+      }
+      Path tableDir = FSUtils.getTableDir(rootDir, buffer.getTableName());
+      Path regionDir = HRegion.getRegionDir(tableDir, encodedRegionName);
+      if (!fs.exists(regionDir)) {
+        LOG.info("This region's directory doesn't exist: " + regionDir + ". It is very likely"
+            + " that it was already split so it's safe to discard those edits.");
+        blacklistedRegions.add(region);
+        return null;
+      }
+      HTableDescriptor htd = tableDescriptors.get(buffer.getTableName());
+      if (htd == null) {
+        htd = FSTableDescriptors.getTableDescriptorFromFs(fs, rootDir, buffer.getTableName());
+        tableDescriptors.put(buffer.getTableName(), htd);
+      }
+      rc = new RegionCells(htd, regionDir);
+      regionCells.put(encodedRegionName, rc);
+      return rc;
+    }
+
+    /**
+     * Sort the buffered cells of a region and write one HFile per family, named after the WAL
+     * being split, under the region's recovered HFiles directory.
+     */
+    private void writeRegionCells(RegionCells rc) throws IOException {
+      Path recoveredDir = getRegionDirRecoveredHFilesDir(rc.regionDir);
+      for (Map.Entry<byte[], FamilyCells> e : rc.families.entrySet()) {
+        FamilyCells fc = e.getValue();
+        if (fc.cells.isEmpty()) {
+          continue;
+        }
+        HColumnDescriptor family = rc.htd.getFamily(e.getKey());
+        if (family == null) {
+          LOG.warn("Family " + Bytes.toString(e.getKey()) + " no longer exists in "
+              + rc.htd.getTableName() + ", skipping " + fc.cells.size() + " cells");
+          fc.clear();
+          continue;
+        }
+        Collections.sort(fc.cells, CellComparator.COMPARATOR);
+        Path familyDir = new Path(recoveredDir, family.getNameAsString());
+        Path tmpPath = new Path(familyDir, fileBeingSplit.getPath().getName() + "-"
+            + rc.tmpPaths.size() + RECOVERED_LOG_TMPFILE_SUFFIX);
+        HFileContext fileContext = new HFileContextBuilder()
+            .withIncludesMvcc(true)
+            .withIncludesTags(true)
+            .withCompression(family.getCompressionType())
+            .withCompressTags(family.isCompressTags())
+            .withChecksumType(HStore.getChecksumType(conf))
+            .withBytesPerCheckSum(HStore.getBytesPerChecksum(conf))
+            .withBlockSize(family.getBlocksize())
+            .withHBaseCheckSum(true)
+            .withDataBlockEncoding(family.getDataBlockEncoding())
+            .withEncryptionContext(EncryptionUtil.createEncryptionContext(conf, family))
+            .withCreateTime(EnvironmentEdgeManager.currentTime())
+            .build();
+        StoreFileWriter writer = new StoreFileWriter.Builder(conf, CacheConfig.DISABLED, fs)
+            .withFilePath(tmpPath)
+            .withComparator(CellComparator.COMPARATOR)
+            .withBloomType(family.getBloomFilterType())
+            .withMaxKeyCount(fc.cells.size())
+            .withFileContext(fileContext)
+            .build();
+        try {
+          for (Cell cell : fc.cells) {
+            writer.append(cell);
+          }
+          writer.appendMetadata(fc.maxSeqId, false);
+        } finally {
+          writer.close();
+        }
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Wrote " + fc.cells.size() + " cells with max sequence id " + fc.maxSeqId
+              + " to " + tmpPath);
+        }
+        rc.tmpPaths.add(tmpPath);
+        fc.clear();
+      }
+      totalBufferedSize.addAndGet(-rc.heapSize);
+      rc.heapSize = 0;
+    }
+
+    @Override
+    public List<Path> finishWritingAndClose() throws IOException {
+      List<Path> editsPaths = super.finishWritingAndClose();
+      List<Path> paths = closeRegionCells();
+      if (editsPaths == null || paths == null) {
+        return null;
+      }
+      paths.addAll(editsPaths);
+      splits = paths;
+      return splits;
+    }
+
+    /**
+     * Write out what is still buffered and rename the region's HFiles to their final names.
+     * @return the HFiles written, or null if failed to report progress
+     */
+    private List<Path> closeRegionCells() throws IOException {
+      final List<Path> paths = Collections.synchronizedList(new ArrayList<Path>());
+      ThreadPoolExecutor closeThreadPool = Threads.getBoundedCachedThreadPool(numThreads, 30L,
+        TimeUnit.SECONDS, Threads.newDaemonThreadFactory("split-log-closeHFiles"));
+      CompletionService<Void> completionService =
+          new ExecutorCompletionService<Void>(closeThreadPool);
+      for (final RegionCells rc : regionCells.values()) {
+        completionService.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            writeRegionCells(rc);
+            for (Path tmpPath : rc.tmpPaths) {
+              String name = tmpPath.getName();
+              Path dst = new Path(tmpPath.getParent(),
+                  name.substring(0, name.length() - RECOVERED_LOG_TMPFILE_SUFFIX.length()));
+              // Left over by an earlier attempt at splitting this same WAL
+              if (fs.exists(dst) && !fs.delete(dst, false)) {
+                throw new IOException("Failed deleting old " + dst);
+              }
+              if (!fs.rename(tmpPath, dst)) {
+                throw new IOException("Failed renaming " + tmpPath + " to " + dst);
+              }
+              paths.add(dst);
+            }
+            LOG.info("Wrote " + rc.tmpPaths.size() + " recovered HFile(s) under " + rc.regionDir
+                + " (" + rc.editsWritten + " edits, skipped " + rc.editsSkipped + " edits in "
+                + (rc.nanosSpent / 1000 / 1000) + "ms)");
+            return null;
+          }
+        });
+      }
+
+      boolean progressFailed = false;
+      try {
+        for (int i = 0, n = regionCells.size(); i < n; i++) {
+          completionService.take().get();
+          if (!progressFailed && reporter != null && !reporter.progress()) {
+            progressFailed = true;
+          }
+        }
+      } catch (InterruptedException e) {
+        IOException iie = new InterruptedIOException();
+        iie.initCause(e);
+        throw iie;
+      } catch (ExecutionException e) {
+        throw new IOException(e.getCause());
+      } finally {
+        closeThreadPool.shutdownNow();
+      }
+      return progressFailed ? null : new ArrayList<Path>(paths);
+    }
+
+    @Override
+    public Map<byte[], Long> getOutputCounts() {
+      Map<byte[], Long> ret = super.getOutputCounts();
+      for (Map.Entry<String, RegionCells> e : regionCells.entrySet()) {
+        byte[] region = Bytes.toBytes(e.getKey());
+        Long edits = ret.get(region);
+        ret.put(region, e.getValue().editsWritten + (edits == null ? 0 : edits));
+      }
+      return ret;
+    }
+
+    @Override
+    public int getNumberOfRecoveredRegions() {
+      return getOutputCounts().size();
+    }
+
+    /**
+     * The edits of one region waiting to be written out, and the HFiles written for it so far.
+     */
+    private final class RegionCells extends SinkWriter {
+      final HTableDescriptor htd;
+      final Path regionDir;
+      final Map<byte[], FamilyCells> families =
+          new TreeMap<byte[], FamilyCells>(Bytes.BYTES_COMPARATOR);
+      final List<Path> tmpPaths = new ArrayList<Path>();
+      long heapSize = 0;
+
+      RegionCells(HTableDescriptor htd, Path regionDir) {
+        this.htd = htd;
+        this.regionDir = regionDir;
+      }
+
+      void add(Cell cell, long seqId) {
+        byte[] family = CellUtil.cloneFamily(cell);
+        FamilyCells fc = families.get(family);
+        if (fc == null) {
+          fc = new FamilyCells();
+          families.put(family, fc);
+        }
+        fc.cells.add(cell);
+        fc.maxSeqId = Math.max(fc.maxSeqId, seqId);
+        long size = CellUtil.estimatedHeapSizeOf(cell);
+        heapSize += size;
+        totalBufferedSize.addAndGet(size);
+      }
+    }
+
+    private final class FamilyCells {
+      final List<Cell> cells = new ArrayList<Cell>();
+      long maxSeqId = -1;
+
+      void clear() {
+        cells.clear();
+        maxSeqId = -1;
+      }
+    }
+  }
+
   /**
    * Class wraps the actual writer which writes data out and related statistics
    */
@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
@@ -326,6 +327,16 @@ public class MockRegionServerServices implements RegionServerServices {
     return 0;
   }
 
+  @Override
+  public int getCompactionQueueSize() {
+    return 0;
+  }
+
+  @Override
+  public long getWALSyncLatency() {
+    return 0;
+  }
+
   @Override
   public ClusterConnection getClusterConnection() {
     return null;
@@ -336,6 +347,11 @@ public class MockRegionServerServices implements RegionServerServices {
     return null;
   }
 
+  @Override
+  public Executor getStoreFlushExecutor() {
+    return null;
+  }
+
   @Override
   public double getFlushPressure() {
     return 0;
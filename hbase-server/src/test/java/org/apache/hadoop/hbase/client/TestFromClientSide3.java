@@ -809,6 +809,7 @@ public class TestFromClientSide3 {
   private static void assertNoLocks(final TableName tableName) throws IOException, InterruptedException {
     HRegion region = (HRegion) find(tableName);
     assertEquals(0, region.getLockedRows().size());
+    assertEquals(0, region.getStripedRowLocks().getHeldSlots().size());
   }
   private static Region find(final TableName tableName)
       throws IOException, InterruptedException {
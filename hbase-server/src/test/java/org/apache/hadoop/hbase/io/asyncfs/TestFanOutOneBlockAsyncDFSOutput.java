@@ -32,6 +32,7 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -254,4 +255,31 @@ public class TestFanOutOneBlockAsyncDFSOutput {
     }
     assertArrayEquals(b, actual);
   }
+
+  @Test
+  public void testWriteByteBufferRange()
+      throws IOException, InterruptedException, ExecutionException {
+    Path f = new Path("/" + name.getMethodName());
+    EventLoop eventLoop = EVENT_LOOP_GROUP.next();
+    final FanOutOneBlockAsyncDFSOutput out = FanOutOneBlockAsyncDFSOutputHelper.createOutput(FS, f,
+      true, false, (short) 3, FS.getDefaultBlockSize(), eventLoop);
+    byte[] b = new byte[1024];
+    ThreadLocalRandom.current().nextBytes(b);
+    ByteBuffer bb = ByteBuffer.allocateDirect(b.length + 20);
+    bb.position(10);
+    bb.put(b);
+    bb.position(3);
+    // write it out in two pieces, starting at an absolute offset not related to the position
+    out.write(bb, 10, 100);
+    out.write(bb, 110, b.length - 100);
+    assertEquals(3, bb.position());
+    assertEquals(bb.capacity(), bb.limit());
+    assertEquals(b.length, out.flush(false).get().longValue());
+    out.close();
+    byte[] actual = new byte[b.length];
+    try (FSDataInputStream in = FS.open(f)) {
+      in.readFully(actual);
+    }
+    assertArrayEquals(b, actual);
+  }
 }
@@ -359,7 +359,7 @@ public class TestCacheConfig {
     // TODO: Assert sizes allocated are right and proportions.
     LruBlockCache lbc = (LruBlockCache)cc.getBlockCache();
     assertEquals(lruExpectedSize, lbc.getMaxSize());
-    BlockCache bc = lbc.getVictimHandler();
+    BlockCache bc = lbc.getVictimCache();
     // getMaxSize comes back in bytes but we specified size in MB
     assertEquals(bcExpectedSize, ((BucketCache) bc).getMaxSize());
     // Test the L1+L2 deploy works as we'd expect with blocks evicted from L1 going to L2.
@@ -390,6 +390,22 @@ public class TestCacheConfig {
     assertTrue(initialL2BlockCount + 1 <= count);
   }
 
+  /**
+   * Assert that a TinyLFU L1 deployed without the combined cache also has the BucketCache as its
+   * victim cache.
+   */
+  @Test (timeout=10000)
+  public void testTinyLfuL1L2Setup() {
+    this.conf.set(HConstants.BUCKET_CACHE_IOENGINE_KEY, "offheap");
+    this.conf.setInt(HConstants.BUCKET_CACHE_SIZE_KEY, 100);
+    this.conf.setBoolean(CacheConfig.BUCKET_CACHE_COMBINED_KEY, false);
+    this.conf.set(CacheConfig.BLOCKCACHE_POLICY_KEY, "TinyLFU");
+    CacheConfig cc = new CacheConfig(this.conf);
+    assertTrue(cc.getBlockCache() instanceof TinyLfuBlockCache);
+    BlockCache bc = ((FirstLevelBlockCache) cc.getBlockCache()).getVictimCache();
+    assertTrue(bc instanceof BucketCache);
+  }
+
   /**
    * Test the cacheDataInL1 flag.  When set, data blocks should be cached in the l1 tier, up in
    * LruBlockCache when using CombinedBlockCcahe.
@@ -29,6 +29,8 @@ import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.io.FSDataInputStreamWrapper;
 import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.hfile.Cacheable.MemoryType;
+import org.apache.hadoop.hbase.nio.ByteBuff;
 import org.apache.hadoop.hbase.testclassification.IOTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -228,4 +230,49 @@ public class TestLazyDataBlockDecompression {
       "disabledEvictedCount=" + disabledEvictedCount + ", enabledEvictedCount=" +
       enabledEvictedCount, enabledEvictedCount < disabledEvictedCount);
   }
+
+  @Test
+  public void testPackedBlocksUnpackIntoPooledBuffers() throws Exception {
+    Path hfilePath = new Path(TEST_UTIL.getDataTestDir(),
+      "testPackedBlocksUnpackIntoPooledBuffers");
+    HFileContext context = new HFileContextBuilder()
+      .withCompression(Compression.Algorithm.GZ)
+      .build();
+    Configuration conf = HBaseConfiguration.create(TEST_UTIL.getConfiguration());
+    conf.setBoolean(CacheConfig.CACHE_BLOCKS_ON_WRITE_KEY, cacheOnWrite);
+    conf.setBoolean(CacheConfig.CACHE_DATA_BLOCKS_COMPRESSED_KEY, true);
+    CacheConfig.GLOBAL_BLOCK_CACHE_INSTANCE =
+      new LruBlockCache(HConstants.DEFAULT_BLOCKSIZE * 10, HConstants.DEFAULT_BLOCKSIZE, false,
+        conf);
+    CacheConfig cc = new CacheConfig(conf);
+    assertTrue("test improperly configured.", cc.shouldCacheDataCompressed());
+    writeHFile(conf, cc, fs, hfilePath, context, 2000);
+    cacheBlocks(conf, cc, fs, hfilePath, context);
+
+    FSDataInputStreamWrapper fsdis = new FSDataInputStreamWrapper(fs, hfilePath);
+    long fileSize = fs.getFileStatus(hfilePath).getLen();
+    FixedFileTrailer trailer = FixedFileTrailer.readFromStream(fsdis.getStream(false), fileSize);
+    HFile.Reader reader = new HFileReaderImpl(hfilePath, trailer, fsdis, fileSize, cc,
+      fsdis.getHfs(), conf);
+    reader.loadFileInfo();
+    long offset = trailer.getFirstDataBlockOffset();
+
+    HFileBlock first = reader.readBlock(offset, -1, true, false, false, true, null, null);
+    assertTrue(first.isUnpacked());
+    assertEquals(MemoryType.SHARED, first.getMemoryType());
+    ByteBuff firstBuf = first.getBufferWithoutHeader();
+    byte[] firstData = firstBuf.toBytes(0, firstBuf.limit());
+    reader.returnBlock(first);
+    int pooled = UnpackedBufferPool.getPooledBufferCount();
+    // Returning the block again must not hand its buffer out twice.
+    reader.returnBlock(first);
+    assertEquals(pooled, UnpackedBufferPool.getPooledBufferCount());
+
+    HFileBlock second = reader.readBlock(offset, -1, true, false, false, true, null, null);
+    ByteBuff secondBuf = second.getBufferWithoutHeader();
+    assertSame("buffer was not reused from the pool", firstBuf.array(), secondBuf.array());
+    assertArrayEquals(firstData, secondBuf.toBytes(0, secondBuf.limit()));
+    reader.returnBlock(second);
+    reader.close(true);
+  }
 }
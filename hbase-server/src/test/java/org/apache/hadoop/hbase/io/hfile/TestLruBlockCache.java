@@ -590,6 +590,54 @@ public class TestLruBlockCache {
 
   }
 
+  @Test
+  public void testProbationaryAdmission() throws Exception {
+
+    long maxSize = 100000;
+    long blockSize = calculateBlockSize(maxSize, 10);
+
+    LruBlockCache cache = new LruBlockCache(maxSize, blockSize, false,
+        (int)Math.ceil(1.2*maxSize/blockSize),
+        LruBlockCache.DEFAULT_LOAD_FACTOR,
+        LruBlockCache.DEFAULT_CONCURRENCY_LEVEL,
+        0.66f, // min
+        0.99f, // acceptable
+        0.33f, // single
+        0.33f, // multi
+        0.34f, // memory
+        1.2f,  // limit
+        false,
+        16 * 1024 * 1024);
+
+    CachedItem [] pointBlocks = generateFixedBlocks(4, blockSize, "point");
+    CachedItem [] scanBlocks = generateFixedBlocks(6, blockSize, "scan");
+
+    for (CachedItem block : pointBlocks) {
+      cache.cacheBlock(block.cacheKey, block, false, false, AccessPattern.POINT);
+    }
+    // A full scan comes through after the point reads
+    for (int i = 0; i < scanBlocks.length; i++) {
+      cache.cacheBlock(scanBlocks[i].cacheKey, scanBlocks[i], false, false,
+        AccessPattern.FULL_SCAN);
+      if (i == 0) {
+        // Read again, so off probation
+        cache.getBlock(scanBlocks[0].cacheKey, true, false, true);
+      }
+    }
+
+    // Reaching 10 blocks evicted 4, all of them still on probation
+    assertEquals(1, cache.getStats().getEvictionCount());
+    assertEquals(4, cache.getStats().getEvictedCount());
+    for (CachedItem block : pointBlocks) {
+      assertNotNull(cache.getBlock(block.cacheKey, true, false, true));
+    }
+    assertNotNull(cache.getBlock(scanBlocks[0].cacheKey, true, false, true));
+    for (int i = 1; i < 5; i++) {
+      assertNull(cache.getBlock(scanBlocks[i].cacheKey, true, false, true));
+    }
+    assertNotNull(cache.getBlock(scanBlocks[5].cacheKey, true, false, true));
+  }
+
   @Test
   public void testMaxBlockSize() throws Exception {
     long maxSize = 100000;
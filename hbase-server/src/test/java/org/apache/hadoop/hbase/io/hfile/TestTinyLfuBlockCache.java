@@ -0,0 +1,320 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.io.HeapSize;
+import org.apache.hadoop.hbase.io.hfile.TinyLfuBlockCache.FrequencySketch;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests the W-TinyLFU block cache.<p>
+ *
+ * Tests will ensure it never grows past its maximum size, that evictions happen inline on
+ * insert, and that frequently read blocks survive a scan of blocks that are read only once.
+ */
+@Category({IOTests.class, SmallTests.class})
+public class TestTinyLfuBlockCache {
+
+  private static final int BLOCK_SIZE = 10000;
+
+  @Test
+  public void testCacheSimple() throws Exception {
+    long maxSize = 1000000;
+    TinyLfuBlockCache cache = new TinyLfuBlockCache(maxSize, BLOCK_SIZE);
+    CachedItem[] blocks = generateFixedBlocks(10, BLOCK_SIZE, "block");
+
+    long expectedCacheSize = cache.heapSize();
+    assertEquals(cache.getOverhead(), expectedCacheSize);
+
+    // Confirm empty
+    for (CachedItem block : blocks) {
+      assertNull(cache.getBlock(block.cacheKey, true, false, true));
+    }
+
+    // Add blocks
+    for (CachedItem block : blocks) {
+      cache.cacheBlock(block.cacheKey, block);
+      expectedCacheSize += block.cacheBlockHeapSize();
+    }
+
+    // Verify correctly calculated cache heap size
+    assertEquals(expectedCacheSize, cache.heapSize());
+    assertEquals(blocks.length, cache.getBlockCount());
+
+    // Check if all blocks are properly cached and retrieved
+    for (CachedItem block : blocks) {
+      HeapSize buf = cache.getBlock(block.cacheKey, true, false, true);
+      assertTrue(buf != null);
+      assertEquals(buf.heapSize(), block.heapSize());
+    }
+
+    // Re-add same blocks and ensure nothing has changed
+    for (CachedItem block : blocks) {
+      cache.cacheBlock(block.cacheKey, block);
+    }
+    assertEquals(expectedCacheSize, cache.heapSize());
+    assertEquals(blocks.length, cache.getBlockCount());
+
+    // Evicting by hfile name is not counted as an eviction
+    assertEquals(1, cache.evictBlocksByHfileName(blocks[0].cacheKey.getHfileName()));
+    assertFalse(cache.containsBlock(blocks[0].cacheKey));
+    assertFalse(cache.evictBlock(blocks[0].cacheKey));
+    assertEquals(expectedCacheSize - blocks[0].cacheBlockHeapSize(), cache.heapSize());
+    assertEquals(0, cache.getStats().getEvictedCount());
+    assertEquals(0, cache.getStats().getEvictionCount());
+  }
+
+  @Test
+  public void testEvictionIsInline() throws Exception {
+    long maxSize = 100000;
+    TinyLfuBlockCache cache = new TinyLfuBlockCache(maxSize, BLOCK_SIZE);
+    CachedItem[] blocks = generateFixedBlocks(50, BLOCK_SIZE, "block");
+
+    for (CachedItem block : blocks) {
+      cache.cacheBlock(block.cacheKey, block);
+      // No eviction thread: the cache must be within bounds as soon as the insert returns
+      assertTrue(cache.getCurrentSize() <= maxSize);
+    }
+    assertTrue(cache.getBlockCount() < blocks.length);
+    assertEquals(blocks.length - cache.getBlockCount(), cache.getStats().getEvictedCount());
+    assertTrue(cache.getStats().getEvictionCount() > 0);
+
+    // Shrinking the cache evicts right away as well
+    cache.setMaxSize(maxSize / 2);
+    assertTrue(cache.getCurrentSize() <= maxSize / 2);
+    assertEquals(maxSize / 2 - cache.getCurrentSize(), cache.getFreeSize());
+  }
+
+  @Test
+  public void testScanResistance() throws Exception {
+    long maxSize = 1000000;
+    TinyLfuBlockCache cache = new TinyLfuBlockCache(maxSize, BLOCK_SIZE);
+    CachedItem[] hotBlocks = generateFixedBlocks(50, BLOCK_SIZE, "hot");
+    CachedItem[] scanBlocks = generateFixedBlocks(500, BLOCK_SIZE, "scan");
+
+    // Build up the frequency of a working set well under the cache size
+    for (CachedItem block : hotBlocks) {
+      cache.cacheBlock(block.cacheKey, block);
+      for (int i = 0; i < 5; i++) {
+        assertNotNull(cache.getBlock(block.cacheKey, true, false, true));
+      }
+    }
+    assertTrue(cache.getProtectedCountForTest() >= hotBlocks.length - 1);
+
+    // A scan several times the size of the cache, touching each block once
+    for (CachedItem block : scanBlocks) {
+      if (cache.getBlock(block.cacheKey, true, false, true) == null) {
+        cache.cacheBlock(block.cacheKey, block);
+      }
+      assertTrue(cache.getCurrentSize() <= maxSize);
+    }
+
+    // The working set survives
+    for (CachedItem block : hotBlocks) {
+      assertTrue("Lost " + block.cacheKey, cache.containsBlock(block.cacheKey));
+    }
+  }
+
+  @Test
+  public void testCandidateAloneInProbationIsAdmittedByFrequency() throws Exception {
+    CachedItem[] hot = generateFixedBlocks(1, BLOCK_SIZE, "hot");
+    CachedItem[] blocks = generateFixedBlocks(2, BLOCK_SIZE, "new");
+    long blockHeapSize = blocks[0].cacheBlockHeapSize();
+    // Room for two and a half blocks past the fixed overhead, one and a half of it in the window
+    long initialSize = 10 * blockHeapSize;
+    long overhead = new TinyLfuBlockCache(initialSize, BLOCK_SIZE).getOverhead();
+    long maxSize = overhead + 5 * blockHeapSize / 2;
+    TinyLfuBlockCache cache = new TinyLfuBlockCache(initialSize, BLOCK_SIZE,
+        (float) (1.5 * blockHeapSize / maxSize), 0.99f, 2 * BLOCK_SIZE);
+    cache.setMaxSize(maxSize);
+
+    cache.cacheBlock(hot[0].cacheKey, hot[0], true, false);
+    cache.cacheBlock(blocks[0].cacheKey, blocks[0]);
+    for (int i = 0; i < 10; i++) {
+      assertNotNull(cache.getBlock(blocks[0].cacheKey, true, false, true));
+    }
+    // Pushes the frequently read block out of the window, alone into probation
+    cache.cacheBlock(blocks[1].cacheKey, blocks[1]);
+
+    assertTrue(cache.containsBlock(blocks[0].cacheKey));
+    assertTrue(cache.containsBlock(blocks[1].cacheKey));
+    assertFalse(cache.containsBlock(hot[0].cacheKey));
+    assertEquals(1, cache.getStats().getEvictedCount());
+  }
+
+  @Test
+  public void testInMemoryIsProtected() throws Exception {
+    long maxSize = 1000000;
+    TinyLfuBlockCache cache = new TinyLfuBlockCache(maxSize, BLOCK_SIZE);
+    CachedItem[] memoryBlocks = generateFixedBlocks(5, BLOCK_SIZE, "memory");
+    for (CachedItem block : memoryBlocks) {
+      cache.cacheBlock(block.cacheKey, block, true, false);
+    }
+    assertEquals(memoryBlocks.length, cache.getProtectedCountForTest());
+    for (CachedBlock cb : cache) {
+      assertEquals(BlockPriority.MEMORY, cb.getBlockPriority());
+    }
+  }
+
+  @Test
+  public void testTooLargeBlock() throws Exception {
+    long maxSize = 1000000;
+    TinyLfuBlockCache cache = new TinyLfuBlockCache(maxSize, BLOCK_SIZE,
+        TinyLfuBlockCache.DEFAULT_WINDOW_FACTOR, TinyLfuBlockCache.DEFAULT_PROTECTED_FACTOR,
+        BLOCK_SIZE);
+    CachedItem[] tooLong = generateFixedBlocks(5, BLOCK_SIZE + 8, "long");
+    for (CachedItem block : tooLong) {
+      cache.cacheBlock(block.cacheKey, block);
+      assertFalse(cache.containsBlock(block.cacheKey));
+    }
+    assertEquals(tooLong.length, cache.getStats().getFailedInserts());
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    final long maxSize = 200000;
+    final TinyLfuBlockCache cache = new TinyLfuBlockCache(maxSize, BLOCK_SIZE);
+    final AtomicInteger offset = new AtomicInteger(0);
+    ExecutorService service = Executors.newFixedThreadPool(8);
+    for (int t = 0; t < 8; t++) {
+      service.execute(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 500; i++) {
+            CachedItem block = new CachedItem("hfile", BLOCK_SIZE, offset.getAndIncrement());
+            cache.cacheBlock(block.cacheKey, block);
+            cache.getBlock(new BlockCacheKey("hfile", i % 16), true, false, true);
+          }
+        }
+      });
+    }
+    service.shutdown();
+    assertTrue(service.awaitTermination(1, TimeUnit.MINUTES));
+    assertTrue(cache.getCurrentSize() <= maxSize);
+    int counted = 0;
+    for (CachedBlock cb : cache) {
+      assertNotNull(cb);
+      counted++;
+    }
+    assertEquals(cache.getBlockCount(), counted);
+    cache.evictBlocksByHfileName("hfile");
+    assertEquals(0, cache.getBlockCount());
+    assertEquals(cache.getOverhead(), cache.getCurrentSize());
+  }
+
+  @Test
+  public void testFrequencySketch() {
+    FrequencySketch sketch = new FrequencySketch();
+    sketch.ensureCapacity(512);
+    int item = "block".hashCode();
+    assertEquals(0, sketch.frequency(item));
+    for (int i = 0; i < 5; i++) {
+      sketch.increment(item);
+    }
+    assertEquals(5, sketch.frequency(item));
+
+    // Counters saturate at 15
+    for (int i = 0; i < 20; i++) {
+      sketch.increment(item);
+    }
+    assertEquals(15, sketch.frequency(item));
+
+    // Enough distinct increments age every counter by half
+    for (int i = 0; i < 10 * 512; i++) {
+      sketch.increment(i);
+    }
+    assertTrue(sketch.frequency(item) < 15);
+  }
+
+  private CachedItem [] generateFixedBlocks(int numBlocks, int size, String pfx) {
+    CachedItem [] blocks = new CachedItem[numBlocks];
+    for(int i=0;i<numBlocks;i++) {
+      blocks[i] = new CachedItem(pfx + i, size);
+    }
+    return blocks;
+  }
+
+  private static class CachedItem implements Cacheable {
+    BlockCacheKey cacheKey;
+    int size;
+
+    CachedItem(String blockName, int size, int offset) {
+      this.cacheKey = new BlockCacheKey(blockName, offset);
+      this.size = size;
+    }
+
+    CachedItem(String blockName, int size) {
+      this.cacheKey = new BlockCacheKey(blockName, 0);
+      this.size = size;
+    }
+
+    /** The size of this item reported to the block cache layer */
+    @Override
+    public long heapSize() {
+      return ClassSize.align(size);
+    }
+
+    /** Size of the cache block holding this item. Used for verification. */
+    public long cacheBlockHeapSize() {
+      return LruCachedBlock.PER_BLOCK_OVERHEAD
+          + ClassSize.align(cacheKey.heapSize())
+          + ClassSize.align(size);
+    }
+
+    @Override
+    public int getSerializedLength() {
+      return 0;
+    }
+
+    @Override
+    public CacheableDeserializer<Cacheable> getDeserializer() {
+      return null;
+    }
+
+    @Override
+    public void serialize(ByteBuffer destination) {
+    }
+
+    @Override
+    public BlockType getBlockType() {
+      return BlockType.DATA;
+    }
+
+    @Override
+    public MemoryType getMemoryType() {
+      return MemoryType.EXCLUSIVE;
+    }
+  }
+}
@@ -19,6 +19,7 @@
 package org.apache.hadoop.hbase.io.hfile.bucket;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.FileNotFoundException;
@@ -27,7 +28,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseTestingUtility;
@@ -37,6 +40,7 @@ import org.apache.hadoop.hbase.io.hfile.Cacheable;
 import org.apache.hadoop.hbase.io.hfile.CacheTestUtils.HFileBlockPair;
 import org.apache.hadoop.hbase.io.hfile.bucket.BucketAllocator.BucketSizeInfo;
 import org.apache.hadoop.hbase.io.hfile.bucket.BucketAllocator.IndexStatistics;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache.BucketEntry;
 import org.apache.hadoop.hbase.testclassification.IOTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
 import org.junit.After;
@@ -201,29 +205,98 @@ public class TestBucketCache {
     final BlockCacheKey cacheKey = new BlockCacheKey("dummy", 1L);
     cacheAndWaitUntilFlushedToBucket(cache, cacheKey, new CacheTestUtils.ByteArrayCacheable(
         new byte[10]));
-    long lockId = cache.backingMap.get(cacheKey).offset();
-    ReentrantReadWriteLock lock = cache.offsetLock.getLock(lockId);
-    lock.writeLock().lock();
-    Thread evictThread = new Thread("evict-block") {
-
-      @Override
-      public void run() {
-        cache.evictBlock(cacheKey);
-      }
-
-    };
-    evictThread.start();
-    cache.offsetLock.waitForWaiters(lockId, 1);
-    cache.blockEvicted(cacheKey, cache.backingMap.remove(cacheKey), true);
+    // An evictor that looked the entry up before it was evicted and the key cached again...
+    BucketEntry staleEntry = cache.backingMap.get(cacheKey);
+    assertTrue(cache.freeBucketEntry(cacheKey, staleEntry, true));
     cacheAndWaitUntilFlushedToBucket(cache, cacheKey, new CacheTestUtils.ByteArrayCacheable(
         new byte[10]));
-    lock.writeLock().unlock();
-    evictThread.join();
+    // ...must neither free the new entry nor free the stale one twice
+    assertFalse(cache.freeBucketEntry(cacheKey, staleEntry, true));
+    assertTrue(cache.getBlock(cacheKey, false, false, false) != null);
     assertEquals(1L, cache.getBlockCount());
     assertTrue(cache.getCurrentSize() > 0L);
     assertTrue("We should have a block!", cache.iterator().hasNext());
   }
 
+  @Test
+  public void testRetainedEntryIsNotFreed() throws Exception {
+    final BlockCacheKey cacheKey = new BlockCacheKey("dummy", 1L);
+    cacheAndWaitUntilFlushedToBucket(cache, cacheKey, new CacheTestUtils.ByteArrayCacheable(
+        new byte[10]));
+    BucketEntry entry = cache.backingMap.get(cacheKey);
+    assertTrue(entry.tryRetain());
+    assertFalse(cache.evictBlock(cacheKey, false));
+    assertTrue(cache.backingMap.containsKey(cacheKey));
+    entry.release();
+    assertTrue(cache.evictBlock(cacheKey, false));
+    assertTrue(entry.isFreed());
+    // Once freed an entry can not be retained again, so a racing reader will retry or miss
+    assertFalse(entry.tryRetain());
+    assertEquals(0, cache.getAllocator().getUsedSize());
+  }
+
+  @Test
+  public void testExclusiveReadReleasesEntry() throws Exception {
+    final BlockCacheKey cacheKey = new BlockCacheKey("dummy", 1L);
+    cacheAndWaitUntilFlushedToBucket(cache, cacheKey, new CacheTestUtils.ByteArrayCacheable(
+        new byte[10]));
+    BucketEntry entry = cache.backingMap.get(cacheKey);
+    // The entry is held only while an exclusive block is copied out of it
+    assertTrue(cache.getBlock(cacheKey, false, false, false) != null);
+    assertEquals(0, cache.getRefCount(cacheKey));
+    assertTrue(cache.evictBlock(cacheKey, false));
+    assertTrue(entry.isFreed());
+    assertTrue(cache.getBlock(cacheKey, false, false, false) == null);
+  }
+
+  @Test
+  public void testBucketAllocatorConcurrent() throws Exception {
+    final BucketAllocator allocator = cache.getAllocator();
+    final List<Integer> blockSizes = Arrays.asList(4 * 1024, 8 * 1024, 64 * 1024);
+    final ConcurrentMap<Long, Boolean> allocated = new ConcurrentHashMap<Long, Boolean>();
+    final AtomicInteger failures = new AtomicInteger(0);
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread("allocator-" + t) {
+        @Override
+        public void run() {
+          Random rand = new Random();
+          List<Long> mine = new ArrayList<Long>();
+          for (int i = 0; i < 5000; i++) {
+            try {
+              if (mine.isEmpty() || rand.nextBoolean()) {
+                long offset = allocator.allocateBlock(randFrom(blockSizes));
+                // No offset may be handed out twice before it is freed
+                if (allocated.putIfAbsent(offset, Boolean.TRUE) != null) {
+                  failures.incrementAndGet();
+                }
+                mine.add(offset);
+              } else {
+                long offset = mine.remove(mine.size() - 1);
+                allocated.remove(offset);
+                allocator.freeBlock(offset);
+              }
+            } catch (CacheFullException e) {
+              // Fine, try a free next
+            } catch (BucketAllocatorException e) {
+              failures.incrementAndGet();
+            }
+          }
+          for (long offset : mine) {
+            allocated.remove(offset);
+            allocator.freeBlock(offset);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, failures.get());
+    assertEquals(0, allocator.getUsedSize());
+  }
+
   @Test
   public void testRetrieveFromFile() throws Exception {
     HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
@@ -268,4 +341,44 @@ public class TestBucketCache {
 
     TEST_UTIL.cleanupTestDir();
   }
+
+  @Test
+  public void testRecoverAfterUncleanShutdown() throws Exception {
+    HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+    Path testDir = TEST_UTIL.getDataTestDir();
+    TEST_UTIL.getTestFileSystem().mkdirs(testDir);
+    String ioEngineName = "file:" + testDir + "/bucket.cache";
+    String persistencePath = testDir + "/bucket.persistence";
+
+    BucketCache bucketCache = new BucketCache(ioEngineName, capacitySize, constructedBlockSize,
+        constructedBlockSizes, writeThreads, writerQLen, persistencePath);
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(constructedBlockSize, 4);
+    for (int i = 0; i < 3; i++) {
+      cacheAndWaitUntilFlushedToBucket(bucketCache, blocks[i].getBlockName(),
+        blocks[i].getBlock());
+    }
+    assertTrue(bucketCache.evictBlock(blocks[2].getBlockName()));
+    cacheAndWaitUntilFlushedToBucket(bucketCache, blocks[3].getBlockName(),
+      blocks[3].getBlock());
+    long usedSize = bucketCache.getAllocator().getUsedSize();
+    // Go away without the checkpoint of a clean shutdown; only the journal log is left
+    bucketCache.stopWriterThreads();
+
+    BucketCache recovered = new BucketCache(ioEngineName, capacitySize, constructedBlockSize,
+        constructedBlockSizes, writeThreads, writerQLen, persistencePath);
+    assertEquals(usedSize, recovered.getAllocator().getUsedSize());
+    assertEquals(3, recovered.getBlockCount());
+    assertFalse(recovered.backingMap.containsKey(blocks[2].getBlockName()));
+    Cacheable block = recovered.getBlock(blocks[0].getBlockName(), false, false, false);
+    assertEquals(blocks[0].getBlock().getSerializedLength(), block.getSerializedLength());
+
+    // Only the hfile opened since startup keeps its recovered blocks
+    recovered.notifyHFileOpened(blocks[0].getBlockName().getHfileName());
+    assertEquals(2, recovered.evictUnverifiedHFiles());
+    assertEquals(1, recovered.backingMap.size());
+    assertTrue(recovered.backingMap.containsKey(blocks[0].getBlockName()));
+    recovered.shutdown();
+
+    TEST_UTIL.cleanupTestDir();
+  }
 }
@@ -0,0 +1,130 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache.BucketEntry;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ IOTests.class, SmallTests.class })
+public class TestBucketCacheJournal {
+
+  private static final long CAPACITY = 32 * 1024 * 1024;
+  private static final String IO_ENGINE = "FileIOEngine";
+
+  private HBaseTestingUtility testUtil;
+  private String path;
+
+  @Before
+  public void setUp() throws Exception {
+    testUtil = new HBaseTestingUtility();
+    File dir = new File(testUtil.getDataTestDir().toString());
+    assertTrue(dir.isDirectory() || dir.mkdirs());
+    path = new File(dir, "bucket.persistence").getAbsolutePath();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    testUtil.cleanupTestDir();
+  }
+
+  private static BucketEntry entry(long offset, UniqueIndexMap<Integer> deserialiserMap) {
+    BucketEntry entry = new BucketEntry(offset, 1024, 1, false);
+    entry.deserialiserIndex = (byte) deserialiserMap.map(1);
+    return entry;
+  }
+
+  /**
+   * A crash while a checkpoint writes its snapshot leaves the old snapshot, the log it was
+   * following and the log of the new generation. A torn last record in the older log must not
+   * keep the removals logged in the newer one from being replayed.
+   */
+  @Test
+  public void testTornLogDoesNotHideNextGeneration() throws Exception {
+    UniqueIndexMap<Integer> deserialiserMap = new UniqueIndexMap<Integer>();
+    BlockCacheKey removed = new BlockCacheKey("file", 0);
+    BlockCacheKey torn = new BlockCacheKey("file", 4096);
+    Map<BlockCacheKey, BucketEntry> map = new ConcurrentHashMap<BlockCacheKey, BucketEntry>();
+
+    BucketCacheJournal journal = new BucketCacheJournal(path, CAPACITY, IO_ENGINE);
+    journal.checkpoint(map, deserialiserMap);
+    File oldLog = new File(path + ".log.1");
+    assertTrue(oldLog.exists());
+    BucketEntry removedEntry = entry(0, deserialiserMap);
+    journal.logAdd(removed, removedEntry, 1);
+    map.put(removed, removedEntry);
+    journal.flush();
+    long tornStart = oldLog.length();
+    BucketEntry tornEntry = entry(4096, deserialiserMap);
+    journal.logAdd(torn, tornEntry, 1);
+    map.put(torn, tornEntry);
+    journal.flush();
+    long tornEnd = oldLog.length();
+
+    // Keep the old snapshot and log around, as a crash in the next checkpoint would
+    File savedSnapshot = new File(path + ".saved");
+    File savedLog = new File(path + ".log.1.saved");
+    Files.copy(new File(path).toPath(), savedSnapshot.toPath());
+    Files.copy(oldLog.toPath(), savedLog.toPath());
+
+    journal.checkpoint(map, deserialiserMap);
+    assertFalse(oldLog.exists());
+    map.remove(removed);
+    journal.logRemove(removed);
+    journal.syncIfDirty();
+    journal.close();
+
+    Files.move(savedSnapshot.toPath(), new File(path).toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+    Files.move(savedLog.toPath(), oldLog.toPath());
+    RandomAccessFile raf = new RandomAccessFile(oldLog, "rw");
+    try {
+      raf.setLength(tornStart + (tornEnd - tornStart) / 2);
+    } finally {
+      raf.close();
+    }
+
+    Map<BlockCacheKey, BucketEntry> recovered =
+        new BucketCacheJournal(path, CAPACITY, IO_ENGINE).recover(
+          new UniqueIndexMap<Integer>());
+    assertNotNull(recovered);
+    assertFalse(recovered.containsKey(removed));
+    // The torn addition is lost, which only costs a cache miss
+    assertFalse(recovered.containsKey(torn));
+    assertEquals(0, recovered.size());
+  }
+}
@@ -28,6 +28,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
@@ -677,6 +678,16 @@ ClientProtos.ClientService.BlockingInterface, RegionServerServices {
     return 0;
   }
 
+  @Override
+  public int getCompactionQueueSize() {
+    return 0;
+  }
+
+  @Override
+  public long getWALSyncLatency() {
+    return 0;
+  }
+
   @Override
   public ClusterConnection getClusterConnection() {
     return null;
@@ -687,6 +698,11 @@ ClientProtos.ClientService.BlockingInterface, RegionServerServices {
     return null;
   }
 
+  @Override
+  public Executor getStoreFlushExecutor() {
+    return null;
+  }
+
   @Override
   public double getFlushPressure() {
     return 0;
@@ -31,6 +31,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
@@ -119,11 +120,11 @@ public class TestLogsCleaner {
       // (TimeToLiveLogCleaner), and also for the second (ReplicationLogCleaner)
       Path fileName = new Path(oldLogDir, fakeMachineName + "." + (now - i) );
       fs.createNewFile(fileName);
-      // Case 4: put 3 old log files in ZK indicating that they are scheduled
-      // for replication so these files would pass the first log cleaner
+      // Case 4: put the 3 newest old log files in ZK indicating that they are
+      // scheduled for replication so these files would pass the first log cleaner
       // (TimeToLiveLogCleaner) but would be rejected by the second
-      // (ReplicationLogCleaner)
-      if (i % (30/3) == 1) {
+      // (ReplicationLogCleaner). A queue holds all the logs from its oldest on.
+      if (i <= 3) {
         repQueues.addLog(fakeMachineName, fileName.getName());
         System.out.println("Replication log file: " + fileName);
       }
@@ -179,6 +180,42 @@ public class TestLogsCleaner {
     cleaner.getDeletableFiles(new LinkedList<FileStatus>());
   }
 
+  @Test
+  public void testReuseReplicationQueues() throws Exception {
+    Configuration conf = new Configuration(TEST_UTIL.getConfiguration());
+    conf.setLong(ReplicationLogCleaner.REFRESH_PERIOD_KEY, 60000);
+    conf.setLong(ReplicationLogCleaner.CLOCK_SKEW_KEY, 1000);
+    ReplicationLogCleaner cleaner = new ReplicationLogCleaner();
+    cleaner.setConf(conf);
+
+    ReplicationQueuesClientZKImpl rqcMock = Mockito.mock(ReplicationQueuesClientZKImpl.class);
+    Mockito.when(rqcMock.getAllWALs()).thenReturn(Sets.newHashSet("rs1.20", "rs1.30", "rs1.40"));
+    Field rqc = ReplicationLogCleaner.class.getDeclaredField("replicationQueues");
+    rqc.setAccessible(true);
+    rqc.set(cleaner, rqcMock);
+
+    long old = System.currentTimeMillis() - 60000;
+    List<FileStatus> files = Lists.newArrayList(
+      new FileStatus(100, false, 3, 100, old, new Path("rs1.10")),
+      new FileStatus(100, false, 3, 100, old, new Path("rs1.20")),
+      new FileStatus(100, false, 3, 100, old, new Path("rs1.30")),
+      new FileStatus(100, false, 3, 100, old, new Path("rs1.40")),
+      new FileStatus(100, false, 3, 100, old, new Path("rs1.50")),
+      new FileStatus(100, false, 3, 100, old, new Path("rs1.30.meta")),
+      new FileStatus(100, false, 3, 100, old, new Path("rs2.10")));
+    // Only the logs older than the oldest one queued for their server are deleted, and those
+    // of servers and meta logs no queue refers to
+    assertEquals(Lists.newArrayList(files.get(0), files.get(5), files.get(6)),
+      Lists.newArrayList(cleaner.getDeletableFiles(files)));
+
+    // A log written after the queues were read may have been queued since, it has to wait for
+    // the next read even though it is not in the queues we know of.
+    files.add(new FileStatus(100, false, 3, 100, System.currentTimeMillis(), new Path("rs2.50")));
+    assertEquals(Lists.newArrayList(files.get(0), files.get(5), files.get(6)),
+      Lists.newArrayList(cleaner.getDeletableFiles(files)));
+    Mockito.verify(rqcMock, Mockito.times(1)).getAllWALs();
+  }
+
   /**
    * ReplicationLogCleaner should be able to ride over ZooKeeper errors without
    * aborting.
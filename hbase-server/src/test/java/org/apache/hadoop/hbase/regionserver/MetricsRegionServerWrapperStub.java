@@ -330,6 +330,31 @@ public class MetricsRegionServerWrapperStub implements MetricsRegionServerWrappe
     return 0;
   }
 
+  @Override
+  public long getMemStoreChunkPoolHitCount() {
+    return 0;
+  }
+
+  @Override
+  public long getMemStoreChunkPoolMissCount() {
+    return 0;
+  }
+
+  @Override
+  public long getMemStoreChunkCreatedCount() {
+    return 0;
+  }
+
+  @Override
+  public long getMemStoreChunkDiscardedCount() {
+    return 0;
+  }
+
+  @Override
+  public long getMemStoreChunkWastedBytes() {
+    return 0;
+  }
+
   @Override
   public long getDataMissCount() {
     return 0;
@@ -130,6 +130,36 @@ public class MetricsRegionWrapperStub implements MetricsRegionWrapper {
     return 0;
   }
 
+  @Override
+  public long getRowLockContendedCount() {
+    return 0;
+  }
+
+  @Override
+  public long getRowLockSlotCollisionCount() {
+    return 0;
+  }
+
+  @Override
+  public long getMemStoreFlattenCount() {
+    return 0;
+  }
+
+  @Override
+  public long getMemStoreMergeCount() {
+    return 0;
+  }
+
+  @Override
+  public long getMemStoreCompactionCount() {
+    return 0;
+  }
+
+  @Override
+  public long getMemStoreCompactionBytesEliminated() {
+    return 0;
+  }
+
   @Override
   public int getRegionHashCode() {
     return 42;
@@ -142,4 +172,24 @@ public class MetricsRegionWrapperStub implements MetricsRegionWrapper {
   public int getReplicaId() {
     return replicaid;
   }
+
+  @Override
+  public long getWALAppendBytes() {
+    return 1024;
+  }
+
+  @Override
+  public long getWALAppendCount() {
+    return 16;
+  }
+
+  @Override
+  public long getWALSyncWaitTimeMean() {
+    return 300;
+  }
+
+  @Override
+  public long getWALSyncWaitTime99th() {
+    return 900;
+  }
 }
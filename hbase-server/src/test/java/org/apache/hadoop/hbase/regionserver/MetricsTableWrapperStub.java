@@ -56,6 +56,21 @@ public class MetricsTableWrapperStub implements MetricsTableWrapperAggregate {
     return 3000;
   }
 
+  @Override
+  public long getWALAppendBytes(String table) {
+    return 4096;
+  }
+
+  @Override
+  public long getWALAppendCount(String table) {
+    return 64;
+  }
+
+  @Override
+  public long getWALSyncWaitTime99th(String table) {
+    return 900;
+  }
+
   public String getTableName() {
     return tableName;
   }
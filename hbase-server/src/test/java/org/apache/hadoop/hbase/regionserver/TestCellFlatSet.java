@@ -82,6 +82,38 @@ public class TestCellFlatSet extends TestCase {
     testCellBlocks(cs);
     testIterators(cs);
   }
+  /* Create and test CellSet based on CellChunkMap */
+  @Test
+  public void testCellChunkMap() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(CompactingMemStore.COMPACTING_MEMSTORE_INDEX_KEY,
+        String.valueOf(CompactingMemStore.IndexType.CHUNK_MAP));
+    MemStoreLAB mslab = new MemStoreLABImpl(conf);
+    Cell[] chunkCells = new Cell[NUM_OF_CELLS];
+    for (int i = 0; i < NUM_OF_CELLS; i++) {
+      CellUtil.setSequenceId(ascCells[i], i + 1);
+      chunkCells[i] = mslab.copyCellInto(ascCells[i]);
+    }
+    // Cells which are not in registered chunks can not be indexed
+    assertNull(CellChunkMap.create(CellComparator.COMPARATOR, mslab, ascCells, NUM_OF_CELLS));
+
+    CellChunkMap ccm =
+        CellChunkMap.create(CellComparator.COMPARATOR, mslab, chunkCells, NUM_OF_CELLS);
+    assertNotNull(ccm);
+    CellSet cs = new CellSet(ccm);
+    testCellBlocks(cs);
+    testIterators(cs);
+    testSubSet(cs);
+    assertEquals(1, cs.first().getSequenceId());
+    assertEquals(NUM_OF_CELLS, cs.last().getSequenceId());
+
+    // the chunks are unregistered when the MemStoreLAB gives them back
+    int chunkId = ByteBufferChunkCell.getChunkId(chunkCells[0]);
+    assertNotNull(MemStoreChunkPool.getRegisteredChunk(chunkId));
+    mslab.close();
+    assertNull(MemStoreChunkPool.getRegisteredChunk(chunkId));
+  }
+
   @Test
   public void testAsc() throws Exception {
     CellSet ascCs = new CellSet(ascCbOnHeap);
@@ -327,6 +327,91 @@ public class TestCompactingToCellArrayMapMemStore extends TestCompactingMemStore
     memstore.clearSnapshot(snapshot.getId());
   }
 
+  @Test
+  public void testAdaptiveCompaction() throws IOException {
+    ((CompactingMemStore) memstore).initiateType(MemoryCompactionPolicy.ADAPTIVE);
+    MemStoreCompactor compactor = ((CompactingMemStore) memstore).getCompactor();
+
+    // no duplicates, the segment should only be flattened
+    String[] keys1 = { "A", "B", "C", "D" };
+    addRowsByKeys(memstore, keys1);
+    ((CompactingMemStore) memstore).flushInMemory();
+    while (((CompactingMemStore) memstore).isMemStoreFlushingInMemory()) {
+      Threads.sleep(10);
+    }
+    assertEquals(1, compactor.getFlattenCount());
+    assertEquals(0, compactor.getCompactionCount());
+    assertEquals(0, compactor.getBytesEliminated());
+
+    // overwrites of the same rows make the pipeline worth compacting
+    String[] keys2 = { "A", "A", "A", "B", "B", "B" };
+    addRowsByKeys(memstore, keys2);
+    ((CompactingMemStore) memstore).flushInMemory();
+    while (((CompactingMemStore) memstore).isMemStoreFlushingInMemory()) {
+      Threads.sleep(10);
+    }
+    assertEquals(1, compactor.getCompactionCount());
+    assertEquals(0, compactor.getMergeCount());
+    assertTrue(compactor.getBytesEliminated() > 0);
+    int counter = 0;
+    for (Segment s : memstore.getSegments()) {
+      counter += s.getCellsCount();
+    }
+    // only the latest version of every row survives
+    assertEquals(4, counter);
+  }
+
+  @Test
+  public void testAdaptiveSampleSpansPipeline() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(MemStoreCompactor.ADAPTIVE_SAMPLE_SIZE_KEY, 4);
+    this.memstore = new CompactingMemStore(conf, CellComparator.COMPARATOR, store,
+        regionServicesForStores, MemoryCompactionPolicy.ADAPTIVE);
+    MemStoreCompactor compactor = ((CompactingMemStore) memstore).getCompactor();
+
+    // the duplicates are all at the end of the key range, a sample of the first cells would
+    // see none of them
+    String[] keys = new String[16];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = i < 4 ? String.valueOf((char) ('A' + i)) : "Z";
+    }
+    addRowsByKeys(memstore, keys);
+    ((CompactingMemStore) memstore).flushInMemory();
+    while (((CompactingMemStore) memstore).isMemStoreFlushingInMemory()) {
+      Threads.sleep(10);
+    }
+    assertEquals(1, compactor.getCompactionCount());
+    assertEquals(0, compactor.getFlattenCount());
+    int counter = 0;
+    for (Segment s : memstore.getSegments()) {
+      counter += s.getCellsCount();
+    }
+    assertEquals(5, counter);
+  }
+
+  @Test
+  public void testAdaptiveSampleScanIsBounded() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(MemStoreCompactor.ADAPTIVE_SAMPLE_SIZE_KEY, 4);
+    conf.setInt(MemStoreCompactor.ADAPTIVE_SCAN_LIMIT_KEY, 8);
+    this.memstore = new CompactingMemStore(conf, CellComparator.COMPARATOR, store,
+        regionServicesForStores, MemoryCompactionPolicy.ADAPTIVE);
+    MemStoreCompactor compactor = ((CompactingMemStore) memstore).getCompactor();
+
+    String[] keys = new String[64];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = String.valueOf((char) ('A' + i % 26));
+    }
+    addRowsByKeys(memstore, keys);
+    ((CompactingMemStore) memstore).flushInMemory();
+    while (((CompactingMemStore) memstore).isMemStoreFlushingInMemory()) {
+      Threads.sleep(10);
+    }
+    // the sample is taken from the first cells of the 64, not the whole pipeline
+    int scanned = compactor.getLastEstimateScanned();
+    assertTrue("scanned " + scanned + " cells", scanned > 0 && scanned <= 8);
+  }
+
   @Test
   public void testCountOfCellsAfterFlatteningByScan() throws IOException {
     String[] keys1 = { "A", "B", "C" }; // A, B, C
@@ -347,6 +432,33 @@ public class TestCompactingToCellArrayMapMemStore extends TestCompactingMemStore
     scanners.get(0).close();
   }
 
+  @Test
+  public void testFlatteningToCellChunkMap() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    conf.set(CompactingMemStore.COMPACTING_MEMSTORE_INDEX_KEY,
+        String.valueOf(CompactingMemStore.IndexType.CHUNK_MAP));
+    this.memstore = new CompactingMemStore(conf, CellComparator.COMPARATOR, store,
+        regionServicesForStores, MemoryCompactionPolicy.BASIC);
+    String[] keys1 = { "A", "B", "C" }; // A, B, C
+    addRowsByKeysWith50Cols(memstore, keys1);
+    // this should only flatten as there are no duplicates
+    ((CompactingMemStore) memstore).flushInMemory();
+    while (((CompactingMemStore) memstore).isMemStoreFlushingInMemory()) {
+      Threads.sleep(10);
+    }
+    // no Cell objects are referenced by the flat segment, only the serialized index entries
+    assertEquals(150 * ClassSize.CELL_CHUNK_MAP_ENTRY,
+        ((CompactingMemStore) memstore).heapOverhead());
+    List<KeyValueScanner> scanners = memstore.getScanners(Long.MAX_VALUE);
+    scanners.get(0).seek(KeyValue.LOWESTKEY);
+    int count = 0;
+    while (scanners.get(0).next() != null) {
+      count++;
+    }
+    assertEquals("the count should be ", count, 150);
+    scanners.get(0).close();
+  }
+
   @Test
   public void testCountOfCellsAfterFlatteningByIterator() throws IOException {
     String[] keys1 = { "A", "B", "C" }; // A, B, C
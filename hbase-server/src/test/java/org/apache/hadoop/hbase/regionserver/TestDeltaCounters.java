@@ -0,0 +1,416 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.ColumnCountGetFilter;
+import org.apache.hadoop.hbase.filter.ColumnPaginationFilter;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.filter.ValueFilter;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.util.ManualEnvironmentEdge;
+import org.apache.hadoop.hbase.util.Threads;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Tests increments to a column family with {@link HColumnDescriptor#DELTA_COUNTERS} set.
+ */
+@Category({RegionServerTests.class, MediumTests.class})
+public class TestDeltaCounters {
+  @Rule public TestName name = new TestName();
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] ROW = Bytes.toBytes("row");
+  private static final byte[] Q1 = Bytes.toBytes("q1");
+  private static final byte[] Q2 = Bytes.toBytes("q2");
+
+  private HRegion region;
+
+  @Before
+  public void setUp() throws IOException {
+    region = createRegion(new HColumnDescriptor(FAMILY).setDeltaCounters(true));
+  }
+
+  private HRegion createRegion(HColumnDescriptor family) throws IOException {
+    HBaseTestingUtility testUtil = HBaseTestingUtility.createLocalHTU(HBaseConfiguration.create());
+    HTableDescriptor htd = new HTableDescriptor(TableName.valueOf(name.getMethodName()));
+    htd.addFamily(family);
+    HRegionInfo info = new HRegionInfo(htd.getTableName(), null, null, false);
+    return testUtil.createLocalHRegion(info, htd);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      HBaseTestingUtility.closeRegionAndWAL(region);
+    }
+  }
+
+  private void increment(byte[] qualifier, long amount) throws IOException {
+    Increment increment = new Increment(ROW).addColumn(FAMILY, qualifier, amount);
+    increment.setReturnResults(false);
+    region.increment(increment);
+  }
+
+  private long get(byte[] qualifier) throws IOException {
+    Result result = region.get(new Get(ROW).addColumn(FAMILY, qualifier));
+    assertEquals(1, result.size());
+    return Bytes.toLong(result.getValue(FAMILY, qualifier));
+  }
+
+  private static void nextMillisecond() {
+    long now = EnvironmentEdgeManager.currentTime();
+    while (EnvironmentEdgeManager.currentTime() <= now) {
+      Threads.sleep(1);
+    }
+  }
+
+  private List<Cell> rawCells() throws IOException {
+    List<Cell> cells = new ArrayList<Cell>();
+    RegionScanner scanner = region.getScanner(new Scan().setRaw(true).setMaxVersions());
+    try {
+      scanner.next(cells);
+    } finally {
+      scanner.close();
+    }
+    return cells;
+  }
+
+  @Test
+  public void testSumAcrossFlushAndCompaction() throws IOException {
+    for (int i = 0; i < 10; i++) {
+      increment(Q1, 1);
+      increment(Q2, 2);
+    }
+    assertEquals(10, get(Q1));
+    assertEquals(20, get(Q2));
+    region.flush(true);
+    // the flush collapses each counter into a single delta
+    assertEquals(2, rawCells().size());
+    for (int i = 0; i < 5; i++) {
+      increment(Q1, 1);
+    }
+    assertEquals(15, get(Q1));
+    region.flush(true);
+    assertEquals(15, get(Q1));
+    region.compact(true);
+    assertEquals(2, rawCells().size());
+    assertEquals(15, get(Q1));
+    assertEquals(20, get(Q2));
+    // a wildcard read returns one cell per counter
+    Result result = region.get(new Get(ROW));
+    assertEquals(2, result.size());
+  }
+
+  @Test
+  public void testBaseValueAndDelete() throws IOException {
+    increment(Q1, 3);
+    region.put(new Put(ROW).addColumn(FAMILY, Q1, Bytes.toBytes(100L)));
+    increment(Q1, 5);
+    assertEquals(105, get(Q1));
+    region.flush(true);
+    region.compact(true);
+    List<Cell> cells = rawCells();
+    assertEquals(1, cells.size());
+    assertEquals(105, Bytes.toLong(CellUtil.cloneValue(cells.get(0))));
+
+    long deleteTs = cells.get(0).getTimestamp();
+    region.delete(new Delete(ROW).addColumns(FAMILY, Q1, deleteTs));
+    assertTrue(region.get(new Get(ROW).addColumn(FAMILY, Q1)).isEmpty());
+    // later increments must not fall under the delete marker
+    while (EnvironmentEdgeManager.currentTime() <= deleteTs) {
+      Threads.sleep(1);
+    }
+    increment(Q1, 7);
+    assertEquals(7, get(Q1));
+    region.flush(true);
+    assertEquals(7, get(Q1));
+  }
+
+  @Test
+  public void testDeleteResetsDeltas() throws IOException {
+    increment(Q1, 3);
+    increment(Q2, 3);
+    region.flush(true);
+    increment(Q1, 5);
+    long deleteTs = EnvironmentEdgeManager.currentTime();
+    region.delete(new Delete(ROW).addColumns(FAMILY, Q1, deleteTs)
+        .addColumns(FAMILY, Q2, deleteTs));
+    assertTrue(region.get(new Get(ROW)).isEmpty());
+    // increments after the delete start the counters again
+    while (EnvironmentEdgeManager.currentTime() <= deleteTs) {
+      Threads.sleep(1);
+    }
+    increment(Q1, 7);
+    increment(Q2, 9);
+    assertEquals(7, get(Q1));
+    assertEquals(9, get(Q2));
+    region.flush(true);
+    assertEquals(7, get(Q1));
+    assertEquals(9, get(Q2));
+    region.compact(true);
+    assertEquals(2, rawCells().size());
+    assertEquals(7, get(Q1));
+    assertEquals(9, get(Q2));
+  }
+
+  /**
+   * Writes Q1 = 1 + 2 + 3 + 4 and Q2 = 10 + 10, partly flushed, so no delta alone has the value
+   * of its counter.
+   */
+  private void incrementForReads() throws IOException {
+    increment(Q1, 1);
+    increment(Q2, 10);
+    region.flush(true);
+    increment(Q1, 2);
+    increment(Q1, 3);
+    increment(Q2, 10);
+    increment(Q1, 4);
+  }
+
+  private List<Long> values(Result result) {
+    List<Long> values = new ArrayList<Long>();
+    for (Cell cell : result.rawCells()) {
+      values.add(Bytes.toLong(CellUtil.cloneValue(cell)));
+    }
+    return values;
+  }
+
+  @Test
+  public void testFiltersSeeSums() throws IOException {
+    incrementForReads();
+    byte[] ten = Bytes.toBytes(10L);
+
+    Result result = region.get(new Get(ROW)
+        .setFilter(new ValueFilter(CompareOp.EQUAL, new BinaryComparator(ten))));
+    assertEquals(1, result.size());
+    assertEquals(10, Bytes.toLong(result.getValue(FAMILY, Q1)));
+
+    result = region.get(new Get(ROW)
+        .setFilter(new SingleColumnValueFilter(FAMILY, Q1, CompareOp.EQUAL, ten)));
+    assertEquals(2, result.size());
+    assertEquals(20, Bytes.toLong(result.getValue(FAMILY, Q2)));
+
+    result = region.get(new Get(ROW).setFilter(new ColumnCountGetFilter(1)));
+    assertEquals(1, result.size());
+    assertEquals(10, Bytes.toLong(result.getValue(FAMILY, Q1)));
+
+    result = region.get(new Get(ROW).setFilter(new ColumnPaginationFilter(1, 1)));
+    assertEquals(1, result.size());
+    assertEquals(20, Bytes.toLong(result.getValue(FAMILY, Q2)));
+
+    result = region.get(new Get(ROW).setFilter(new KeyOnlyFilter(true)));
+    assertEquals(2, result.size());
+  }
+
+  @Test
+  public void testLimitsSeeSums() throws IOException {
+    incrementForReads();
+    Result result = region.get(new Get(ROW).setMaxResultsPerColumnFamily(1));
+    assertEquals(1, result.size());
+    assertEquals(10, Bytes.toLong(result.getValue(FAMILY, Q1)));
+
+    result = region.get(new Get(ROW).setRowOffsetPerColumnFamily(1));
+    assertEquals(1, result.size());
+    assertEquals(20, Bytes.toLong(result.getValue(FAMILY, Q2)));
+
+    List<Cell> cells = new ArrayList<Cell>();
+    RegionScanner scanner = region.getScanner(new Scan().setBatch(1));
+    try {
+      scanner.next(cells);
+      assertEquals(1, cells.size());
+      assertEquals(10, Bytes.toLong(CellUtil.cloneValue(cells.get(0))));
+      cells.clear();
+      scanner.next(cells);
+      assertEquals(1, cells.size());
+      assertEquals(20, Bytes.toLong(CellUtil.cloneValue(cells.get(0))));
+    } finally {
+      scanner.close();
+    }
+
+    cells.clear();
+    scanner = region.getScanner(new Scan().setReversed(true));
+    try {
+      scanner.next(cells);
+      assertEquals(2, cells.size());
+      assertEquals(10, Bytes.toLong(CellUtil.cloneValue(cells.get(0))));
+      assertEquals(20, Bytes.toLong(CellUtil.cloneValue(cells.get(1))));
+    } finally {
+      scanner.close();
+    }
+  }
+
+  @Test
+  public void testMaxVersions() throws IOException {
+    HBaseTestingUtility.closeRegionAndWAL(region);
+    region = createRegion(new HColumnDescriptor(FAMILY).setDeltaCounters(true).setMaxVersions(2));
+    // distinct timestamps, as versions with the same one are a single version
+    increment(Q1, 1);
+    increment(Q1, 2);
+    nextMillisecond();
+    region.put(new Put(ROW).addColumn(FAMILY, Q1, Bytes.toBytes(100L)));
+    region.flush(true);
+    nextMillisecond();
+    increment(Q1, 5);
+    increment(Q1, 6);
+    nextMillisecond();
+    region.put(new Put(ROW).addColumn(FAMILY, Q1, Bytes.toBytes(200L)));
+    nextMillisecond();
+    increment(Q1, 7);
+
+    // each plain value ends a version of the counter
+    assertEquals(207, get(Q1));
+    Get get = new Get(ROW).addColumn(FAMILY, Q1).setMaxVersions();
+    assertEquals(Arrays.asList(207L, 111L), values(region.get(get)));
+    region.flush(true);
+    region.compact(true);
+    assertEquals(Arrays.asList(207L, 111L), values(region.get(get)));
+    assertEquals(2, rawCells().size());
+  }
+
+  @Test
+  public void testDeleteAndExpiryBeforeAndAfterFlush() throws IOException {
+    HBaseTestingUtility.closeRegionAndWAL(region);
+    region = createRegion(new HColumnDescriptor(FAMILY).setDeltaCounters(true).setTimeToLive(10));
+    ManualEnvironmentEdge edge = new ManualEnvironmentEdge();
+    long first = EnvironmentEdgeManager.currentTime();
+    edge.setValue(first);
+    EnvironmentEdgeManager.injectEdge(edge);
+    try {
+      increment(Q1, 1);
+      increment(Q2, 1);
+      edge.incValue(2000);
+      increment(Q1, 2);
+      increment(Q2, 2);
+      // a delete between the increments does not cover the newest one, so neither of them,
+      // whether it is written before the flush sums them or after
+      region.delete(new Delete(ROW).addColumns(FAMILY, Q1, first + 1000));
+      // the first increments expire, the last ones do not, which keeps both alive
+      edge.setValue(first + 10500);
+      assertEquals(3, get(Q1));
+      assertEquals(3, get(Q2));
+      region.flush(true);
+      region.delete(new Delete(ROW).addColumns(FAMILY, Q2, first + 1000));
+      assertEquals(3, get(Q1));
+      assertEquals(3, get(Q2));
+      region.compact(true);
+      assertEquals(3, get(Q1));
+      assertEquals(3, get(Q2));
+      // until the last ones expire too
+      edge.setValue(first + 12500);
+      assertTrue(region.get(new Get(ROW)).isEmpty());
+    } finally {
+      EnvironmentEdgeManager.reset();
+    }
+  }
+
+  @Test
+  public void testVersionDeleteIsRejected() throws IOException {
+    increment(Q1, 1);
+    long ts = rawCells().get(0).getTimestamp();
+    try {
+      region.delete(new Delete(ROW).addColumn(FAMILY, Q1, ts));
+      fail("A single version of a counter should not be deletable");
+    } catch (DoNotRetryIOException e) {
+      // expected
+    }
+    try {
+      region.delete(new Delete(ROW).addFamilyVersion(FAMILY, ts));
+      fail("A single version of a counter should not be deletable");
+    } catch (DoNotRetryIOException e) {
+      // expected
+    }
+    assertEquals(1, get(Q1));
+  }
+
+  @Test
+  public void testReturnResults() throws IOException {
+    increment(Q1, 4);
+    Result result = region.increment(new Increment(ROW).addColumn(FAMILY, Q1, 6));
+    assertEquals(10, Bytes.toLong(result.getValue(FAMILY, Q1)));
+    assertEquals(10, get(Q1));
+  }
+
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    final int numThreads = 8;
+    final int incrementsPerThread = 500;
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int t = 0; t < numThreads; t++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = 0; i < incrementsPerThread; i++) {
+              increment(Q1, 1);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(numThreads * incrementsPerThread, get(Q1));
+    region.flush(true);
+    assertEquals(numThreads * incrementsPerThread, get(Q1));
+  }
+}
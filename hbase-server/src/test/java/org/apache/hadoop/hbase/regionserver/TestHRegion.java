@@ -27,6 +27,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
@@ -58,9 +59,12 @@ import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -122,6 +126,7 @@ import org.apache.hadoop.hbase.filter.NullComparator;
 import org.apache.hadoop.hbase.filter.PrefixFilter;
 import org.apache.hadoop.hbase.filter.SingleColumnValueExcludeFilter;
 import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.io.hfile.HFile;
 import org.apache.hadoop.hbase.monitoring.MonitoredRPCHandler;
 import org.apache.hadoop.hbase.monitoring.MonitoredTask;
@@ -978,6 +983,62 @@ public class TestHRegion {
     }
   }
 
+  @Test
+  public void testParallelStoreFlush() throws Exception {
+    Configuration conf = new Configuration(CONF);
+    HTableDescriptor htd = new HTableDescriptor(tableName);
+    byte[][] families = new byte[8][];
+    for (int i = 0; i < families.length; i++) {
+      families[i] = Bytes.toBytes("family" + i);
+      htd.addFamily(new HColumnDescriptor(families[i]));
+    }
+    HRegionInfo hri = new HRegionInfo(tableName, null, null, false);
+    Path rootDir = TEST_UTIL.getDataTestDirOnTestFS(method);
+    WAL wal = HBaseTestingUtility.createWal(conf, rootDir, hri);
+    HRegion.createHRegion(hri, rootDir, conf, htd, wal).close();
+
+    // Fewer threads than stores, so that the flushing thread writes some of them itself
+    final ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+        new SynchronousQueue<Runnable>(), new ThreadPoolExecutor.CallerRunsPolicy());
+    final AtomicInteger submitted = new AtomicInteger();
+    RegionServerServices rss = mock(RegionServerServices.class);
+    when(rss.getServerName()).thenReturn(ServerName.valueOf("foo", 1, 1));
+    when(rss.getConfiguration()).thenReturn(conf);
+    when(rss.getRegionServerAccounting()).thenReturn(new RegionServerAccounting(conf));
+    when(rss.getStoreFlushExecutor()).thenReturn(new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        submitted.incrementAndGet();
+        pool.execute(command);
+      }
+    });
+    this.region = HRegion.openHRegion(rootDir, hri, htd, wal, conf, rss, null);
+    try {
+      for (int i = 0; i < 10; i++) {
+        Put put = new Put(Bytes.toBytes("row" + i));
+        for (byte[] family : families) {
+          put.addColumn(family, qual1, value1);
+        }
+        region.put(put);
+      }
+      HRegion.FlushResult result = region.flush(true);
+      assertTrue(result.isFlushSucceeded());
+      assertEquals(families.length, submitted.get());
+      assertEquals(0, region.getMemstoreSize());
+      for (byte[] family : families) {
+        Store store = region.getStore(family);
+        assertEquals(1, store.getStorefilesCount());
+        assertEquals(0, store.getSizeOfMemStore().getDataSize());
+      }
+      Result r = region.get(new Get(Bytes.toBytes("row3")));
+      assertEquals(families.length, r.size());
+    } finally {
+      HBaseTestingUtility.closeRegionAndWAL(this.region);
+      this.region = null;
+      pool.shutdown();
+    }
+  }
+
   @Test
   public void testFlushMarkers() throws Exception {
     // tests that flush markers are written to WAL and handled at recovered edits
@@ -5758,6 +5819,147 @@ public class TestHRegion {
     }
   }
 
+  /**
+   * The cells of an internal get must stay valid once it closed its scanner, even when their
+   * block was unpacked into a pooled buffer that the next get on the same thread reuses.
+   */
+  @Test
+  public void testGetResultsSurviveNextGetWithCompressedBlockCache() throws IOException {
+    HTableDescriptor htd = new HTableDescriptor(TableName.valueOf(name.getMethodName()));
+    HColumnDescriptor hcd = new HColumnDescriptor(fam1);
+    hcd.setCompressionType(Compression.Algorithm.GZ);
+    hcd.setCacheDataCompressed(true);
+    hcd.setBlocksize(1024);
+    htd.addFamily(hcd);
+    this.region = TEST_UTIL.createLocalHRegion(htd, null, null);
+    try {
+      assertTrue(region.getStore(fam1).getCacheConfig().shouldCacheDataCompressed());
+      byte[] qual = Bytes.toBytes("q");
+      // The first row has a block to itself, larger than the others, so that the pooled
+      // buffer it was unpacked into is big enough to be reused for any other block
+      byte[] bigValue = new byte[4096];
+      Arrays.fill(bigValue, (byte) 'x');
+      region.put(new Put(Bytes.toBytes("row000")).addColumn(fam1, qual, bigValue));
+      for (int i = 1; i < 100; i++) {
+        byte[] row = Bytes.toBytes(String.format("row%03d", i));
+        region.put(new Put(row).addColumn(fam1, qual, Bytes.toBytes("value" + i)));
+      }
+      region.flush(true);
+
+      List<Cell> first = region.get(new Get(Bytes.toBytes("row000")), false);
+      List<Cell> last = region.get(new Get(Bytes.toBytes("row099")), false);
+      assertEquals(1, first.size());
+      assertArrayEquals(Bytes.toBytes("row000"), CellUtil.cloneRow(first.get(0)));
+      assertArrayEquals(bigValue, CellUtil.cloneValue(first.get(0)));
+      assertEquals(1, last.size());
+      assertArrayEquals(Bytes.toBytes("row099"), CellUtil.cloneRow(last.get(0)));
+      assertArrayEquals(Bytes.toBytes("value99"), CellUtil.cloneValue(last.get(0)));
+    } finally {
+      HBaseTestingUtility.closeRegionAndWAL(this.region);
+      this.region = null;
+    }
+  }
+
+  @Test
+  public void testScanResultsSurviveBufferReuseWithCompressedBlockCache() throws IOException {
+    HTableDescriptor htd = new HTableDescriptor(TableName.valueOf(name.getMethodName()));
+    HColumnDescriptor hcd = new HColumnDescriptor(fam1);
+    hcd.setCompressionType(Compression.Algorithm.GZ);
+    hcd.setCacheDataCompressed(true);
+    hcd.setBlocksize(1024);
+    htd.addFamily(hcd);
+    this.region = TEST_UTIL.createLocalHRegion(htd, null, null);
+    try {
+      byte[] qual = Bytes.toBytes("q");
+      byte[] bigValue = new byte[4096];
+      Arrays.fill(bigValue, (byte) 'x');
+      region.put(new Put(Bytes.toBytes("row000")).addColumn(fam1, qual, bigValue));
+      for (int i = 1; i < 100; i++) {
+        byte[] row = Bytes.toBytes(String.format("row%03d", i));
+        region.put(new Put(row).addColumn(fam1, qual, Bytes.toBytes("value" + i)));
+      }
+      region.flush(true);
+
+      // Hold on to the cells of a scan that is shipped and closed, then make the following scans
+      // unpack their blocks into the buffers it gave back
+      List<Cell> first = new ArrayList<Cell>();
+      RegionScanner scanner = region.getScanner(new Scan(new Get(Bytes.toBytes("row000"))));
+      scanner.next(first);
+      scanner.shipped();
+      scanner.close();
+      for (int i = 99; i > 0; i -= 10) {
+        List<Cell> other = new ArrayList<Cell>();
+        scanner = region.getScanner(new Scan(new Get(Bytes.toBytes(String.format("row%03d", i)))));
+        scanner.next(other);
+        scanner.close();
+        assertEquals(1, other.size());
+        assertArrayEquals(Bytes.toBytes("value" + i), CellUtil.cloneValue(other.get(0)));
+      }
+      assertEquals(1, first.size());
+      assertArrayEquals(Bytes.toBytes("row000"), CellUtil.cloneRow(first.get(0)));
+      assertArrayEquals(bigValue, CellUtil.cloneValue(first.get(0)));
+    } finally {
+      HBaseTestingUtility.closeRegionAndWAL(this.region);
+      this.region = null;
+    }
+  }
+
+  /**
+   * A region that the WAL grouping strategy moved to another group switches WAL on its next
+   * flush of all stores. The old WAL lets go of the region, the new one takes its new edits.
+   */
+  @Test
+  public void testSwitchWALOnFullFlush() throws Exception {
+    final ServerName serverName = ServerName.valueOf(name.getMethodName(), 100, 42);
+    final RegionServerServices rss = spy(TEST_UTIL.createMockRegionServerService(serverName));
+    FileSystem fs = FileSystem.get(CONF);
+    Path walRootDir = new Path(dir + name.getMethodName());
+    FSHLog oldWAL = new FSHLog(fs, walRootDir, name.getMethodName() + "-old", CONF);
+    FSHLog newWAL = new FSHLog(fs, walRootDir, name.getMethodName() + "-new", CONF);
+
+    HTableDescriptor htd = new HTableDescriptor(TableName.valueOf(name.getMethodName()));
+    htd.addFamily(new HColumnDescriptor(fam1));
+    htd.addFamily(new HColumnDescriptor(fam2));
+    HRegionInfo hri = new HRegionInfo(htd.getTableName(),
+      HConstants.EMPTY_BYTE_ARRAY, HConstants.EMPTY_BYTE_ARRAY);
+    byte[] encodedName = hri.getEncodedNameAsBytes();
+    HBaseTestingUtility.closeRegionAndWAL(HBaseTestingUtility.createRegionAndWAL(hri,
+      TEST_UTIL.getDataTestDir(), TEST_UTIL.getConfiguration(), htd));
+
+    when(rss.getWAL((HRegionInfo) any())).thenReturn(oldWAL);
+    HRegion region = HRegion.openHRegion(hri, htd, oldWAL, TEST_UTIL.getConfiguration(), rss,
+      null);
+    try {
+      region.put(new Put(Bytes.toBytes("a")).addColumn(fam1, fam1, fam1));
+      long firstSeqId = oldWAL.getEarliestMemstoreSeqNum(encodedName);
+      assertTrue(firstSeqId != HConstants.NO_SEQNUM);
+
+      // Not regrouped: a flush leaves the region where it is
+      region.flush(true);
+      assertSame(oldWAL, region.getWAL());
+      region.put(new Put(Bytes.toBytes("b")).addColumn(fam1, fam1, fam1));
+
+      // Regrouped: the flush completes on the old WAL, which lets go of the region
+      when(rss.getWAL((HRegionInfo) any())).thenReturn(newWAL);
+      region.flush(true);
+      assertSame(newWAL, region.getWAL());
+      assertEquals(HConstants.NO_SEQNUM, oldWAL.getEarliestMemstoreSeqNum(encodedName));
+      assertEquals(HConstants.NO_SEQNUM, newWAL.getEarliestMemstoreSeqNum(encodedName));
+      long flushedSeqId = region.getMaxFlushedSeqId();
+
+      // New edits go to the new WAL only, with sequence ids after the flushed ones
+      region.put(new Put(Bytes.toBytes("c")).addColumn(fam2, fam2, fam2));
+      assertEquals(HConstants.NO_SEQNUM, oldWAL.getEarliestMemstoreSeqNum(encodedName));
+      assertTrue(newWAL.getEarliestMemstoreSeqNum(encodedName) > flushedSeqId);
+      region.flush(true);
+      assertEquals(HConstants.NO_SEQNUM, newWAL.getEarliestMemstoreSeqNum(encodedName));
+      assertSame(newWAL, region.getWAL());
+    } finally {
+      HBaseTestingUtility.closeRegionAndWAL(region);
+      oldWAL.close();
+    }
+  }
+
   // Helper for test testOpenRegionWrittenToWALForLogReplay
   static class HRegionWithSeqId extends HRegion {
     public HRegionWithSeqId(final Path tableDir, final WAL wal, final FileSystem fs,
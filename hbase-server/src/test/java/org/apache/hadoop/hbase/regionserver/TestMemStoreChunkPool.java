@@ -38,6 +38,8 @@ import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -257,4 +259,72 @@ public class TestMemStoreChunkPool {
       MemStoreChunkPool.GLOBAL_INSTANCE = oldPool;
     }
   }
+
+  @Test
+  public void testStripedPoolWithOffheapArena() throws Exception {
+    final int maxCount = 10;
+    final int initialCount = 2;
+    final int chunkSize = 64;
+    // Each arena holds 4 chunks
+    MemStoreChunkPool pool = new MemStoreChunkPool(chunkSize, maxCount, initialCount, 1, true, 4,
+        4 * chunkSize);
+    assertEquals(initialCount, pool.getPoolSize());
+    assertEquals(initialCount, pool.getCreatedChunkCount());
+    // Two pooled chunks, then maxCount - initialCount new ones, then nothing
+    BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+    Chunk chunk;
+    while ((chunk = pool.getChunk()) != null) {
+      chunk.init();
+      assertTrue(chunk.getData().isDirect());
+      assertEquals(chunkSize, chunk.getData().capacity());
+      chunks.add(chunk);
+    }
+    assertEquals(maxCount, chunks.size());
+    assertEquals(initialCount, pool.getHitCount());
+    assertEquals(maxCount - initialCount + 1, pool.getMissCount());
+    assertEquals(maxCount, pool.getCreatedChunkCount());
+    assertEquals(0, pool.getPoolSize());
+
+    // Every chunk is put back, and can be taken again from any thread
+    pool.putbackChunks(chunks);
+    assertEquals(maxCount, pool.getPoolSize());
+    assertEquals(0, pool.getDiscardedChunkCount());
+    Thread t = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < maxCount; i++) {
+          assertTrue(pool.getChunk() != null);
+        }
+      }
+    });
+    t.start();
+    t.join();
+    assertEquals(0, pool.getPoolSize());
+    assertEquals(maxCount + initialCount, pool.getHitCount());
+
+    // The pool never holds more than maxCount chunks
+    for (int i = 0; i < maxCount + 3; i++) {
+      pool.putbackChunk(new OffheapChunk(chunkSize));
+    }
+    assertEquals(maxCount, pool.getPoolSize());
+    assertEquals(3, pool.getDiscardedChunkCount());
+  }
+
+  @Test
+  public void testWastedChunkBytes() {
+    MemStoreLABImpl mslab = new MemStoreLABImpl(conf);
+    long wastedBefore = MemStoreLABImpl.getWastedChunkBytes();
+    byte[] rk = Bytes.toBytes("r");
+    KeyValue kv = new KeyValue(rk, rk, rk, new byte[100 * 1024]);
+    mslab.copyCellInto(kv);
+    Chunk first = mslab.getCurrentChunk();
+    // Copy until the first chunk is full and gets retired
+    int usedInFirst;
+    do {
+      usedInFirst = first.getNextFreeOffset();
+      mslab.copyCellInto(kv);
+    } while (mslab.getCurrentChunk() == first);
+    assertEquals(first.size - usedInFirst, MemStoreLABImpl.getWastedChunkBytes() - wastedBefore);
+    mslab.close();
+  }
 }
@@ -0,0 +1,120 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.regionserver.MemStoreFlusher.FlushQueueEntry;
+import org.apache.hadoop.hbase.regionserver.MemStoreFlusher.FlushRegionEntry;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Test the per priority flush queues of {@link MemStoreFlusher}
+ */
+@Category({RegionServerTests.class, SmallTests.class})
+public class TestMemStoreFlusherQueues {
+  @Rule
+  public TestName name = new TestName();
+
+  private MemStoreFlusher flusher;
+
+  @Before
+  public void setUp() {
+    Configuration conf = HBaseConfiguration.create();
+    HRegionServer server = mock(HRegionServer.class);
+    doReturn(mock(RegionServerAccounting.class)).when(server).getRegionServerAccounting();
+    flusher = new MemStoreFlusher(conf, server);
+  }
+
+  private Region mockRegion(int id) {
+    HRegionInfo hri = new HRegionInfo(id, TableName.valueOf(name.getMethodName()), 0);
+    HRegion r = mock(HRegion.class);
+    doReturn(hri).when(r).getRegionInfo();
+    return r;
+  }
+
+  @Test
+  public void testWeightedRoundRobin() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      flusher.requestFlush(mockRegion(i), false, FlushPriority.PERIODIC);
+      flusher.requestFlush(mockRegion(100 + i), false, FlushPriority.BLOCKING);
+    }
+    assertEquals(40, flusher.getFlushQueueSize());
+    // With both queues busy, blocking requests get 16 of every 17 polls
+    Map<FlushPriority, Integer> polled = new HashMap<FlushPriority, Integer>();
+    for (int i = 0; i < 17; i++) {
+      FlushRegionEntry fre = (FlushRegionEntry) flusher.pollFlushQueues(0);
+      Integer count = polled.get(fre.getPriority());
+      polled.put(fre.getPriority(), count == null ? 1 : count + 1);
+    }
+    assertEquals(16, polled.get(FlushPriority.BLOCKING).intValue());
+    assertEquals(1, polled.get(FlushPriority.PERIODIC).intValue());
+    // Once the blocking queue is drained, the periodic queue gets every poll
+    for (int i = 0; i < 4; i++) {
+      assertEquals(FlushPriority.BLOCKING,
+          ((FlushRegionEntry) flusher.pollFlushQueues(0)).getPriority());
+    }
+    for (int i = 0; i < 19; i++) {
+      assertEquals(FlushPriority.PERIODIC,
+          ((FlushRegionEntry) flusher.pollFlushQueues(0)).getPriority());
+    }
+    assertNull(flusher.pollFlushQueues(0));
+  }
+
+  @Test
+  public void testPromoteQueuedRequest() throws Exception {
+    Region region = mockRegion(1);
+    flusher.requestDelayedFlush(region, 60 * 60 * 1000, false);
+    assertEquals(1, flusher.getFlushQueueSize());
+    // Delayed, so nothing is ready yet
+    assertNull(flusher.pollFlushQueues(0));
+
+    // A less urgent request is folded into the queued one
+    flusher.requestFlush(region, false, FlushPriority.PERIODIC);
+    assertEquals(1, flusher.getFlushQueueSize());
+    assertNull(flusher.pollFlushQueues(0));
+
+    // A more urgent one moves it up and makes it ready now
+    flusher.requestFlush(region, true, FlushPriority.BLOCKING);
+    assertEquals(1, flusher.getFlushQueueSize());
+    FlushQueueEntry fqe = flusher.pollFlushQueues(0);
+    assertTrue(fqe instanceof FlushRegionEntry);
+    FlushRegionEntry fre = (FlushRegionEntry) fqe;
+    assertEquals(FlushPriority.BLOCKING, fre.getPriority());
+    assertTrue(fre.isForceFlushAllStores());
+    assertEquals(0, flusher.getFlushQueueSize());
+  }
+}
@@ -48,5 +48,11 @@ public class TestMetricsTableAggregate {
     HELPER.assertGauge("Namespace_default_table_testTableMetrics_metric_memstoreSize", 1000, agg);
     HELPER.assertGauge("Namespace_default_table_testTableMetrics_metric_storeFileSize", 2000, agg);
     HELPER.assertGauge("Namespace_default_table_testTableMetrics_metric_tableSize", 3000, agg);
+
+    HELPER.assertCounter("Namespace_default_table_testTableMetrics_metric_walAppendBytes", 4096,
+      agg);
+    HELPER.assertCounter("Namespace_default_table_testTableMetrics_metric_walAppendCount", 64, agg);
+    HELPER.assertGauge(
+      "Namespace_default_table_testTableMetrics_metric_walSyncWaitTime99thPercentile", 900, agg);
   }
 }
\ No newline at end of file
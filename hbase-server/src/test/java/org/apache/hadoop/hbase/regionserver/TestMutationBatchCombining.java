@@ -0,0 +1,243 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants.OperationStatusCode;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.Waiter;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.regionserver.Region.RowLock;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Tests that concurrent batchMutate calls written together by the region's mini-batch combiner
+ * each get their own per-operation results back.
+ * <p>
+ * To make sure batches are combined, each test first writes a batch to a gate row whose lock
+ * the test holds. The leader writing it keeps the combine lock until the gate is opened, so the
+ * batches queued meanwhile are all taken by the next leader.
+ */
+@Category({RegionServerTests.class, MediumTests.class})
+public class TestMutationBatchCombining {
+  @Rule public TestName name = new TestName();
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int NUM_THREADS = 10;
+  private static final int BATCHES_PER_THREAD = 100;
+  private static final int PUTS_PER_BATCH = 5;
+  private static final byte[] GATE = Bytes.toBytes("gate");
+
+  private HBaseTestingUtility testUtil;
+  private HRegion region;
+  private ExecutorService gateExecutor;
+  private RowLock gateLock;
+  private Future<OperationStatus[]> gateFuture;
+
+  @Before
+  public void setUp() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setBoolean(HRegion.HREGION_BATCH_COMBINE, true);
+    testUtil = HBaseTestingUtility.createLocalHTU(conf);
+    HTableDescriptor htd = new HTableDescriptor(TableName.valueOf(name.getMethodName()));
+    htd.addFamily(new HColumnDescriptor(FAMILY));
+    HRegionInfo info = new HRegionInfo(htd.getTableName(), null, null, false);
+    region = testUtil.createLocalHRegion(info, htd);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (gateExecutor != null) {
+      gateExecutor.shutdownNow();
+    }
+    if (region != null) {
+      HBaseTestingUtility.closeRegionAndWAL(region);
+    }
+  }
+
+  private static byte[] row(int thread, int batch, int put) {
+    return Bytes.toBytes(String.format("row-%02d-%04d-%02d", thread, batch, put));
+  }
+
+  /**
+   * Starts writing a batch to the gate row and returns once its leader waits on the row lock,
+   * holding the combine lock.
+   */
+  private void closeGate() throws Exception {
+    gateLock = region.getRowLock(GATE, false);
+    gateExecutor = Executors.newSingleThreadExecutor();
+    final Thread[] gateThread = new Thread[1];
+    gateFuture = gateExecutor.submit(new Callable<OperationStatus[]>() {
+      @Override
+      public OperationStatus[] call() throws Exception {
+        synchronized (gateThread) {
+          gateThread[0] = Thread.currentThread();
+        }
+        return region.batchMutate(
+            new Mutation[] { new Put(GATE).addColumn(FAMILY, QUALIFIER, GATE) });
+      }
+    });
+    testUtil.waitFor(10000, new Waiter.Predicate<Exception>() {
+      @Override
+      public boolean evaluate() throws Exception {
+        synchronized (gateThread) {
+          return gateThread[0] != null
+              && gateThread[0].getState() == Thread.State.TIMED_WAITING;
+        }
+      }
+    });
+  }
+
+  /**
+   * Waits for <code>numBatches</code> batches to queue up behind the gate, then lets the gate
+   * batch through.
+   */
+  private void openGate(final int numBatches) throws Exception {
+    testUtil.waitFor(10000, new Waiter.Predicate<Exception>() {
+      @Override
+      public boolean evaluate() throws Exception {
+        return region.getPendingCombineCount() == numBatches;
+      }
+    });
+    gateLock.release();
+    assertEquals(OperationStatusCode.SUCCESS, gateFuture.get()[0].getOperationStatusCode());
+  }
+
+  @Test
+  public void testConcurrentBatches() throws Exception {
+    closeGate();
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int t = 0; t < NUM_THREADS; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int b = 0; b < BATCHES_PER_THREAD; b++) {
+              Mutation[] puts = new Mutation[PUTS_PER_BATCH];
+              for (int p = 0; p < PUTS_PER_BATCH; p++) {
+                byte[] row = row(thread, b, p);
+                puts[p] = new Put(row).addColumn(FAMILY, QUALIFIER, row);
+              }
+              OperationStatus[] statuses = region.batchMutate(puts);
+              assertEquals(PUTS_PER_BATCH, statuses.length);
+              for (OperationStatus status : statuses) {
+                assertEquals(OperationStatusCode.SUCCESS, status.getOperationStatusCode());
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      // The first batch of every thread queues behind the gate
+      openGate(NUM_THREADS);
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    long batches = region.getCombinedBatchCount();
+    assertEquals(NUM_THREADS * BATCHES_PER_THREAD + 1, batches);
+    // At least the batches queued behind the gate shared a mini-batch
+    assertTrue(region.getCombinedMiniBatchCount() <= batches - NUM_THREADS + 1);
+    for (int t = 0; t < NUM_THREADS; t++) {
+      for (int b = 0; b < BATCHES_PER_THREAD; b++) {
+        for (int p = 0; p < PUTS_PER_BATCH; p++) {
+          byte[] row = row(t, b, p);
+          Result result = region.get(new Get(row));
+          assertFalse(result.isEmpty());
+          assertArrayEquals(row, result.getValue(FAMILY, QUALIFIER));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testPerOperationStatuses() throws Exception {
+    final byte[] badFamily = Bytes.toBytes("nosuchfamily");
+    closeGate();
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+    try {
+      List<Future<OperationStatus[]>> futures = new ArrayList<Future<OperationStatus[]>>();
+      for (int t = 0; t < NUM_THREADS; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<OperationStatus[]>() {
+          @Override
+          public OperationStatus[] call() throws Exception {
+            // Odd threads put a bad family in the middle of their batch
+            Mutation[] puts = new Mutation[PUTS_PER_BATCH];
+            for (int p = 0; p < PUTS_PER_BATCH; p++) {
+              byte[] row = row(thread, 0, p);
+              byte[] family = thread % 2 == 1 && p == PUTS_PER_BATCH / 2 ? badFamily : FAMILY;
+              puts[p] = new Put(row).addColumn(family, QUALIFIER, row);
+            }
+            return region.batchMutate(puts);
+          }
+        }));
+      }
+      openGate(NUM_THREADS);
+      for (int t = 0; t < NUM_THREADS; t++) {
+        OperationStatus[] statuses = futures.get(t).get();
+        assertEquals(PUTS_PER_BATCH, statuses.length);
+        for (int p = 0; p < PUTS_PER_BATCH; p++) {
+          boolean bad = t % 2 == 1 && p == PUTS_PER_BATCH / 2;
+          assertEquals(bad ? OperationStatusCode.BAD_FAMILY : OperationStatusCode.SUCCESS,
+              statuses[p].getOperationStatusCode());
+          assertEquals(!bad, !region.get(new Get(row(t, 0, p))).isEmpty());
+        }
+      }
+      // The gate batch, then all the others in a single mini-batch
+      assertEquals(NUM_THREADS + 1, region.getCombinedBatchCount());
+      assertEquals(2, region.getCombinedMiniBatchCount());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
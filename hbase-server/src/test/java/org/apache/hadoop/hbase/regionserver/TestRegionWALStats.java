@@ -0,0 +1,77 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.util.ManualEnvironmentEdge;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({RegionServerTests.class, SmallTests.class})
+public class TestRegionWALStats {
+
+  private ManualEnvironmentEdge edge;
+
+  @Before
+  public void setUp() {
+    edge = new ManualEnvironmentEdge();
+    edge.setValue(1000);
+    EnvironmentEdgeManager.injectEdge(edge);
+  }
+
+  @After
+  public void tearDown() {
+    EnvironmentEdgeManager.reset();
+  }
+
+  @Test
+  public void testAppends() {
+    RegionWALStats stats = new RegionWALStats();
+    stats.appended(100);
+    stats.appended(250);
+    assertEquals(350, stats.getAppendBytes());
+    assertEquals(2, stats.getAppendCount());
+  }
+
+  @Test
+  public void testSyncWaitReportsLastFinishedWindow() {
+    RegionWALStats stats = new RegionWALStats();
+    for (int i = 1; i <= 100; i++) {
+      stats.synced(i * 10);
+    }
+    // Nothing reported until the window is over
+    assertEquals(0, stats.getSyncWait99th());
+    edge.incValue(60 * 1000);
+    long p99 = stats.getSyncWait99th();
+    assertTrue("p99=" + p99, p99 >= 900 && p99 <= 1000);
+    long mean = stats.getSyncWaitMean();
+    assertTrue("mean=" + mean, mean >= 450 && mean <= 560);
+    // And an idle window reports no waits
+    edge.incValue(60 * 1000);
+    assertEquals(0, stats.getSyncWait99th());
+    assertEquals(0, stats.getSyncWaitMean());
+  }
+}
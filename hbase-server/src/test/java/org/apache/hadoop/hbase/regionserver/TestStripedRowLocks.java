@@ -0,0 +1,197 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.regionserver.Region.RowLock;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Tests the region's row lock slots and their fallback to the lock map.
+ */
+@Category({RegionServerTests.class, MediumTests.class})
+public class TestStripedRowLocks {
+  @Rule public TestName name = new TestName();
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] ROW_A = Bytes.toBytes("a");
+  private static final byte[] ROW_B = Bytes.toBytes("b");
+
+  private HRegion region;
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      HBaseTestingUtility.closeRegionAndWAL(region);
+    }
+  }
+
+  private HRegion createRegion(int slots) throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(StripedRowLocks.ROW_LOCK_SLOTS_KEY, slots);
+    HBaseTestingUtility testUtil = HBaseTestingUtility.createLocalHTU(conf);
+    HTableDescriptor htd = new HTableDescriptor(TableName.valueOf(name.getMethodName()));
+    htd.addFamily(new HColumnDescriptor(FAMILY));
+    HRegionInfo info = new HRegionInfo(htd.getTableName(), null, null, false);
+    return testUtil.createLocalHRegion(info, htd);
+  }
+
+  private void assertNoLocks() {
+    assertEquals(0, region.getLockedRows().size());
+    assertEquals(0, region.getStripedRowLocks().getHeldSlots().size());
+  }
+
+  @Test
+  public void testSharedSlot() throws IOException {
+    region = createRegion(16);
+    RowLock first = region.getRowLock(ROW_A, true);
+    RowLock second = region.getRowLock(Bytes.copy(ROW_A), true);
+    assertEquals(1, region.getStripedRowLocks().getHeldSlots().size());
+    assertEquals(0, region.getLockedRows().size());
+    first.release();
+    assertEquals(1, region.getStripedRowLocks().getHeldSlots().size());
+    second.release();
+    assertNoLocks();
+    assertEquals(0, region.getStripedRowLocks().getSlotCollisions());
+  }
+
+  @Test
+  public void testCollisionFallsBackToMap() throws IOException {
+    region = createRegion(1);
+    RowLock lockA = region.getRowLock(ROW_A, false);
+    RowLock lockB = region.getRowLock(ROW_B, false);
+    assertEquals(1, region.getStripedRowLocks().getHeldSlots().size());
+    assertEquals(1, region.getLockedRows().size());
+    assertEquals(1, region.getStripedRowLocks().getSlotCollisions());
+    lockA.release();
+    // ROW_B still holds the lock through the map, so ROW_B must not get the free slot
+    RowLock lockB2 = region.getRowLock(ROW_B, false);
+    assertEquals(0, region.getStripedRowLocks().getHeldSlots().size());
+    lockB2.release();
+    lockB.release();
+    assertNoLocks();
+    // the slot is free again and can be claimed
+    region.getRowLock(ROW_B, false).release();
+    assertEquals(2, region.getStripedRowLocks().getSlotCollisions());
+    assertNoLocks();
+  }
+
+  @Test
+  public void testDisabledSlots() throws IOException {
+    region = createRegion(0);
+    RowLock lock = region.getRowLock(ROW_A, false);
+    assertEquals(1, region.getLockedRows().size());
+    lock.release();
+    assertNoLocks();
+    assertEquals(0, region.getStripedRowLocks().getSlotCollisions());
+  }
+
+  @Test
+  public void testContendedAcquisition() throws Exception {
+    region = createRegion(16);
+    RowLock writeLock = region.getRowLock(ROW_A, false);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Void> reader = executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          region.getRowLock(ROW_A, true).release();
+          return null;
+        }
+      });
+      while (region.getStripedRowLocks().getContendedAcquisitions() == 0) {
+        Thread.sleep(10);
+      }
+      writeLock.release();
+      reader.get();
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, region.getStripedRowLocks().getContendedAcquisitions());
+    assertNoLocks();
+  }
+
+  @Test
+  public void testMutualExclusionWithCollisions() throws Exception {
+    // a single slot makes every row but one go through the fallback map
+    region = createRegion(1);
+    final int numRows = 4;
+    final int numThreads = 8;
+    final int iterations = 2000;
+    final long[] counters = new long[numRows];
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int t = 0; t < numThreads; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = 0; i < iterations; i++) {
+              int r = (thread + i) % numRows;
+              RowLock lock = region.getRowLock(Bytes.toBytes("row" + r), false);
+              try {
+                counters[r]++;
+              } finally {
+                lock.release();
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    long total = 0;
+    for (long counter : counters) {
+      total += counter;
+    }
+    assertEquals((long) numThreads * iterations, total);
+    assertTrue(region.getStripedRowLocks().getSlotCollisions() > 0);
+    assertNoLocks();
+  }
+}
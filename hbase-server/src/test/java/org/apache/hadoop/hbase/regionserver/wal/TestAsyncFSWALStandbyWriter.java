@@ -0,0 +1,291 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.regionserver.MultiVersionConcurrencyControl;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.FSUtils;
+import org.apache.hadoop.hbase.util.Threads;
+import org.apache.hadoop.hbase.wal.WAL;
+import org.apache.hadoop.hbase.wal.WALKey;
+import org.apache.hadoop.hbase.wal.WALProvider.AsyncWriter;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Tests the switch of {@link AsyncFSWAL} to its standby writer when a sync stalls.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestAsyncFSWALStandbyWriter {
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+
+  private static EventLoopGroup GROUP;
+
+  private static Configuration CONF;
+
+  private static FileSystem FS;
+
+  @Rule
+  public final TestName name = new TestName();
+
+  /**
+   * Records the sequence ids appended to it and how many of them were covered by a completed sync.
+   * Once stalled, its syncs are only completed when the test acks them.
+   */
+  private static final class StallableWriter implements AsyncWriter {
+
+    final Path path;
+
+    final AsyncWriter delegate;
+
+    final List<Long> appended = Collections.synchronizedList(new ArrayList<Long>());
+
+    final List<CompletableFuture<Long>> stalledSyncs =
+        Collections.synchronizedList(new ArrayList<CompletableFuture<Long>>());
+
+    volatile int acked;
+
+    volatile boolean stalled;
+
+    StallableWriter(Path path, AsyncWriter delegate) {
+      this.path = path;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void append(WAL.Entry entry) {
+      appended.add(entry.getKey().getSequenceId());
+      delegate.append(entry);
+    }
+
+    @Override
+    public CompletableFuture<Long> sync() {
+      final int count = appended.size();
+      if (stalled) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        stalledSyncs.add(future);
+        return future;
+      }
+      return delegate.sync().thenApply(length -> {
+        acked = Math.max(acked, count);
+        return length;
+      });
+    }
+
+    @Override
+    public long getLength() {
+      return delegate.getLength();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+
+  private final List<StallableWriter> writers =
+      Collections.synchronizedList(new ArrayList<StallableWriter>());
+
+  private final CountDownLatch rollRequested = new CountDownLatch(1);
+
+  private final AtomicInteger postSyncs = new AtomicInteger();
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    GROUP = new NioEventLoopGroup(1, Threads.newDaemonThreadFactory("TestAsyncFSWALStandbyWriter"));
+    CONF = TEST_UTIL.getConfiguration();
+    CONF.setBoolean(AsyncFSWAL.ASYNC_WAL_USE_STANDBY_WRITER, true);
+    // learn the sync latency from a few syncs, and give up on a sync after 200 ms
+    CONF.setInt(SlowSyncDetector.WINDOW_SIZE_KEY, 4);
+    CONF.setDouble(SlowSyncDetector.PERCENTILE_KEY, 50);
+    CONF.setLong(SlowSyncDetector.MIN_THRESHOLD_KEY, 200);
+    TEST_UTIL.startMiniDFSCluster(3);
+    FS = TEST_UTIL.getDFSCluster().getFileSystem();
+  }
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    TEST_UTIL.shutdownMiniDFSCluster();
+    GROUP.shutdownGracefully();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    for (FileStatus dir : FS.listStatus(new Path("/"))) {
+      FS.delete(dir.getPath(), true);
+    }
+    TEST_UTIL.createRootDir();
+    TEST_UTIL.createWALRootDir();
+  }
+
+  private AsyncFSWAL createWAL() throws IOException {
+    WALActionsListener listener = new WALActionsListener.Base() {
+
+      @Override
+      public void logRollRequested(boolean tooFewReplicas) {
+        rollRequested.countDown();
+      }
+
+      @Override
+      public void postSync(long timeInNanos, int handlerSyncs) {
+        postSyncs.incrementAndGet();
+      }
+    };
+    return new AsyncFSWAL(FS, FSUtils.getWALRootDir(CONF), name.getMethodName(),
+        HConstants.HREGION_OLDLOGDIR_NAME, CONF, Collections.singletonList(listener), true, null,
+        null, GROUP.next()) {
+
+      @Override
+      protected AsyncWriter createWriterInstance(Path path) throws IOException {
+        AsyncWriter writer = super.createWriterInstance(path);
+        if (writer instanceof StallableWriter) {
+          // the standby writer, wrapped when it was opened
+          return writer;
+        }
+        StallableWriter stallable = new StallableWriter(path, writer);
+        writers.add(stallable);
+        return stallable;
+      }
+    };
+  }
+
+  private static long append(WAL wal, HRegionInfo hri, HTableDescriptor htd,
+      MultiVersionConcurrencyControl mvcc, NavigableMap<byte[], Integer> scopes)
+      throws IOException {
+    byte[] row = Bytes.toBytes("row");
+    long timestamp = System.currentTimeMillis();
+    WALEdit edit = new WALEdit();
+    edit.add(new KeyValue(row, FAMILY, row, timestamp, row));
+    WALKey key = new WALKey(hri.getEncodedNameAsBytes(), htd.getTableName(),
+        WALKey.NO_SEQUENCE_ID, timestamp, WALKey.EMPTY_UUIDS, HConstants.NO_NONCE,
+        HConstants.NO_NONCE, mvcc, scopes);
+    return wal.append(hri, key, edit, true);
+  }
+
+  @Test
+  public void testSwitchToStandbyWriter() throws Exception {
+    HTableDescriptor htd = new HTableDescriptor(TableName.valueOf(name.getMethodName()));
+    htd.addFamily(new HColumnDescriptor(FAMILY));
+    HRegionInfo hri = new HRegionInfo(htd.getTableName());
+    NavigableMap<byte[], Integer> scopes = new TreeMap<byte[], Integer>(Bytes.BYTES_COMPARATOR);
+    scopes.put(FAMILY, 0);
+    MultiVersionConcurrencyControl mvcc = new MultiVersionConcurrencyControl();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    final AsyncFSWAL wal = createWAL();
+    try {
+      // the first roll opened both the active writer and the standby
+      assertEquals(2, writers.size());
+      StallableWriter active = writers.get(0);
+      StallableWriter standby = writers.get(1);
+      assertEquals(active.path, wal.getCurrentFileName());
+
+      // fill the latency window with healthy syncs
+      for (int i = 0; i < 8; i++) {
+        append(wal, hri, htd, mvcc, scopes);
+        wal.sync();
+      }
+      int ackedBeforeStall = active.acked;
+      assertEquals(active.appended.size(), ackedBeforeStall);
+
+      active.stalled = true;
+      for (int i = 0; i < 3; i++) {
+        append(wal, hri, htd, mvcc, scopes);
+      }
+      Future<?> sync = executor.submit(() -> {
+        wal.sync();
+        return null;
+      });
+      // the stalled sync marks the writer broken and asks for a roll, which takes the standby
+      assertTrue(rollRequested.await(30, TimeUnit.SECONDS));
+      assertFalse(sync.isDone());
+      wal.rollWriter();
+      sync.get(30, TimeUnit.SECONDS);
+      assertEquals(standby.path, wal.getCurrentFileName());
+      assertEquals(3, writers.size());
+
+      // the entries not acked by the stalled writer are rewritten to the standby, in order, and
+      // none of those it had acked
+      List<Long> unacked =
+          new ArrayList<Long>(active.appended.subList(ackedBeforeStall, active.appended.size()));
+      assertEquals(3, unacked.size());
+      assertEquals(unacked, standby.appended);
+      for (Long seqId : active.appended.subList(0, ackedBeforeStall)) {
+        assertFalse(standby.appended.contains(seqId));
+      }
+      assertEquals(standby.appended.size(), standby.acked);
+
+      // late acks from the abandoned writer change nothing
+      int postSyncsBeforeLateAck = postSyncs.get();
+      assertFalse(active.stalledSyncs.isEmpty());
+      for (CompletableFuture<Long> future : active.stalledSyncs) {
+        future.complete(active.getLength());
+      }
+      append(wal, hri, htd, mvcc, scopes);
+      wal.sync();
+      assertEquals(postSyncsBeforeLateAck + 1, postSyncs.get());
+      assertEquals(standby.path, wal.getCurrentFileName());
+      assertEquals(unacked.size() + 1, standby.appended.size());
+      assertEquals(ackedBeforeStall + unacked.size(), active.appended.size());
+    } finally {
+      executor.shutdownNow();
+      wal.close();
+    }
+  }
+}
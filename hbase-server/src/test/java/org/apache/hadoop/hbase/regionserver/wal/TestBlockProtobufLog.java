@@ -0,0 +1,199 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.wal.WAL;
+import org.apache.hadoop.hbase.wal.WAL.Entry;
+import org.apache.hadoop.hbase.wal.WALKey;
+import org.apache.hadoop.hbase.wal.WALProvider.Writer;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestBlockProtobufLog extends AbstractTestProtobufLog<Writer> {
+
+  private static final TableName TABLE = TableName.valueOf("blockwal");
+  private static final HRegionInfo HRI = new HRegionInfo(TABLE);
+
+  @Override
+  protected Writer createWriter(Path path) throws IOException {
+    Configuration conf = new Configuration(TEST_UTIL.getConfiguration());
+    conf.set(BlockProtobufLogWriter.WAL_BLOCK_COMPRESSION, Compression.Algorithm.GZ.getName());
+    conf.setInt(BlockProtobufLogWriter.WAL_BLOCK_SIZE, 1024);
+    BlockProtobufLogWriter writer = new BlockProtobufLogWriter();
+    writer.init(fs, path, conf, false);
+    return writer;
+  }
+
+  @Override
+  protected void append(Writer writer, Entry entry) throws IOException {
+    writer.append(entry);
+  }
+
+  @Override
+  protected void sync(Writer writer) throws IOException {
+    writer.sync();
+  }
+
+  private static Entry createEntry(int i) {
+    WALKey key = new WALKey(HRI.getEncodedNameAsBytes(), TABLE, i, System.currentTimeMillis(),
+        HConstants.DEFAULT_CLUSTER_ID);
+    WALEdit edit = new WALEdit();
+    byte[] row = Bytes.toBytes("row" + i);
+    // compressible values, several entries per block
+    edit.add(new KeyValue(row, row, row, new byte[200]));
+    return new WAL.Entry(key, edit);
+  }
+
+  @Test
+  public void testManyBlocksAndPositions() throws IOException {
+    Path path = new Path(dir, "manyblocks");
+    fs.mkdirs(dir);
+    int count = 100;
+    Writer writer = createWriter(path);
+    try {
+      for (int i = 0; i < count; i++) {
+        writer.append(createEntry(i));
+      }
+      writer.sync();
+      assertTrue("Blocks should be compressed", writer.getLength() < count * 200);
+    } finally {
+      writer.close();
+    }
+
+    long resumeAt = -1;
+    try (ProtobufLogReader reader = (ProtobufLogReader) wals.createReader(fs, path)) {
+      for (int i = 0; i < count; i++) {
+        Entry entry = reader.next();
+        assertNotNull(entry);
+        assertEquals(i, rowIndex(entry));
+        if (i == count / 2) {
+          resumeAt = reader.getPosition();
+        }
+      }
+      assertNull(reader.next());
+
+      // positions within a block point at its start, so resuming there replays the block
+      reader.seek(resumeAt);
+      Entry entry = reader.next();
+      assertNotNull(entry);
+      assertTrue(rowIndex(entry) > 0);
+      assertTrue(rowIndex(entry) <= count / 2 + 1);
+    }
+  }
+
+  private static int rowIndex(Entry entry) {
+    String row = Bytes.toString(CellUtil.cloneRow(entry.getEdit().getCells().get(0)));
+    return Integer.parseInt(row.substring("row".length()));
+  }
+
+  @Test
+  public void testIncompleteBlockIsSkipped() throws IOException {
+    Path path = new Path(dir, "incomplete");
+    fs.mkdirs(dir);
+    BlockProtobufLogWriter writer = (BlockProtobufLogWriter) createWriter(path);
+    for (int i = 0; i < 3; i++) {
+      writer.append(createEntry(i));
+    }
+    writer.sync();
+    // a block header whose body never made it to the file
+    FSDataOutputStream out = writer.getStream();
+    out.writeInt(1000);
+    out.writeInt(500);
+    out.writeInt(0);
+    out.write(new byte[100]);
+    out.hflush();
+
+    try (ProtobufLogReader reader = (ProtobufLogReader) wals.createReader(fs, path)) {
+      for (int i = 0; i < 3; i++) {
+        assertNotNull(reader.next());
+      }
+      long position = reader.getPosition();
+      assertNull(reader.next());
+      assertEquals(position, reader.getPosition());
+    } finally {
+      writer.close();
+    }
+  }
+
+  @Test
+  public void testCorruptBlockInTheMiddleIsNotEOF() throws IOException {
+    Path path = new Path(dir, "corrupt");
+    fs.mkdirs(dir);
+    Writer writer = createWriter(path);
+    long secondBlockStart;
+    try {
+      writer.append(createEntry(0));
+      writer.sync();
+      secondBlockStart = writer.getLength();
+      writer.append(createEntry(1));
+      writer.sync();
+      writer.append(createEntry(2));
+      writer.sync();
+    } finally {
+      writer.close();
+    }
+
+    // flip a byte in the body of the second block, which has a good block after it
+    byte[] content = new byte[(int) fs.getFileStatus(path).getLen()];
+    try (FSDataInputStream in = fs.open(path)) {
+      in.readFully(content);
+    }
+    int corruptAt = (int) secondBlockStart + BlockProtobufLogWriter.BLOCK_HEADER_SIZE + 1;
+    content[corruptAt] ^= 0xff;
+    try (FSDataOutputStream out = fs.create(path, true)) {
+      out.write(content);
+    }
+
+    try (ProtobufLogReader reader = (ProtobufLogReader) wals.createReader(fs, path)) {
+      assertEquals(0, rowIndex(reader.next()));
+      try {
+        reader.next();
+        fail("A corrupt block before the end of the file must not read as the end of it");
+      } catch (EOFException eof) {
+        fail("A corrupt block before the end of the file must not read as the end of it");
+      } catch (IOException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("checksum mismatch"));
+      }
+    }
+  }
+}
+
@@ -55,6 +55,15 @@ public class TestMetricsWAL {
     verify(source, times(1)).incrementSyncTime(145);
   }
 
+  @Test
+  public void testPostSyncBatch() throws Exception {
+    MetricsWALSource source = mock(MetricsWALSourceImpl.class);
+    MetricsWAL metricsWAL = new MetricsWAL(source);
+    metricsWAL.postSyncBatch(12, TimeUnit.MICROSECONDS.toNanos(350));
+    verify(source, times(1)).incrementSyncBatchSize(12);
+    verify(source, times(1)).incrementSyncBatchWaitTime(350);
+  }
+
   @Test
   public void testSlowAppend() throws Exception {
     MetricsWALSource source = new MetricsWALSourceImpl();
@@ -0,0 +1,309 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.wal.FSHLogProvider;
+import org.apache.hadoop.hbase.wal.WAL.Entry;
+import org.apache.hadoop.hbase.wal.WAL.Reader;
+import org.apache.hadoop.hbase.wal.WALKey;
+import org.apache.hadoop.hbase.wal.WALProvider.Writer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestParallelDecodingLogReader {
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+  private static final TableName TABLE = TableName.valueOf("paralleldecode");
+  private static final int ENTRIES = 1000;
+
+  @Rule
+  public final TestName name = new TestName();
+
+  private Configuration conf;
+  private FileSystem fs;
+  private Path dir;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = new Configuration(TEST_UTIL.getConfiguration());
+    fs = FileSystem.getLocal(conf);
+    dir = new Path(TEST_UTIL.getDataTestDir(), name.getMethodName());
+    fs.mkdirs(dir);
+  }
+
+  private void write(Writer writer) throws IOException {
+    HRegionInfo[] regions = { new HRegionInfo(TABLE, HConstants.EMPTY_START_ROW,
+        Bytes.toBytes("m")), new HRegionInfo(TABLE, Bytes.toBytes("m"),
+        HConstants.EMPTY_END_ROW) };
+    try {
+      for (int i = 0; i < ENTRIES; i++) {
+        HRegionInfo hri = regions[i % regions.length];
+        WALKey key = new WALKey(hri.getEncodedNameAsBytes(), TABLE, i,
+            System.currentTimeMillis(), HConstants.DEFAULT_CLUSTER_ID);
+        WALEdit edit = new WALEdit();
+        for (int j = 0; j <= i % 3; j++) {
+          byte[] row = Bytes.toBytes("row" + i);
+          edit.add(new KeyValue(row, row, Bytes.toBytes(j), Bytes.toBytes("value" + i)));
+        }
+        writer.append(new Entry(key, edit));
+        if (i % 100 == 0) {
+          writer.sync();
+        }
+      }
+      writer.sync();
+    } finally {
+      writer.close();
+    }
+  }
+
+  private ProtobufLogReader open(Path path) throws IOException {
+    ProtobufLogReader reader = new ProtobufLogReader();
+    reader.init(fs, path, conf, null);
+    return reader;
+  }
+
+  private static List<Entry> readAll(Reader reader) throws IOException {
+    List<Entry> entries = new ArrayList<Entry>();
+    try {
+      for (Entry entry; (entry = reader.next()) != null;) {
+        entries.add(entry);
+      }
+    } finally {
+      reader.close();
+    }
+    return entries;
+  }
+
+  private void assertSameAsSerial(Path path, int expected) throws IOException {
+    List<Entry> serial = new ArrayList<Entry>();
+    try (ProtobufLogReader reader = open(path)) {
+      for (Entry entry; (entry = reader.next()) != null;) {
+        serial.add(entry);
+      }
+    }
+    Reader parallel = ParallelDecodingLogReader.wrap(open(path), 4, 4096);
+    assertTrue(parallel instanceof ParallelDecodingLogReader);
+    List<Entry> entries = readAll(parallel);
+    assertEquals(expected, serial.size());
+    assertEquals(serial.size(), entries.size());
+    for (int i = 0; i < entries.size(); i++) {
+      WALKey expectedKey = serial.get(i).getKey();
+      WALKey key = entries.get(i).getKey();
+      assertArrayEquals(expectedKey.getEncodedRegionName(), key.getEncodedRegionName());
+      assertEquals(expectedKey.getLogSeqNum(), key.getLogSeqNum());
+      assertEquals(serial.get(i).getEdit().size(), entries.get(i).getEdit().size());
+      for (int j = 0; j < entries.get(i).getEdit().size(); j++) {
+        assertTrue(CellUtil.equals(serial.get(i).getEdit().getCells().get(j),
+          entries.get(i).getEdit().getCells().get(j)));
+      }
+    }
+  }
+
+  @Test
+  public void testPlainFormat() throws IOException {
+    Path path = new Path(dir, "wal");
+    write(FSHLogProvider.createWriter(conf, fs, path, false));
+    assertSameAsSerial(path, ENTRIES);
+  }
+
+  @Test
+  public void testBlockFormat() throws IOException {
+    Path path = new Path(dir, "wal");
+    conf.set(BlockProtobufLogWriter.WAL_BLOCK_COMPRESSION, Compression.Algorithm.GZ.getName());
+    BlockProtobufLogWriter writer = new BlockProtobufLogWriter();
+    writer.init(fs, path, conf, false);
+    write(writer);
+    assertSameAsSerial(path, ENTRIES);
+  }
+
+  /**
+   * Positions have to match those of the serial reader after each entry, and seeking to one
+   * has to carry on with the entry after it.
+   */
+  private void assertPositionsAndSeek(Path path) throws IOException {
+    List<Long> positions = new ArrayList<Long>();
+    List<Long> seqIds = new ArrayList<Long>();
+    try (ProtobufLogReader reader = open(path)) {
+      for (Entry entry; (entry = reader.next()) != null;) {
+        positions.add(reader.getPosition());
+        seqIds.add(entry.getKey().getLogSeqNum());
+      }
+    }
+    Reader parallel = ParallelDecodingLogReader.wrap(open(path), 4, 4096);
+    try {
+      for (int i = 0; i < positions.size(); i++) {
+        assertEquals(seqIds.get(i).longValue(), parallel.next().getKey().getLogSeqNum());
+        assertEquals(positions.get(i).longValue(), parallel.getPosition());
+      }
+      assertNull(parallel.next());
+      // Back to the middle of the file, whatever was read ahead is dropped
+      int middle = positions.size() / 2;
+      parallel.seek(positions.get(middle));
+      assertEquals(positions.get(middle).longValue(), parallel.getPosition());
+      Entry entry = parallel.next();
+      int index = seqIds.indexOf(entry.getKey().getLogSeqNum());
+      // Within a block the serial reader reports the start of the block
+      assertTrue(index > 0 && index <= middle + 1);
+      assertEquals(positions.get(index).longValue(), parallel.getPosition());
+      int read = 1;
+      while (parallel.next() != null) {
+        read++;
+      }
+      assertEquals(positions.size() - index, read);
+    } finally {
+      parallel.close();
+    }
+  }
+
+  @Test
+  public void testPositionAndSeekPlainFormat() throws IOException {
+    Path path = new Path(dir, "wal");
+    write(FSHLogProvider.createWriter(conf, fs, path, false));
+    assertPositionsAndSeek(path);
+  }
+
+  @Test
+  public void testPositionAndSeekBlockFormat() throws IOException {
+    Path path = new Path(dir, "wal");
+    conf.set(BlockProtobufLogWriter.WAL_BLOCK_COMPRESSION, Compression.Algorithm.GZ.getName());
+    BlockProtobufLogWriter writer = new BlockProtobufLogWriter();
+    writer.init(fs, path, conf, false);
+    write(writer);
+    assertPositionsAndSeek(path);
+  }
+
+  @Test
+  public void testTruncatedFile() throws IOException {
+    Path path = new Path(dir, "wal");
+    write(FSHLogProvider.createWriter(conf, fs, path, false));
+    // cut the file in the middle of an entry, dropping the trailer as a crash would
+    long length = fs.getFileStatus(path).getLen() / 2;
+    Path truncated = new Path(dir, "truncated");
+    byte[] head = new byte[(int) length];
+    try (FSDataInputStream in = fs.open(path)) {
+      in.readFully(head);
+    }
+    try (FSDataOutputStream out = fs.create(truncated)) {
+      out.write(head);
+    }
+    List<Entry> serial = readAll(open(truncated));
+    assertTrue(serial.size() > 0 && serial.size() < ENTRIES);
+    assertSameAsSerial(truncated, serial.size());
+  }
+
+  /**
+   * Reads the sequence ids of the entries until the end of the file or an error.
+   * @return the error, or null if there was none
+   */
+  private static IOException readUntilError(Reader reader, List<Long> seqIds) throws IOException {
+    try {
+      for (Entry entry; (entry = reader.next()) != null;) {
+        seqIds.add(entry.getKey().getLogSeqNum());
+      }
+      return null;
+    } catch (IOException e) {
+      return e;
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testCorruptEntryInBlock() throws IOException {
+    final int corrupt = 150;
+    Path path = new Path(dir, "wal");
+    conf.set(BlockProtobufLogWriter.WAL_BLOCK_COMPRESSION, Compression.Algorithm.GZ.getName());
+    BlockProtobufLogWriter writer = new BlockProtobufLogWriter() {
+      @Override
+      public void append(Entry entry) throws IOException {
+        if (entry.getKey().getLogSeqNum() == corrupt) {
+          // An entry of one byte, which is no WALKey, inside a block with a good checksum
+          getOutputStreamForCellEncoder().write(new byte[] { 1, 0 });
+        }
+        super.append(entry);
+      }
+
+      @Override
+      protected String getWriterClassName() {
+        return BlockProtobufLogWriter.class.getSimpleName();
+      }
+    };
+    writer.init(fs, path, conf, false);
+    write(writer);
+
+    List<Long> serial = new ArrayList<Long>();
+    IOException serialError = readUntilError(open(path), serial);
+    assertEquals(corrupt, serial.size());
+    assertNotNull(serialError);
+    assertFalse(serialError instanceof EOFException);
+    // The entries of the block before the corrupt one come out before the error
+    Reader parallel = ParallelDecodingLogReader.wrap(open(path), 4, 4096);
+    assertTrue(parallel instanceof ParallelDecodingLogReader);
+    List<Long> entries = new ArrayList<Long>();
+    IOException error = readUntilError(parallel, entries);
+    assertEquals(serial, entries);
+    assertNotNull(error);
+    assertEquals(serialError.getClass(), error.getClass());
+  }
+
+  @Test
+  public void testNotWrappedWithDictionaryCompression() throws IOException {
+    Path path = new Path(dir, "wal");
+    conf.setBoolean(HConstants.ENABLE_WAL_COMPRESSION, true);
+    write(FSHLogProvider.createWriter(conf, fs, path, false));
+    ProtobufLogReader reader = open(path);
+    try {
+      assertTrue(ParallelDecodingLogReader.wrap(reader, 4, 4096) == reader);
+      assertEquals(0, reader.next().getKey().getLogSeqNum());
+    } finally {
+      reader.close();
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({RegionServerTests.class, SmallTests.class})
+public class TestSlowSyncDetector {
+
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void testUnknownUntilWindowFilled() {
+    SlowSyncDetector detector = new SlowSyncDetector(99, 0, 100);
+    for (int i = 0; i < 99; i++) {
+      detector.syncCompleted(MS);
+    }
+    assertEquals(-1, detector.getThresholdNanos());
+    detector.syncCompleted(MS);
+    assertEquals(MS, detector.getThresholdNanos());
+  }
+
+  @Test
+  public void testPercentile() {
+    SlowSyncDetector detector = new SlowSyncDetector(99, 0, 1000);
+    for (int i = 1; i <= 1000; i++) {
+      detector.syncCompleted(i * MS);
+    }
+    assertEquals(990 * MS, detector.getThresholdNanos());
+  }
+
+  @Test
+  public void testFloor() {
+    SlowSyncDetector detector = new SlowSyncDetector(99.9, 100 * MS, 100);
+    for (int i = 0; i < 100; i++) {
+      detector.syncCompleted(2 * MS);
+    }
+    assertEquals(100 * MS, detector.getThresholdNanos());
+  }
+
+  @Test
+  public void testOldSamplesDropOut() {
+    SlowSyncDetector detector = new SlowSyncDetector(50, 0, 160);
+    for (int i = 0; i < 160; i++) {
+      detector.syncCompleted(50 * MS);
+    }
+    assertEquals(50 * MS, detector.getThresholdNanos());
+    for (int i = 0; i < 160; i++) {
+      detector.syncCompleted(2 * MS);
+    }
+    assertEquals(2 * MS, detector.getThresholdNanos());
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({RegionServerTests.class, SmallTests.class})
+public class TestSyncBatchController {
+
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long US = TimeUnit.MICROSECONDS.toNanos(1);
+
+  private static void feed(SyncBatchController controller, long syncNanos, long gapNanos) {
+    long now = 0;
+    for (int i = 0; i < 100; i++) {
+      controller.syncCompleted(syncNanos);
+      controller.syncArrived(now);
+      now += gapNanos;
+    }
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    SyncBatchController controller = new SyncBatchController(0);
+    feed(controller, 2 * MS, 100 * US);
+    assertEquals(0, controller.getBatchWaitNanos());
+  }
+
+  @Test
+  public void testWaitsForOneSyncWhenSyncsArriveFaster() {
+    SyncBatchController controller = new SyncBatchController(10 * MS);
+    feed(controller, 2 * MS, 100 * US);
+    long wait = controller.getBatchWaitNanos();
+    assertTrue("wait=" + wait, wait > 1900 * US && wait <= 2 * MS);
+    assertEquals(20, controller.getTargetBatchSize());
+  }
+
+  @Test
+  public void testNoWaitWhenSyncsArriveSlowly() {
+    SyncBatchController controller = new SyncBatchController(10 * MS);
+    feed(controller, 2 * MS, 5 * MS);
+    assertEquals(0, controller.getBatchWaitNanos());
+    assertEquals(1, controller.getTargetBatchSize());
+  }
+
+  @Test
+  public void testWaitKeptWithinTarget() {
+    SyncBatchController controller = new SyncBatchController(3 * MS);
+    feed(controller, 2 * MS, 100 * US);
+    // Steady hflush times leave almost no deviation, so about 1ms of the target is left
+    long wait = controller.getBatchWaitNanos();
+    assertTrue("wait=" + wait, wait > 900 * US && wait <= MS);
+    // No room at all once hflush alone takes the whole target
+    controller = new SyncBatchController(2 * MS);
+    feed(controller, 3 * MS, 100 * US);
+    assertEquals(0, controller.getBatchWaitNanos());
+  }
+}
@@ -0,0 +1,141 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import static org.apache.hadoop.hbase.wal.BoundedGroupingStrategy.NUM_REGION_GROUPS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
+import org.apache.hadoop.hbase.regionserver.wal.WALEdit;
+import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.RegionEventDescriptor.EventType;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.util.ManualEnvironmentEdge;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestLoadAwareGroupingStrategy {
+
+  private static final long PERIOD = 1000;
+
+  private LoadAwareGroupingStrategy strategy;
+  private long now;
+
+  @Before
+  public void setUp() {
+    Configuration conf = new Configuration(false);
+    conf.setInt(NUM_REGION_GROUPS, 2);
+    conf.setLong(LoadAwareGroupingStrategy.REBALANCE_PERIOD, PERIOD);
+    ManualEnvironmentEdge edge = new ManualEnvironmentEdge();
+    EnvironmentEdgeManager.injectEdge(edge);
+    strategy = new LoadAwareGroupingStrategy();
+    strategy.init(conf, "test");
+    now = edge.currentTime() + PERIOD;
+  }
+
+  @After
+  public void tearDown() {
+    EnvironmentEdgeManager.reset();
+  }
+
+  @Test
+  public void testNewRegionsAreSpread() {
+    Set<String> groups = new HashSet<>();
+    for (int i = 0; i < 4; i++) {
+      groups.add(strategy.group(Bytes.toBytes("region" + i), null));
+    }
+    assertEquals(2, groups.size());
+    // the assignment sticks
+    assertEquals(strategy.group(Bytes.toBytes("region0"), null),
+      strategy.group(Bytes.toBytes("region0"), null));
+  }
+
+  @Test
+  public void testHotGroupIsRebalanced() {
+    String[] regions = { "hot1", "hot2", "cold1", "cold2" };
+    for (String region : regions) {
+      strategy.group(Bytes.toBytes(region), null);
+    }
+    // make the two regions which share a group with hot1 the hot ones
+    String hotGroup = strategy.group(Bytes.toBytes("hot1"), null);
+    if (!hotGroup.equals(strategy.group(Bytes.toBytes("hot2"), null))) {
+      regions[1] = "cold1";
+      regions[2] = "hot2";
+    }
+    strategy.recordAppend(Bytes.toBytes(regions[0]), 100 * PERIOD);
+    strategy.recordAppend(Bytes.toBytes(regions[1]), 100 * PERIOD);
+    strategy.recordAppend(Bytes.toBytes(regions[2]), PERIOD);
+    strategy.recordAppend(Bytes.toBytes(regions[3]), PERIOD);
+
+    // too early, nothing happens
+    assertEquals(0, strategy.rebalance(now - PERIOD + 1));
+    assertEquals(1, strategy.rebalance(now));
+    assertNotEquals(strategy.group(Bytes.toBytes(regions[0]), null),
+      strategy.group(Bytes.toBytes(regions[1]), null));
+
+    // balanced now, further rebalances leave the groups alone
+    strategy.recordAppend(Bytes.toBytes(regions[0]), 100 * PERIOD);
+    strategy.recordAppend(Bytes.toBytes(regions[1]), 100 * PERIOD);
+    assertEquals(0, strategy.rebalance(now + PERIOD));
+  }
+
+  @Test
+  public void testNewRegionGoesToColdGroup() {
+    String hot = strategy.group(Bytes.toBytes("hot"), null);
+    strategy.recordAppend(Bytes.toBytes("hot"), 100 * PERIOD);
+    strategy.rebalance(now);
+    assertEquals(100 * PERIOD, strategy.getGroupRates().get(hot).longValue());
+    assertNotEquals(hot, strategy.group(Bytes.toBytes("new1"), null));
+  }
+
+  @Test
+  public void testClosedRegionIsForgotten() throws Exception {
+    HRegionInfo closed = new HRegionInfo(TableName.valueOf("test"));
+    String closedGroup = strategy.group(closed.getEncodedNameAsBytes(), null);
+    String other = strategy.group(Bytes.toBytes("other"), null);
+    assertNotEquals(closedGroup, other);
+    assertEquals(2, strategy.getAssignedRegionCount());
+
+    WALActionsListener listener = strategy.getGroupListener(closedGroup);
+    WALEdit closeMarker = WALEdit.createRegionEventWALEdit(closed,
+      ProtobufUtil.toRegionEventDescriptor(EventType.REGION_CLOSE, closed, 1,
+        ServerName.valueOf("localhost", 1, 1), new TreeMap<>(Bytes.BYTES_COMPARATOR)));
+    listener.postAppend(100, 0,
+      new WALKey(closed.getEncodedNameAsBytes(), closed.getTable(), 0), closeMarker);
+    assertEquals(1, strategy.getAssignedRegionCount());
+
+    // the closed region no longer counts, so its group is the emptier one again
+    assertEquals(closedGroup, strategy.group(Bytes.toBytes("new"), null));
+  }
+}
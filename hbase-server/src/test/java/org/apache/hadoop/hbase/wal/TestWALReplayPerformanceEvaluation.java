@@ -0,0 +1,71 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.testclassification.LargeTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Runs {@link WALReplayPerformanceEvaluation} on a few small WALs, checking only that the split,
+ * replay and open stages all finish.
+ */
+@Category({ RegionServerTests.class, LargeTests.class })
+public class TestWALReplayPerformanceEvaluation {
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+
+  private static Configuration CONF;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    CONF = TEST_UTIL.getConfiguration();
+    CONF.setInt("dfs.heartbeat.interval", 1);
+    TEST_UTIL.startMiniDFSCluster(2);
+    TEST_UTIL.createRootDir();
+    TEST_UTIL.createWALRootDir();
+  }
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    TEST_UTIL.shutdownMiniDFSCluster();
+  }
+
+  @Test (timeout=300000)
+  public void testSplitReplayAndOpen() throws Exception {
+    int errCode = WALReplayPerformanceEvaluation.innerMain(new Configuration(CONF),
+      new String[] { "-regions", "3", "-edits", "3000", "-walSize", "65536", "-noclosefs" });
+    assertEquals(0, errCode);
+  }
+
+  @Test (timeout=300000)
+  public void testCompressedWALs() throws Exception {
+    int errCode = WALReplayPerformanceEvaluation.innerMain(new Configuration(CONF),
+      new String[] { "-regions", "3", "-edits", "3000", "-walSize", "65536", "-compress",
+        "-noclosefs" });
+    assertEquals(0, errCode);
+  }
+}
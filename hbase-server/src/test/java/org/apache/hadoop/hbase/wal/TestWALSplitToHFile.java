@@ -0,0 +1,283 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.List;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.crypto.Encryption;
+import org.apache.hadoop.hbase.io.crypto.KeyProviderForTesting;
+import org.apache.hadoop.hbase.io.crypto.aes.AES;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.wal.WALEdit;
+import org.apache.hadoop.hbase.security.EncryptionUtil;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ZooKeeperProtos.SplitLogTask.RecoveryMode;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.util.FSTableDescriptors;
+import org.apache.hadoop.hbase.util.FSUtils;
+import org.apache.hadoop.hbase.wal.WALProvider.Writer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Tests splitting a WAL straight into HFiles and opening the region on them.
+ */
+@Category({RegionServerTests.class, MediumTests.class})
+public class TestWALSplitToHFile {
+
+  private static final HBaseTestingUtility UTIL = new HBaseTestingUtility();
+  private static final byte[] FAMILY1 = Bytes.toBytes("f1");
+  private static final byte[] FAMILY2 = Bytes.toBytes("f2");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+  @Rule
+  public TestName name = new TestName();
+
+  private static Configuration conf;
+  private static FileSystem fs;
+  private static Path rootDir;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    UTIL.startMiniDFSCluster(1);
+    conf = UTIL.getConfiguration();
+    conf.setBoolean(WALSplitter.SPLIT_WAL_TO_HFILE, true);
+    fs = UTIL.getDFSCluster().getFileSystem();
+    rootDir = UTIL.createRootDir();
+  }
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    UTIL.shutdownMiniDFSCluster();
+  }
+
+  @Test
+  public void testSplitToHFileAndOpenRegion() throws IOException {
+    TableName tableName = TableName.valueOf(name.getMethodName());
+    HTableDescriptor htd = new HTableDescriptor(tableName);
+    htd.addFamily(new HColumnDescriptor(FAMILY1));
+    htd.addFamily(new HColumnDescriptor(FAMILY2));
+    HRegionInfo hri = new HRegionInfo(tableName);
+    new FSTableDescriptors(conf, fs, rootDir).createTableDescriptor(htd);
+    HBaseTestingUtility.closeRegionAndWAL(
+      HBaseTestingUtility.createRegionAndWAL(hri, rootDir, conf, htd));
+
+    WALFactory wals = new WALFactory(conf, null, name.getMethodName());
+    Path logPath = getWALPath();
+    Writer writer = wals.createWALWriter(fs, logPath);
+    long ts = EnvironmentEdgeManager.currentTime();
+    long seq = 0;
+    // Rows arrive out of order and need sorting before they can go into an HFile
+    for (int i = 9; i >= 0; i--) {
+      append(writer, hri, ++seq, Bytes.toBytes("row" + i), FAMILY1, ts, Bytes.toBytes(i));
+    }
+    // Two edits of the same cell, the later one has to win
+    append(writer, hri, ++seq, Bytes.toBytes("row0"), FAMILY2, ts, Bytes.toBytes("old"));
+    append(writer, hri, ++seq, Bytes.toBytes("row0"), FAMILY2, ts, Bytes.toBytes("new"));
+    writer.close();
+
+    assertTrue(WALSplitter.splitLogFile(rootDir, fs.getFileStatus(logPath), fs, conf, null, null,
+      null, RecoveryMode.LOG_SPLITTING, wals));
+    Path regionDir = HRegion.getRegionDir(FSUtils.getTableDir(rootDir, tableName),
+      hri.getEncodedName());
+    assertEquals(1, WALSplitter.getRecoveredHFiles(fs, regionDir, "f1").size());
+    assertEquals(1, WALSplitter.getRecoveredHFiles(fs, regionDir, "f2").size());
+    assertTrue(WALSplitter.getSplitEditFilesSorted(fs, regionDir).isEmpty());
+    // Left over by a failed attempt at splitting another WAL; dropped on open
+    Path leftover = new Path(new Path(WALSplitter.getRegionDirRecoveredHFilesDir(regionDir), "f1"),
+        "failed.wal-0.temp");
+    fs.create(leftover).close();
+
+    HRegion region = HRegion.openHRegion(conf, fs, rootDir, hri, htd,
+      wals.getWAL(hri.getEncodedNameAsBytes(), hri.getTable().getNamespace()));
+    try {
+      assertFalse(fs.exists(WALSplitter.getRegionDirRecoveredHFilesDir(regionDir)));
+      assertEquals(1, region.getStore(FAMILY1).getStorefilesCount());
+      // The stores account for the recovered edits like for flushed ones
+      assertEquals(seq - 2, (long) region.getMaxStoreSeqId().get(FAMILY1));
+      assertEquals(seq, (long) region.getMaxStoreSeqId().get(FAMILY2));
+      assertTrue(region.getOpenSeqNum() > seq);
+      for (int i = 0; i < 10; i++) {
+        Result result = region.get(new Get(Bytes.toBytes("row" + i)).addFamily(FAMILY1));
+        assertArrayEquals(Bytes.toBytes(i), result.getValue(FAMILY1, QUALIFIER));
+      }
+      Result result = region.get(new Get(Bytes.toBytes("row0")).addFamily(FAMILY2));
+      assertArrayEquals(Bytes.toBytes("new"), result.getValue(FAMILY2, QUALIFIER));
+    } finally {
+      region.close();
+      wals.close();
+    }
+  }
+
+  @Test
+  public void testEncryptedFamilyStaysEncrypted() throws Exception {
+    Configuration encConf = new Configuration(conf);
+    encConf.set(HConstants.CRYPTO_KEYPROVIDER_CONF_KEY, KeyProviderForTesting.class.getName());
+    encConf.set(HConstants.CRYPTO_MASTERKEY_NAME_CONF_KEY, "hbase");
+    byte[] keyBytes = new byte[AES.KEY_LENGTH];
+    new SecureRandom().nextBytes(keyBytes);
+    String algorithm =
+        encConf.get(HConstants.CRYPTO_KEY_ALGORITHM_CONF_KEY, HConstants.CIPHER_AES);
+    Key cfKey = new SecretKeySpec(keyBytes, algorithm);
+
+    TableName tableName = TableName.valueOf(name.getMethodName());
+    HTableDescriptor htd = new HTableDescriptor(tableName);
+    HColumnDescriptor hcd = new HColumnDescriptor(FAMILY1);
+    hcd.setEncryptionType(algorithm);
+    hcd.setEncryptionKey(EncryptionUtil.wrapKey(encConf, "hbase", cfKey));
+    htd.addFamily(hcd);
+    HRegionInfo hri = new HRegionInfo(tableName);
+    new FSTableDescriptors(encConf, fs, rootDir).createTableDescriptor(htd);
+    HBaseTestingUtility.closeRegionAndWAL(
+      HBaseTestingUtility.createRegionAndWAL(hri, rootDir, encConf, htd));
+
+    WALFactory wals = new WALFactory(encConf, null, name.getMethodName());
+    Path logPath = getWALPath();
+    Writer writer = wals.createWALWriter(fs, logPath);
+    long ts = EnvironmentEdgeManager.currentTime();
+    append(writer, hri, 1, Bytes.toBytes("row0"), FAMILY1, ts, Bytes.toBytes("secret"));
+    writer.close();
+
+    try {
+      assertTrue(WALSplitter.splitLogFile(rootDir, fs.getFileStatus(logPath), fs, encConf, null,
+        null, null, RecoveryMode.LOG_SPLITTING, wals));
+      Path regionDir = HRegion.getRegionDir(FSUtils.getTableDir(rootDir, tableName),
+        hri.getEncodedName());
+      List<Path> hfiles = WALSplitter.getRecoveredHFiles(fs, regionDir, "f1");
+      assertEquals(1, hfiles.size());
+      HFile.Reader reader =
+          HFile.createReader(fs, hfiles.get(0), new CacheConfig(encConf), encConf);
+      try {
+        reader.loadFileInfo();
+        Encryption.Context cryptoContext = reader.getFileContext().getEncryptionContext();
+        assertNotNull("Recovered HFile is not encrypted", cryptoContext.getKey());
+        assertArrayEquals(cfKey.getEncoded(), cryptoContext.getKey().getEncoded());
+      } finally {
+        reader.close();
+      }
+    } finally {
+      wals.close();
+    }
+  }
+
+  @Test
+  public void testBufferLimitWritesLargestRegion() throws IOException {
+    TableName tableName = TableName.valueOf(name.getMethodName());
+    HTableDescriptor htd = new HTableDescriptor(tableName);
+    htd.addFamily(new HColumnDescriptor(FAMILY1));
+    HRegionInfo large = new HRegionInfo(tableName, null, Bytes.toBytes("m"));
+    HRegionInfo small = new HRegionInfo(tableName, Bytes.toBytes("m"), null);
+    new FSTableDescriptors(conf, fs, rootDir).createTableDescriptor(htd);
+    for (HRegionInfo hri : new HRegionInfo[] { large, small }) {
+      HBaseTestingUtility.closeRegionAndWAL(
+        HBaseTestingUtility.createRegionAndWAL(hri, rootDir, conf, htd));
+    }
+
+    Configuration splitConf = new Configuration(conf);
+    splitConf.setLong("hbase.wal.split.to.hfile.buffer.size", 64 * 1024);
+    WALFactory wals = new WALFactory(splitConf, null, name.getMethodName());
+    Path logPath = getWALPath();
+    fs.create(logPath).close();
+    WALSplitter splitter = new WALSplitter(wals, splitConf, rootDir, fs, null, null,
+        RecoveryMode.LOG_SPLITTING);
+    splitter.fileBeingSplit = fs.getFileStatus(logPath);
+    try {
+      // Together the regions go over the limit only once the smaller one is appended, which
+      // has to write out the larger one
+      long ts = EnvironmentEdgeManager.currentTime();
+      splitter.outputSink.append(newBuffer(large, 40, ts));
+      splitter.outputSink.append(newBuffer(small, 30, ts));
+      assertTrue(fs.exists(getRecoveredTmpFile(large, logPath)));
+      assertFalse(fs.exists(getRecoveredTmpFile(small, logPath)));
+    } finally {
+      wals.close();
+    }
+  }
+
+  /**
+   * @return a WAL path under a region server's WAL directory, as splitting takes the name of the
+   *         server the WAL belonged to from its directory
+   */
+  private Path getWALPath() throws IOException {
+    Path walDir = new Path(rootDir, AbstractFSWALProvider.getWALDirectoryName(
+      ServerName.valueOf(name.getMethodName(), 16010, System.currentTimeMillis()).toString()));
+    fs.mkdirs(walDir);
+    return new Path(walDir, name.getMethodName() + ".wal");
+  }
+
+  private static WALSplitter.RegionEntryBuffer newBuffer(HRegionInfo hri, int rows, long ts) {
+    WALSplitter.RegionEntryBuffer buffer =
+        new WALSplitter.RegionEntryBuffer(hri.getTable(), hri.getEncodedNameAsBytes());
+    for (int i = 0; i < rows; i++) {
+      WALEdit edit = new WALEdit();
+      edit.add(new KeyValue(Bytes.add(hri.getStartKey(), Bytes.toBytes(i)), FAMILY1, QUALIFIER,
+          ts, KeyValue.Type.Put, new byte[1024]));
+      buffer.appendEntry(new WAL.Entry(new WALKey(hri.getEncodedNameAsBytes(), hri.getTable(),
+          i + 1, ts, HConstants.DEFAULT_CLUSTER_ID), edit));
+    }
+    return buffer;
+  }
+
+  private static Path getRecoveredTmpFile(HRegionInfo hri, Path logPath) {
+    Path regionDir = HRegion.getRegionDir(FSUtils.getTableDir(rootDir, hri.getTable()),
+      hri.getEncodedName());
+    return new Path(new Path(WALSplitter.getRegionDirRecoveredHFilesDir(regionDir), "f1"),
+        logPath.getName() + "-0.temp");
+  }
+
+  private static void append(Writer writer, HRegionInfo hri, long seq, byte[] row,
+      byte[] family, long ts, byte[] value) throws IOException {
+    WALEdit edit = new WALEdit();
+    edit.add(new KeyValue(row, family, QUALIFIER, ts, KeyValue.Type.Put, value));
+    writer.append(new WAL.Entry(new WALKey(hri.getEncodedNameAsBytes(), hri.getTable(), seq, ts,
+        HConstants.DEFAULT_CLUSTER_ID), edit));
+  }
+}
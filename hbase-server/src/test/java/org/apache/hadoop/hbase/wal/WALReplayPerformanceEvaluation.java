@@ -0,0 +1,402 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hbase.wal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.monitoring.MonitoredTask;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.HRegionFileSystem;
+import org.apache.hadoop.hbase.regionserver.RegionServerServices;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.CancelableProgressable;
+import org.apache.hadoop.hbase.util.FSUtils;
+import org.apache.hadoop.hbase.wal.WALProvider.Writer;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+// imports for things that haven't moved from regionserver.wal yet.
+import org.apache.hadoop.hbase.regionserver.wal.WALEdit;
+
+/**
+ * This class benchmarks the recovery side of the {@link WAL}: splitting the WALs of a dead
+ * server, replaying the resulting recovered edits and opening the regions they belong to.
+ * It writes the WALs itself, so the stages can be measured in isolation and repeated.
+ * See usage for this tool by running:
+ * <code>$ hbase org.apache.hadoop.hbase.wal.WALReplayPerformanceEvaluation -h</code>
+ */
+@InterfaceAudience.Private
+public final class WALReplayPerformanceEvaluation extends Configured implements Tool {
+  private static final Log LOG = LogFactory.getLog(WALReplayPerformanceEvaluation.class);
+
+  static final String TABLE_NAME = "WALReplayPerformanceEvaluation";
+  static final String QUALIFIER_PREFIX = "q";
+  static final String FAMILY_PREFIX = "cf";
+
+  // Time spent by all regions in replaying recovered edits, see ReplayTimingRegion
+  private static final LongAdder REPLAY_NANOS = new LongAdder();
+
+  private HBaseTestingUtility TEST_UTIL;
+
+  private int numRegions = 10;
+  private int numFamilies = 1;
+  private int numQualifiers = 1;
+  private int keySize = 16;
+  private int valueSize = 512;
+  private long numEdits = 100000;
+  private long walSize = 64L * 1024 * 1024;
+  private int openThreads = 3;
+
+  /**
+   * Region that records how long it spends replaying recovered edits, so that we can tell the
+   * replay apart from the rest of the region open.
+   */
+  public static class ReplayTimingRegion extends HRegion {
+
+    public ReplayTimingRegion(Path tableDir, WAL wal, FileSystem fs, Configuration confParam,
+        HRegionInfo regionInfo, HTableDescriptor htd, RegionServerServices rsServices) {
+      super(tableDir, wal, fs, confParam, regionInfo, htd, rsServices);
+    }
+
+    @Override
+    protected long replayRecoveredEditsIfAny(Path regiondir, Map<byte[], Long> maxSeqIdInStores,
+        CancelableProgressable reporter, MonitoredTask status) throws IOException {
+      long start = System.nanoTime();
+      try {
+        return super.replayRecoveredEditsIfAny(regiondir, maxSeqIdInStores, reporter, status);
+      } finally {
+        REPLAY_NANOS.add(System.nanoTime() - start);
+      }
+    }
+  }
+
+  @Override
+  public void setConf(Configuration conf) {
+    super.setConf(conf);
+    TEST_UTIL = new HBaseTestingUtility(conf);
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    Path rootDir = null;
+    boolean cleanup = true;
+    boolean noclosefs = false;
+    boolean compress = false;
+    boolean splitToHFile = false;
+    // Process command line args
+    for (int i = 0; i < args.length; i++) {
+      String cmd = args[i];
+      try {
+        if (cmd.equals("-regions")) {
+          numRegions = Integer.parseInt(args[++i]);
+        } else if (cmd.equals("-edits")) {
+          numEdits = Long.parseLong(args[++i]);
+        } else if (cmd.equals("-walSize")) {
+          walSize = Long.parseLong(args[++i]);
+        } else if (cmd.equals("-path")) {
+          rootDir = new Path(args[++i]);
+        } else if (cmd.equals("-families")) {
+          numFamilies = Integer.parseInt(args[++i]);
+        } else if (cmd.equals("-qualifiers")) {
+          numQualifiers = Integer.parseInt(args[++i]);
+        } else if (cmd.equals("-keySize")) {
+          keySize = Integer.parseInt(args[++i]);
+        } else if (cmd.equals("-valueSize")) {
+          valueSize = Integer.parseInt(args[++i]);
+        } else if (cmd.equals("-openThreads")) {
+          openThreads = Integer.parseInt(args[++i]);
+        } else if (cmd.equals("-compress")) {
+          compress = true;
+        } else if (cmd.equals("-splitToHFile")) {
+          splitToHFile = true;
+        } else if (cmd.equals("-nocleanup")) {
+          cleanup = false;
+        } else if (cmd.equals("-noclosefs")) {
+          noclosefs = true;
+        } else if (cmd.equals("-h")) {
+          printUsageAndExit();
+        } else if (cmd.equals("--help")) {
+          printUsageAndExit();
+        } else {
+          System.err.println("UNEXPECTED: " + cmd);
+          printUsageAndExit();
+        }
+      } catch (Exception e) {
+        printUsageAndExit();
+      }
+    }
+
+    Configuration conf = getConf();
+    conf.setBoolean(HConstants.ENABLE_WAL_COMPRESSION, compress);
+    conf.setBoolean(WALSplitter.SPLIT_WAL_TO_HFILE, splitToHFile);
+    conf.setClass(HConstants.REGION_IMPL, ReplayTimingRegion.class, HRegion.class);
+
+    FSUtils.setFsDefault(conf, FSUtils.getRootDir(conf));
+    FileSystem fs = FileSystem.get(conf);
+    LOG.info("FileSystem: " + fs);
+    try {
+      if (rootDir == null) {
+        rootDir = TEST_UTIL.getDataTestDirOnTestFS(TABLE_NAME);
+      }
+      rootDir = rootDir.makeQualified(fs);
+      cleanRootDir(fs, rootDir);
+      FSUtils.setRootDir(conf, rootDir);
+      try {
+        HTableDescriptor htd = createHTableDescriptor(numFamilies);
+        HRegionInfo[] regions = createRegions(conf, fs, rootDir, htd);
+
+        ServerName deadServer = ServerName.valueOf("localhost", 16020, System.currentTimeMillis());
+        Path walDir = new Path(rootDir,
+            AbstractFSWALProvider.getWALDirectoryName(deadServer.toString()));
+        Path oldWalDir = new Path(rootDir, HConstants.HREGION_OLDLOGDIR_NAME);
+
+        long start = System.nanoTime();
+        long walBytes = writeWALs(conf, fs, walDir, regions);
+        logStageResult("Write", numEdits, walBytes, System.nanoTime() - start);
+
+        WALFactory wals = new WALFactory(conf, null, TABLE_NAME);
+        try {
+          start = System.nanoTime();
+          WALSplitter.split(rootDir, walDir, oldWalDir, fs, conf, wals);
+          logStageResult("Split", numEdits, walBytes, System.nanoTime() - start);
+
+          REPLAY_NANOS.reset();
+          start = System.nanoTime();
+          List<HRegion> opened = openRegions(conf, fs, rootDir, htd, regions, wals);
+          long openNanos = System.nanoTime() - start;
+          if (!splitToHFile) {
+            // the regions replay in parallel, so this is the throughput of a single opener
+            logStageResult("Replay (per open thread)", numEdits, walBytes, REPLAY_NANOS.sum());
+          }
+          logStageResult("Open " + numRegions + " regions", numEdits, walBytes, openNanos);
+          for (HRegion region : opened) {
+            region.close();
+          }
+        } finally {
+          wals.close();
+        }
+      } finally {
+        // Remove the root dir for this test
+        if (cleanup) {
+          cleanRootDir(fs, rootDir);
+        }
+      }
+    } finally {
+      // We may be called inside a test that wants to keep on using the fs.
+      if (!noclosefs) {
+        fs.close();
+      }
+    }
+    return 0;
+  }
+
+  private static HTableDescriptor createHTableDescriptor(final int numFamilies) {
+    HTableDescriptor htd = new HTableDescriptor(TableName.valueOf(TABLE_NAME));
+    for (int i = 0; i < numFamilies; ++i) {
+      htd.addFamily(new HColumnDescriptor(FAMILY_PREFIX + i));
+    }
+    return htd;
+  }
+
+  /**
+   * Lay out {@link #numRegions} regions of the table on the filesystem, each one owning an
+   * equal part of the key space.
+   */
+  private HRegionInfo[] createRegions(Configuration conf, FileSystem fs, Path rootDir,
+      HTableDescriptor htd) throws IOException {
+    byte[][] splitKeys = numRegions > 1
+        ? Bytes.split(new byte[] { 0, 0, 0, 0 }, new byte[] { -1, -1, -1, -1 }, numRegions - 1)
+        : new byte[][] { HConstants.EMPTY_START_ROW, HConstants.EMPTY_END_ROW };
+    Path tableDir = FSUtils.getTableDir(rootDir, htd.getTableName());
+    HRegionInfo[] regions = new HRegionInfo[numRegions];
+    for (int i = 0; i < numRegions; i++) {
+      byte[] startKey = i == 0 ? HConstants.EMPTY_START_ROW : splitKeys[i];
+      byte[] endKey = i == numRegions - 1 ? HConstants.EMPTY_END_ROW : splitKeys[i + 1];
+      regions[i] = new HRegionInfo(htd.getTableName(), startKey, endKey);
+      HRegionFileSystem.createRegionOnFileSystem(conf, fs, tableDir, regions[i]);
+    }
+    return regions;
+  }
+
+  /**
+   * Write {@link #numEdits} random edits, spread evenly over the regions, into WAL files of about
+   * {@link #walSize} bytes each.
+   * @return Total size of the written WALs.
+   */
+  private long writeWALs(Configuration conf, FileSystem fs, Path walDir, HRegionInfo[] regions)
+      throws IOException {
+    Random rand = new Random(numEdits);
+    long[] sequenceIds = new long[regions.length];
+    byte[] value = new byte[valueSize];
+    long walBytes = 0;
+    int walNum = 0;
+    Writer writer = null;
+    try {
+      for (long i = 0; i < numEdits; i++) {
+        if (writer == null) {
+          Path wal = new Path(walDir, "wal" + AbstractFSWALProvider.WAL_FILE_NAME_DELIMITER
+              + walNum++);
+          writer = WALFactory.createWALWriter(fs, wal, conf);
+        }
+        int r = rand.nextInt(regions.length);
+        HRegionInfo hri = regions[r];
+        byte[] row = createRow(rand, hri);
+        long now = System.currentTimeMillis();
+        WALEdit edit = new WALEdit();
+        for (int cf = 0; cf < numFamilies; ++cf) {
+          for (int q = 0; q < numQualifiers; ++q) {
+            rand.nextBytes(value);
+            edit.add(new KeyValue(row, Bytes.toBytes(FAMILY_PREFIX + cf),
+                Bytes.toBytes(QUALIFIER_PREFIX + q), now, value));
+          }
+        }
+        writer.append(new WAL.Entry(new WALKey(hri.getEncodedNameAsBytes(), hri.getTable(),
+            ++sequenceIds[r], now, HConstants.DEFAULT_CLUSTER_ID), edit));
+        if (writer.getLength() >= walSize) {
+          writer.sync();
+          walBytes += writer.getLength();
+          writer.close();
+          writer = null;
+        }
+      }
+    } finally {
+      if (writer != null) {
+        writer.sync();
+        walBytes += writer.getLength();
+        writer.close();
+      }
+    }
+    LOG.info("Wrote " + numEdits + " edits into " + walNum + " WAL(s) under " + walDir);
+    return walBytes;
+  }
+
+  private byte[] createRow(Random rand, HRegionInfo hri) {
+    byte[] startKey = hri.getStartKey();
+    byte[] row = new byte[Math.max(keySize, startKey.length)];
+    do {
+      rand.nextBytes(row);
+      // prefix the start key so we stay within the region, usually the tail does not matter
+      System.arraycopy(startKey, 0, row, 0, startKey.length);
+    } while (!hri.containsRow(row));
+    return row;
+  }
+
+  private List<HRegion> openRegions(final Configuration conf, final FileSystem fs,
+      final Path rootDir, final HTableDescriptor htd, HRegionInfo[] regions, final WALFactory wals)
+      throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(openThreads);
+    try {
+      List<Future<HRegion>> futures = new ArrayList<Future<HRegion>>(regions.length);
+      for (final HRegionInfo hri : regions) {
+        futures.add(pool.submit(() -> HRegion.openHRegion(conf, fs, rootDir, hri, htd,
+          wals.getWAL(hri.getEncodedNameAsBytes(), hri.getTable().getNamespace()))));
+      }
+      List<HRegion> opened = new ArrayList<HRegion>(regions.length);
+      for (Future<HRegion> future : futures) {
+        opened.add(future.get());
+      }
+      return opened;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private void cleanRootDir(final FileSystem fs, final Path dir) throws IOException {
+    if (fs.exists(dir)) {
+      fs.delete(dir, true);
+    }
+  }
+
+  private static void logStageResult(String stage, long edits, long bytes, long nanos) {
+    double sec = Math.max(nanos, 1) / 1000000000.0;
+    LOG.info(String.format("%s took %.3fs %.3fedits/s %.3fMB/s", stage, sec, edits / sec,
+      bytes / sec / 1024 / 1024));
+  }
+
+  private void printUsageAndExit() {
+    System.err.printf("Usage: hbase %s [options]\n", getClass().getName());
+    System.err.println(" where [options] are:");
+    System.err.println("  -h|-help           Show this help and exit.");
+    System.err.println("  -regions <N>       Number of regions the edits are spread over. "
+        + "Default: 10");
+    System.err.println("  -edits <N>         Number of WAL entries to write. Default: 100000");
+    System.err.println("  -walSize <N>       Size in bytes at which a new WAL file is started. "
+        + "Default: 64MB");
+    System.err.println("  -path <PATH>       Path where the root directory is created.");
+    System.err.println("  -families <N>      Number of column families in each entry.");
+    System.err.println("  -qualifiers <N>    Number of qualifiers per family in each entry.");
+    System.err.println("  -keySize <N>       Row key size in byte.");
+    System.err.println("  -valueSize <N>     Row/Col value size in byte.");
+    System.err.println("  -openThreads <N>   Number of regions opened in parallel. Default: 3");
+    System.err.println("  -compress          Write compressed WALs.");
+    System.err.println("  -splitToHFile      Split straight into HFiles instead of "
+        + "recovered edits.");
+    System.err.println("  -nocleanup         Do NOT remove test data when done.");
+    System.err.println("  -noclosefs         Do NOT close the filesystem when done.");
+    System.err.println("");
+    System.err.println("Examples:");
+    System.err.println("");
+    System.err.println(" To time the recovery of 1M edits of 1KB spread over 50 regions do:");
+    System.err.println(" $ hbase org.apache.hadoop.hbase.wal." +
+      "WALReplayPerformanceEvaluation \\");
+    System.err.println("    -edits 1000000 -valueSize 1024 -regions 50");
+    System.exit(1);
+  }
+
+  /**
+   * The guts of the {@link #main} method.
+   * Call this method to avoid the {@link #main(String[])} System.exit.
+   * @param args
+   * @return errCode
+   * @throws Exception
+   */
+  static int innerMain(final Configuration c, final String [] args) throws Exception {
+    return ToolRunner.run(c, new WALReplayPerformanceEvaluation(), args);
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.exit(innerMain(HBaseConfiguration.create(), args));
+  }
+}